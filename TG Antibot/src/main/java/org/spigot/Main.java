@@ -1,5 +1,6 @@
 package org.spigot;
 
+import org.bukkit.Bukkit;
 import org.bukkit.command.PluginCommand;
 import org.bukkit.plugin.java.JavaPlugin;
 import org.spigot.commands.MainCommand;
@@ -13,8 +14,18 @@ import org.spigot.core.NotificationManager;
 import org.spigot.core.AttackAnalyzer;
 import org.spigot.utils.VPNChecker;
 import org.spigot.utils.FirewallManager;
+import org.spigot.utils.HostingClassifier;
+import org.spigot.utils.IPRangeDatabase;
 import org.spigot.utils.Messages;
 import org.spigot.utils.Metrics;
+import org.spigot.utils.SecurityLog;
+import org.spigot.utils.TimingWheel;
+import org.spigot.utils.TorExitList;
+
+import java.io.File;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
 
 public class Main extends JavaPlugin {
 
@@ -27,6 +38,14 @@ public class Main extends JavaPlugin {
     private VPNChecker vpnChecker;
     private FirewallManager firewallManager;
     private Messages messages;
+    private TimingWheel expiryWheel;
+    private IPRangeDatabase geoDatabase;
+    private HostingClassifier hostingClassifier;
+    private TorExitList torExitList;
+    private volatile SecurityLog securityLog;
+    private String securityLogName;
+    // Shutdowns and starts of security logs, in order; main thread only
+    private CompletableFuture<Void> securityLogChanges = CompletableFuture.completedFuture(null);
 
     @Override
     public void onEnable() {
@@ -45,6 +64,18 @@ public class Main extends JavaPlugin {
         configManager = new ConfigManager(this);
         messages = new Messages(this);
         
+        // Shared expiry for temporary bans and blocks
+        expiryWheel = new TimingWheel("TGA-Expiry-Wheel", 100, TimeUnit.MILLISECONDS, getLogger());
+        
+        // Security events are written to their own file by a background thread
+        configureSecurityLog();
+        
+        // Offline databases, mapped in the background
+        geoDatabase = new IPRangeDatabase("GeoIP", getLogger());
+        hostingClassifier = new HostingClassifier(getLogger());
+        torExitList = new TorExitList(getLogger());
+        loadOfflineDatabases();
+        
         // Initialize security components
         vpnChecker = new VPNChecker(this);
         firewallManager = new FirewallManager(this);
@@ -96,6 +127,21 @@ public class Main extends JavaPlugin {
         if (notificationManager != null) {
             notificationManager.shutdown();
         }
+        if (firewallManager != null) {
+            firewallManager.shutdown();
+        }
+        if (vpnChecker != null) {
+            vpnChecker.shutdown();
+        }
+        if (torExitList != null) {
+            torExitList.stop();
+        }
+        if (expiryWheel != null) {
+            expiryWheel.shutdown();
+        }
+        if (securityLog != null) {
+            securityLog.shutdown();
+        }
         
         long shutdownTime = System.currentTimeMillis() - startTime;
         getLogger().info("§cTG-AntiBot has been disabled! §7(Took " + shutdownTime + "ms)");
@@ -105,9 +151,78 @@ public class Main extends JavaPlugin {
         reloadConfig();
         configManager.reload();
         messages.reload();
+        configureSecurityLog();
         if (botProtectionManager != null) {
             botProtectionManager.reload();
         }
+        if (firewallManager != null) {
+            firewallManager.reload();
+        }
+        if (vpnChecker != null) {
+            vpnChecker.reload();
+        }
+        loadOfflineDatabases();
+    }
+
+    private void configureSecurityLog() {
+        boolean enabled = configManager.isFileLogging();
+        String fileName = configManager.getLogFilename();
+        if (securityLog != null && securityLog.isActive() == enabled && fileName.equals(securityLogName)) {
+            applySecurityLogLimits(securityLog);
+            return;
+        }
+
+        SecurityLog previous = securityLog;
+        SecurityLog created = new SecurityLog(new File(getDataFolder(), "logs"), fileName, getLogger());
+        applySecurityLogLimits(created);
+        securityLog = created;
+        securityLogName = fileName;
+        if (previous != null) {
+            // Flushing the old log can take seconds, keep it off the main thread
+            securityLogChanges = securityLogChanges.thenRunAsync(() -> {
+                try {
+                    previous.shutdown();
+                } catch (RuntimeException e) {
+                    getLogger().warning("Failed to close the previous security log: " + e.getMessage());
+                }
+            }, task -> Bukkit.getScheduler().runTaskAsynchronously(this, task));
+        }
+        if (enabled) {
+            // Never two writers on one file: start once every earlier log has closed
+            securityLogChanges = securityLogChanges.thenRun(created::start);
+        }
+    }
+
+    private void applySecurityLogLimits(SecurityLog log) {
+        log.setLimits(configManager.getLogMaxSizeMb() * 1024L * 1024L,
+            TimeUnit.HOURS.toMillis(configManager.getLogRotateHours()), configManager.getLogKeepFiles());
+    }
+
+    private void loadOfflineDatabases() {
+        if (configManager.isGeoLocationCheckEnabled()) {
+            File geoFile = new File(getDataFolder(), configManager.getGeoDatabaseFile());
+            File geoSource = new File(getDataFolder(), configManager.getGeoSourceCsv());
+            Bukkit.getScheduler().runTaskAsynchronously(this, () -> geoDatabase.load(geoFile, geoSource));
+        }
+
+        if (configManager.isBlockHostingServices()) {
+            File asnFile = new File(getDataFolder(), configManager.getASNDatabaseFile());
+            File asnSource = new File(getDataFolder(), configManager.getASNSourceCsv());
+            File asnList = new File(getDataFolder(), configManager.getHostingASNFile());
+            if (!asnList.exists() && asnList.getName().equals("hosting-asns.txt")) {
+                saveResource("hosting-asns.txt", false);
+            }
+            List<String> extraAsns = configManager.getExtraHostingASNs();
+            Bukkit.getScheduler().runTaskAsynchronously(this, () ->
+                hostingClassifier.load(asnFile, asnSource, asnList, extraAsns));
+        }
+
+        // The exit list is watched and swapped in place whenever the file changes
+        if (configManager.isBlockTorNodes()) {
+            torExitList.start(new File(getDataFolder(), configManager.getTorExitListFile()));
+        } else {
+            torExitList.stop();
+        }
     }
 
     // Getters
@@ -139,6 +254,29 @@ public class Main extends JavaPlugin {
         return vpnChecker;
     }
 
+    /**
+     * Never null; records nothing when file logging is disabled.
+     */
+    public SecurityLog getSecurityLog() {
+        return securityLog;
+    }
+
+    public TimingWheel getExpiryWheel() {
+        return expiryWheel;
+    }
+
+    public IPRangeDatabase getGeoDatabase() {
+        return geoDatabase;
+    }
+
+    public HostingClassifier getHostingClassifier() {
+        return hostingClassifier;
+    }
+
+    public TorExitList getTorExitList() {
+        return torExitList;
+    }
+
     public FirewallManager getFirewallManager() {
         return firewallManager;
     }
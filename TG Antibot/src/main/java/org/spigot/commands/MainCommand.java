@@ -11,11 +11,13 @@ import org.jetbrains.annotations.Nullable;
 import org.spigot.Main;
 import org.spigot.core.data.AttackLog;
 import org.spigot.core.data.PlayerProfile;
+import org.spigot.enums.AttackType;
 
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
 
 public class MainCommand implements CommandExecutor, TabCompleter {
 
@@ -103,9 +105,21 @@ public class MainCommand implements CommandExecutor, TabCompleter {
         sender.sendMessage("§c§lTG-ANTIBOT STATISTICS");
         sender.sendMessage("");
         sender.sendMessage("§7Protection Mode: " + plugin.getBotProtectionManager().getCurrentMode().getDisplayName());
-        sender.sendMessage("§7Joins/sec: §c" + plugin.getBotProtectionManager().getJoinsPerSecond());
-        sender.sendMessage("§7Pings/sec: §b" + plugin.getBotProtectionManager().getPingsPerSecond());
-        sender.sendMessage("§7Packets/sec: §6" + plugin.getBotProtectionManager().getPacketsPerSecond());
+        sender.sendMessage("§7Joins/sec: §c" + plugin.getBotProtectionManager().getJoinsPerSecond() +
+            String.format(" §7(10s avg: §c%.1f§7)", plugin.getBotProtectionManager().getJoinRate()));
+        sender.sendMessage("§7Pings/sec: §b" + plugin.getBotProtectionManager().getPingsPerSecond() +
+            String.format(" §7(10s avg: §b%.1f§7)", plugin.getBotProtectionManager().getPingRate()));
+        sender.sendMessage("§7Packets/sec: §6" + plugin.getBotProtectionManager().getPacketsPerSecond() +
+            String.format(" §7(10s avg: §6%.1f§7)", plugin.getBotProtectionManager().getPacketRate()));
+        sender.sendMessage("§7Distinct IPs: §c" + plugin.getBotProtectionManager().getDistinctSourcesPerSecond() +
+            "§7/sec, §c" + plugin.getBotProtectionManager().getDistinctSourcesPerMinute() + "§7/min");
+        sender.sendMessage("§7Distinct names: §e" + plugin.getBotProtectionManager().getDistinctNamesPerSecond() +
+            "§7/sec, §e" + plugin.getBotProtectionManager().getDistinctNamesPerMinute() + "§7/min");
+        sender.sendMessage(String.format("§7Flood limits: §c%.1f §7joins/s, §b%.1f §7pings/s, §c%.1f §7IPs/s §8(%s)",
+            plugin.getBotProtectionManager().getJoinLimit(), plugin.getBotProtectionManager().getPingLimit(),
+            plugin.getBotProtectionManager().getDistinctSourceLimit(),
+            !plugin.getConfigManager().isAdaptiveThresholds() ? "fixed"
+                : plugin.getBotProtectionManager().isAdaptiveThresholdsTrained() ? "learned" : "learning"));
         sender.sendMessage("");
         sender.sendMessage("§7Total Attacks Blocked: §c" + plugin.getAttackAnalyzer().getTotalAttacksBlocked());
         sender.sendMessage("§7Total Connections Analyzed: §e" + plugin.getAttackAnalyzer().getTotalConnectionsAnalyzed());
@@ -134,6 +148,7 @@ public class MainCommand implements CommandExecutor, TabCompleter {
             sender.sendMessage("§7Attack Type: " + plugin.getBotProtectionManager().getCurrentAttack().getCurrentAttackType().getDisplayName());
             sender.sendMessage("§7Duration: §e" + (plugin.getBotProtectionManager().getCurrentAttack().getDuration() / 1000) + "s");
             sender.sendMessage("§7Peak Intensity: §c" + plugin.getBotProtectionManager().getCurrentAttack().getPeakIntensity());
+            sender.sendMessage("§7Blocked: §c" + plugin.getBotProtectionManager().getCurrentAttack().getTotalBlocked());
         } else {
             sender.sendMessage("§7Attack Status: §a§lNORMAL");
         }
@@ -213,19 +228,39 @@ public class MainCommand implements CommandExecutor, TabCompleter {
         }
 
         int limit = 10;
+        int hours = 0;
         if (args.length > 1) {
             try {
                 limit = Integer.parseInt(args[1]);
                 limit = Math.min(limit, 50); // Max 50 attacks
+                if (args.length > 2) {
+                    hours = Math.max(0, Integer.parseInt(args[2]));
+                }
             } catch (NumberFormatException e) {
                 sender.sendMessage("§cInvalid number format.");
                 return;
             }
         }
 
-        List<AttackLog> recentAttacks = plugin.getAttackAnalyzer().getRecentAttacks(limit);
+        if (hours == 0) {
+            showAttacks(sender, plugin.getAttackAnalyzer().getRecentAttacks(limit), null, "Last " + limit);
+            return;
+        }
+
+        // A time range reads the journal, which may cover days; keep the disk reads off the main thread
+        int rangeLimit = limit;
+        long now = System.currentTimeMillis();
+        long from = now - hours * 3600000L;
+        String title = "Last " + limit + ", " + hours + "h";
+        Bukkit.getScheduler().runTaskAsynchronously(plugin, () -> {
+            List<AttackLog> attacks = plugin.getAttackAnalyzer().getAttacksBetween(from, now, rangeLimit);
+            Map<AttackType, Long> totals = plugin.getAttackAnalyzer().getAttackCountsBetween(from, now);
+            Bukkit.getScheduler().runTask(plugin, () -> showAttacks(sender, attacks, totals, title));
+        });
+    }
 
-        if (recentAttacks.isEmpty()) {
+    private void showAttacks(CommandSender sender, List<AttackLog> attacks, Map<AttackType, Long> totals, String title) {
+        if (attacks.isEmpty()) {
             sender.sendMessage("§aNo recent attacks recorded.");
             return;
         }
@@ -233,10 +268,17 @@ public class MainCommand implements CommandExecutor, TabCompleter {
         String separator = generateSeparator(50);
         sender.sendMessage("§8§l§n" + separator);
         sender.sendMessage("");
-        sender.sendMessage("§c§lRECENT ATTACKS §7(Last " + limit + ")");
+        sender.sendMessage("§c§lRECENT ATTACKS §7(" + title + ")");
         sender.sendMessage("");
 
-        for (AttackLog attack : recentAttacks) {
+        if (totals != null) {
+            for (Map.Entry<AttackType, Long> entry : totals.entrySet()) {
+                sender.sendMessage("§7- " + entry.getKey().getDisplayName() + ": §c" + entry.getValue());
+            }
+            sender.sendMessage("");
+        }
+
+        for (AttackLog attack : attacks) {
             sender.sendMessage(attack.getDetailedInfo());
         }
 
@@ -262,7 +304,7 @@ public class MainCommand implements CommandExecutor, TabCompleter {
             return;
         }
 
-        PlayerProfile profile = plugin.getBotProtectionManager().getPlayerProfiles().get(ip);
+        PlayerProfile profile = plugin.getBotProtectionManager().getPlayerProfile(ip);
         if (profile == null) {
             sender.sendMessage("§cNo profile found for " + target);
             return;
@@ -351,7 +393,7 @@ public class MainCommand implements CommandExecutor, TabCompleter {
         sender.sendMessage("§e/tga status §7- Show current protection status");
         sender.sendMessage("§e/tga whitelist <add|remove> <player|ip> §7- Manage whitelist");
         sender.sendMessage("§e/tga blacklist <add|remove> <player|ip> §7- Manage blacklist");
-        sender.sendMessage("§e/tga attacks [limit] §7- Show recent attacks");
+        sender.sendMessage("§e/tga attacks [limit] [hours] §7- Show recent attacks");
         sender.sendMessage("§e/tga profile <player|ip> §7- Show player profile");
         sender.sendMessage("§e/tga toggle <actionbar|title|bossbar> §7- Toggle notifications");
         sender.sendMessage("§e/tga cache §7- Show cache statistics");
@@ -378,6 +420,10 @@ public class MainCommand implements CommandExecutor, TabCompleter {
         sender.sendMessage("§7Attack Analyzer: " + plugin.getAttackAnalyzer().getMemoryStats());
         sender.sendMessage("§7Bot Protection: " + plugin.getBotProtectionManager().getStats());
         sender.sendMessage("§7Firewall: " + plugin.getFirewallManager().getStats());
+        sender.sendMessage("§7Hosting ASNs: " + plugin.getHostingClassifier().getStats());
+        sender.sendMessage("§7Tor Exits: " + plugin.getTorExitList().size() + " addresses");
+        sender.sendMessage("§7Security Log: " + (plugin.getSecurityLog().isActive() ? "§aactive" : "§cdisabled") +
+            "§7, " + plugin.getSecurityLog().getDroppedCount() + " events dropped");
         sender.sendMessage("§8§l§n" + separator);
     }
     
@@ -398,6 +444,8 @@ public class MainCommand implements CommandExecutor, TabCompleter {
         sender.sendMessage("§7Debug Mode: §f" + plugin.getConfigManager().isDebugMode());
         sender.sendMessage("§7Performance Mode: §f" + plugin.getConfigManager().isPerformanceMode());
         sender.sendMessage("§7System Active: §f" + plugin.getConfigManager().isSystemActive());
+        sender.sendMessage("§7Check Order: §f" + String.join(" > ", plugin.getBotProtectionManager().getCheckPipeline().getOrder()));
+        sender.sendMessage("§7Check Timings: §f" + plugin.getBotProtectionManager().getCheckPipeline().getStats());
         sender.sendMessage("");
         sender.sendMessage("§7Memory Usage:");
         Runtime runtime = Runtime.getRuntime();
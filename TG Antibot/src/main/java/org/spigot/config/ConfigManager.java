@@ -2,8 +2,12 @@ package org.spigot.config;
 
 import org.bukkit.configuration.file.FileConfiguration;
 import org.spigot.Main;
+import org.spigot.utils.AhoCorasickMatcher;
 
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 
@@ -106,6 +110,38 @@ public class ConfigManager {
         return getCachedValue("shield.data-stream-limit", Integer.class, 100);
     }
     
+    public int getMinDistinctSources() {
+        return getCachedValue("shield.min-distinct-sources", Integer.class, 5);
+    }
+    
+    public long getModeEnterConfirm() {
+        return getCachedValue("shield.enter-confirm-ms", Long.class, 300L);
+    }
+    
+    public double getModeExitRatio() {
+        return getCachedValue("shield.exit-ratio", Double.class, 0.5);
+    }
+    
+    public boolean isAdaptiveThresholds() {
+        return getCachedValue("shield.adaptive-thresholds.active", Boolean.class, true);
+    }
+    
+    public double getAdaptiveSensitivity() {
+        return getCachedValue("shield.adaptive-thresholds.sensitivity", Double.class, 4.0);
+    }
+    
+    public int getAdaptiveLearningMinutes() {
+        return getCachedValue("shield.adaptive-thresholds.learning-minutes", Integer.class, 30);
+    }
+    
+    public int getAdaptiveMinimumJoins() {
+        return getCachedValue("shield.adaptive-thresholds.minimum-joins", Integer.class, 3);
+    }
+    
+    public int getAdaptiveMinimumPings() {
+        return getCachedValue("shield.adaptive-thresholds.minimum-pings", Integer.class, 10);
+    }
+    
     public boolean isAutoDisconnectThreats() {
         return getCachedValue("shield.auto-disconnect-threats", Boolean.class, true);
     }
@@ -154,6 +190,15 @@ public class ConfigManager {
         return getConfig().getStringList("validation.username-filter.forbidden-patterns");
     }
     
+    /**
+     * Forbidden patterns compiled into one case-insensitive matcher, cached until
+     * the next reload.
+     */
+    public AhoCorasickMatcher getForbiddenPatternMatcher() {
+        return (AhoCorasickMatcher) configCache.computeIfAbsent("validation.username-filter.forbidden-patterns",
+            k -> AhoCorasickMatcher.compile(getForbiddenPatterns()));
+    }
+    
     public boolean isSessionControlActive() {
         return getCachedValue("validation.session-control.active", Boolean.class, true);
     }
@@ -170,6 +215,38 @@ public class ConfigManager {
         return getCachedValue("validation.reconnect-monitor.min-reconnect-time", Long.class, 2000L);
     }
     
+    public boolean isSubnetLimitsActive() {
+        return getCachedValue("validation.subnet-limits.active", Boolean.class, true);
+    }
+    
+    public int getSubnetNarrowMultiplier() {
+        return getCachedValue("validation.subnet-limits.narrow-multiplier", Integer.class, 4);
+    }
+    
+    public int getSubnetWideMultiplier() {
+        return getCachedValue("validation.subnet-limits.wide-multiplier", Integer.class, 20);
+    }
+    
+    public long getSubnetReconnectWindow() {
+        return getCachedValue("validation.subnet-limits.reconnect-window", Long.class, 10000L);
+    }
+    
+    public int getSubnetReconnectAllowance() {
+        return getCachedValue("validation.subnet-limits.reconnect-allowance", Integer.class, 2);
+    }
+    
+    public boolean isNameClustersActive() {
+        return getCachedValue("validation.name-clusters.active", Boolean.class, true);
+    }
+    
+    public int getNameClusterWindowSeconds() {
+        return getCachedValue("validation.name-clusters.window-seconds", Integer.class, 60);
+    }
+    
+    public int getNameClusterThreshold() {
+        return getCachedValue("validation.name-clusters.threshold", Integer.class, 15);
+    }
+    
     public boolean isGeoRestrictionsActive() {
         return getCachedValue("validation.geo-restrictions.active", Boolean.class, false);
     }
@@ -178,6 +255,28 @@ public class ConfigManager {
         return getConfig().getStringList("validation.geo-restrictions.restricted-regions");
     }
     
+    /**
+     * Upper-cased restricted country codes, cached until the next reload.
+     */
+    @SuppressWarnings("unchecked")
+    public Set<String> getRestrictedRegionSet() {
+        return (Set<String>) configCache.computeIfAbsent("validation.geo-restrictions.restricted-regions", k -> {
+            Set<String> regions = new HashSet<>();
+            for (String region : getRestrictedRegions()) {
+                regions.add(region.trim().toUpperCase());
+            }
+            return Collections.unmodifiableSet(regions);
+        });
+    }
+    
+    public String getGeoDatabaseFile() {
+        return getCachedValue("validation.geo-restrictions.database-file", String.class, "geoip.dat");
+    }
+    
+    public String getGeoSourceCsv() {
+        return getCachedValue("validation.geo-restrictions.source-csv", String.class, "geoip.csv");
+    }
+    
     public boolean isBehaviorScannerActive() {
         return getCachedValue("validation.behavior-scanner.active", Boolean.class, true);
     }
@@ -197,6 +296,18 @@ public class ConfigManager {
     public int getPersistentOffenderThreshold() {
         return getCachedValue("threat-detection.persistent-offender-threshold", Integer.class, 5);
     }
+    
+    public boolean isAttackJournalActive() {
+        return getCachedValue("threat-detection.journal.active", Boolean.class, true);
+    }
+    
+    public int getAttackJournalRetentionDays() {
+        return getCachedValue("threat-detection.journal.retention-days", Integer.class, 7);
+    }
+    
+    public int getAttackJournalMaxSizeMb() {
+        return getCachedValue("threat-detection.journal.max-size-mb", Integer.class, 256);
+    }
 
     // ================================
     // RISK ASSESSMENT SYSTEM
@@ -234,6 +345,14 @@ public class ConfigManager {
         return getCachedValue("proxy-shield.cache-lifetime-minutes", Integer.class, 1440);
     }
     
+    public int getCleanCacheLifetimeMinutes() {
+        return getCachedValue("proxy-shield.clean-cache-lifetime-minutes", Integer.class, 360);
+    }
+    
+    public int getVerdictCacheSize() {
+        return getCachedValue("proxy-shield.cache-size", Integer.class, 50000);
+    }
+    
     public String getProxyCheckAccessKey() {
         return getCachedValue("proxy-shield.api-providers.proxycheck.access-key", String.class, "");
     }
@@ -241,6 +360,18 @@ public class ConfigManager {
     public int getRequestTimeout() {
         return getCachedValue("proxy-shield.api-providers.proxycheck.request-timeout", Integer.class, 5000);
     }
+    
+    public int getLookupWait() {
+        return getCachedValue("proxy-shield.lookup-wait", Integer.class, 1500);
+    }
+    
+    public boolean isFailClosed() {
+        return getCachedValue("proxy-shield.fail-closed", Boolean.class, false);
+    }
+    
+    public int getMaxConcurrentLookups() {
+        return getCachedValue("proxy-shield.max-concurrent-lookups", Integer.class, 4);
+    }
 
     // ================================
     // NETWORK BARRIER SYSTEM
@@ -266,9 +397,29 @@ public class ConfigManager {
         return getCachedValue("network-barrier.block-tor-nodes", Boolean.class, false);
     }
     
+    public String getTorExitListFile() {
+        return getCachedValue("network-barrier.tor-exit-list-file", String.class, "tor-exits.txt");
+    }
+    
     public boolean isBlockHostingServices() {
         return getCachedValue("network-barrier.block-hosting-services", Boolean.class, false);
     }
+    
+    public String getASNDatabaseFile() {
+        return getCachedValue("network-barrier.asn-database-file", String.class, "asn.dat");
+    }
+    
+    public String getASNSourceCsv() {
+        return getCachedValue("network-barrier.asn-source-csv", String.class, "asn.tsv");
+    }
+    
+    public String getHostingASNFile() {
+        return getCachedValue("network-barrier.hosting-asn-file", String.class, "hosting-asns.txt");
+    }
+    
+    public List<String> getExtraHostingASNs() {
+        return getConfig().getStringList("network-barrier.extra-hosting-asns");
+    }
 
     // ================================
     // CONNECTION FLOW CONTROL
@@ -322,6 +473,18 @@ public class ConfigManager {
         return getCachedValue("notifications.log-filename", String.class, "tga-security.log");
     }
     
+    public int getLogMaxSizeMb() {
+        return getCachedValue("notifications.log-max-size-mb", Integer.class, 10);
+    }
+    
+    public int getLogRotateHours() {
+        return getCachedValue("notifications.log-rotate-hours", Integer.class, 24);
+    }
+    
+    public int getLogKeepFiles() {
+        return getCachedValue("notifications.log-keep-files", Integer.class, 14);
+    }
+    
     public boolean isStatusBarUpdates() {
         return getCachedValue("notifications.status-bar-updates", Boolean.class, true);
     }
@@ -365,6 +528,14 @@ public class ConfigManager {
     public int getMaintenanceInterval() {
         return getCachedValue("experimental.maintenance-interval", Integer.class, 3600);
     }
+    
+    public boolean isProfilePersistence() {
+        return getCachedValue("experimental.profile-persistence", Boolean.class, true);
+    }
+    
+    public int getProfileSnapshotInterval() {
+        return getCachedValue("experimental.profile-snapshot-interval", Integer.class, 300);
+    }
 
     // ================================
     // PLUGIN COMPATIBILITY
@@ -2,31 +2,44 @@ package org.spigot.core;
 
 import org.bukkit.Bukkit;
 import org.spigot.Main;
+import org.spigot.core.data.AttackHistory;
+import org.spigot.core.data.AttackJournal;
 import org.spigot.core.data.AttackLog;
+import org.spigot.core.data.AttackStatistics;
+import org.spigot.core.data.TimestampRing;
 import org.spigot.enums.AttackType;
+import org.spigot.utils.IPAddressKey;
+import org.spigot.utils.IPAddressMap;
+import org.spigot.utils.IPAddressSet;
+import org.spigot.utils.SpaceSavingSketch;
 
+import java.io.File;
+import java.io.IOException;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
-import java.util.stream.Collectors;
 
 public class AttackAnalyzer {
 
     private final Main plugin;
-    private final Queue<AttackLog> attackHistory;
+    private final AttackHistory attackHistory;
+    // Full history on disk, null when disabled
+    private final AttackJournal journal;
+    private final AttackStatistics statistics;
     private final Map<AttackType, Integer> attackCounts;
-    private final Map<String, Integer> ipAttackCounts;
+    // Top offenders in fixed memory, overall and since the last hourly report
+    private final SpaceSavingSketch ipAttackCounts;
+    private final SpaceSavingSketch hourlyAttackCounts;
 
     private final AtomicLong totalAttacksBlocked;
     private final AtomicLong totalConnectionsAnalyzed;
 
     // Pattern detection
-    private final Map<String, List<Long>> ipTimestamps;
-    private final Set<String> notifiedIPs;
+    private final IPAddressMap<IPActivity> ipActivity;
+    private final IPAddressSet notifiedIPs;
     
     // Cleanup and maintenance
     private final ScheduledExecutorService maintenanceExecutor;
@@ -34,19 +47,25 @@ public class AttackAnalyzer {
     
     // Constants
     private static final int MAX_ATTACK_HISTORY = 1000;
-    private static final int MAX_IP_TIMESTAMPS = 50;
+    private static final int RAPID_FIRE_COUNT = 5;
+    private static final long RAPID_FIRE_WINDOW = 10000;
     private static final long CLEANUP_INTERVAL_MINUTES = 30;
+    private static final long JOURNAL_FLUSH_SECONDS = 60;
     private static final long TIMESTAMP_RETENTION_HOURS = 1;
+    private static final int TRACKED_OFFENDERS = 1024;
 
     public AttackAnalyzer(Main plugin) {
         this.plugin = plugin;
-        this.attackHistory = new ConcurrentLinkedQueue<>();
+        this.attackHistory = new AttackHistory(MAX_ATTACK_HISTORY);
+        this.statistics = new AttackStatistics();
         this.attackCounts = new ConcurrentHashMap<>();
-        this.ipAttackCounts = new ConcurrentHashMap<>();
+        this.ipAttackCounts = new SpaceSavingSketch(TRACKED_OFFENDERS);
+        this.hourlyAttackCounts = new SpaceSavingSketch(TRACKED_OFFENDERS);
         this.totalAttacksBlocked = new AtomicLong(0);
         this.totalConnectionsAnalyzed = new AtomicLong(0);
-        this.ipTimestamps = new ConcurrentHashMap<>();
-        this.notifiedIPs = ConcurrentHashMap.newKeySet();
+        this.ipActivity = new IPAddressMap<>();
+        this.notifiedIPs = new IPAddressSet();
+        this.journal = openJournal();
         
         this.maintenanceExecutor = Executors.newSingleThreadScheduledExecutor(r -> {
             Thread t = new Thread(r, "TGA-AttackAnalyzer-Maintenance");
@@ -62,26 +81,33 @@ public class AttackAnalyzer {
         
         long currentTime = System.currentTimeMillis();
         AttackLog log = new AttackLog(type, sourceIP, intensity, currentTime);
-        attackHistory.offer(log);
+        attackHistory.add(log);
 
         // Update counters thread-safely
+        long recentAttacks = statistics.record(type, currentTime);
         attackCounts.merge(type, 1, Integer::sum);
-        ipAttackCounts.merge(sourceIP, 1, Integer::sum);
         totalAttacksBlocked.incrementAndGet();
 
-        // Track IP timestamps for pattern detection
-        ipTimestamps.computeIfAbsent(sourceIP, k -> Collections.synchronizedList(new ArrayList<>())).add(currentTime);
-
-        // Keep only last 1000 attacks to prevent memory issues
-        while (attackHistory.size() > MAX_ATTACK_HISTORY) {
-            attackHistory.poll();
+        IPAddressKey key = IPAddressKey.parse(sourceIP);
+        if (journal != null) {
+            journal.append(log, key);
+        }
+        if (key == null) {
+            analyzeCoordinatedAttack(recentAttacks);
+            return;
         }
 
-        // Analyze patterns
-        analyzeAttackPatterns(log);
+        // Only attacks certainly made by this IP count, so sketch collisions never blacklist anyone
+        long ipAttacks = ipAttackCounts.add(key.getHigh(), key.getLow());
+        hourlyAttackCounts.add(key.getHigh(), key.getLow());
+
+        // Track recent attack times per IP for pattern detection
+        IPActivity activity = ipActivity.computeIfAbsent(key.getHigh(), key.getLow(), (high, low) -> new IPActivity());
+        int rapidFireCount = activity.record(currentTime);
 
-        // Clean old timestamps for this IP
-        cleanOldTimestampsForIP(sourceIP, currentTime);
+        // Analyze patterns
+        analyzeCoordinatedAttack(recentAttacks);
+        analyzeAttackPatterns(key, sourceIP, ipAttacks, rapidFireCount);
     }
 
     public void recordConnectionAnalysis() {
@@ -89,79 +115,62 @@ public class AttackAnalyzer {
         totalConnectionsAnalyzed.incrementAndGet();
     }
 
-    private void analyzeAttackPatterns(AttackLog newAttack) {
-        long currentTime = System.currentTimeMillis();
-        long oneMinuteAgo = currentTime - 60000;
+    private AttackJournal openJournal() {
+        if (!plugin.getConfigManager().isAttackJournalActive()) return null;
 
-        // Check for coordinated attacks
-        long recentAttacks = attackHistory.stream()
-                .filter(log -> log.getTimestamp() > oneMinuteAgo)
-                .count();
+        AttackJournal opened = new AttackJournal(new File(plugin.getDataFolder(), "journal"), plugin.getLogger());
+        applyJournalLimits(opened);
+        try {
+            opened.open();
+            return opened;
+        } catch (IOException e) {
+            plugin.getLogger().warning("§c[ATTACK ANALYZER] Attack journal unavailable: " + e.getMessage());
+            return null;
+        }
+    }
+
+    private void applyJournalLimits(AttackJournal target) {
+        target.setLimits(TimeUnit.DAYS.toMillis(plugin.getConfigManager().getAttackJournalRetentionDays()),
+            plugin.getConfigManager().getAttackJournalMaxSizeMb() * 1024L * 1024L);
+    }
 
+    private void maintainJournal() {
+        if (isShutdown || journal == null) return;
+        applyJournalLimits(journal);
+        journal.maintain();
+    }
+
+    private void analyzeCoordinatedAttack(long recentAttacks) {
+        // Check for coordinated attacks
         if (recentAttacks > plugin.getConfigManager().getCoordinatedAttackThreshold()) {
             plugin.getLogger().warning("§c[PATTERN DETECTED] Coordinated attack detected! " +
                     recentAttacks + " attacks in the last minute.");
+            plugin.getSecurityLog().record("PATTERN", "Coordinated attack, " + recentAttacks + " attacks in the last minute");
 
             // Trigger enhanced protection mode
             triggerEnhancedProtection();
         }
+    }
 
+    private void analyzeAttackPatterns(IPAddressKey key, String sourceIP, long ipAttacks, int rapidFireCount) {
         // Check for repeat offenders
-        String sourceIP = newAttack.getSourceIP();
-        int ipAttacks = ipAttackCounts.getOrDefault(sourceIP, 0);
-
         if (ipAttacks > plugin.getConfigManager().getRepeatOffenderThreshold()) {
-            if (!notifiedIPs.contains(sourceIP)) {
+            if (notifiedIPs.add(key.getHigh(), key.getLow())) {
                 plugin.getBotProtectionManager().addToBlacklist(sourceIP,
                         "Repeat offender - " + ipAttacks + " attacks");
-                notifiedIPs.add(sourceIP);
 
                 plugin.getLogger().warning("§c[REPEAT OFFENDER] IP " + sourceIP +
                         " blocked after " + ipAttacks + " attacks");
+                plugin.getSecurityLog().record("PATTERN", "Repeat offender " + sourceIP + " blocked after " + ipAttacks + " attacks");
             }
+            return;
         }
 
-        // Check for rapid-fire attacks from single IP
-        analyzeRapidFirePattern(sourceIP, currentTime);
-    }
-
-    private void analyzeRapidFirePattern(String sourceIP, long currentTime) {
-        List<Long> timestamps = ipTimestamps.get(sourceIP);
-        if (timestamps == null || timestamps.size() < 5) return;
-
-        // Synchronize access to the timestamp list
-        synchronized (timestamps) {
-            // Check if last 5 attacks were within 10 seconds
-            List<Long> recentTimestamps = timestamps.stream()
-                    .filter(t -> currentTime - t < 10000)
-                    .collect(Collectors.toList());
-
-            if (recentTimestamps.size() >= 5) {
-                plugin.getLogger().warning("§c[RAPID FIRE] Detected rapid-fire attack from " + sourceIP);
-                plugin.getBotProtectionManager().addToBlacklist(sourceIP, "Rapid-fire attack pattern");
-            }
-        }
-    }
-
-    private void cleanOldTimestampsForIP(String sourceIP, long currentTime) {
-        List<Long> timestamps = ipTimestamps.get(sourceIP);
-        if (timestamps != null) {
-            synchronized (timestamps) {
-                // Remove timestamps older than 1 hour
-                long oneHourAgo = currentTime - TimeUnit.HOURS.toMillis(TIMESTAMP_RETENTION_HOURS);
-                timestamps.removeIf(timestamp -> timestamp < oneHourAgo);
-                
-                // Keep only the most recent timestamps to prevent memory issues
-                while (timestamps.size() > MAX_IP_TIMESTAMPS) {
-                    timestamps.remove(0);
-                }
-            }
-
-            // Remove empty entries and clean up
-            if (timestamps.isEmpty()) {
-                ipTimestamps.remove(sourceIP);
-                notifiedIPs.remove(sourceIP);
-            }
+        // Check for rapid-fire attacks from single IP, last 5 attacks within 10 seconds
+        if (rapidFireCount >= RAPID_FIRE_COUNT && notifiedIPs.add(key.getHigh(), key.getLow())) {
+            plugin.getLogger().warning("§c[RAPID FIRE] Detected rapid-fire attack from " + sourceIP);
+            plugin.getSecurityLog().record("PATTERN", "Rapid-fire attack from " + sourceIP);
+            plugin.getBotProtectionManager().addToBlacklist(sourceIP, "Rapid-fire attack pattern");
         }
     }
     
@@ -171,30 +180,16 @@ public class AttackAnalyzer {
         long currentTime = System.currentTimeMillis();
         long oneHourAgo = currentTime - TimeUnit.HOURS.toMillis(TIMESTAMP_RETENTION_HOURS);
         
-        // Clean up old IP timestamps globally
-        Iterator<Map.Entry<String, List<Long>>> iterator = ipTimestamps.entrySet().iterator();
-        while (iterator.hasNext()) {
-            Map.Entry<String, List<Long>> entry = iterator.next();
-            List<Long> timestamps = entry.getValue();
-            
-            synchronized (timestamps) {
-                timestamps.removeIf(timestamp -> timestamp < oneHourAgo);
-                
-                if (timestamps.isEmpty()) {
-                    iterator.remove();
-                    notifiedIPs.remove(entry.getKey());
-                }
-            }
-        }
-        
-        // Clean up old attack history
-        while (attackHistory.size() > MAX_ATTACK_HISTORY) {
-            attackHistory.poll();
-        }
+        // Forget IPs with no attacks in the last hour
+        ipActivity.removeIf((high, low, activity) -> {
+            if (activity.getLastAttack() >= oneHourAgo) return false;
+            notifiedIPs.remove(high, low);
+            return true;
+        });
         
         if (plugin.getConfigManager().isDebugMode()) {
             plugin.getLogger().info("§7[ATTACK ANALYZER] Global cleanup completed. " +
-                "IP timestamps: " + ipTimestamps.size() + ", " +
+                "IP activity: " + ipActivity.size() + ", " +
                 "Attack history: " + attackHistory.size());
         }
     }
@@ -217,52 +212,50 @@ public class AttackAnalyzer {
             this::performGlobalCleanup,
             CLEANUP_INTERVAL_MINUTES, CLEANUP_INTERVAL_MINUTES, TimeUnit.MINUTES
         );
+
+        // Journal flush and retention
+        maintenanceExecutor.scheduleAtFixedRate(
+            this::maintainJournal,
+            JOURNAL_FLUSH_SECONDS, JOURNAL_FLUSH_SECONDS, TimeUnit.SECONDS
+        );
     }
 
     private void generateHourlyReport() {
         if (isShutdown) return;
         
-        long currentTime = System.currentTimeMillis();
-        long hourAgo = currentTime - 3600000; // 1 hour ago
+        long totalAttacks = statistics.getTotalLastHour();
 
-        List<AttackLog> recentAttacks = attackHistory.stream()
-                .filter(log -> log.getTimestamp() > hourAgo)
-                .collect(Collectors.toList());
+        // Collect and reset the hourly counts
+        List<SpaceSavingSketch.Entry> topAttackers;
+        synchronized (hourlyAttackCounts) {
+            topAttackers = hourlyAttackCounts.top(3);
+            hourlyAttackCounts.clear();
+        }
 
-        if (recentAttacks.isEmpty()) {
+        if (totalAttacks == 0) {
             plugin.getLogger().info("§e[HOURLY REPORT] No attacks detected in the last hour");
             return;
         }
 
-        // Calculate statistics
-        Map<AttackType, Long> hourlyStats = new HashMap<>();
-        Map<String, Long> topAttackers = new HashMap<>();
-
-        for (AttackLog log : recentAttacks) {
-            hourlyStats.merge(log.getType(), 1L, Long::sum);
-            topAttackers.merge(log.getSourceIP(), 1L, Long::sum);
-        }
-
         // Log the report
         plugin.getLogger().info("§e[HOURLY REPORT] === Attack Summary ===");
-        plugin.getLogger().info("§7Total attacks blocked: §c" + recentAttacks.size());
+        plugin.getLogger().info("§7Total attacks blocked: §c" + totalAttacks);
 
         plugin.getLogger().info("§7Attack types:");
-        for (Map.Entry<AttackType, Long> entry : hourlyStats.entrySet()) {
-            plugin.getLogger().info("§7- " + entry.getKey().getDisplayName() + ": §c" + entry.getValue());
+        for (AttackType type : AttackType.values()) {
+            long count = statistics.getLastHour(type);
+            if (count > 0) {
+                plugin.getLogger().info("§7- " + type.getDisplayName() + ": §c" + count);
+            }
         }
 
         // Show top 3 attacking IPs
-        List<Map.Entry<String, Long>> sortedAttackers = topAttackers.entrySet().stream()
-                .sorted(Map.Entry.<String, Long>comparingByValue().reversed())
-                .limit(3)
-                .collect(Collectors.toList());
-
-        if (!sortedAttackers.isEmpty()) {
+        if (!topAttackers.isEmpty()) {
             plugin.getLogger().info("§7Top attacking IPs:");
-            for (int i = 0; i < sortedAttackers.size(); i++) {
-                Map.Entry<String, Long> entry = sortedAttackers.get(i);
-                plugin.getLogger().info("§7" + (i + 1) + ". " + entry.getKey() + ": §c" + entry.getValue() + " attacks");
+            for (int i = 0; i < topAttackers.size(); i++) {
+                SpaceSavingSketch.Entry entry = topAttackers.get(i);
+                plugin.getLogger().info("§7" + (i + 1) + ". " + IPAddressKey.toString(entry.getHigh(), entry.getLow()) +
+                        ": §c" + entry.getCount() + " attacks");
             }
         }
 
@@ -270,10 +263,7 @@ public class AttackAnalyzer {
     }
 
     public List<AttackLog> getRecentAttacks(int limit) {
-        return attackHistory.stream()
-                .sorted((a, b) -> Long.compare(b.getTimestamp(), a.getTimestamp()))
-                .limit(limit)
-                .collect(Collectors.toList());
+        return attackHistory.getRecent(limit);
     }
 
     public Map<AttackType, Integer> getAttackStatistics() {
@@ -281,31 +271,47 @@ public class AttackAnalyzer {
     }
 
     public Map<String, Integer> getTopAttackingIPs(int limit) {
-        return ipAttackCounts.entrySet().stream()
-                .sorted(Map.Entry.<String, Integer>comparingByValue().reversed())
-                .limit(limit)
-                .collect(Collectors.toMap(
-                        Map.Entry::getKey,
-                        Map.Entry::getValue,
-                        (e1, e2) -> e1,
-                        LinkedHashMap::new
-                ));
+        // Estimates; each is high by at most the total attack count / TRACKED_OFFENDERS
+        Map<String, Integer> result = new LinkedHashMap<>();
+        for (SpaceSavingSketch.Entry entry : ipAttackCounts.top(limit)) {
+            result.put(IPAddressKey.toString(entry.getHigh(), entry.getLow()), (int) Math.min(Integer.MAX_VALUE, entry.getCount()));
+        }
+        return result;
+    }
+
+    /**
+     * Attacks between two times, newest first. Reads the journal, so the range
+     * may span days; without a journal only the in-memory history is searched.
+     */
+    public List<AttackLog> getAttacksBetween(long from, long to, int limit) {
+        if (journal != null) {
+            return journal.query(from, to, limit, null);
+        }
+        return attackHistory.getRecent(limit, log -> log.getTimestamp() >= from && log.getTimestamp() <= to);
+    }
+
+    public Map<AttackType, Long> getAttackCountsBetween(long from, long to) {
+        if (journal != null) {
+            return journal.countByType(from, to);
+        }
+        Map<AttackType, Long> counts = new EnumMap<>(AttackType.class);
+        for (AttackLog log : attackHistory.getRecent(MAX_ATTACK_HISTORY,
+                log -> log.getTimestamp() >= from && log.getTimestamp() <= to)) {
+            counts.merge(log.getType(), 1L, Long::sum);
+        }
+        return counts;
+    }
+
+    public AttackJournal getJournal() {
+        return journal;
     }
 
     public List<AttackLog> getAttacksByType(AttackType type, int limit) {
-        return attackHistory.stream()
-                .filter(log -> log.getType() == type)
-                .sorted((a, b) -> Long.compare(b.getTimestamp(), a.getTimestamp()))
-                .limit(limit)
-                .collect(Collectors.toList());
+        return attackHistory.getRecent(limit, log -> log.getType() == type);
     }
 
     public List<AttackLog> getAttacksByIP(String sourceIP, int limit) {
-        return attackHistory.stream()
-                .filter(log -> log.getSourceIP().equals(sourceIP))
-                .sorted((a, b) -> Long.compare(b.getTimestamp(), a.getTimestamp()))
-                .limit(limit)
-                .collect(Collectors.toList());
+        return attackHistory.getRecent(limit, log -> log.getSourceIP().equals(sourceIP));
     }
 
     public long getTotalAttacksBlocked() {
@@ -324,9 +330,11 @@ public class AttackAnalyzer {
 
     public void clearStatistics() {
         attackHistory.clear();
+        statistics.reset();
         attackCounts.clear();
         ipAttackCounts.clear();
-        ipTimestamps.clear();
+        hourlyAttackCounts.clear();
+        ipActivity.clear();
         notifiedIPs.clear();
         totalAttacksBlocked.set(0);
         totalConnectionsAnalyzed.set(0);
@@ -334,22 +342,28 @@ public class AttackAnalyzer {
         plugin.getLogger().info("§aAttack analyzer statistics cleared");
     }
 
+    /**
+     * IPs that attacked within the last hour.
+     */
     public int getUniqueAttackingIPs() {
-        return ipAttackCounts.size();
+        return ipActivity.size();
     }
 
     public long getAttacksInLastMinute() {
-        long currentTime = System.currentTimeMillis();
-        long oneMinuteAgo = currentTime - 60000;
+        return statistics.getTotalLastMinute();
+    }
 
-        return attackHistory.stream()
-                .filter(log -> log.getTimestamp() > oneMinuteAgo)
-                .count();
+    public long getAttacksInLastMinute(AttackType type) {
+        return statistics.getLastMinute(type);
+    }
+
+    public long getAttacksInLastHour() {
+        return statistics.getTotalLastHour();
     }
     
     public String getMemoryStats() {
-        return String.format("Attack History: %d, IP Timestamps: %d, Attack Counts: %d, IP Attack Counts: %d",
-            attackHistory.size(), ipTimestamps.size(), attackCounts.size(), ipAttackCounts.size());
+        return String.format("Attack History: %d, IP Activity: %d, Attack Counts: %d, IP Attack Counts: %d",
+            attackHistory.size(), ipActivity.size(), attackCounts.size(), ipAttackCounts.size());
     }
 
     public void shutdown() {
@@ -365,6 +379,9 @@ public class AttackAnalyzer {
             maintenanceExecutor.shutdownNow();
             Thread.currentThread().interrupt();
         }
+        if (journal != null) {
+            journal.close();
+        }
         
         // Save statistics to file if needed
         plugin.getLogger().info("§7Attack analyzer shutting down...");
@@ -373,4 +390,24 @@ public class AttackAnalyzer {
         plugin.getLogger().info("§7Block rate: " + String.format("%.2f%%", getBlockRate()));
         plugin.getLogger().info("§7Memory stats: " + getMemoryStats());
     }
-}
\ No newline at end of file
+
+    /**
+     * Recent attack times of a single IP. The ring only holds as many entries as
+     * the rapid-fire rule needs, so recording is O(1).
+     */
+    private static final class IPActivity {
+        private final TimestampRing recentAttacks = new TimestampRing(RAPID_FIRE_COUNT, RAPID_FIRE_WINDOW);
+
+        /**
+         * @return attacks from this IP within the rapid-fire window
+         */
+        synchronized int record(long timestamp) {
+            recentAttacks.add(timestamp);
+            return recentAttacks.countWithin(RAPID_FIRE_WINDOW, timestamp);
+        }
+
+        synchronized long getLastAttack() {
+            return recentAttacks.newest();
+        }
+    }
+}
@@ -4,78 +4,170 @@ import org.bukkit.Bukkit;
 import org.bukkit.entity.Player;
 import org.spigot.Main;
 import org.spigot.core.checks.*;
+import org.spigot.core.data.ConnectionContext;
+import org.spigot.core.data.ModeState;
+import org.spigot.core.data.NameClusterIndex;
 import org.spigot.core.data.PlayerProfile;
+import org.spigot.core.data.ProfileStore;
+import org.spigot.core.data.SubnetAggregates;
 import org.spigot.core.data.AttackData;
+import org.spigot.enums.AccessVerdict;
 import org.spigot.enums.ProtectionMode;
-import org.spigot.enums.AttackType;
-
+import org.spigot.utils.AdaptiveBaseline;
+import org.spigot.utils.BlocklistStore;
+import org.spigot.utils.IPAccessList;
+import org.spigot.utils.IPAddressKey;
+import org.spigot.utils.DistinctCounter;
+import org.spigot.utils.IPAddressMap;
+import org.spigot.utils.SlidingWindowCounter;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 import java.net.InetAddress;
 import java.util.*;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.TimeUnit;
 
 public class BotProtectionManager {
 
     private final Main plugin;
-    private final Map<String, PlayerProfile> playerProfiles;
+    private final IPAddressMap<PlayerProfile> playerProfiles;
+    private final SubnetAggregates subnets;
+    // Profiles on disk, null when persistence is off
+    private final ProfileStore profileStore;
+    private volatile boolean profilesLoaded;
 
-    // Protection modes
-    private ProtectionMode currentMode;
-    private long lastModeChange;
+    // Protection mode, driven by its own thread
+    private final ProtectionModeDetector modeDetector;
 
     // Attack detection
-    private final AtomicLong joinsPerSecond;
-    private final AtomicLong pingsPerSecond;
-    private final AtomicLong packetsPerSecond;
+    private final SlidingWindowCounter joinCounter;
+    private final SlidingWindowCounter pingCounter;
+    private final SlidingWindowCounter packetCounter;
+    // Distinct joining IPs and nicknames, estimated in fixed memory
+    private final DistinctCounter sourcesPerSecond;
+    private final DistinctCounter sourcesPerMinute;
+    private final DistinctCounter namesPerSecond;
+    private final DistinctCounter namesPerMinute;
+    // Learned normal rates, sampled every second
+    private final AdaptiveBaseline joinBaseline;
+    private final AdaptiveBaseline pingBaseline;
+    private final AdaptiveBaseline sourceBaseline;
     private final AttackData currentAttack;
+    private volatile NameClusterIndex nameClusters;
+    private int nameClusterWindow;
+
+    // Rate windows, 100ms buckets over the longest window
+    private static final long RATE_RESOLUTION_MS = 100;
+    private static final long SHORT_WINDOW_MS = 1000;
+    private static final long LONG_WINDOW_MS = 10000;
+    private static final long MINUTE_RESOLUTION_MS = 5000;
+    private static final long MINUTE_WINDOW_MS = 60000;
+    private static final long BASELINE_SAMPLE_MS = 1000;
+    private static final long BASELINE_LEVEL_MS = TimeUnit.MINUTES.toMillis(5);
+    private static final int BASELINE_SEASON_DAYS = 7;
 
     // Security checks
-    private final ConnectionSpeedCheck speedCheck;
-    private final NicknameCheck nicknameCheck;
-    private final AccountLimitCheck accountCheck;
-    private final ReconnectCheck reconnectCheck;
-    private final GeoLocationCheck geoCheck;
-    private final BehaviorAnalysisCheck behaviorCheck;
-
-    // Whitelists and blacklists
-    private final Set<String> whitelist;
-    private final Set<String> blacklist;
-    private final Set<String> tempBlacklist;
+    private final CheckPipeline checkPipeline;
+
+    // Whitelist, blacklist (both CIDR-aware) and temporary blacklist
+    private final IPAccessList accessList;
+    private final BlocklistStore listStore;
 
     public BotProtectionManager(Main plugin) {
         this.plugin = plugin;
-        this.playerProfiles = new ConcurrentHashMap<>();
+        this.playerProfiles = new IPAddressMap<>(plugin.getConfigManager().getProfileCacheSize());
+        this.subnets = new SubnetAggregates();
+        this.profileStore = plugin.getConfigManager().isProfilePersistence()
+            ? new ProfileStore(plugin.getDataFolder(), plugin.getLogger()) : null;
+        configureSubnets();
         // Remove joinTimestamps = new ConcurrentHashMap<>();
         // Remove connectionAttempts = new ConcurrentHashMap<>();
 
-        this.currentMode = ProtectionMode.NORMAL;
-        this.lastModeChange = System.currentTimeMillis();
-
-        this.joinsPerSecond = new AtomicLong(0);
-        this.pingsPerSecond = new AtomicLong(0);
-        this.packetsPerSecond = new AtomicLong(0);
+        this.joinCounter = new SlidingWindowCounter(RATE_RESOLUTION_MS, LONG_WINDOW_MS, TimeUnit.MILLISECONDS);
+        this.pingCounter = new SlidingWindowCounter(RATE_RESOLUTION_MS, LONG_WINDOW_MS, TimeUnit.MILLISECONDS);
+        this.packetCounter = new SlidingWindowCounter(RATE_RESOLUTION_MS, LONG_WINDOW_MS, TimeUnit.MILLISECONDS);
+        this.sourcesPerSecond = new DistinctCounter(RATE_RESOLUTION_MS, SHORT_WINDOW_MS, TimeUnit.MILLISECONDS);
+        this.sourcesPerMinute = new DistinctCounter(MINUTE_RESOLUTION_MS, MINUTE_WINDOW_MS, TimeUnit.MILLISECONDS);
+        this.namesPerSecond = new DistinctCounter(RATE_RESOLUTION_MS, SHORT_WINDOW_MS, TimeUnit.MILLISECONDS);
+        this.namesPerMinute = new DistinctCounter(MINUTE_RESOLUTION_MS, MINUTE_WINDOW_MS, TimeUnit.MILLISECONDS);
+        long learning = TimeUnit.MINUTES.toMillis(plugin.getConfigManager().getAdaptiveLearningMinutes());
+        this.joinBaseline = new AdaptiveBaseline(BASELINE_SAMPLE_MS, BASELINE_LEVEL_MS, BASELINE_SEASON_DAYS, learning, TimeUnit.MILLISECONDS);
+        this.pingBaseline = new AdaptiveBaseline(BASELINE_SAMPLE_MS, BASELINE_LEVEL_MS, BASELINE_SEASON_DAYS, learning, TimeUnit.MILLISECONDS);
+        this.sourceBaseline = new AdaptiveBaseline(BASELINE_SAMPLE_MS, BASELINE_LEVEL_MS, BASELINE_SEASON_DAYS, learning, TimeUnit.MILLISECONDS);
+        applyBaselineLimits();
+        loadBaselines();
         this.currentAttack = new AttackData();
+        this.nameClusterWindow = plugin.getConfigManager().getNameClusterWindowSeconds();
+        this.nameClusters = new NameClusterIndex(nameClusterWindow, TimeUnit.SECONDS);
+
+        // Initialize checks, registration order is only the initial run order
+        this.checkPipeline = new CheckPipeline();
+        checkPipeline.register(new ConnectionSpeedCheck(plugin));
+        checkPipeline.register(new NicknameCheck(plugin));
+        checkPipeline.register(new NameClusterCheck(plugin));
+        checkPipeline.register(new AccountLimitCheck(plugin));
+        checkPipeline.register(new ReconnectCheck(plugin));
+        checkPipeline.register(new GeoLocationCheck(plugin));
+        checkPipeline.register(new BehaviorAnalysisCheck(plugin));
+
+        this.accessList = new IPAccessList("BotProtection", plugin.getLogger(),
+            task -> Bukkit.getScheduler().runTaskAsynchronously(plugin, task), plugin.getExpiryWheel());
+        accessList.setExpiryListener((high, low, expiration) -> {
+            if (plugin.getConfigManager().isDebugMode()) {
+                plugin.getLogger().info("Removed IP from temporary blacklist: " + IPAddressKey.toString(high, low));
+            }
+        });
 
-        // Initialize checks
-        this.speedCheck = new ConnectionSpeedCheck(plugin);
-        this.nicknameCheck = new NicknameCheck(plugin);
-        this.accountCheck = new AccountLimitCheck(plugin);
-        this.reconnectCheck = new ReconnectCheck(plugin);
-        this.geoCheck = new GeoLocationCheck(plugin);
-        this.behaviorCheck = new BehaviorAnalysisCheck(plugin);
+        // The lists used to live in config.yml; they are imported into the store once
+        this.listStore = new BlocklistStore("BotProtection",
+            new File(plugin.getDataFolder(), "lists/bot-protection.log"), plugin.getLogger());
+        try {
+            listStore.load(normalizeAll(plugin.getConfig().getStringList("security.whitelist")),
+                normalizeAll(plugin.getConfig().getStringList("security.blacklist")));
+        } catch (IOException e) {
+            plugin.getLogger().severe("[BotProtection] Failed to read the whitelist and blacklist, " +
+                "changes will not be saved until it can be read: " + e.getMessage());
+        }
 
-        this.whitelist = ConcurrentHashMap.newKeySet();
-        this.blacklist = ConcurrentHashMap.newKeySet();
-        this.tempBlacklist = ConcurrentHashMap.newKeySet();
+        this.modeDetector = new ProtectionModeDetector(plugin, this);
 
-        startCounterResetTask();
+        startMaintenanceTask();
         loadData();
+        if (profileStore != null) {
+            Bukkit.getScheduler().runTaskAsynchronously(plugin, this::loadProfiles);
+        }
+        modeDetector.start();
     }
 
-    public boolean shouldBlockConnection(UUID uuid, InetAddress address, String name) {
-        String ip = address.getHostAddress();
-        long currentTime = System.currentTimeMillis();
+    /**
+     * Count a join attempt, its source and its name in the rates the
+     * protection mode is driven by.
+     * Called for every attempt, before the firewall or the VPN check can
+     * refuse it, so a flood from blocked addresses is still seen.
+     */
+    public void recordJoin(InetAddress address, String name) {
+        if (address == null) return;
+        joinCounter.increment();
+
+        long sourceHash = DistinctCounter.hash(IPAddressKey.high(address), IPAddressKey.low(address));
+        sourcesPerSecond.offer(sourceHash);
+        sourcesPerMinute.offer(sourceHash);
+        if (name != null && !name.trim().isEmpty()) {
+            long nameHash = DistinctCounter.hash(name.trim());
+            namesPerSecond.offer(nameHash);
+            namesPerMinute.offer(nameHash);
+        }
+    }
 
+    public boolean shouldBlockConnection(UUID uuid, InetAddress address, String name) {
         // Input validation
         if (uuid == null || address == null || name == null || name.trim().isEmpty()) {
             plugin.getLogger().warning("Invalid connection parameters: uuid=" + uuid + ", address=" + address + ", name=" + name);
@@ -84,92 +176,86 @@ public class BotProtectionManager {
         
         // Sanitize inputs
         name = name.trim();
-        ip = ip.trim();
+        long high = IPAddressKey.high(address);
+        long low = IPAddressKey.low(address);
 
-        // Update counters
-        joinsPerSecond.incrementAndGet();
-
-        // Check whitelist first
-        if (whitelist.contains(ip)) {
+        // Whitelist wins over blacklist, including overlapping ranges
+        AccessVerdict verdict = accessList.lookup(high, low);
+        if (verdict == AccessVerdict.ALLOW) {
             if (plugin.getConfigManager().isDebugMode()) {
-                plugin.getLogger().info("Allowing whitelisted IP: " + ip + " (Player: " + name + ")");
+                plugin.getLogger().info("Allowing whitelisted IP: " + address.getHostAddress() + " (Player: " + name + ")");
             }
             return false;
         }
 
-        // Check blacklists
-        if (blacklist.contains(ip) || tempBlacklist.contains(ip)) {
-            plugin.getLogger().info("§cBlocked connection from blacklisted IP: " + ip + " (Player: " + name + ")");
+        if (verdict.isBlocked()) {
+            logEvent("BLOCKED", "§cBlocked connection from blacklisted IP: " + address.getHostAddress() + " (Player: " + name + ")");
             return true;
         }
 
         // Get or create player profile
-        PlayerProfile profile = playerProfiles.computeIfAbsent(ip, k -> new PlayerProfile(ip));
+        PlayerProfile profile = playerProfiles.computeIfAbsent(high, profileLow(high, low), this::restoreProfile);
         
         // Thread-safe profile update
+        long previousConnection;
+        long currentTime;
         synchronized (profile) {
+            // Read the clock under the lock so the profile's timestamps stay in order
+            currentTime = System.currentTimeMillis();
+            previousConnection = profile.getConnectionCount() > 0 ? profile.getLastConnection() : 0;
             profile.addConnection(name, currentTime);
         }
-
-        // Run security checks
-        if (speedCheck.shouldBlock(profile, currentTime)) {
-            addToTempBlacklist(ip, "Connection speed violation");
-            return true;
-        }
-
-        if (nicknameCheck.shouldBlock(name)) {
-            addToTempBlacklist(ip, "Suspicious nickname pattern");
-            return true;
-        }
-
-        if (accountCheck.shouldBlock(profile)) {
-            addToTempBlacklist(ip, "Too many accounts from IP");
-            return true;
+        if (plugin.getConfigManager().isSubnetLimitsActive()) {
+            subnets.record(high, low, name, currentTime);
         }
 
-        if (reconnectCheck.shouldBlock(profile, currentTime)) {
-            addToTempBlacklist(ip, "Rapid reconnection detected");
-            return true;
+        // Count the name server-wide, whatever the checks below decide
+        int nameClusterSize = 0;
+        if (plugin.getConfigManager().isNameClustersActive()) {
+            // Switching to STRICT on a large cluster is up to the mode detector
+            nameClusterSize = nameClusters.record(name);
         }
 
-        if (geoCheck.shouldBlock(ip)) {
-            addToTempBlacklist(ip, "Geo-location restriction");
-            return true;
-        }
-
-        if (behaviorCheck.shouldBlock(profile)) {
-            addToTempBlacklist(ip, "Suspicious behavior pattern");
+        // Run security checks, cheapest expected rejection first
+        ConnectionContext context = new ConnectionContext(uuid, address, name, profile, currentTime,
+            previousConnection, nameClusterSize);
+        SecurityCheck failedCheck = checkPipeline.evaluate(context);
+        if (failedCheck != null) {
+            if (!context.isSubnetBlock()) {
+                addToTempBlacklist(high, low, failedCheck.getBlockReason());
+            }
+            currentAttack.incrementBlocked();
             return true;
         }
 
         // Check protection mode
+        ProtectionMode currentMode = modeDetector.getMode();
         if (currentMode == ProtectionMode.LOCKDOWN) {
             if (plugin.getConfigManager().isDebugMode()) {
-                plugin.getLogger().info("Blocking connection due to LOCKDOWN mode: " + ip + " (Player: " + name + ")");
+                plugin.getLogger().info("Blocking connection due to LOCKDOWN mode: " + context.getIp() + " (Player: " + name + ")");
             }
+            currentAttack.incrementBlocked();
             return true;
         }
 
         if (currentMode == ProtectionMode.STRICT && !isPlayerTrusted(profile)) {
             if (plugin.getConfigManager().isDebugMode()) {
-                plugin.getLogger().info("Blocking untrusted connection in STRICT mode: " + ip + " (Player: " + name + ")");
+                plugin.getLogger().info("Blocking untrusted connection in STRICT mode: " + context.getIp() + " (Player: " + name + ")");
             }
+            currentAttack.incrementBlocked();
             return true;
         }
 
-        // Update attack detection
-        updateAttackDetection();
-
         return false;
     }
 
     public void handleServerPing(InetAddress address) {
         if (address == null) return;
         
-        pingsPerSecond.incrementAndGet();
-        String ip = address.getHostAddress();
+        pingCounter.increment();
 
-        PlayerProfile profile = playerProfiles.get(ip);
+        long high = IPAddressKey.high(address);
+        PlayerProfile profile = playerProfiles.get(high, profileLow(high, IPAddressKey.low(address)));
         if (profile != null) {
             synchronized (profile) {
                 profile.addPing(System.currentTimeMillis());
@@ -177,64 +263,141 @@ public class BotProtectionManager {
         }
     }
 
+    /**
+     * A player joined; their play time counts from now.
+     */
+    public void handlePlayerJoin(InetAddress address) {
+        PlayerProfile profile = getProfile(address);
+        if (profile != null) {
+            profile.playerJoined(System.currentTimeMillis());
+        }
+    }
+
+    public void handlePlayerQuit(InetAddress address) {
+        PlayerProfile profile = getProfile(address);
+        if (profile != null) {
+            profile.playerQuit(System.currentTimeMillis());
+        }
+    }
+
+    private PlayerProfile getProfile(InetAddress address) {
+        if (address == null) return null;
+        long high = IPAddressKey.high(address);
+        return findProfile(high, profileLow(high, IPAddressKey.low(address)));
+    }
+
+    /**
+     * A profile from the store if one was saved for the address, else a new one.
+     */
+    private PlayerProfile restoreProfile(long high, long low) {
+        PlayerProfile stored = profileStore != null ? profileStore.take(high, low) : null;
+        return stored != null ? stored : new PlayerProfile(high, low);
+    }
+
+    /**
+     * @return the profile in memory or in the store, null if there is none
+     */
+    private PlayerProfile findProfile(long high, long low) {
+        PlayerProfile profile = playerProfiles.get(high, low);
+        if (profile != null || profileStore == null) return profile;
+        PlayerProfile stored = profileStore.take(high, low);
+        if (stored == null) return null;
+        PlayerProfile existing = playerProfiles.putIfAbsent(high, low, stored);
+        return existing != null ? existing : stored;
+    }
+
     public void handlePacket(String ip) {
         if (ip == null || ip.trim().isEmpty()) return;
-        packetsPerSecond.incrementAndGet();
+        packetCounter.increment();
     }
 
-    private void updateAttackDetection() {
-        long joins = joinsPerSecond.get();
-        long pings = pingsPerSecond.get();
+    /**
+     * Joins per second above which a burst is a flood: learned when adaptive
+     * thresholds are on and trained, the configured limit otherwise.
+     */
+    public double getJoinLimit() {
+        double fixed = plugin.getConfigManager().getJoinThreshold();
+        return plugin.getConfigManager().isAdaptiveThresholds() ? joinBaseline.getThreshold(fixed) : fixed;
+    }
 
-        // Detect attack patterns
-        if (joins > plugin.getConfigManager().getJoinThreshold()) {
-            if (currentMode != ProtectionMode.LOCKDOWN) {
-                setProtectionMode(ProtectionMode.LOCKDOWN);
-                currentAttack.startAttack(AttackType.JOIN_FLOOD, joins);
-                plugin.getNotificationManager().broadcastAttackAlert(AttackType.JOIN_FLOOD, joins);
-            }
-        } else if (pings > plugin.getConfigManager().getPingThreshold()) {
-            if (currentMode != ProtectionMode.STRICT) {
-                setProtectionMode(ProtectionMode.STRICT);
-                currentAttack.startAttack(AttackType.PING_FLOOD, pings);
-                plugin.getNotificationManager().broadcastAttackAlert(AttackType.PING_FLOOD, pings);
-            }
-        } else if (currentMode != ProtectionMode.NORMAL &&
-                   System.currentTimeMillis() - lastModeChange > plugin.getConfigManager().getCooldownTime()) {
-            setProtectionMode(ProtectionMode.NORMAL);
-            currentAttack.endAttack();
-            plugin.getNotificationManager().broadcastAttackEnd();
-        }
+    public double getPingLimit() {
+        double fixed = plugin.getConfigManager().getPingThreshold();
+        return plugin.getConfigManager().isAdaptiveThresholds() ? pingBaseline.getThreshold(fixed) : fixed;
     }
 
-    private void setProtectionMode(ProtectionMode mode) {
-        if (mode == null) {
-            plugin.getLogger().warning("Attempted to set null protection mode");
-            return;
-        }
-        
-        if (currentMode != mode) {
-            ProtectionMode oldMode = currentMode;
-            currentMode = mode;
-            lastModeChange = System.currentTimeMillis();
+    /**
+     * Distinct IPs per second a join burst needs to count as a flood.
+     */
+    public double getDistinctSourceLimit() {
+        double fixed = plugin.getConfigManager().getMinDistinctSources();
+        return plugin.getConfigManager().isAdaptiveThresholds() ? Math.max(fixed, sourceBaseline.getThreshold(fixed)) : fixed;
+    }
+
+    public boolean isAdaptiveThresholdsTrained() {
+        return joinBaseline.isTrained() && pingBaseline.isTrained() && sourceBaseline.isTrained();
+    }
 
-            plugin.getLogger().info("§eProtection mode changed from §c" + oldMode + " §eto §a" + mode);
+    /**
+     * Called by the mode detector once a second.
+     */
+    void sampleBaselines() {
+        long now = System.currentTimeMillis();
+        // Nothing is learned during an attack, so a flood never becomes the new normal
+        boolean learn = modeDetector.getMode() == ProtectionMode.NORMAL;
+        joinBaseline.sample(getJoinsPerSecond(), now, learn);
+        pingBaseline.sample(getPingsPerSecond(), now, learn);
+        sourceBaseline.sample(getDistinctSourcesPerSecond(), now, learn);
+    }
 
-            // Kick players if switching to lockdown
-            if (mode == ProtectionMode.LOCKDOWN && plugin.getConfigManager().isKickOnLockdown()) {
-                kickSuspiciousPlayers();
+    private void applyBaselineLimits() {
+        double sensitivity = plugin.getConfigManager().getAdaptiveSensitivity();
+        joinBaseline.setLimits(sensitivity, plugin.getConfigManager().getAdaptiveMinimumJoins());
+        pingBaseline.setLimits(sensitivity, plugin.getConfigManager().getAdaptiveMinimumPings());
+        sourceBaseline.setLimits(sensitivity, plugin.getConfigManager().getMinDistinctSources());
+    }
+
+    private void loadBaselines() {
+        File file = new File(plugin.getDataFolder(), "baselines.dat");
+        if (!file.isFile()) return;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            joinBaseline.readFrom(in);
+            pingBaseline.readFrom(in);
+            sourceBaseline.readFrom(in);
+        } catch (IOException e) {
+            plugin.getLogger().warning("Failed to load traffic baselines, learning again: " + e.getMessage());
+            joinBaseline.reset();
+            pingBaseline.reset();
+            sourceBaseline.reset();
+        }
+    }
+
+    private void saveBaselines() {
+        File file = new File(plugin.getDataFolder(), "baselines.dat");
+        File temp = new File(plugin.getDataFolder(), "baselines.dat.tmp");
+        try {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)))) {
+                joinBaseline.writeTo(out);
+                pingBaseline.writeTo(out);
+                sourceBaseline.writeTo(out);
             }
+            Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            plugin.getLogger().warning("Failed to save traffic baselines: " + e.getMessage());
         }
     }
 
-    private void kickSuspiciousPlayers() {
+    /**
+     * Kick untrusted players after switching to LOCKDOWN. Main thread only.
+     */
+    void kickSuspiciousPlayers() {
         for (Player player : Bukkit.getOnlinePlayers()) {
             if (player.hasPermission("tga.bypass")) continue;
             
             if (player.getAddress() == null) continue;
 
-            String ip = player.getAddress().getAddress().getHostAddress();
-            PlayerProfile profile = playerProfiles.get(ip);
+            InetAddress address = player.getAddress().getAddress();
+            long high = IPAddressKey.high(address);
+            PlayerProfile profile = playerProfiles.get(high, profileLow(high, IPAddressKey.low(address)));
 
             if (profile != null && !isPlayerTrusted(profile)) {
                 player.kickPlayer(plugin.getMessages().get("lockdown-kick",
@@ -245,8 +408,26 @@ public class BotProtectionManager {
 
     public void removeFromWhitelist(String ip) {
         if (ip == null || ip.trim().isEmpty()) return;
-        whitelist.remove(ip);
-        saveData();
+        accessList.removeAllowed(ip);
+        listStore.removeAllowed(IPAccessList.normalize(ip));
+    }
+
+    private void configureSubnets() {
+        subnets.setMultipliers(plugin.getConfigManager().getSubnetNarrowMultiplier(),
+            plugin.getConfigManager().getSubnetWideMultiplier());
+        subnets.setReconnectWindow(plugin.getConfigManager().getSubnetReconnectWindow());
+        if (!subnets.setNicknameLimit(plugin.getConfigManager().getMaxAccountsPerIP())) {
+            plugin.getLogger().warning("[Subnets] Accounts per IP times the subnet multiplier is above "
+                + SubnetAggregates.MAX_TRACKED_NICKNAMES + " nicknames; the subnet account check cannot trigger at that level");
+        }
+    }
+
+    /**
+     * IPv6 profiles are kept per /64, which usually belongs to a single
+     * subscriber, so rotating through its addresses does not add profiles.
+     */
+    private static long profileLow(long high, long low) {
+        return IPAddressKey.isIPv4(high, low) ? low : 0L;
     }
 
     private boolean isPlayerTrusted(PlayerProfile profile) {
@@ -261,15 +442,19 @@ public class BotProtectionManager {
             return;
         }
         
-        whitelist.add(ip);
-        blacklist.remove(ip);
-        tempBlacklist.remove(ip);
+        if (!IPAccessList.isValidEntry(ip)) {
+            plugin.getLogger().warning("Attempted to whitelist invalid IP: " + ip);
+            return;
+        }
+        
+        accessList.allow(ip);
+        removeTempBlock(ip);
         
         if (plugin.getConfigManager().isDebugMode()) {
             plugin.getLogger().info("Added IP to whitelist: " + ip);
         }
         
-        saveData();
+        listStore.allow(IPAccessList.normalize(ip));
     }
 
     public void addToBlacklist(String ip, String reason) {
@@ -278,137 +463,257 @@ public class BotProtectionManager {
             return;
         }
         
-        blacklist.add(ip);
-        whitelist.remove(ip);
+        if (!IPAccessList.isValidEntry(ip)) {
+            plugin.getLogger().warning("Attempted to blacklist invalid IP: " + ip);
+            return;
+        }
+        
+        accessList.block(ip);
         plugin.getLogger().info("§cAdded IP to blacklist: " + ip + " (Reason: " + reason + ")");
-        saveData();
+        plugin.getSecurityLog().record("BLACKLIST", "Added IP to blacklist: " + ip + " (Reason: " + reason + ")");
+        listStore.block(IPAccessList.normalize(ip));
     }
 
-    private void addToTempBlacklist(String ip, String reason) {
-        if (ip == null || ip.trim().isEmpty()) {
-            plugin.getLogger().warning("Attempted to temp blacklist null or empty IP");
-            return;
+    /**
+     * IPv6 sources are blocked per /64, like their profiles, so the next
+     * address in the same range is not let straight back in.
+     */
+    private void addToTempBlacklist(long high, long low, String reason) {
+        long duration = plugin.getConfigManager().getTempBlacklistDuration() * 1000L;
+        long blockLow = profileLow(high, low);
+        if (!accessList.tempBlock(high, blockLow, System.currentTimeMillis() + duration)) {
+            return; // Already temp blacklisted, the block has been renewed
         }
-        
-        tempBlacklist.add(ip);
-        plugin.getLogger().info("§eAdded IP to temporary blacklist: " + ip + " (Reason: " + reason + ")");
+        // Removal after the configured time is handled by the expiry wheel
+        logEvent("TEMP-BLACKLIST", "§eAdded IP to temporary blacklist: " + IPAddressKey.toString(high, blockLow) + " (Reason: " + reason + ")");
+    }
 
-        // Remove from temp blacklist after configured time
-        Bukkit.getScheduler().runTaskLater(plugin, () -> {
-            tempBlacklist.remove(ip);
-            if (plugin.getConfigManager().isDebugMode()) {
-                plugin.getLogger().info("Removed IP from temporary blacklist: " + ip);
-            }
-        }, plugin.getConfigManager().getTempBlacklistDuration() * 20L);
+    /**
+     * Lift the temporary block of an address, including the /64 an IPv6
+     * address was blocked under.
+     */
+    private void removeTempBlock(String ip) {
+        accessList.removeTempBlock(ip);
+        IPAddressKey key = IPAddressKey.parse(ip);
+        if (key != null) {
+            accessList.removeTempBlock(key.getHigh(), profileLow(key.getHigh(), key.getLow()));
+        }
+    }
+
+    /**
+     * Per-connection events go to the security log when file logging is on,
+     * so a flood does not flood the console as well.
+     */
+    private void logEvent(String category, String message) {
+        if (plugin.getSecurityLog().isActive()) {
+            plugin.getSecurityLog().record(category, message);
+        } else {
+            plugin.getLogger().info(message);
+        }
     }
 
     public void removeFromBlacklist(String ip) {
         if (ip == null || ip.trim().isEmpty()) return;
-        blacklist.remove(ip);
-        tempBlacklist.remove(ip);
+        accessList.removeBlocked(ip);
+        removeTempBlock(ip);
         
         if (plugin.getConfigManager().isDebugMode()) {
             plugin.getLogger().info("Removed IP from blacklist: " + ip);
         }
         
-        saveData();
+        listStore.removeBlocked(IPAccessList.normalize(ip));
+        if (normalizeAll(plugin.getConfig().getStringList("security.blacklist")).contains(IPAccessList.normalize(ip))) {
+            plugin.getLogger().warning("IP " + ip + " is still listed under security.blacklist in config.yml " +
+                "and will be blocked again on reload");
+        }
     }
 
-    private void startCounterResetTask() {
-        Bukkit.getScheduler().runTaskTimer(plugin, () -> {
-            joinsPerSecond.set(0);
-            pingsPerSecond.set(0);
-            packetsPerSecond.set(0);
-        }, 20L, 20L); // Reset every second
-        
+    private void startMaintenanceTask() {
         // Periodic cleanup task
         Bukkit.getScheduler().runTaskTimerAsynchronously(plugin, () -> {
             cleanupPlayerProfiles();
         }, 6000L, 6000L); // Every 5 minutes
+
+        if (profileStore != null) {
+            long interval = Math.max(10, plugin.getConfigManager().getProfileSnapshotInterval()) * 20L;
+            Bukkit.getScheduler().runTaskTimerAsynchronously(plugin, this::saveProfiles, interval, interval);
+        }
+    }
+
+    private void loadProfiles() {
+        long start = System.currentTimeMillis();
+        try {
+            profileStore.load();
+            // Profiles created by connections during the load are newer, keep them
+            playerProfiles.forEach((high, low, profile) -> profileStore.discard(high, low));
+            plugin.getLogger().info("[Profiles] Loaded " + profileStore.getStoredCount() + " player profiles in " +
+                (System.currentTimeMillis() - start) + "ms");
+        } catch (IOException e) {
+            plugin.getLogger().warning("[Profiles] Failed to load player profiles: " + e.getMessage());
+        } finally {
+            // Saving before the load finished could compact away the stored profiles
+            profilesLoaded = true;
+        }
+    }
+
+    /**
+     * Write the profiles changed since the last snapshot. Blocking.
+     */
+    private void saveProfiles() {
+        if (!profilesLoaded) return;
+        long start = System.currentTimeMillis();
+        try {
+            int written = profileStore.snapshot(playerProfiles, start);
+            if (plugin.getConfigManager().isDebugMode() && written > 0) {
+                plugin.getLogger().info("[Profiles] Saved " + written + " changed profiles in " +
+                    (System.currentTimeMillis() - start) + "ms");
+            }
+        } catch (IOException e) {
+            plugin.getLogger().warning("[Profiles] Failed to save player profiles: " + e.getMessage());
+        }
     }
     
+    /**
+     * Keep an evicted profile from coming back from the store after a restart.
+     */
+    private void evicted(long high, long low) {
+        if (profileStore != null) {
+            profileStore.remove(high, low);
+        }
+    }
+
     private void cleanupPlayerProfiles() {
         long retentionTime = plugin.getConfigManager().getMaintenanceInterval() * 1000L;
         int maxProfiles = plugin.getConfigManager().getProfileCacheSize();
         
         // Clean up old profiles
-        playerProfiles.entrySet().removeIf(entry -> {
-            PlayerProfile profile = entry.getValue();
+        playerProfiles.removeIf((high, low, profile) -> {
+            boolean expired;
             synchronized (profile) {
                 profile.cleanup(retentionTime);
-                // Remove profiles with no recent activity
-                return profile.getConnectionCount() == 0 && 
-                       System.currentTimeMillis() - profile.getLastConnection() > retentionTime;
+                // Remove profiles with no recent activity, unless they earned trust by play time
+                expired = profile.getConnectionCount() == 0 &&
+                       System.currentTimeMillis() - profile.getLastConnection() > retentionTime &&
+                       profile.getPlayTime() <= plugin.getConfigManager().getTrustedPlayerTime();
             }
+            if (expired) evicted(high, low);
+            return expired;
         });
         
-        // Limit profile count
-        if (playerProfiles.size() > maxProfiles) {
-            // Remove oldest profiles
-            playerProfiles.entrySet().stream()
-                .sorted((e1, e2) -> Long.compare(e1.getValue().getLastConnection(), e2.getValue().getLastConnection()))
-                .limit(playerProfiles.size() - maxProfiles)
-                .forEach(entry -> playerProfiles.remove(entry.getKey()));
+        // Limit profile count, oldest untrusted profiles first; trusted profiles are never trimmed
+        int excess = playerProfiles.size() - maxProfiles;
+        if (excess > 0) {
+            // Found via the last connection time cutoff
+            long[] lastConnections = new long[playerProfiles.size()];
+            int[] count = {0};
+            playerProfiles.forEach((high, low, profile) -> {
+                if (count[0] < lastConnections.length && !isPlayerTrusted(profile)) {
+                    lastConnections[count[0]++] = profile.getLastConnection();
+                }
+            });
+            if (count[0] > 0) {
+                Arrays.sort(lastConnections, 0, count[0]);
+                long cutoff = lastConnections[Math.min(excess, count[0]) - 1];
+                playerProfiles.removeIf((high, low, profile) -> {
+                    if (profile.getLastConnection() > cutoff || isPlayerTrusted(profile)) return false;
+                    evicted(high, low);
+                    return true;
+                });
+            }
         }
         
+        subnets.removeInactive(System.currentTimeMillis());
+        
         if (plugin.getConfigManager().isDebugMode()) {
-            plugin.getLogger().info("Profile cleanup completed. Current profiles: " + playerProfiles.size());
+            plugin.getLogger().info("Profile cleanup completed. Current profiles: " + playerProfiles.size() +
+                ", subnets: " + subnets.size());
         }
     }
 
     public void reload() {
         loadData();
+        configureSubnets();
+        applyBaselineLimits();
+        int window = plugin.getConfigManager().getNameClusterWindowSeconds();
+        if (window != nameClusterWindow) {
+            nameClusterWindow = window;
+            nameClusters = new NameClusterIndex(window, TimeUnit.SECONDS);
+        }
         plugin.getLogger().info("BotProtectionManager reloaded");
     }
 
     public void shutdown() {
-        saveData();
+        modeDetector.shutdown();
+        listStore.close();
+        saveBaselines();
+        if (profileStore != null) {
+            saveProfiles();
+        }
         plugin.getLogger().info("BotProtectionManager shutdown completed");
     }
 
     private void loadData() {
-        // Load whitelist and blacklist from config
-        whitelist.clear();
-        blacklist.clear();
-
-        whitelist.addAll(plugin.getConfig().getStringList("security.whitelist"));
-        blacklist.addAll(plugin.getConfig().getStringList("security.blacklist"));
+        // Whitelist and blacklist are kept in the list store; entries still listed in config.yml apply on top
+        Set<String> whitelisted = listStore.getAllowed();
+        whitelisted.addAll(normalizeAll(plugin.getConfig().getStringList("security.whitelist")));
+        Set<String> blacklisted = listStore.getBlocked();
+        blacklisted.addAll(normalizeAll(plugin.getConfig().getStringList("security.blacklist")));
+        accessList.setEntries(whitelisted, blacklisted);
         
         if (plugin.getConfigManager().isDebugMode()) {
-            plugin.getLogger().info("Loaded " + whitelist.size() + " whitelisted IPs and " + 
-                blacklist.size() + " blacklisted IPs");
+            plugin.getLogger().info("Loaded " + whitelisted.size() + " whitelisted IPs and " + 
+                blacklisted.size() + " blacklisted IPs");
         }
     }
 
-    private void saveData() {
-        try {
-            plugin.getConfig().set("security.whitelist", new ArrayList<>(whitelist));
-            plugin.getConfig().set("security.blacklist", new ArrayList<>(blacklist));
-            plugin.saveConfig();
-        } catch (Exception e) {
-            plugin.getLogger().severe("Failed to save security data: " + e.getMessage());
-            if (plugin.getConfigManager().isDebugMode()) {
-                e.printStackTrace();
-            }
+    private static List<String> normalizeAll(List<String> entries) {
+        List<String> result = new ArrayList<>(entries.size());
+        for (String entry : entries) {
+            if (entry != null && !entry.trim().isEmpty()) result.add(IPAccessList.normalize(entry));
         }
+        return result;
     }
 
     // Getters
-    public ProtectionMode getCurrentMode() { return currentMode; }
-    public long getJoinsPerSecond() { return joinsPerSecond.get(); }
-    public long getPingsPerSecond() { return pingsPerSecond.get(); }
-    public long getPacketsPerSecond() { return packetsPerSecond.get(); }
+    public ProtectionMode getCurrentMode() { return modeDetector.getMode(); }
+    public ModeState getModeState() { return modeDetector.getState(); }
+    public int getLargestNameCluster() { return nameClusters.getLargestCluster(); }
+    public long getJoinsPerSecond() { return joinCounter.sum(SHORT_WINDOW_MS, TimeUnit.MILLISECONDS); }
+    public long getPingsPerSecond() { return pingCounter.sum(SHORT_WINDOW_MS, TimeUnit.MILLISECONDS); }
+    public long getPacketsPerSecond() { return packetCounter.sum(SHORT_WINDOW_MS, TimeUnit.MILLISECONDS); }
+    public double getJoinRate() { return joinCounter.ratePerSecond(LONG_WINDOW_MS, TimeUnit.MILLISECONDS); }
+    public double getPingRate() { return pingCounter.ratePerSecond(LONG_WINDOW_MS, TimeUnit.MILLISECONDS); }
+    public double getPacketRate() { return packetCounter.ratePerSecond(LONG_WINDOW_MS, TimeUnit.MILLISECONDS); }
+    public long getDistinctSourcesPerSecond() { return sourcesPerSecond.estimate(); }
+    public long getDistinctSourcesPerMinute() { return sourcesPerMinute.estimate(); }
+    public long getDistinctNamesPerSecond() { return namesPerSecond.estimate(); }
+    public long getDistinctNamesPerMinute() { return namesPerMinute.estimate(); }
     public AttackData getCurrentAttack() { return currentAttack; }
-    public Set<String> getWhitelist() { return new HashSet<>(whitelist); }
-    public Set<String> getBlacklist() { return new HashSet<>(blacklist); }
-    public Map<String, PlayerProfile> getPlayerProfiles() { return new HashMap<>(playerProfiles); }
+    public Set<String> getWhitelist() { return accessList.getAllowed(); }
+    public Set<String> getBlacklist() { return accessList.getBlocked(); }
+    public IPAccessList getAccessList() { return accessList; }
+    
+    public Map<String, PlayerProfile> getPlayerProfiles() {
+        Map<String, PlayerProfile> profiles = new HashMap<>();
+        playerProfiles.forEach((high, low, profile) -> profiles.put(IPAddressKey.toString(high, low), profile));
+        return profiles;
+    }
+    
+    public PlayerProfile getPlayerProfile(String ip) {
+        IPAddressKey key = IPAddressKey.parse(ip);
+        return key == null ? null : findProfile(key.getHigh(), profileLow(key.getHigh(), key.getLow()));
+    }
     
     // Additional utility methods
     public int getProfileCount() { return playerProfiles.size(); }
-    public int getTempBlacklistSize() { return tempBlacklist.size(); }
+    public int getTempBlacklistSize() { return accessList.getTempBlockCount(); }
+    public CheckPipeline getCheckPipeline() { return checkPipeline; }
+    public NameClusterIndex getNameClusters() { return nameClusters; }
+    public SubnetAggregates getSubnets() { return subnets; }
     
     public String getStats() {
-        return String.format("Mode: %s, Profiles: %d, Whitelist: %d, Blacklist: %d, TempBlacklist: %d",
-            currentMode, playerProfiles.size(), whitelist.size(), blacklist.size(), tempBlacklist.size());
+        return String.format("Mode: %s, Profiles: %d, Whitelist: %d, Blacklist: %d, TempBlacklist: %d, Largest name cluster: %d",
+            getCurrentMode(), playerProfiles.size(), accessList.getAllowed().size(), accessList.getBlocked().size(),
+            accessList.getTempBlockCount(), nameClusters.getLargestCluster());
     }
 }
\ No newline at end of file
@@ -58,6 +58,7 @@ public class NotificationManager {
         attackBossBar.setProgress(Math.min(intensity / 100.0, 1.0));
 
         plugin.getLogger().warning("[ATTACK DETECTED] " + attackType.getDisplayName() + " - Intensity: " + intensity);
+        plugin.getSecurityLog().record("ATTACK", attackType.getDisplayName() + " detected - Intensity: " + intensity);
     }
 
     public void broadcastAttackEnd() {
@@ -75,6 +76,7 @@ public class NotificationManager {
         attackBossBar.setProgress(1.0);
 
         plugin.getLogger().info("[ATTACK ENDED] Protection returned to normal mode.");
+        plugin.getSecurityLog().record("ATTACK", "Attack ended, protection returned to normal mode");
     }
 
     public void toggleActionBar(Player player) {
@@ -0,0 +1,199 @@
+package org.spigot.core;
+
+import org.bukkit.Bukkit;
+import org.spigot.Main;
+import org.spigot.config.ConfigManager;
+import org.spigot.core.data.AttackData;
+import org.spigot.core.data.ModeState;
+import org.spigot.enums.AttackType;
+import org.spigot.enums.ProtectionMode;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Drives the NORMAL / STRICT / LOCKDOWN state machine from a single thread.
+ *
+ * The rate windows are evaluated every 100ms whether or not anyone connects,
+ * so leaving LOCKDOWN does not wait for a legitimate player to get through
+ * the checks. A mode is entered once its trigger has held for a short
+ * confirmation time, and left only after the slower ten second averages have
+ * stayed below a fraction of the limits for the whole recovery delay, one
+ * level at a time, so the mode does not flap around a limit.
+ *
+ * The mode is published as an immutable snapshot through a volatile field;
+ * this thread is its only writer. Alerts, boss bars and kicks use the Bukkit
+ * API and are handed to the main thread.
+ */
+public class ProtectionModeDetector {
+
+    // Constants
+    private static final long TICK_MS = 100;
+    private static final int SAMPLE_TICKS = 10;
+
+    private final Main plugin;
+    private final BotProtectionManager manager;
+    private final ScheduledExecutorService executor;
+    private volatile ModeState state;
+
+    // Detector thread only
+    private ProtectionMode pending;
+    private long pendingSince;
+    private long calmSince;
+    private int ticks;
+
+    public ProtectionModeDetector(Main plugin, BotProtectionManager manager) {
+        this.plugin = plugin;
+        this.manager = manager;
+        this.state = new ModeState(ProtectionMode.NORMAL, System.currentTimeMillis(), null);
+        this.executor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "TGA-Mode-Detector");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    public void start() {
+        executor.scheduleAtFixedRate(this::tick, TICK_MS, TICK_MS, TimeUnit.MILLISECONDS);
+    }
+
+    public void shutdown() {
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(5, TimeUnit.SECONDS)) {
+                executor.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    public ModeState getState() {
+        return state;
+    }
+
+    public ProtectionMode getMode() {
+        return state.getMode();
+    }
+
+    private void tick() {
+        try {
+            evaluate(System.currentTimeMillis());
+            if (++ticks % SAMPLE_TICKS == 0) {
+                manager.sampleBaselines();
+            }
+        } catch (RuntimeException e) {
+            // An exception would cancel the schedule and freeze the mode
+            plugin.getLogger().warning("[ModeDetector] Evaluation failed: " + e);
+        }
+    }
+
+    private void evaluate(long now) {
+        ConfigManager config = plugin.getConfigManager();
+        ProtectionMode mode = state.getMode();
+
+        long joins = manager.getJoinsPerSecond();
+        long pings = manager.getPingsPerSecond();
+        double joinLimit = manager.getJoinLimit();
+        double pingLimit = manager.getPingLimit();
+        int cluster = config.isNameClustersActive() ? manager.getLargestNameCluster() : 0;
+        int clusterLimit = config.getNameClusterThreshold();
+
+        // Entry on the one second windows; a burst from a handful of IPs is left to the per-IP checks
+        ProtectionMode wanted = ProtectionMode.NORMAL;
+        AttackType attack = null;
+        long intensity = 0;
+        if (joins > joinLimit && manager.getDistinctSourcesPerSecond() >= manager.getDistinctSourceLimit()) {
+            wanted = ProtectionMode.LOCKDOWN;
+            attack = AttackType.JOIN_FLOOD;
+            intensity = joins;
+        } else if (pings > pingLimit) {
+            wanted = ProtectionMode.STRICT;
+            attack = AttackType.PING_FLOOD;
+            intensity = pings;
+        } else if (cluster > clusterLimit) {
+            wanted = ProtectionMode.STRICT;
+            attack = AttackType.NICKNAME_SPAM;
+            intensity = cluster;
+        }
+
+        if (wanted.ordinal() > mode.ordinal()) {
+            if (pending == null) {
+                pendingSince = now;
+            }
+            pending = wanted;
+            if (now - pendingSince >= config.getModeEnterConfirm()) {
+                transition(wanted, attack, intensity, now);
+            }
+            return;
+        }
+        pending = null;
+        if (mode == ProtectionMode.NORMAL) return;
+        if (attack != null && attack == state.getAttackType()) {
+            manager.getCurrentAttack().updateIntensity(intensity);
+        }
+
+        // Exit on the ten second averages against a lower level
+        double ratio = config.getModeExitRatio();
+        ProtectionMode settled = ProtectionMode.NORMAL;
+        AttackType remaining = null;
+        if (manager.getJoinRate() > joinLimit * ratio) {
+            settled = ProtectionMode.LOCKDOWN;
+        } else if (manager.getPingRate() > pingLimit * ratio) {
+            settled = ProtectionMode.STRICT;
+            remaining = AttackType.PING_FLOOD;
+        } else if (cluster > clusterLimit * ratio) {
+            settled = ProtectionMode.STRICT;
+            remaining = AttackType.NICKNAME_SPAM;
+        }
+
+        if (settled.ordinal() >= mode.ordinal()) {
+            calmSince = 0;
+            return;
+        }
+        if (calmSince == 0) {
+            calmSince = now;
+        }
+        if (now - calmSince >= config.getCooldownTime()) {
+            // One level per cooldown, so LOCKDOWN passes through STRICT
+            ProtectionMode next = ProtectionMode.values()[mode.ordinal() - 1];
+            if (settled.ordinal() >= next.ordinal()) {
+                transition(settled, remaining, 0, now);
+            } else {
+                transition(next, state.getAttackType(), 0, now);
+            }
+        }
+    }
+
+    private void transition(ProtectionMode next, AttackType attack, long intensity, long now) {
+        ProtectionMode previous = state.getMode();
+        state = new ModeState(next, now, attack);
+        pending = null;
+        calmSince = 0;
+
+        plugin.getLogger().info("§eProtection mode changed from §c" + previous + " §eto §a" + next);
+        plugin.getSecurityLog().record("MODE", "Protection mode changed from " + previous + " to " + next);
+
+        AttackData currentAttack = manager.getCurrentAttack();
+        boolean escalated = next.ordinal() > previous.ordinal();
+        if (next == ProtectionMode.NORMAL) {
+            currentAttack.endAttack();
+        } else if (escalated) {
+            currentAttack.startAttack(attack, intensity);
+        }
+
+        // Players and boss bars may only be touched on the main thread
+        Bukkit.getScheduler().runTask(plugin, () -> {
+            if (next == ProtectionMode.NORMAL) {
+                plugin.getNotificationManager().broadcastAttackEnd();
+            } else if (escalated) {
+                plugin.getNotificationManager().broadcastAttackAlert(attack, intensity);
+            }
+            if (next == ProtectionMode.LOCKDOWN && plugin.getConfigManager().isKickOnLockdown()) {
+                manager.kickSuspiciousPlayers();
+            }
+        });
+    }
+}
@@ -1,20 +1,36 @@
 package org.spigot.core.checks;
 
 import org.spigot.Main;
+import org.spigot.core.data.ConnectionContext;
 import org.spigot.core.data.PlayerProfile;
+import org.spigot.core.data.SubnetAggregates;
+import org.spigot.utils.IPAddressKey;
 
-public class AccountLimitCheck {
+public class AccountLimitCheck implements SecurityCheck {
     private final Main plugin;
 
     public AccountLimitCheck(Main plugin) {
         this.plugin = plugin;
     }
 
-    public boolean shouldBlock(PlayerProfile profile) {
-        if (!plugin.getConfigManager().isAccountLimitCheckEnabled()) {
-            return false;
-        }
+    @Override
+    public String getName() {
+        return "account-limit";
+    }
+
+    @Override
+    public String getBlockReason() {
+        return "Too many accounts from IP";
+    }
 
+    @Override
+    public boolean isEnabled() {
+        return plugin.getConfigManager().isAccountLimitCheckEnabled();
+    }
+
+    @Override
+    public boolean shouldBlock(ConnectionContext context) {
+        PlayerProfile profile = context.getProfile();
         int maxAccounts = plugin.getConfigManager().getMaxAccountsPerIP();
         int currentAccounts = profile.getNicknames().size();
 
@@ -23,6 +39,23 @@ public class AccountLimitCheck {
             return true;
         }
 
+        // Accounts spread over a subnet
+        if (plugin.getConfigManager().isSubnetLimitsActive()) {
+            long high = IPAddressKey.high(context.getAddress());
+            long low = IPAddressKey.low(context.getAddress());
+            SubnetAggregates subnets = plugin.getBotProtectionManager().getSubnets();
+            SubnetAggregates.Level level = subnets.findNicknamesExceeded(high, low, maxAccounts, context.getTimestamp());
+            if (level != null) {
+                if (plugin.getConfigManager().isDebugMode()) {
+                    plugin.getLogger().info("§cBlocked IP " + context.getIp() + " - Too many accounts from subnet " +
+                        SubnetAggregates.describe(level, high, low) + ": " +
+                        subnets.getNicknames(level, high, low, context.getTimestamp()));
+                }
+                context.markSubnetBlock();
+                return true;
+            }
+        }
+
         return false;
     }
 }
\ No newline at end of file
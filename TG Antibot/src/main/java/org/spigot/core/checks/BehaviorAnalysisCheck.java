@@ -1,20 +1,34 @@
 package org.spigot.core.checks;
 
 import org.spigot.Main;
+import org.spigot.core.data.ConnectionContext;
 import org.spigot.core.data.PlayerProfile;
 
-public class BehaviorAnalysisCheck {
+public class BehaviorAnalysisCheck implements SecurityCheck {
     private final Main plugin;
 
     public BehaviorAnalysisCheck(Main plugin) {
         this.plugin = plugin;
     }
 
-    public boolean shouldBlock(PlayerProfile profile) {
-        if (!plugin.getConfigManager().isBehaviorAnalysisEnabled()) {
-            return false;
-        }
+    @Override
+    public String getName() {
+        return "behavior-analysis";
+    }
+
+    @Override
+    public String getBlockReason() {
+        return "Suspicious behavior pattern";
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return plugin.getConfigManager().isBehaviorAnalysisEnabled();
+    }
 
+    @Override
+    public boolean shouldBlock(ConnectionContext context) {
+        PlayerProfile profile = context.getProfile();
         int suspicionScore = calculateSuspicionScore(profile);
         int threshold = plugin.getConfigManager().getSuspicionThreshold();
 
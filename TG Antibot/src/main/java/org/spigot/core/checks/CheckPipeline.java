@@ -0,0 +1,180 @@
+package org.spigot.core.checks;
+
+import org.spigot.core.data.ConnectionContext;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Runs registered {@link SecurityCheck}s in order of expected cost per rejection
+ * and stops at the first check that blocks.
+ *
+ * Each check keeps running totals of invocations, hits and nanoseconds spent. Every
+ * {@link #REORDER_INTERVAL} evaluations the totals since the last reorder are folded
+ * into an exponentially weighted average and the execution order is recomputed, so
+ * the ordering follows the traffic mix of the current attack rather than startup.
+ */
+public class CheckPipeline {
+
+    // Constants
+    private static final int REORDER_INTERVAL = 1024;
+    private static final double SMOOTHING = 0.3;
+    private static final double MIN_HIT_RATE = 0.001;
+
+    private final List<CheckStats> registered;
+    private volatile CheckStats[] order;
+    private final AtomicLong evaluations;
+    private final AtomicBoolean reordering;
+
+    public CheckPipeline() {
+        this.registered = new ArrayList<>();
+        this.order = new CheckStats[0];
+        this.evaluations = new AtomicLong(0);
+        this.reordering = new AtomicBoolean(false);
+    }
+
+    /**
+     * Register a check. Checks registered first run first until enough
+     * samples have been collected to reorder them.
+     */
+    public synchronized void register(SecurityCheck check) {
+        if (check == null) return;
+        registered.add(new CheckStats(check, registered.size()));
+        order = registered.toArray(new CheckStats[0]);
+    }
+
+    /**
+     * Evaluate all enabled checks against the given connection.
+     *
+     * @return the first check that blocked, or null if the connection passed
+     */
+    public SecurityCheck evaluate(ConnectionContext context) {
+        CheckStats[] current = order;
+        SecurityCheck verdict = null;
+
+        for (CheckStats stats : current) {
+            if (!stats.check.isEnabled()) continue;
+
+            long start = System.nanoTime();
+            boolean blocked = stats.check.shouldBlock(context);
+            stats.record(System.nanoTime() - start, blocked);
+
+            if (blocked) {
+                verdict = stats.check;
+                break;
+            }
+        }
+
+        if (evaluations.incrementAndGet() % REORDER_INTERVAL == 0) {
+            reorder();
+        }
+
+        return verdict;
+    }
+
+    private void reorder() {
+        if (!reordering.compareAndSet(false, true)) return;
+        try {
+            CheckStats[] sorted = order.clone();
+            for (CheckStats stats : sorted) {
+                stats.updateAverages();
+            }
+            // Expected cost spent per rejection; ties keep registration order
+            Arrays.sort(sorted, (a, b) -> {
+                int cmp = Double.compare(a.getRank(), b.getRank());
+                return cmp != 0 ? cmp : Integer.compare(a.index, b.index);
+            });
+            order = sorted;
+        } finally {
+            reordering.set(false);
+        }
+    }
+
+    /**
+     * Current execution order, cheapest expected rejection first.
+     */
+    public List<String> getOrder() {
+        List<String> names = new ArrayList<>();
+        for (CheckStats stats : order) {
+            names.add(stats.check.getName());
+        }
+        return names;
+    }
+
+    public long getEvaluations() {
+        return evaluations.get();
+    }
+
+    public String getStats() {
+        StringBuilder sb = new StringBuilder();
+        for (CheckStats stats : order) {
+            if (sb.length() > 0) sb.append(", ");
+            long calls = stats.invocations.sum();
+            sb.append(String.format("%s[calls=%d, hits=%d, avg=%dns]",
+                stats.check.getName(), calls, stats.hits.sum(),
+                calls == 0 ? 0 : stats.nanos.sum() / calls));
+        }
+        return sb.toString();
+    }
+
+    private static final class CheckStats {
+        final SecurityCheck check;
+        final int index;
+        final LongAdder invocations = new LongAdder();
+        final LongAdder hits = new LongAdder();
+        final LongAdder nanos = new LongAdder();
+
+        // Totals at the previous reorder and smoothed values, owned by the reordering thread
+        private long lastInvocations;
+        private long lastHits;
+        private long lastNanos;
+        private double avgCost;
+        private double hitRate;
+        private volatile double rank;
+
+        CheckStats(SecurityCheck check, int index) {
+            this.check = check;
+            this.index = index;
+        }
+
+        void record(long elapsedNanos, boolean blocked) {
+            invocations.increment();
+            nanos.add(elapsedNanos);
+            if (blocked) {
+                hits.increment();
+            }
+        }
+
+        void updateAverages() {
+            long calls = invocations.sum();
+            long blocked = hits.sum();
+            long spent = nanos.sum();
+
+            long deltaCalls = calls - lastInvocations;
+            if (deltaCalls > 0) {
+                double cost = (double) (spent - lastNanos) / deltaCalls;
+                double rate = (double) (blocked - lastHits) / deltaCalls;
+                if (lastInvocations == 0) {
+                    avgCost = cost;
+                    hitRate = rate;
+                } else {
+                    avgCost += SMOOTHING * (cost - avgCost);
+                    hitRate += SMOOTHING * (rate - hitRate);
+                }
+                rank = avgCost / Math.max(hitRate, MIN_HIT_RATE);
+            }
+
+            lastInvocations = calls;
+            lastHits = blocked;
+            lastNanos = spent;
+        }
+
+        double getRank() {
+            return rank;
+        }
+    }
+}
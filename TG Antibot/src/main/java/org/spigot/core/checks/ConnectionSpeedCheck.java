@@ -1,20 +1,36 @@
 package org.spigot.core.checks;
 
 import org.spigot.Main;
+import org.spigot.core.data.ConnectionContext;
 import org.spigot.core.data.PlayerProfile;
+import org.spigot.core.data.SubnetAggregates;
+import org.spigot.utils.IPAddressKey;
 
-public class ConnectionSpeedCheck {
+public class ConnectionSpeedCheck implements SecurityCheck {
     private final Main plugin;
 
     public ConnectionSpeedCheck(Main plugin) {
         this.plugin = plugin;
     }
 
-    public boolean shouldBlock(PlayerProfile profile, long currentTime) {
-        if (!plugin.getConfigManager().isConnectionSpeedCheckEnabled()) {
-            return false;
-        }
-        
+    @Override
+    public String getName() {
+        return "connection-speed";
+    }
+
+    @Override
+    public String getBlockReason() {
+        return "Connection speed violation";
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return plugin.getConfigManager().isConnectionSpeedCheckEnabled();
+    }
+
+    @Override
+    public boolean shouldBlock(ConnectionContext context) {
+        PlayerProfile profile = context.getProfile();
         if (profile == null) {
             plugin.getLogger().warning("ConnectionSpeedCheck: null profile provided");
             return true;
@@ -38,6 +54,24 @@ public class ConnectionSpeedCheck {
             return true;
         }
 
+        // Check the subnet, addresses rotating through a range count together
+        if (plugin.getConfigManager().isSubnetLimitsActive()) {
+            long high = IPAddressKey.high(context.getAddress());
+            long low = IPAddressKey.low(context.getAddress());
+            SubnetAggregates subnets = plugin.getBotProtectionManager().getSubnets();
+            SubnetAggregates.Level level = subnets.findConnectionsExceeded(high, low, SubnetAggregates.CONNECTION_WINDOW,
+                plugin.getConfigManager().getMaxConnectionsPerMinute(), context.getTimestamp());
+            if (level != null) {
+                if (plugin.getConfigManager().isDebugMode()) {
+                    plugin.getLogger().info("§cBlocked IP " + context.getIp() + " - Too many connections from subnet " +
+                        SubnetAggregates.describe(level, high, low) + ": " +
+                        subnets.getConnections(level, high, low, SubnetAggregates.CONNECTION_WINDOW, context.getTimestamp()));
+                }
+                context.markSubnetBlock();
+                return true;
+            }
+        }
+
         return false;
     }
 }
\ No newline at end of file
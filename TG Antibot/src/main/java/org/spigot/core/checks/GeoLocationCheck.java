@@ -1,45 +1,46 @@
 package org.spigot.core.checks;
 
 import org.spigot.Main;
+import org.spigot.core.data.ConnectionContext;
 
-import java.util.List;
+import java.util.Set;
 
-public class GeoLocationCheck {
+public class GeoLocationCheck implements SecurityCheck {
     private final Main plugin;
 
     public GeoLocationCheck(Main plugin) {
         this.plugin = plugin;
     }
 
-    public boolean shouldBlock(String ip) {
-        if (!plugin.getConfigManager().isGeoLocationCheckEnabled()) {
-            return false;
-        }
+    @Override
+    public String getName() {
+        return "geo-location";
+    }
+
+    @Override
+    public String getBlockReason() {
+        return "Geo-location restriction";
+    }
 
-        // This would integrate with a GeoIP service
-        // For now, we'll implement basic country blocking
-        List<String> blockedCountries = plugin.getConfigManager().getBlockedCountries();
+    @Override
+    public boolean isEnabled() {
+        return plugin.getConfigManager().isGeoLocationCheckEnabled();
+    }
+
+    @Override
+    public boolean shouldBlock(ConnectionContext context) {
+        Set<String> blockedCountries = plugin.getConfigManager().getRestrictedRegionSet();
         if (blockedCountries.isEmpty()) {
             return false;
         }
 
-        // In a real implementation, you would:
-        // 1. Query a GeoIP database/API
-        // 2. Get the country code for the IP
-        // 3. Check if it's in the blocked list
-
-        // Placeholder implementation
-        String countryCode = getCountryCode(ip);
+        // Offline range lookup, no network access on the pre-login thread
+        String countryCode = plugin.getGeoDatabase().lookupLabel(context.getAddress());
         if (countryCode != null && blockedCountries.contains(countryCode)) {
-            plugin.getLogger().info("§cBlocked IP " + ip + " - Country blocked: " + countryCode);
+            plugin.getLogger().info("§cBlocked IP " + context.getIp() + " - Country blocked: " + countryCode);
             return true;
         }
 
         return false;
     }
-
-    private String getCountryCode(String ip) {
-        // Placeholder - integrate with MaxMind GeoIP2 or similar service
-        return null;
-    }
-}
\ No newline at end of file
+}
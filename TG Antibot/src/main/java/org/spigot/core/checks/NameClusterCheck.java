@@ -0,0 +1,43 @@
+package org.spigot.core.checks;
+
+import org.spigot.Main;
+import org.spigot.core.data.ConnectionContext;
+
+public class NameClusterCheck implements SecurityCheck {
+    private final Main plugin;
+
+    public NameClusterCheck(Main plugin) {
+        this.plugin = plugin;
+    }
+
+    @Override
+    public String getName() {
+        return "name-cluster";
+    }
+
+    @Override
+    public String getBlockReason() {
+        return "Nickname matches a bot wave";
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return plugin.getConfigManager().isNameClustersActive();
+    }
+
+    @Override
+    public boolean shouldBlock(ConnectionContext context) {
+        int clusterSize = context.getNameClusterSize();
+        int threshold = plugin.getConfigManager().getNameClusterThreshold();
+
+        if (clusterSize > threshold) {
+            if (plugin.getConfigManager().isDebugMode()) {
+                plugin.getLogger().info("§cBlocked nickname " + context.getName() + " from " + context.getIp() +
+                    " - " + clusterSize + " similar names joined recently");
+            }
+            return true;
+        }
+
+        return false;
+    }
+}
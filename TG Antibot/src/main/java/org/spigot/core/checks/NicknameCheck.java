@@ -1,62 +1,63 @@
 package org.spigot.core.checks;
 
 import org.spigot.Main;
+import org.spigot.core.data.ConnectionContext;
+import org.spigot.core.data.NicknameFeatures;
+import org.spigot.utils.AhoCorasickMatcher;
 
-import java.util.List;
-import java.util.regex.Pattern;
-import java.util.regex.PatternSyntaxException;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import static org.spigot.core.data.NicknameFeatures.DIGITS;
+import static org.spigot.core.data.NicknameFeatures.LETTERS;
+import static org.spigot.core.data.NicknameFeatures.UNDERSCORE;
+
+public class NicknameCheck implements SecurityCheck {
+
+    // Constants
+    // Common bot nickname patterns, evaluated on the scanned shape
+    private static final String[] BOT_PREFIXES = {
+        "Player", "Bot", "Test", "Spam", "Hack", "Cheat", "Guest", "User"
+    };
+    private static final AhoCorasickMatcher BOT_KEYWORDS = AhoCorasickMatcher.compile(
+        Arrays.asList("bot", "hack", "spam", "test", "cheat", "exploit"));
+    private static final int MEMO_SIZE = 1024;
 
-public class NicknameCheck {
     private final Main plugin;
-    private final Pattern suspiciousPattern;
-    private final Pattern asciiPattern;
+    private final ThreadLocal<NicknameFeatures> features = ThreadLocal.withInitial(NicknameFeatures::new);
+    // Verdicts for recently seen names; bot waves reuse the same names many times
+    private final AtomicReferenceArray<MemoEntry> memo = new AtomicReferenceArray<>(MEMO_SIZE);
 
     public NicknameCheck(Main plugin) {
         this.plugin = plugin;
-        
-        // Initialize patterns with error handling
-        Pattern tempSuspiciousPattern;
-        Pattern tempAsciiPattern;
-        
-        try {
-            // Common bot nickname patterns
-            tempSuspiciousPattern = Pattern.compile(
-                "^(Player|Bot|Test|Spam|Hack|Cheat|Guest|User)\\d+$|" +
-                "^[a-zA-Z]{1,3}\\d{4,}$|" +
-                "^\\w*(bot|hack|spam|test|cheat|exploit)\\w*$|" +
-                "^[a-zA-Z]+_\\d+$|" +
-                "^\\d+[a-zA-Z]+\\d+$",
-                Pattern.CASE_INSENSITIVE
-            );
-        } catch (PatternSyntaxException e) {
-            plugin.getLogger().severe("Invalid suspicious nickname pattern: " + e.getMessage());
-            tempSuspiciousPattern = Pattern.compile("^(Bot|Test)\\d+$", Pattern.CASE_INSENSITIVE);
-        }
-        
-        try {
-            tempAsciiPattern = Pattern.compile("^[\\x00-\\x7F]*$");
-        } catch (PatternSyntaxException e) {
-            plugin.getLogger().severe("Invalid ASCII pattern: " + e.getMessage());
-            tempAsciiPattern = null;
-        }
-        
-        this.suspiciousPattern = tempSuspiciousPattern;
-        this.asciiPattern = tempAsciiPattern;
     }
 
-    public boolean shouldBlock(String nickname) {
-        if (!plugin.getConfigManager().isNicknameCheckEnabled()) {
-            return false;
-        }
-        
+    @Override
+    public String getName() {
+        return "nickname";
+    }
+
+    @Override
+    public String getBlockReason() {
+        return "Suspicious nickname pattern";
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return plugin.getConfigManager().isNicknameCheckEnabled();
+    }
+
+    @Override
+    public boolean shouldBlock(ConnectionContext context) {
+        String nickname = context.getName();
         if (nickname == null || nickname.trim().isEmpty()) {
             plugin.getLogger().warning("NicknameCheck: null or empty nickname provided");
             return true;
         }
-        
+
         // Sanitize nickname
         nickname = nickname.trim();
-        
+
         // Check length limits
         if (nickname.length() < 3 || nickname.length() > 16) {
             if (plugin.getConfigManager().isDebugMode()) {
@@ -65,93 +66,90 @@ public class NicknameCheck {
             return true;
         }
 
+        // A memoized verdict is only valid for the rules it was computed with
+        AhoCorasickMatcher forbidden = plugin.getConfigManager().getForbiddenPatternMatcher();
+        boolean blockNonAscii = plugin.getConfigManager().isBlockNonAsciiNicknames();
+        int slot = (nickname.hashCode() * 0x9E3779B9 >>> 22) & (MEMO_SIZE - 1);
+        MemoEntry cached = memo.get(slot);
+        String reason;
+        if (cached != null && cached.matches(nickname, forbidden, blockNonAscii)) {
+            reason = cached.reason;
+        } else {
+            reason = evaluate(features.get().scan(nickname, BOT_KEYWORDS, forbidden), nickname, blockNonAscii);
+            memo.set(slot, new MemoEntry(nickname, forbidden, blockNonAscii, reason));
+        }
+
+        if (reason != null && plugin.getConfigManager().isDebugMode()) {
+            plugin.getLogger().info("§cBlocked nickname: " + nickname + " - " + reason);
+        }
+        return reason != null;
+    }
+
+    /**
+     * @return why the name is blocked, or null if it passes
+     */
+    private String evaluate(NicknameFeatures scan, String nickname, boolean blockNonAscii) {
         // Check blacklisted nicknames
-        List<String> blacklistedNames = plugin.getConfigManager().getBlacklistedNicknames();
-        for (String blacklisted : blacklistedNames) {
-            if (blacklisted == null || blacklisted.trim().isEmpty()) continue;
-            if (nickname.toLowerCase().contains(blacklisted.toLowerCase())) {
-                if (plugin.getConfigManager().isDebugMode()) {
-                    plugin.getLogger().info("§cBlocked nickname: " + nickname + " - Contains blacklisted word: " + blacklisted);
-                }
-                return true;
-            }
+        if (scan.getForbiddenMatch() != null) {
+            return "Contains blacklisted word: " + scan.getForbiddenMatch();
         }
 
         // Check suspicious patterns
-        try {
-            if (suspiciousPattern.matcher(nickname).find()) {
-                if (plugin.getConfigManager().isDebugMode()) {
-                    plugin.getLogger().info("§cBlocked nickname: " + nickname + " - Matches suspicious pattern");
-                }
-                return true;
-            }
-        } catch (Exception e) {
-            plugin.getLogger().warning("Error checking suspicious pattern for nickname " + nickname + ": " + e.getMessage());
+        if (isSuspiciousShape(scan, nickname)) {
+            return "Matches suspicious pattern";
         }
 
         // Check for non-ASCII characters if configured
-        if (plugin.getConfigManager().isBlockNonAsciiNicknames()) {
-            if (!isAscii(nickname)) {
-                if (plugin.getConfigManager().isDebugMode()) {
-                    plugin.getLogger().info("§cBlocked nickname: " + nickname + " - Contains non-ASCII characters");
-                }
-                return true;
-            }
+        if (blockNonAscii && !scan.isAsciiOnly()) {
+            return "Contains non-ASCII characters";
         }
-        
-        // Check for excessive special characters
-        if (hasExcessiveSpecialChars(nickname)) {
-            if (plugin.getConfigManager().isDebugMode()) {
-                plugin.getLogger().info("§cBlocked nickname: " + nickname + " - Excessive special characters");
-            }
-            return true;
+
+        // Check for excessive special characters, more than 50%
+        if (scan.getSpecialCount() > scan.getLength() / 2) {
+            return "Excessive special characters";
         }
-        
-        // Check for repeated characters
-        if (hasExcessiveRepeatedChars(nickname)) {
-            if (plugin.getConfigManager().isDebugMode()) {
-                plugin.getLogger().info("§cBlocked nickname: " + nickname + " - Excessive repeated characters");
-            }
-            return true;
+
+        // Check for repeated characters, more than 3 consecutive identical characters
+        if (scan.getLongestRepeat() > 3) {
+            return "Excessive repeated characters";
         }
 
-        return false;
+        return null;
     }
 
-    private boolean isAscii(String str) {
-        if (asciiPattern != null) {
-            return asciiPattern.matcher(str).matches();
+    private boolean isSuspiciousShape(NicknameFeatures scan, String nickname) {
+        if (scan.hasShape(LETTERS, DIGITS)) {
+            // Player123, Bot42...
+            int prefix = scan.getRunLength(0);
+            for (String word : BOT_PREFIXES) {
+                if (prefix == word.length() && nickname.regionMatches(true, 0, word, 0, prefix)) return true;
+            }
+            // ab12345
+            if (prefix <= 3 && scan.getRunLength(1) >= 4) return true;
         }
-        // Fallback method
-        return str.chars().allMatch(c -> c >= 32 && c < 127);
+        // xXbotXx, hacker_01
+        if (scan.getKeywordMatch() != null) return true;
+        // name_123
+        if (scan.hasShape(LETTERS, UNDERSCORE, DIGITS) && scan.getRunLength(1) == 1) return true;
+        // 12abc34
+        return scan.hasShape(DIGITS, LETTERS, DIGITS);
     }
-    
-    private boolean hasExcessiveSpecialChars(String nickname) {
-        long specialCharCount = nickname.chars()
-            .filter(c -> !Character.isLetterOrDigit(c) && c != '_')
-            .count();
-        return specialCharCount > nickname.length() / 2; // More than 50% special chars
-    }
-    
-    private boolean hasExcessiveRepeatedChars(String nickname) {
-        if (nickname.length() < 4) return false;
-        
-        int maxRepeated = 0;
-        int currentRepeated = 1;
-        char lastChar = nickname.charAt(0);
-        
-        for (int i = 1; i < nickname.length(); i++) {
-            char currentChar = nickname.charAt(i);
-            if (currentChar == lastChar) {
-                currentRepeated++;
-            } else {
-                maxRepeated = Math.max(maxRepeated, currentRepeated);
-                currentRepeated = 1;
-                lastChar = currentChar;
-            }
+
+    private static final class MemoEntry {
+        final String name;
+        final AhoCorasickMatcher forbidden;
+        final boolean blockNonAscii;
+        final String reason;
+
+        MemoEntry(String name, AhoCorasickMatcher forbidden, boolean blockNonAscii, String reason) {
+            this.name = name;
+            this.forbidden = forbidden;
+            this.blockNonAscii = blockNonAscii;
+            this.reason = reason;
+        }
+
+        boolean matches(String name, AhoCorasickMatcher forbidden, boolean blockNonAscii) {
+            return this.forbidden == forbidden && this.blockNonAscii == blockNonAscii && this.name.equals(name);
         }
-        maxRepeated = Math.max(maxRepeated, currentRepeated);
-        
-        return maxRepeated > 3; // More than 3 consecutive identical characters
     }
-}
\ No newline at end of file
+}
@@ -1,19 +1,37 @@
 package org.spigot.core.checks;
 
 import org.spigot.Main;
+import org.spigot.core.data.ConnectionContext;
 import org.spigot.core.data.PlayerProfile;
+import org.spigot.core.data.SubnetAggregates;
+import org.spigot.utils.IPAddressKey;
 
-public class ReconnectCheck {
+public class ReconnectCheck implements SecurityCheck {
     private final Main plugin;
 
     public ReconnectCheck(Main plugin) {
         this.plugin = plugin;
     }
 
-    public boolean shouldBlock(PlayerProfile profile, long currentTime) {
-        if (!plugin.getConfigManager().isReconnectCheckEnabled()) {
-            return false;
-        }
+    @Override
+    public String getName() {
+        return "reconnect";
+    }
+
+    @Override
+    public String getBlockReason() {
+        return "Rapid reconnection detected";
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return plugin.getConfigManager().isReconnectCheckEnabled();
+    }
+
+    @Override
+    public boolean shouldBlock(ConnectionContext context) {
+        PlayerProfile profile = context.getProfile();
+        long currentTime = context.getTimestamp();
 
         // Check for rapid reconnections
         if (profile.hasRapidReconnections()) {
@@ -21,8 +39,40 @@ public class ReconnectCheck {
             return true;
         }
 
+        // Rapid reconnections spread over a subnet block the subnet, not the address that connects next
+        if (plugin.getConfigManager().isSubnetLimitsActive()) {
+            long high = IPAddressKey.high(context.getAddress());
+            long low = IPAddressKey.low(context.getAddress());
+            SubnetAggregates subnets = plugin.getBotProtectionManager().getSubnets();
+            if (subnets.findBlocked(high, low, currentTime) != null) {
+                context.markSubnetBlock();
+                return true;
+            }
+
+            long window = plugin.getConfigManager().getSubnetReconnectWindow();
+            SubnetAggregates.Level level = subnets.findReconnectsExceeded(high, low, window,
+                plugin.getConfigManager().getSubnetReconnectAllowance(), currentTime);
+            if (level != null) {
+                long duration = plugin.getConfigManager().getTempBlacklistDuration() * 1000L;
+                subnets.blockPrefix(level, high, low, currentTime + duration);
+                String message = "Blocked subnet " + SubnetAggregates.describe(level, high, low) + " - " +
+                    subnets.getReconnects(level, high, low, window, currentTime) + " rapid reconnections";
+                plugin.getSecurityLog().record("SUBNET-BLOCK", message);
+                if (plugin.getConfigManager().isDebugMode()) {
+                    plugin.getLogger().info("§c" + message);
+                }
+                context.markSubnetBlock();
+                return true;
+            }
+        }
+
         // Check minimum time between connections
-        long timeSinceLastConnection = currentTime - profile.getLastConnection();
+        long previousConnection = context.getPreviousConnection();
+        if (previousConnection <= 0) {
+            return false;
+        }
+
+        long timeSinceLastConnection = currentTime - previousConnection;
         long minReconnectTime = plugin.getConfigManager().getMinReconnectTime();
 
         if (timeSinceLastConnection < minReconnectTime) {
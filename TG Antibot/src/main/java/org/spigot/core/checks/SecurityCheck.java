@@ -0,0 +1,23 @@
+package org.spigot.core.checks;
+
+import org.spigot.core.data.ConnectionContext;
+
+/**
+ * A single pre-login check run by the {@link CheckPipeline}.
+ */
+public interface SecurityCheck {
+
+    /**
+     * Short identifier used in statistics and debug output.
+     */
+    String getName();
+
+    /**
+     * Reason recorded when this check blocks a connection.
+     */
+    String getBlockReason();
+
+    boolean isEnabled();
+
+    boolean shouldBlock(ConnectionContext context);
+}
@@ -2,25 +2,30 @@ package org.spigot.core.data;
 
 import org.spigot.enums.AttackType;
 
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Written by the mode detector thread only, read from anywhere. The blocked
+ * count is the exception: every connection thread adds to it.
+ */
 public class AttackData {
-    private AttackType currentAttackType;
-    private long attackStartTime;
-    private long attackEndTime;
-    private long peakIntensity;
-    private long totalBlocked;
-    private boolean isActive;
+    private volatile AttackType currentAttackType;
+    private volatile long attackStartTime;
+    private volatile long attackEndTime;
+    private volatile long peakIntensity;
+    private final AtomicLong totalBlocked = new AtomicLong();
+    private volatile boolean isActive;
 
     public AttackData() {
         this.isActive = false;
-        this.totalBlocked = 0;
     }
 
     public void startAttack(AttackType type, long intensity) {
         this.currentAttackType = type;
         this.attackStartTime = System.currentTimeMillis();
         this.peakIntensity = intensity;
+        this.totalBlocked.set(0);
         this.isActive = true;
-        this.totalBlocked = 0;
     }
 
     public void updateIntensity(long intensity) {
@@ -29,8 +34,13 @@ public class AttackData {
         }
     }
 
+    /**
+     * Count a connection refused while the attack is active.
+     */
     public void incrementBlocked() {
-        totalBlocked++;
+        if (isActive) {
+            totalBlocked.incrementAndGet();
+        }
     }
 
     public void endAttack() {
@@ -51,6 +61,6 @@ public class AttackData {
     public long getAttackStartTime() { return attackStartTime; }
     public long getAttackEndTime() { return attackEndTime; }
     public long getPeakIntensity() { return peakIntensity; }
-    public long getTotalBlocked() { return totalBlocked; }
+    public long getTotalBlocked() { return totalBlocked.get(); }
     public boolean isActive() { return isActive; }
 }
\ No newline at end of file
@@ -0,0 +1,59 @@
+package org.spigot.core.data;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Predicate;
+
+/**
+ * Fixed-size ring of the most recent attacks, kept in arrival order so the
+ * newest-first queries need no sorting.
+ */
+public class AttackHistory {
+
+    private final AttackLog[] entries;
+    private int head; // Next slot to write
+    private int size;
+
+    public AttackHistory(int capacity) {
+        if (capacity < 1) throw new IllegalArgumentException("capacity must be positive");
+        this.entries = new AttackLog[capacity];
+    }
+
+    public synchronized void add(AttackLog log) {
+        entries[head] = log;
+        head = (head + 1) % entries.length;
+        if (size < entries.length) {
+            size++;
+        }
+    }
+
+    /**
+     * Up to {@code limit} entries, newest first.
+     */
+    public List<AttackLog> getRecent(int limit) {
+        return getRecent(limit, null);
+    }
+
+    public synchronized List<AttackLog> getRecent(int limit, Predicate<AttackLog> filter) {
+        List<AttackLog> result = new ArrayList<>(Math.max(0, Math.min(limit, size)));
+        for (int i = 1; i <= size && result.size() < limit; i++) {
+            AttackLog log = entries[(head - i + entries.length) % entries.length];
+            if (filter == null || filter.test(log)) {
+                result.add(log);
+            }
+        }
+        return result;
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    public synchronized void clear() {
+        for (int i = 0; i < entries.length; i++) {
+            entries[i] = null;
+        }
+        head = 0;
+        size = 0;
+    }
+}
@@ -0,0 +1,342 @@
+package org.spigot.core.data;
+
+import org.spigot.enums.AttackType;
+import org.spigot.utils.IPAddressKey;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+import java.util.logging.Logger;
+
+/**
+ * Append-only journal of attacks on disk, kept across restarts.
+ *
+ * Records have a fixed size and are written through a memory-mapped segment
+ * file, so appending is a few buffer writes under a short lock and never a
+ * system call. A record's commit marker is written last; the first slot
+ * without one is the end of a segment. Full segments are closed and a new one
+ * is started, named after its first timestamp. Segments older than the
+ * retention, or beyond the size limit, are deleted oldest first.
+ *
+ * Queries walk the segments covering the requested time range newest first.
+ * Each sealed segment is mapped read-only once, on first use, and the mapping
+ * is kept until retention deletes the file, so history is read from the page
+ * cache instead of being held on the heap or re-mapped per query.
+ */
+public class AttackJournal {
+
+    // Constants
+    private static final int MAGIC = 0x54474A31; // "TGJ1"
+    private static final int HEADER_SIZE = 16;
+    private static final int RECORD_SIZE = 40;
+    private static final int COMMITTED = 0x434F4D54;
+    private static final int SEGMENT_RECORDS = 1 << 18;
+    private static final long SEGMENT_SIZE = HEADER_SIZE + (long) SEGMENT_RECORDS * RECORD_SIZE;
+    private static final String PREFIX = "attacks-";
+    private static final String SUFFIX = ".journal";
+    private static final short FLAG_ADDRESS = 1;
+
+    private final File directory;
+    private final Logger logger;
+    private volatile long retentionMillis = TimeUnit.DAYS.toMillis(7);
+    private volatile long maxBytes = 256L * 1024 * 1024;
+
+    // Read-only mappings of sealed segments; their contents never change
+    private final Map<File, MappedByteBuffer> sealed = new ConcurrentHashMap<>();
+
+    // Segment being written, guarded by this
+    private MappedByteBuffer active;
+    private File activeFile;
+    private int activeCount;
+    private boolean closed;
+
+    public AttackJournal(File directory, Logger logger) {
+        this.directory = directory;
+        this.logger = logger;
+    }
+
+    public void setLimits(long retentionMillis, long maxBytes) {
+        this.retentionMillis = retentionMillis;
+        this.maxBytes = Math.max(SEGMENT_SIZE, maxBytes);
+    }
+
+    /**
+     * Resume the newest segment if it has room. Blocking.
+     */
+    public synchronized void open() throws IOException {
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Cannot create " + directory.getPath());
+        }
+        closed = false;
+        File[] segments = listSegments();
+        if (segments.length == 0) return;
+
+        File newest = segments[segments.length - 1];
+        if (newest.length() != SEGMENT_SIZE) return;
+        MappedByteBuffer buffer = map(newest, FileChannel.MapMode.READ_WRITE);
+        if (buffer.getInt(0) != MAGIC) {
+            logger.warning("[Journal] Ignoring damaged segment " + newest.getName());
+            return;
+        }
+        int count = countRecords(buffer);
+        if (count < SEGMENT_RECORDS) {
+            // Writable again, so a mapping taken while it was sealed is stale
+            sealed.remove(newest);
+            active = buffer;
+            activeFile = newest;
+            activeCount = count;
+        }
+        logger.info("[Journal] Opened " + segments.length + " segments in " + directory.getName());
+    }
+
+    /**
+     * @param key the parsed source address, or null if it is not an IP
+     */
+    public synchronized void append(AttackLog log, IPAddressKey key) {
+        if (closed) return;
+        try {
+            if (active == null || activeCount == SEGMENT_RECORDS) {
+                roll(log.getTimestamp());
+            }
+        } catch (IOException e) {
+            // Keep running without the journal rather than failing the connection
+            logger.warning("[Journal] Failed to start a new segment, journal disabled: " + e.getMessage());
+            closed = true;
+            return;
+        }
+
+        int offset = HEADER_SIZE + activeCount * RECORD_SIZE;
+        active.putLong(offset, log.getTimestamp());
+        active.putLong(offset + 8, key == null ? 0L : key.getHigh());
+        active.putLong(offset + 16, key == null ? 0L : key.getLow());
+        active.putLong(offset + 24, log.getIntensity());
+        active.putShort(offset + 32, (short) log.getType().getCode());
+        active.putShort(offset + 34, key == null ? 0 : FLAG_ADDRESS);
+        active.putInt(offset + 36, COMMITTED);
+        activeCount++;
+    }
+
+    /**
+     * Attacks with {@code from <= timestamp <= to}, newest first.
+     */
+    public List<AttackLog> query(long from, long to, int limit, Predicate<AttackLog> filter) {
+        List<AttackLog> result = new ArrayList<>();
+        File[] segments = listSegments();
+        for (int s = segments.length - 1; s >= 0 && result.size() < limit; s--) {
+            if (startOf(segments[s]) > to) continue;
+
+            ByteBuffer buffer = read(segments[s]);
+            if (buffer == null) continue;
+            for (int i = countRecords(buffer) - 1; i >= 0 && result.size() < limit; i--) {
+                int offset = HEADER_SIZE + i * RECORD_SIZE;
+                long timestamp = buffer.getLong(offset);
+                if (timestamp > to) continue;
+                if (timestamp < from) return result;
+                AttackLog log = decode(buffer, offset);
+                if (filter == null || filter.test(log)) {
+                    result.add(log);
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Attacks per type with {@code from <= timestamp <= to}.
+     */
+    public Map<AttackType, Long> countByType(long from, long to) {
+        AttackType[] types = AttackType.values();
+        long[] counts = new long[types.length];
+        File[] segments = listSegments();
+        for (int s = segments.length - 1; s >= 0; s--) {
+            if (startOf(segments[s]) > to) continue;
+
+            ByteBuffer buffer = read(segments[s]);
+            if (buffer == null) continue;
+            boolean older = false;
+            for (int i = countRecords(buffer) - 1; i >= 0; i--) {
+                int offset = HEADER_SIZE + i * RECORD_SIZE;
+                long timestamp = buffer.getLong(offset);
+                if (timestamp > to) continue;
+                if (timestamp < from) {
+                    older = true;
+                    break;
+                }
+                counts[AttackType.fromCode(buffer.getShort(offset + 32)).ordinal()]++;
+            }
+            if (older) break;
+        }
+
+        Map<AttackType, Long> result = new EnumMap<>(AttackType.class);
+        for (int i = 0; i < types.length; i++) {
+            if (counts[i] > 0) result.put(types[i], counts[i]);
+        }
+        return result;
+    }
+
+    /**
+     * Write mapped changes to disk and drop expired segments. Runs off the
+     * append path: listing and deleting files never holds the journal lock.
+     */
+    public void maintain() {
+        MappedByteBuffer current;
+        synchronized (this) {
+            current = active;
+        }
+        // Flushing does not need the lock; appends continue meanwhile
+        if (current != null) current.force();
+        applyRetention();
+    }
+
+    public synchronized void close() {
+        if (active != null) active.force();
+        active = null;
+        activeFile = null;
+        closed = true;
+        sealed.clear();
+    }
+
+    public int getSegmentCount() {
+        return listSegments().length;
+    }
+
+    public long getSizeBytes() {
+        long total = 0;
+        for (File segment : listSegments()) total += segment.length();
+        return total;
+    }
+
+    // ================================
+    // SEGMENTS
+    // ================================
+
+    private void roll(long timestamp) throws IOException {
+        if (active != null) active.force();
+
+        File file = new File(directory, String.format("%s%013d%s", PREFIX, timestamp, SUFFIX));
+        // Two segments starting in the same millisecond; the later one sorts after
+        while (file.exists()) {
+            file = new File(directory, String.format("%s%013d%s", PREFIX, ++timestamp, SUFFIX));
+        }
+        MappedByteBuffer buffer = map(file, FileChannel.MapMode.READ_WRITE);
+        buffer.putInt(0, MAGIC);
+        buffer.putInt(4, RECORD_SIZE);
+        buffer.putLong(8, timestamp);
+
+        active = buffer;
+        activeFile = file;
+        activeCount = 0;
+    }
+
+    private void applyRetention() {
+        File[] segments = listSegments();
+        long total = 0;
+        for (File segment : segments) total += segment.length();
+
+        long cutoff = System.currentTimeMillis() - retentionMillis;
+        for (int i = 0; i < segments.length - 1; i++) {
+            // Everything in a segment is older than the start of the next one
+            boolean expired = retentionMillis > 0 && startOf(segments[i + 1]) < cutoff;
+            if (!expired && total <= maxBytes) break;
+
+            long length = segments[i].length();
+            // Drop the cached mapping first; a mapped file cannot be deleted on some platforms
+            sealed.remove(segments[i]);
+            if (segments[i].delete()) {
+                sealed.remove(segments[i]);
+                total -= length;
+            } else {
+                // Still mapped by a running query on some platforms; retried next time
+                logger.fine("[Journal] Could not delete " + segments[i].getName());
+            }
+        }
+    }
+
+    private File[] listSegments() {
+        File[] files = directory.listFiles((dir, name) -> name.startsWith(PREFIX) && name.endsWith(SUFFIX));
+        if (files == null) return new File[0];
+        // Fixed-width timestamps sort chronologically by name
+        Arrays.sort(files);
+        return files;
+    }
+
+    private static long startOf(File segment) {
+        String name = segment.getName();
+        try {
+            return Long.parseLong(name.substring(PREFIX.length(), name.length() - SUFFIX.length()));
+        } catch (NumberFormatException e) {
+            return Long.MAX_VALUE;
+        }
+    }
+
+    /**
+     * A read-only view of a segment, or of the part of the active one written so far.
+     */
+    private ByteBuffer read(File segment) {
+        synchronized (this) {
+            if (segment.equals(activeFile) && active != null) {
+                ByteBuffer view = active.duplicate();
+                view.limit(HEADER_SIZE + activeCount * RECORD_SIZE);
+                return view;
+            }
+        }
+        MappedByteBuffer cached = sealed.get(segment);
+        if (cached != null) return cached;
+        try {
+            MappedByteBuffer buffer = map(segment, FileChannel.MapMode.READ_ONLY);
+            if (buffer.capacity() < HEADER_SIZE || buffer.getInt(0) != MAGIC) return null;
+            // Queries only use absolute reads, so one buffer serves them all
+            MappedByteBuffer previous = sealed.putIfAbsent(segment, buffer);
+            return previous != null ? previous : buffer;
+        } catch (IOException e) {
+            logger.warning("[Journal] Failed to read " + segment.getName() + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    private static MappedByteBuffer map(File file, FileChannel.MapMode mode) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file, mode == FileChannel.MapMode.READ_ONLY ? "r" : "rw");
+             FileChannel channel = raf.getChannel()) {
+            long size = mode == FileChannel.MapMode.READ_ONLY ? channel.size() : SEGMENT_SIZE;
+            // The mapping stays valid after the channel is closed
+            return channel.map(mode, 0, size);
+        }
+    }
+
+    /**
+     * Committed records form a prefix of the segment, so the end is found by binary search.
+     */
+    private static int countRecords(ByteBuffer buffer) {
+        int capacity = (buffer.limit() - HEADER_SIZE) / RECORD_SIZE;
+        int low = 0;
+        int high = capacity;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (buffer.getInt(HEADER_SIZE + mid * RECORD_SIZE + 36) == COMMITTED) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private static AttackLog decode(ByteBuffer buffer, int offset) {
+        AttackType type = AttackType.fromCode(buffer.getShort(offset + 32));
+        String source = (buffer.getShort(offset + 34) & FLAG_ADDRESS) != 0
+            ? IPAddressKey.toString(buffer.getLong(offset + 8), buffer.getLong(offset + 16))
+            : "unknown";
+        return new AttackLog(type, source, buffer.getLong(offset + 24), buffer.getLong(offset));
+    }
+}
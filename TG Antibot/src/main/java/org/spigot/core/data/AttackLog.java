@@ -10,19 +10,18 @@ public class AttackLog {
     private final String sourceIP;
     private final long intensity;
     private final long timestamp;
-    private final String formattedDate;
+    private String formattedDate;
 
     public AttackLog(AttackType type, String sourceIP, long intensity, long timestamp) {
         this.type = type;
         this.sourceIP = sourceIP;
         this.intensity = intensity;
         this.timestamp = timestamp;
-        this.formattedDate = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss").format(new Date(timestamp));
     }
 
     public String getDetailedInfo() {
         return String.format("§7[%s] §c%s §7from §e%s §7(Intensity: §c%d§7)", 
-            formattedDate, type.getDisplayName(), sourceIP, intensity);
+            getFormattedDate(), type.getDisplayName(), sourceIP, intensity);
     }
 
     // Getters
@@ -30,5 +29,14 @@ public class AttackLog {
     public String getSourceIP() { return sourceIP; }
     public long getIntensity() { return intensity; }
     public long getTimestamp() { return timestamp; }
-    public String getFormattedDate() { return formattedDate; }
+
+    public String getFormattedDate() {
+        // Formatted on first display rather than on the pre-login thread that records it
+        String formatted = formattedDate;
+        if (formatted == null) {
+            formatted = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss").format(new Date(timestamp));
+            formattedDate = formatted;
+        }
+        return formatted;
+    }
 }
\ No newline at end of file
@@ -0,0 +1,111 @@
+package org.spigot.core.data;
+
+import org.spigot.enums.AttackType;
+
+import java.util.Arrays;
+
+/**
+ * Per-second attack counts for every {@link AttackType} over the last hour.
+ *
+ * Each second has one bucket per type in a ring of an hour's worth of slots.
+ * Running totals for the minute and hour windows are updated as seconds roll
+ * out of them, so recording an attack and every windowed query is O(1), with
+ * the roll-over cost amortized over the seconds that passed.
+ */
+public class AttackStatistics {
+
+    // Constants
+    public static final int MINUTE_SECONDS = 60;
+    public static final int HOUR_SECONDS = 3600;
+
+    private static final AttackType[] TYPES = AttackType.values();
+    // Extra index holding the sum over all types
+    private static final int TOTAL = TYPES.length;
+
+    private final long[][] buckets;
+    private final long[] minuteTotals;
+    private final long[] hourTotals;
+    private long headSecond;
+
+    public AttackStatistics() {
+        this.buckets = new long[TOTAL + 1][HOUR_SECONDS];
+        this.minuteTotals = new long[TOTAL + 1];
+        this.hourTotals = new long[TOTAL + 1];
+        this.headSecond = System.currentTimeMillis() / 1000;
+    }
+
+    /**
+     * @return attacks of any type in the last minute, including this one
+     */
+    public synchronized long record(AttackType type, long timestamp) {
+        long second = timestamp / 1000;
+        advance(second);
+        // Late timestamps from a slow thread count towards the current second
+        int slot = (int) (Math.max(second, headSecond) % HOUR_SECONDS);
+
+        int index = type.ordinal();
+        buckets[index][slot]++;
+        buckets[TOTAL][slot]++;
+        minuteTotals[index]++;
+        minuteTotals[TOTAL]++;
+        hourTotals[index]++;
+        hourTotals[TOTAL]++;
+        return minuteTotals[TOTAL];
+    }
+
+    public synchronized long getLastMinute(AttackType type) {
+        advance(System.currentTimeMillis() / 1000);
+        return minuteTotals[type.ordinal()];
+    }
+
+    public synchronized long getLastHour(AttackType type) {
+        advance(System.currentTimeMillis() / 1000);
+        return hourTotals[type.ordinal()];
+    }
+
+    public synchronized long getTotalLastMinute() {
+        advance(System.currentTimeMillis() / 1000);
+        return minuteTotals[TOTAL];
+    }
+
+    public synchronized long getTotalLastHour() {
+        advance(System.currentTimeMillis() / 1000);
+        return hourTotals[TOTAL];
+    }
+
+    public synchronized void reset() {
+        clear(System.currentTimeMillis() / 1000);
+    }
+
+    private void advance(long second) {
+        if (second <= headSecond) return;
+
+        if (second - headSecond >= HOUR_SECONDS) {
+            // Everything has rolled out of both windows
+            clear(second);
+            return;
+        }
+
+        for (long s = headSecond + 1; s <= second; s++) {
+            // Second s - 60 leaves the minute window, its bucket still holds data
+            int minuteSlot = (int) ((s - MINUTE_SECONDS) % HOUR_SECONDS);
+            // Slot s currently holds second s - 3600, which leaves the hour window
+            int hourSlot = (int) (s % HOUR_SECONDS);
+            for (int i = 0; i <= TOTAL; i++) {
+                minuteTotals[i] -= buckets[i][minuteSlot];
+                hourTotals[i] -= buckets[i][hourSlot];
+                buckets[i][hourSlot] = 0;
+            }
+        }
+        headSecond = second;
+    }
+
+    private void clear(long second) {
+        for (long[] typeBuckets : buckets) {
+            Arrays.fill(typeBuckets, 0);
+        }
+        Arrays.fill(minuteTotals, 0);
+        Arrays.fill(hourTotals, 0);
+        headSecond = second;
+    }
+}
@@ -0,0 +1,58 @@
+package org.spigot.core.data;
+
+import java.net.InetAddress;
+import java.util.UUID;
+
+public class ConnectionContext {
+    private final UUID uuid;
+    private final InetAddress address;
+    private String ip;
+    private final String name;
+    private final PlayerProfile profile;
+    private final long timestamp;
+    private final long previousConnection;
+    private final int nameClusterSize;
+    private boolean subnetBlock;
+
+    public ConnectionContext(UUID uuid, InetAddress address, String name, PlayerProfile profile,
+                             long timestamp, long previousConnection, int nameClusterSize) {
+        this.uuid = uuid;
+        this.address = address;
+        this.name = name;
+        this.profile = profile;
+        this.timestamp = timestamp;
+        this.previousConnection = previousConnection;
+        this.nameClusterSize = nameClusterSize;
+    }
+
+    // Getters
+    public UUID getUuid() { return uuid; }
+    public InetAddress getAddress() { return address; }
+    public String getIp() {
+        if (ip == null) {
+            ip = address.getHostAddress();
+        }
+        return ip;
+    }
+    public String getName() { return name; }
+    public PlayerProfile getProfile() { return profile; }
+    public long getTimestamp() { return timestamp; }
+
+    /**
+     * Timestamp of the connection before this one, or 0 if this is the first.
+     */
+    public long getPreviousConnection() { return previousConnection; }
+
+    /**
+     * Recent joins server-wide with a similar nickname, this one included, or 0
+     * if name clusters are not tracked.
+     */
+    public int getNameClusterSize() { return nameClusterSize; }
+
+    /**
+     * The connection is refused for what its subnet did as a whole, so the
+     * address itself is not temporarily blacklisted.
+     */
+    public void markSubnetBlock() { subnetBlock = true; }
+    public boolean isSubnetBlock() { return subnetBlock; }
+}
@@ -0,0 +1,29 @@
+package org.spigot.core.data;
+
+import org.spigot.enums.AttackType;
+import org.spigot.enums.ProtectionMode;
+
+/**
+ * Immutable snapshot of the protection mode, replaced as a whole on every change.
+ */
+public final class ModeState {
+
+    private final ProtectionMode mode;
+    private final long since;
+    private final AttackType attackType;
+
+    public ModeState(ProtectionMode mode, long since, AttackType attackType) {
+        this.mode = mode;
+        this.since = since;
+        this.attackType = attackType;
+    }
+
+    // Getters
+    public ProtectionMode getMode() { return mode; }
+    public long getSince() { return since; }
+
+    /**
+     * @return what caused the mode, or null in NORMAL mode
+     */
+    public AttackType getAttackType() { return attackType; }
+}
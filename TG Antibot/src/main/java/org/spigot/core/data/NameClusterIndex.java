@@ -0,0 +1,281 @@
+package org.spigot.core.data;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Server-wide count of recent joins per nickname cluster, across all IPs.
+ *
+ * Each name is reduced to a skeleton (lower case, digit runs collapsed, other
+ * symbols dropped), so Steve_0001 ... Steve_5000 all count as "steve_#". Near
+ * variants are grouped with MinHash LSH: twelve min-hashes over the skeleton's
+ * trigrams are split into four bands of three, and two names sharing any band
+ * fall into the same bucket. The exact skeleton and every band are counted
+ * exactly, in a primitive hash table per time generation, so unrelated names
+ * never add up however fast they arrive and a block never rests on an
+ * estimate. Recording and querying touch a handful of slots and never look at
+ * other names. A generation holds at most {@link #MAX_KEYS} keys; keys beyond
+ * that are not counted, so under an extreme flood counts err low, never high.
+ */
+public class NameClusterIndex {
+
+    // Constants
+    private static final int GENERATIONS = 6;
+    private static final int INITIAL_SLOTS = 1024;
+    // About 13k joins per generation; full tables for all generations take about 9 MB
+    private static final int MAX_KEYS = 1 << 16;
+    private static final int BANDS = 4;
+    private static final int BAND_ROWS = 3;
+    private static final int KEYS = BANDS + 1;
+    private static final long[] SEEDS = {
+        0x9E3779B97F4A7C15L, 0xC2B2AE3D27D4EB4FL, 0x165667B19E3779F9L, 0xD6E8FEB86659FD93L,
+        0xA0761D6478BD642FL, 0xE7037ED1A0B428DBL, 0x8EBC6AF09C88C6E3L, 0x589965CC75374CC3L,
+        0x1D8E4E27C47D124FL, 0xBF58476D1CE4E5B9L, 0x94D049BB133111EBL, 0x2545F4914F6CDD1DL
+    };
+
+    private final long generationNanos;
+    private final long origin;
+    private final Generation[] generations;
+
+    /**
+     * @param window how long a join keeps counting, rounded to a sixth of itself
+     */
+    public NameClusterIndex(long window, TimeUnit unit) {
+        this.generationNanos = Math.max(1, unit.toNanos(window) / GENERATIONS);
+        this.origin = System.nanoTime();
+        this.generations = new Generation[GENERATIONS];
+        for (int i = 0; i < GENERATIONS; i++) {
+            generations[i] = new Generation();
+        }
+    }
+
+    /**
+     * Count a join and return the size of its cluster in the window, this join included.
+     */
+    public int record(String name) {
+        long[] keys = keys(name);
+        long epoch = currentEpoch();
+        Generation current = generations[(int) (epoch % GENERATIONS)];
+        synchronized (current) {
+            current.advance(epoch);
+            for (long key : keys) {
+                current.increment(key);
+            }
+        }
+
+        int size = clusterSize(keys, epoch);
+        synchronized (current) {
+            if (current.epoch == epoch && current.largest < size) current.largest = size;
+        }
+        return size;
+    }
+
+    /**
+     * Size of the cluster the name would join, without counting it.
+     */
+    public int getClusterSize(String name) {
+        return clusterSize(keys(name), currentEpoch());
+    }
+
+    /**
+     * Largest cluster size reported by {@link #record} within the window.
+     */
+    public int getLargestCluster() {
+        long epoch = currentEpoch();
+        int result = 0;
+        for (Generation generation : generations) {
+            synchronized (generation) {
+                if (isLive(generation.epoch, epoch)) {
+                    result = Math.max(result, generation.largest);
+                }
+            }
+        }
+        return result;
+    }
+
+    public void clear() {
+        for (Generation generation : generations) {
+            synchronized (generation) {
+                generation.epoch = 0;
+            }
+        }
+    }
+
+    /**
+     * Lower case letters, '#' for each run of digits, underscores kept, anything else dropped.
+     */
+    public static String skeleton(String name) {
+        StringBuilder builder = new StringBuilder(name.length());
+        boolean inDigits = false;
+        for (int i = 0; i < name.length(); i++) {
+            char c = name.charAt(i);
+            if (Character.isDigit(c)) {
+                if (!inDigits) builder.append('#');
+                inDigits = true;
+                continue;
+            }
+            inDigits = false;
+            if (Character.isLetter(c) || c == '_') {
+                builder.append(Character.toLowerCase(c));
+            }
+        }
+        return builder.toString();
+    }
+
+    // ================================
+    // HASHING
+    // ================================
+
+    /**
+     * The exact skeleton followed by the LSH band keys.
+     */
+    private static long[] keys(String name) {
+        String skeleton = skeleton(name);
+        long[] keys = new long[KEYS];
+
+        long exact = 0x7F4A7C15L;
+        for (int i = 0; i < skeleton.length(); i++) {
+            exact = exact * 31 + skeleton.charAt(i);
+        }
+        keys[0] = mix(exact);
+
+        // Trigrams over the skeleton padded with start and end markers
+        long[] mins = new long[BANDS * BAND_ROWS];
+        for (int i = 0; i < mins.length; i++) mins[i] = Long.MAX_VALUE;
+        int length = skeleton.length() + 2;
+        for (int i = 0; i + 3 <= Math.max(3, length); i++) {
+            long gram = 0;
+            for (int j = i; j < i + 3; j++) {
+                gram = (gram << 16) | charAt(skeleton, j - 1);
+            }
+            for (int h = 0; h < mins.length; h++) {
+                long value = mix(gram * SEEDS[h] + h);
+                if (value < mins[h]) mins[h] = value;
+            }
+        }
+        for (int band = 0; band < BANDS; band++) {
+            long key = band + 1;
+            for (int row = 0; row < BAND_ROWS; row++) {
+                key = mix(key * 0x9E3779B97F4A7C15L + mins[band * BAND_ROWS + row]);
+            }
+            keys[band + 1] = key;
+        }
+        return keys;
+    }
+
+    private static char charAt(String skeleton, int index) {
+        // '^' and '$' mark the ends, so prefixes and suffixes form their own grams
+        if (index < 0) return '^';
+        return index < skeleton.length() ? skeleton.charAt(index) : '$';
+    }
+
+    private static long mix(long h) {
+        h ^= h >>> 33;
+        h *= 0xFF51AFD7ED558CCDL;
+        h ^= h >>> 33;
+        h *= 0xC4CEB9FE1A85EC53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    // ================================
+    // GENERATIONS
+    // ================================
+
+    /**
+     * Largest count among the keys, summed over the live generations.
+     */
+    private int clusterSize(long[] keys, long epoch) {
+        int[] totals = new int[keys.length];
+        for (Generation generation : generations) {
+            synchronized (generation) {
+                if (!isLive(generation.epoch, epoch)) continue;
+                for (int i = 0; i < keys.length; i++) {
+                    totals[i] += generation.count(keys[i]);
+                }
+            }
+        }
+        int size = 0;
+        for (int total : totals) {
+            size = Math.max(size, total);
+        }
+        return size;
+    }
+
+    private static boolean isLive(long stamp, long epoch) {
+        return stamp > epoch - GENERATIONS && stamp <= epoch;
+    }
+
+    private long currentEpoch() {
+        // Offset by one so a cleared slot never counts as live
+        return (System.nanoTime() - origin) / generationNanos + 1;
+    }
+
+    /**
+     * Exact key counts of one generation, in an open-addressing table that
+     * grows up to {@link #MAX_KEYS} and is kept for the next use of the slot.
+     * Guarded by itself.
+     */
+    private static final class Generation {
+        long epoch;
+        int largest;
+        private long[] keys = new long[INITIAL_SLOTS];
+        // 0 marks a free slot
+        private int[] counts = new int[INITIAL_SLOTS];
+        private int size;
+
+        /**
+         * Make sure the slot holds the given generation, clearing it if it held an old one.
+         */
+        void advance(long current) {
+            if (epoch >= current) return;
+            epoch = current;
+            largest = 0;
+            if (size > 0) {
+                Arrays.fill(counts, 0);
+                size = 0;
+            }
+        }
+
+        void increment(long key) {
+            int mask = keys.length - 1;
+            int i = (int) key & mask;
+            while (counts[i] != 0) {
+                if (keys[i] == key) {
+                    counts[i]++;
+                    return;
+                }
+                i = (i + 1) & mask;
+            }
+            if (size >= MAX_KEYS) return;
+            keys[i] = key;
+            counts[i] = 1;
+            if (++size > keys.length / 2) grow();
+        }
+
+        int count(long key) {
+            int mask = keys.length - 1;
+            for (int i = (int) key & mask; counts[i] != 0; i = (i + 1) & mask) {
+                if (keys[i] == key) return counts[i];
+            }
+            return 0;
+        }
+
+        private void grow() {
+            long[] oldKeys = keys;
+            int[] oldCounts = counts;
+            keys = new long[oldKeys.length * 2];
+            counts = new int[oldCounts.length * 2];
+            int mask = keys.length - 1;
+            for (int j = 0; j < oldKeys.length; j++) {
+                if (oldCounts[j] == 0) continue;
+                int i = (int) oldKeys[j] & mask;
+                while (counts[i] != 0) {
+                    i = (i + 1) & mask;
+                }
+                keys[i] = oldKeys[j];
+                counts[i] = oldCounts[j];
+            }
+        }
+    }
+}
@@ -0,0 +1,134 @@
+package org.spigot.core.data;
+
+import org.spigot.utils.AhoCorasickMatcher;
+
+/**
+ * Everything the nickname rules need, collected in one pass over the name.
+ *
+ * Besides the counters, the scan records the name's shape as runs of ASCII
+ * letters, ASCII digits, underscores and other characters (the first three
+ * runs are kept, "Player123" is LETTERS(6) DIGITS(3)), and steps up to two
+ * {@link AhoCorasickMatcher}s along the way. Instances are reused per thread
+ * through {@link #scan}, so a check does not allocate.
+ */
+public final class NicknameFeatures {
+
+    // Constants
+    public static final int LETTERS = 0;
+    public static final int DIGITS = 1;
+    public static final int UNDERSCORE = 2;
+    public static final int OTHER = 3;
+    private static final int MAX_RUNS = 3;
+
+    private int length;
+    private boolean asciiOnly;
+    private boolean wordCharsOnly;
+    private int specialCount;
+    private int longestRepeat;
+    private int longestDigitRun;
+    private int runCount;
+    private final int[] runClasses = new int[MAX_RUNS];
+    private final int[] runLengths = new int[MAX_RUNS];
+    private String keywordMatch;
+    private String forbiddenMatch;
+
+    /**
+     * Scan a name, replacing the previous results.
+     *
+     * @param keywords matcher for suspicious words, only reported if the name is all word characters
+     * @param forbidden matcher for forbidden fragments, may be null
+     */
+    public NicknameFeatures scan(String name, AhoCorasickMatcher keywords, AhoCorasickMatcher forbidden) {
+        length = name.length();
+        asciiOnly = true;
+        wordCharsOnly = true;
+        specialCount = 0;
+        longestRepeat = 0;
+        longestDigitRun = 0;
+        runCount = 0;
+        keywordMatch = null;
+        forbiddenMatch = null;
+
+        int keywordState = AhoCorasickMatcher.INITIAL_STATE;
+        int forbiddenState = AhoCorasickMatcher.INITIAL_STATE;
+        int repeat = 0;
+        int digitRun = 0;
+        int lastClass = -1;
+        char last = 0;
+
+        for (int i = 0; i < length; i++) {
+            char c = name.charAt(i);
+
+            if (c >= 128) asciiOnly = false;
+            if (!Character.isLetterOrDigit(c) && c != '_') specialCount++;
+
+            repeat = i > 0 && c == last ? repeat + 1 : 1;
+            if (repeat > longestRepeat) longestRepeat = repeat;
+            last = c;
+
+            int charClass = classOf(c);
+            if (charClass == OTHER) wordCharsOnly = false;
+            digitRun = charClass == DIGITS ? digitRun + 1 : 0;
+            if (digitRun > longestDigitRun) longestDigitRun = digitRun;
+
+            if (charClass != lastClass) {
+                if (runCount < MAX_RUNS) {
+                    runClasses[runCount] = charClass;
+                    runLengths[runCount] = 0;
+                }
+                runCount++;
+                lastClass = charClass;
+            }
+            if (runCount <= MAX_RUNS) runLengths[runCount - 1]++;
+
+            if (keywordMatch == null) {
+                keywordState = keywords.step(keywordState, c);
+                keywordMatch = keywords.matchAt(keywordState);
+            }
+            if (forbidden != null && forbiddenMatch == null) {
+                forbiddenState = forbidden.step(forbiddenState, c);
+                forbiddenMatch = forbidden.matchAt(forbiddenState);
+            }
+        }
+        return this;
+    }
+
+    private static int classOf(char c) {
+        if ((c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z')) return LETTERS;
+        if (c >= '0' && c <= '9') return DIGITS;
+        return c == '_' ? UNDERSCORE : OTHER;
+    }
+
+    /**
+     * @return true if the name consists of exactly these two runs
+     */
+    public boolean hasShape(int first, int second) {
+        return runCount == 2 && runClasses[0] == first && runClasses[1] == second;
+    }
+
+    /**
+     * @return true if the name consists of exactly these three runs
+     */
+    public boolean hasShape(int first, int second, int third) {
+        return runCount == 3 && runClasses[0] == first && runClasses[1] == second && runClasses[2] == third;
+    }
+
+    /**
+     * @return length of the given run (0-2), or 0 if the name has fewer runs
+     */
+    public int getRunLength(int run) {
+        return run < Math.min(runCount, MAX_RUNS) ? runLengths[run] : 0;
+    }
+
+    // Getters
+    public int getLength() { return length; }
+    public boolean isAsciiOnly() { return asciiOnly; }
+    public boolean isWordCharsOnly() { return wordCharsOnly; }
+    public int getSpecialCount() { return specialCount; }
+    public double getSpecialRatio() { return length == 0 ? 0.0 : (double) specialCount / length; }
+    public int getLongestRepeat() { return longestRepeat; }
+    public int getLongestDigitRun() { return longestDigitRun; }
+    public int getRunCount() { return runCount; }
+    public String getKeywordMatch() { return wordCharsOnly ? keywordMatch : null; }
+    public String getForbiddenMatch() { return forbiddenMatch; }
+}
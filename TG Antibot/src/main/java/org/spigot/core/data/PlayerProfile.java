@@ -1,31 +1,47 @@
 package org.spigot.core.data;
 
+import org.spigot.utils.EditDistance;
+import org.spigot.utils.IPAddressKey;
+
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
 
 public class PlayerProfile {
-    private final String ip;
+    private final long addressHigh;
+    private final long addressLow;
+    private volatile String ip;
     private final Set<String> nicknames;
-    private final List<Long> connectionTimes;
-    private final List<Long> pingTimes;
+    private final TimestampRing connectionTimes;
+    private final TimestampRing pingTimes;
     private final AtomicLong totalPlayTime;
-    private long firstConnection;
+    private volatile long firstConnection;
     private volatile long lastConnection;
     private final AtomicInteger suspicionScore;
+    // Players online from this address, and since when one has been
+    private int onlinePlayers;
+    private long sessionStart;
+    // Changed since the last snapshot was taken
+    private volatile boolean dirty = true;
+    // Cached nickname similarity, recomputed in full only after a nickname is evicted
+    private boolean similarNicknames;
+    private boolean similarityStale;
     
     // Constants for memory management
     private static final int MAX_CONNECTION_HISTORY = 50;
     private static final int MAX_PING_HISTORY = 100;
     private static final int MAX_NICKNAMES = 10;
+    private static final long RAPID_RECONNECT_WINDOW = 10000;
+    private static final long CONNECTION_RATE_WINDOW = 60000;
+    private static final int MAX_NICKNAME_DISTANCE = 2;
 
-    public PlayerProfile(String ip) {
-        this.ip = ip;
+    public PlayerProfile(long addressHigh, long addressLow) {
+        this.addressHigh = addressHigh;
+        this.addressLow = addressLow;
         this.nicknames = ConcurrentHashMap.newKeySet();
-        this.connectionTimes = new CopyOnWriteArrayList<>();
-        this.pingTimes = new CopyOnWriteArrayList<>();
+        this.connectionTimes = new TimestampRing(MAX_CONNECTION_HISTORY, RAPID_RECONNECT_WINDOW, CONNECTION_RATE_WINDOW);
+        this.pingTimes = new TimestampRing(MAX_PING_HISTORY);
         this.totalPlayTime = new AtomicLong(0);
         this.firstConnection = System.currentTimeMillis();
         this.lastConnection = System.currentTimeMillis();
@@ -37,14 +53,14 @@ public class PlayerProfile {
             return;
         }
         
-        nicknames.add(nickname);
+        if (nicknames.add(nickname) && !similarNicknames && !similarityStale) {
+            // Only the new name needs comparing against the ones already known
+            similarNicknames = isSimilarToAny(nickname);
+        }
+        // Ring drops the oldest connection once full
         connectionTimes.add(timestamp);
         lastConnection = timestamp;
-        
-        // Keep only recent connections to prevent memory issues
-        while (connectionTimes.size() > MAX_CONNECTION_HISTORY) {
-            connectionTimes.remove(0);
-        }
+        dirty = true;
         
         // Limit nickname history
         if (nicknames.size() > MAX_NICKNAMES) {
@@ -53,119 +69,140 @@ public class PlayerProfile {
             if (iterator.hasNext()) {
                 iterator.next();
                 iterator.remove();
+                similarityStale = true;
             }
         }
     }
 
     public synchronized void addPing(long timestamp) {
+        // Ring drops the oldest ping once full
         pingTimes.add(timestamp);
-        
-        // Keep only recent pings to prevent memory issues
-        while (pingTimes.size() > MAX_PING_HISTORY) {
-            pingTimes.remove(0);
-        }
     }
 
     public void addPlayTime(long milliseconds) {
         if (milliseconds > 0) {
             totalPlayTime.addAndGet(milliseconds);
+            dirty = true;
         }
     }
 
+    /**
+     * A player from this address joined the server. Play time runs while at
+     * least one is online.
+     */
+    public synchronized void playerJoined(long timestamp) {
+        if (onlinePlayers++ == 0) {
+            sessionStart = timestamp;
+        }
+    }
+
+    public synchronized void playerQuit(long timestamp) {
+        if (onlinePlayers == 0) return;
+        creditOnlineTime(timestamp);
+        onlinePlayers--;
+    }
+
+    /**
+     * Add the running session to the play time, so snapshots include it.
+     */
+    public synchronized void creditOnlineTime(long timestamp) {
+        if (onlinePlayers == 0) return;
+        addPlayTime(timestamp - sessionStart);
+        sessionStart = timestamp;
+    }
+
     public void increaseSuspicion(int points) {
         if (points > 0) {
             suspicionScore.addAndGet(points);
+            dirty = true;
         }
     }
 
     public void decreaseSuspicion(int points) {
         if (points > 0) {
             suspicionScore.updateAndGet(current -> Math.max(0, current - points));
+            dirty = true;
         }
     }
 
-    // Connection analysis methods
-    public long getAverageConnectionInterval() {
-        List<Long> connections = new ArrayList<>(connectionTimes);
-        if (connections.size() < 2) return 0;
-        
-        long totalInterval = 0;
-        for (int i = 1; i < connections.size(); i++) {
-            totalInterval += connections.get(i) - connections.get(i - 1);
+    /**
+     * Clear the changed flag before the profile is written to a snapshot. Any
+     * change made afterwards sets it again.
+     *
+     * @return whether the profile changed since the previous call
+     */
+    public boolean takeDirty() {
+        if (!dirty) return false;
+        dirty = false;
+        return true;
+    }
+
+    /**
+     * Flag the profile for the next snapshot again, after its write failed.
+     */
+    public void markDirty() {
+        dirty = true;
+    }
+
+    /**
+     * Replace the persistent state with a stored snapshot.
+     */
+    public synchronized void restore(long firstConnection, long lastConnection, long playTime, int suspicion,
+                                     long[] connections, Collection<String> storedNicknames) {
+        this.firstConnection = firstConnection;
+        this.lastConnection = lastConnection;
+        totalPlayTime.set(playTime);
+        suspicionScore.set(suspicion);
+        for (long timestamp : connections) {
+            connectionTimes.add(timestamp);
         }
-        return totalInterval / (connections.size() - 1);
+        nicknames.addAll(storedNicknames);
+        similarityStale = true;
+        dirty = false;
     }
 
-    public int getConnectionsInTimeframe(long timeframe) {
-        if (timeframe <= 0) return 0;
-        
-        long cutoff = System.currentTimeMillis() - timeframe;
-        return (int) connectionTimes.stream()
-            .filter(time -> time > cutoff)
-            .count();
+    // Connection analysis methods
+    public synchronized long getAverageConnectionInterval() {
+        return connectionTimes.getAverageInterval();
     }
 
-    public int getPingsInTimeframe(long timeframe) {
-        if (timeframe <= 0) return 0;
-        
-        long cutoff = System.currentTimeMillis() - timeframe;
-        return (int) pingTimes.stream()
-            .filter(time -> time > cutoff)
-            .count();
+    public synchronized int getConnectionsInTimeframe(long timeframe) {
+        return connectionTimes.countWithin(timeframe, System.currentTimeMillis());
+    }
+
+    public synchronized int getPingsInTimeframe(long timeframe) {
+        return pingTimes.countWithin(timeframe, System.currentTimeMillis());
     }
 
     public boolean hasRapidReconnections() {
-        return getConnectionsInTimeframe(10000) >= 3; // 3+ connections within 10 seconds
+        return getConnectionsInTimeframe(RAPID_RECONNECT_WINDOW) >= 3; // 3+ connections within 10 seconds
     }
 
-    public boolean hasSuspiciousNicknamePattern() {
-        if (nicknames.size() < 2) return false;
-        
-        // Check for similar patterns in nicknames
-        List<String> nicknameList = new ArrayList<>(nicknames);
-        for (int i = 0; i < nicknameList.size(); i++) {
-            for (int j = i + 1; j < nicknameList.size(); j++) {
-                if (areSimilarNicknames(nicknameList.get(i), nicknameList.get(j))) {
-                    return true;
+    /**
+     * Whether two of this IP's nicknames are within two edits of each other.
+     * Cached; only evaluated again when the nickname set changes.
+     */
+    public synchronized boolean hasSuspiciousNicknamePattern() {
+        if (similarityStale) {
+            similarNicknames = false;
+            for (String nickname : nicknames) {
+                if (isSimilarToAny(nickname)) {
+                    similarNicknames = true;
+                    break;
                 }
             }
+            similarityStale = false;
         }
-        return false;
+        return similarNicknames;
     }
 
-    private boolean areSimilarNicknames(String name1, String name2) {
-        if (name1 == null || name2 == null) return false;
-        if (name1.equals(name2)) return true;
-        
-        // Check for similar length and pattern
-        if (Math.abs(name1.length() - name2.length()) > 2) return false;
-        
-        // Simple Levenshtein distance check
-        int distance = calculateLevenshteinDistance(name1.toLowerCase(), name2.toLowerCase());
-        return distance <= 2; // Allow up to 2 character differences
-    }
-    
-    private int calculateLevenshteinDistance(String s1, String s2) {
-        int[][] dp = new int[s1.length() + 1][s2.length() + 1];
-        
-        for (int i = 0; i <= s1.length(); i++) {
-            dp[i][0] = i;
-        }
-        for (int j = 0; j <= s2.length(); j++) {
-            dp[0][j] = j;
-        }
-        
-        for (int i = 1; i <= s1.length(); i++) {
-            for (int j = 1; j <= s2.length(); j++) {
-                if (s1.charAt(i - 1) == s2.charAt(j - 1)) {
-                    dp[i][j] = dp[i - 1][j - 1];
-                } else {
-                    dp[i][j] = 1 + Math.min(Math.min(dp[i - 1][j], dp[i][j - 1]), dp[i - 1][j - 1]);
-                }
+    private boolean isSimilarToAny(String nickname) {
+        for (String other : nicknames) {
+            if (!other.equals(nickname) && EditDistance.isWithin(nickname, other, MAX_NICKNAME_DISTANCE)) {
+                return true;
             }
         }
-        
-        return dp[s1.length()][s2.length()];
+        return false;
     }
     
     /**
@@ -175,10 +212,13 @@ public class PlayerProfile {
         long cutoff = System.currentTimeMillis() - retentionTime;
         
         // Remove old connection times
-        connectionTimes.removeIf(time -> time < cutoff);
+        if (!connectionTimes.isEmpty() && connectionTimes.oldest() < cutoff) {
+            dirty = true;
+        }
+        connectionTimes.evictBefore(cutoff);
         
         // Remove old ping times
-        pingTimes.removeIf(time -> time < cutoff);
+        pingTimes.evictBefore(cutoff);
         
         // If no recent activity, reset suspicion score gradually
         if (connectionTimes.isEmpty() || (lastConnection < cutoff)) {
@@ -187,20 +227,31 @@ public class PlayerProfile {
     }
 
     // Getters
-    public String getIp() { return ip; }
+    public String getIp() {
+        // Text form is only needed for logging and commands, build it on first use
+        String value = ip;
+        if (value == null) {
+            value = IPAddressKey.toString(addressHigh, addressLow);
+            ip = value;
+        }
+        return value;
+    }
+    public long getAddressHigh() { return addressHigh; }
+    public long getAddressLow() { return addressLow; }
     public Set<String> getNicknames() { return new HashSet<>(nicknames); }
-    public int getConnectionCount() { return connectionTimes.size(); }
+    public synchronized int getConnectionCount() { return connectionTimes.size(); }
     public long getPlayTime() { return totalPlayTime.get(); }
     public long getFirstConnection() { return firstConnection; }
     public long getLastConnection() { return lastConnection; }
     public int getSuspicionScore() { return suspicionScore.get(); }
-    public List<Long> getConnectionTimes() { return new ArrayList<>(connectionTimes); }
-    public List<Long> getPingTimes() { return new ArrayList<>(pingTimes); }
+    public synchronized List<Long> getConnectionTimes() { return connectionTimes.toList(); }
+    public synchronized long[] getConnectionTimesArray() { return connectionTimes.toArray(); }
+    public synchronized List<Long> getPingTimes() { return pingTimes.toList(); }
     
     /**
      * Get memory usage statistics for this profile
      */
-    public String getMemoryStats() {
+    public synchronized String getMemoryStats() {
         return String.format("Nicknames: %d/%d, Connections: %d/%d, Pings: %d/%d",
             nicknames.size(), MAX_NICKNAMES,
             connectionTimes.size(), MAX_CONNECTION_HISTORY,
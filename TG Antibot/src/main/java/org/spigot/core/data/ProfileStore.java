@@ -0,0 +1,551 @@
+package org.spigot.core.data;
+
+import org.spigot.utils.IPAddressKey;
+import org.spigot.utils.IPAddressMap;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.logging.Logger;
+
+/**
+ * Player profiles on disk, so trust survives a restart.
+ *
+ * A base file holds every profile; changes since then are appended to a delta
+ * file by each snapshot, so a snapshot only writes the profiles that changed.
+ * An evicted profile is appended as a removal record, so a restart does not
+ * bring it back. Once the delta outgrows the base, both are compacted into a
+ * new base. Both files carry the base generation, and a delta from another
+ * generation is ignored, so a crash during compaction never replays stale
+ * changes.
+ *
+ * Records are length-prefixed and use variable-length integers, timestamps
+ * are stored as deltas from the first connection, so a typical profile takes
+ * a few dozen bytes. Loading reads both files into memory and indexes the
+ * records by address without decoding them; a stored profile is only decoded
+ * when its address connects again. The files are read through a channel
+ * rather than mapped, so compaction can replace them on every platform.
+ */
+public class ProfileStore {
+
+    // Constants
+    private static final int MAGIC = 0x54475031; // "TGP1"
+    private static final int HEADER_SIZE = 12;
+    private static final long MIN_COMPACT_BYTES = 1024 * 1024;
+    private static final int FLAG_IPV4 = 1;
+    private static final int FLAG_REMOVED = 2;
+    private static final int BYTES_PER_PROFILE = 48;
+
+    private final File baseFile;
+    private final File deltaFile;
+    private final Logger logger;
+    // Guarded by this
+    private long generation;
+
+    // Stored profiles not decoded yet: record offsets into the contents of both files
+    private volatile IPAddressMap<Integer> stored = new IPAddressMap<>();
+    private volatile byte[] storedData = new byte[0];
+    // Evicted profiles, written as removal records by the next snapshot
+    private final Queue<long[]> removals = new ConcurrentLinkedQueue<>();
+
+    public ProfileStore(File directory, Logger logger) {
+        this.baseFile = new File(directory, "profiles.dat");
+        this.deltaFile = new File(directory, "profiles.delta");
+        this.logger = logger;
+    }
+
+    /**
+     * Read the base and the delta and index the latest record of each
+     * address. Profiles are decoded later by {@link #take}.
+     *
+     * @return the number of stored profiles
+     */
+    public synchronized int load() throws IOException {
+        long baseLength = baseFile.isFile() ? baseFile.length() : 0;
+        long deltaLength = deltaFile.isFile() ? deltaFile.length() : 0;
+        if (baseLength + deltaLength > Integer.MAX_VALUE) {
+            throw new IOException("Profile files are too large");
+        }
+
+        // One array for both files, so a record is addressed by a single offset
+        byte[] data = new byte[(int) (baseLength + deltaLength)];
+        int base = read(baseFile, data, 0, (int) baseLength);
+        int delta = read(deltaFile, data, base, (int) deltaLength);
+
+        generation = 0;
+        boolean baseValid = hasHeader(data, 0, base);
+        if (base > 0 && !baseValid) {
+            logger.warning("[Profiles] Ignoring damaged " + baseFile.getName());
+        }
+        if (baseValid) {
+            generation = ByteBuffer.wrap(data).getLong(4);
+        }
+
+        IPAddressMap<Integer> index = new IPAddressMap<>((int) (baseLength / BYTES_PER_PROFILE));
+        if (baseValid) {
+            indexAll(data, HEADER_SIZE, base, index);
+        }
+        // The delta is newer and applied over the base
+        if (hasHeader(data, base, delta) && ByteBuffer.wrap(data).getLong(base + 4) == generation) {
+            indexAll(data, base + HEADER_SIZE, base + delta, index);
+        }
+
+        storedData = data;
+        stored = index;
+        return index.size();
+    }
+
+    /**
+     * Decode the stored profile of an address and hand it over; it is no
+     * longer kept as stored data afterwards.
+     *
+     * @return null if nothing is stored for the address
+     */
+    public PlayerProfile take(long high, long low) {
+        Integer offset = stored.remove(high, low);
+        if (offset == null) return null;
+        ByteBuffer buffer = ByteBuffer.wrap(storedData);
+        buffer.position(offset);
+        try {
+            readVarInt(buffer);
+            return decode(buffer);
+        } catch (BufferUnderflowException | IllegalArgumentException e) {
+            logger.warning("[Profiles] Skipping damaged profile at offset " + offset);
+            return null;
+        }
+    }
+
+    /**
+     * Drop the stored profile of an address, whose live profile replaces it.
+     */
+    public void discard(long high, long low) {
+        stored.remove(high, low);
+    }
+
+    /**
+     * Record that a profile was evicted, so it is not loaded again.
+     */
+    public void remove(long high, long low) {
+        stored.remove(high, low);
+        removals.add(new long[] { high, low });
+    }
+
+    public int getStoredCount() {
+        return stored.size();
+    }
+
+    /**
+     * Append the profiles changed and evicted since the last snapshot,
+     * compacting when the delta has grown larger than the base. Blocking; run
+     * it async. Nothing is lost if the write fails: the profiles are flagged
+     * as changed again and the next snapshot retries.
+     *
+     * @return the number of profiles written
+     */
+    public synchronized int snapshot(IPAddressMap<PlayerProfile> profiles, long now) throws IOException {
+        if (deltaFile.length() > Math.max(MIN_COMPACT_BYTES, baseFile.length())) {
+            return compact(profiles, now);
+        }
+
+        Encoder encoder = new Encoder();
+        List<long[]> removed = drainRemovals();
+        for (long[] key : removed) {
+            encoder.removal(key[0], key[1]);
+        }
+        int written = 0;
+        for (PlayerProfile profile : references(profiles)) {
+            profile.creditOnlineTime(now);
+            if (encoder.profile(profile, true)) written++;
+        }
+        if (encoder.isEmpty()) return 0;
+
+        boolean fresh = !deltaFile.isFile() || deltaFile.length() < HEADER_SIZE;
+        long previousLength = fresh ? 0 : deltaFile.length();
+        try (FileOutputStream out = new FileOutputStream(deltaFile, !fresh)) {
+            if (fresh) out.write(header(generation));
+            encoder.writeTo(out);
+            // One sync per snapshot, however many profiles changed
+            out.getFD().sync();
+        } catch (IOException e) {
+            encoder.markFailed();
+            removals.addAll(removed);
+            truncate(deltaFile, previousLength);
+            throw e;
+        }
+        return written;
+    }
+
+    /**
+     * Write every profile into a new base and start an empty delta.
+     */
+    public synchronized int compact(IPAddressMap<PlayerProfile> profiles, long now) throws IOException {
+        long nextGeneration = generation + 1;
+        File temp = new File(baseFile.getPath() + ".tmp");
+        // Evicted profiles are simply left out of the new base
+        List<long[]> removed = drainRemovals();
+        Encoder encoder = new Encoder();
+        int[] written = {0};
+
+        // Stored profiles first, the live ones after them win if an address is in both
+        byte[] data = storedData;
+        stored.forEach((high, low, offset) -> {
+            encoder.raw(data, offset);
+            written[0]++;
+        });
+        for (PlayerProfile profile : references(profiles)) {
+            profile.creditOnlineTime(now);
+            encoder.profile(profile, false);
+            written[0]++;
+        }
+
+        try {
+            try (FileOutputStream out = new FileOutputStream(temp)) {
+                out.write(header(nextGeneration));
+                encoder.writeTo(out);
+                out.getFD().sync();
+            }
+            Files.move(temp.toPath(), baseFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            encoder.markFailed();
+            removals.addAll(removed);
+            throw e;
+        }
+        generation = nextGeneration;
+
+        try (FileOutputStream out = new FileOutputStream(deltaFile)) {
+            out.write(header(generation));
+            out.getFD().sync();
+        }
+        return written[0];
+    }
+
+    public long getSizeBytes() {
+        return baseFile.length() + deltaFile.length();
+    }
+
+    /**
+     * Encoding runs outside the map, so connections are never held up by a
+     * segment lock while a snapshot is written.
+     */
+    private static List<PlayerProfile> references(IPAddressMap<PlayerProfile> profiles) {
+        List<PlayerProfile> references = new ArrayList<>(profiles.size());
+        profiles.forEach((high, low, profile) -> references.add(profile));
+        return references;
+    }
+
+    private List<long[]> drainRemovals() {
+        List<long[]> drained = new ArrayList<>();
+        long[] key;
+        while ((key = removals.poll()) != null) {
+            drained.add(key);
+        }
+        return drained;
+    }
+
+    private static byte[] header(long generation) {
+        return ByteBuffer.allocate(HEADER_SIZE).putInt(MAGIC).putLong(generation).array();
+    }
+
+    private static boolean hasHeader(byte[] data, int offset, int length) {
+        return length >= HEADER_SIZE && ByteBuffer.wrap(data).getInt(offset) == MAGIC;
+    }
+
+    /**
+     * @return the number of bytes read, less than {@code length} if the file shrank
+     */
+    private static int read(File file, byte[] data, int offset, int length) throws IOException {
+        if (length == 0) return 0;
+        try (FileInputStream in = new FileInputStream(file);
+             FileChannel channel = in.getChannel()) {
+            ByteBuffer buffer = ByteBuffer.wrap(data, offset, length);
+            while (buffer.hasRemaining() && channel.read(buffer) >= 0) {
+                // Keep reading until full or end of file
+            }
+            return buffer.position() - offset;
+        }
+    }
+
+    /**
+     * Cut off a partly written append, so later appends stay readable.
+     */
+    private void truncate(File file, long length) {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.setLength(length);
+        } catch (IOException e) {
+            logger.warning("[Profiles] Failed to truncate " + file.getName() + ": " + e.getMessage());
+        }
+    }
+
+    // ================================
+    // DECODING
+    // ================================
+
+    private void indexAll(byte[] data, int start, int end, IPAddressMap<Integer> index) {
+        ByteBuffer buffer = ByteBuffer.wrap(data, 0, end);
+        buffer.position(start);
+        while (buffer.hasRemaining()) {
+            int offset = buffer.position();
+            try {
+                int length = readVarInt(buffer);
+                int recordEnd = buffer.position() + length;
+                if (length <= 0 || recordEnd > end) break;
+                int flags = buffer.get();
+                long high;
+                long low;
+                if ((flags & FLAG_IPV4) != 0) {
+                    high = 0L;
+                    low = 0xFFFF00000000L | (buffer.getInt() & 0xFFFFFFFFL);
+                } else {
+                    high = readVarLong(buffer);
+                    low = readVarLong(buffer);
+                }
+                if ((flags & FLAG_REMOVED) != 0) {
+                    index.remove(high, low);
+                } else {
+                    index.put(high, low, offset);
+                }
+                buffer.position(recordEnd);
+            } catch (BufferUnderflowException | IllegalArgumentException e) {
+                // A record cut short by a crash ends the file
+                logger.warning("[Profiles] Skipping damaged data at offset " + offset);
+                break;
+            }
+        }
+    }
+
+    private static PlayerProfile decode(ByteBuffer buffer) {
+        int flags = buffer.get();
+        long high;
+        long low;
+        if ((flags & FLAG_IPV4) != 0) {
+            high = 0L;
+            low = 0xFFFF00000000L | (buffer.getInt() & 0xFFFFFFFFL);
+        } else {
+            high = readVarLong(buffer);
+            low = readVarLong(buffer);
+        }
+
+        long first = readVarLong(buffer);
+        long last = first + unzigzag(readVarLong(buffer));
+        long playTime = readVarLong(buffer);
+        int suspicion = readVarInt(buffer);
+
+        long[] connections = new long[readCount(buffer)];
+        long previous = first;
+        for (int i = 0; i < connections.length; i++) {
+            previous += unzigzag(readVarLong(buffer));
+            connections[i] = previous;
+        }
+
+        int nameCount = readCount(buffer);
+        List<String> names = new ArrayList<>(nameCount);
+        for (int i = 0; i < nameCount; i++) {
+            byte[] bytes = new byte[readVarInt(buffer)];
+            buffer.get(bytes);
+            names.add(new String(bytes, StandardCharsets.UTF_8));
+        }
+
+        PlayerProfile profile = new PlayerProfile(high, low);
+        profile.restore(first, last, playTime, suspicion, connections, names);
+        return profile;
+    }
+
+    private static int readCount(ByteBuffer buffer) {
+        int count = readVarInt(buffer);
+        // Bounds what a damaged record can make us allocate
+        if (count > buffer.remaining()) throw new IllegalArgumentException("count out of range");
+        return count;
+    }
+
+    private static int readVarInt(ByteBuffer buffer) {
+        long value = readVarLong(buffer);
+        if (value < 0 || value > Integer.MAX_VALUE) throw new IllegalArgumentException("varint out of range");
+        return (int) value;
+    }
+
+    private static long readVarLong(ByteBuffer buffer) {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            byte b = buffer.get();
+            value |= (long) (b & 0x7F) << shift;
+            if (b >= 0) return value;
+        }
+        throw new IllegalArgumentException("varint too long");
+    }
+
+    private static long unzigzag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    // ================================
+    // ENCODING
+    // ================================
+
+    /**
+     * Growable buffer of length-prefixed profile records.
+     */
+    private static final class Encoder {
+        private byte[] data = new byte[64 * 1024];
+        private int size;
+        private byte[] record = new byte[1024];
+        private int recordSize;
+        // Profiles whose changed flag was taken, flagged again if the write fails
+        private final List<PlayerProfile> encoded = new ArrayList<>();
+
+        /**
+         * @return false if only changed profiles were wanted and this one has not changed
+         */
+        boolean profile(PlayerProfile profile, boolean changedOnly) {
+            synchronized (profile) {
+                // Cleared before reading, so a concurrent change marks it again
+                if (profile.takeDirty()) {
+                    encoded.add(profile);
+                } else if (changedOnly) {
+                    return false;
+                }
+
+                recordSize = 0;
+                recordAddress(0, profile.getAddressHigh(), profile.getAddressLow());
+
+                long first = profile.getFirstConnection();
+                recordVarLong(first);
+                recordVarLong(zigzag(profile.getLastConnection() - first));
+                recordVarLong(Math.max(0, profile.getPlayTime()));
+                recordVarLong(Math.max(0, profile.getSuspicionScore()));
+
+                long[] connections = profile.getConnectionTimesArray();
+                recordVarLong(connections.length);
+                long previous = first;
+                for (long timestamp : connections) {
+                    recordVarLong(zigzag(timestamp - previous));
+                    previous = timestamp;
+                }
+
+                List<byte[]> names = new ArrayList<>();
+                for (String nickname : profile.getNicknames()) {
+                    names.add(nickname.getBytes(StandardCharsets.UTF_8));
+                }
+                recordVarLong(names.size());
+                for (byte[] name : names) {
+                    recordVarLong(name.length);
+                    recordBytes(name);
+                }
+            }
+
+            appendRecord();
+            return true;
+        }
+
+        void removal(long high, long low) {
+            recordSize = 0;
+            recordAddress(FLAG_REMOVED, high, low);
+            appendRecord();
+        }
+
+        /**
+         * Copy a stored record, length prefix included, without decoding it.
+         */
+        void raw(byte[] source, int offset) {
+            int position = offset;
+            int length = 0;
+            for (int shift = 0; ; shift += 7) {
+                byte b = source[position++];
+                length |= (b & 0x7F) << shift;
+                if (b >= 0) break;
+            }
+            int total = position - offset + length;
+            ensure(total);
+            System.arraycopy(source, offset, data, size, total);
+            size += total;
+        }
+
+        boolean isEmpty() {
+            return size == 0;
+        }
+
+        void markFailed() {
+            for (PlayerProfile profile : encoded) {
+                profile.markDirty();
+            }
+        }
+
+        void writeTo(OutputStream out) throws IOException {
+            out.write(data, 0, size);
+        }
+
+        private void recordAddress(int flags, long high, long low) {
+            if (IPAddressKey.isIPv4(high, low)) {
+                recordByte(flags | FLAG_IPV4);
+                recordInt((int) low);
+            } else {
+                recordByte(flags);
+                recordVarLong(high);
+                recordVarLong(low);
+            }
+        }
+
+        private void appendRecord() {
+            ensure(5 + recordSize);
+            long length = recordSize;
+            while ((length & ~0x7FL) != 0) {
+                data[size++] = (byte) ((length & 0x7F) | 0x80);
+                length >>>= 7;
+            }
+            data[size++] = (byte) length;
+            System.arraycopy(record, 0, data, size, recordSize);
+            size += recordSize;
+        }
+
+        private void recordByte(int value) {
+            if (recordSize == record.length) record = Arrays.copyOf(record, record.length * 2);
+            record[recordSize++] = (byte) value;
+        }
+
+        private void recordInt(int value) {
+            recordByte(value >>> 24);
+            recordByte(value >>> 16);
+            recordByte(value >>> 8);
+            recordByte(value);
+        }
+
+        private void recordVarLong(long value) {
+            while ((value & ~0x7FL) != 0) {
+                recordByte((int) ((value & 0x7F) | 0x80));
+                value >>>= 7;
+            }
+            recordByte((int) value);
+        }
+
+        private void recordBytes(byte[] bytes) {
+            if (recordSize + bytes.length > record.length) {
+                record = Arrays.copyOf(record, Math.max(record.length * 2, recordSize + bytes.length));
+            }
+            System.arraycopy(bytes, 0, record, recordSize, bytes.length);
+            recordSize += bytes.length;
+        }
+
+        private void ensure(int extra) {
+            if (size + extra > data.length) {
+                data = Arrays.copyOf(data, Math.max(data.length * 2, size + extra));
+            }
+        }
+
+        private static long zigzag(long value) {
+            return (value << 1) ^ (value >> 63);
+        }
+    }
+}
@@ -0,0 +1,359 @@
+package org.spigot.core.data;
+
+import org.spigot.utils.IPAddressKey;
+import org.spigot.utils.IPAddressMap;
+
+import java.util.Arrays;
+
+/**
+ * Connection and nickname counts per subnet, so sources rotating through a
+ * range are judged as one.
+ *
+ * Every connection updates two prefix levels of its address family: /24 and
+ * /16 for IPv4, /64 and /48 for IPv6. Each prefix keeps per-second counts of
+ * connections and of reconnections (an address, or an IPv6 /64, connecting
+ * again within the reconnect window) for the last minute, and the nicknames
+ * seen in the last ten minutes (up to a fixed number), so queries are O(1)
+ * and memory per prefix is constant. Limits are the per-address limits scaled
+ * by a multiplier for the narrow and the wide level. A prefix can also be
+ * blocked as a whole for a while.
+ */
+public class SubnetAggregates {
+
+    // Constants
+    public static final long CONNECTION_WINDOW = 60000L;
+    public static final long NICKNAME_WINDOW = 600000L;
+    // Upper bound on nicknames remembered per prefix, whatever the configured limits
+    public static final int MAX_TRACKED_NICKNAMES = 1024;
+    private static final int INITIAL_TRACKED_NICKNAMES = 8;
+    // Addresses remembered per prefix to tell reconnections apart; the oldest is forgotten first
+    private static final int MAX_TRACKED_ADDRESSES = 256;
+
+    public enum Level {
+        IPV4_24(24, true, true),
+        IPV4_16(16, true, false),
+        IPV6_64(64, false, true),
+        IPV6_48(48, false, false);
+
+        private final int prefix;
+        private final boolean ipv4;
+        private final boolean narrow;
+
+        Level(int prefix, boolean ipv4, boolean narrow) {
+            this.prefix = prefix;
+            this.ipv4 = ipv4;
+            this.narrow = narrow;
+        }
+
+        public int getPrefix() { return prefix; }
+        public boolean isIPv4() { return ipv4; }
+        public boolean isNarrow() { return narrow; }
+    }
+
+    private static final Level[] IPV4_LEVELS = { Level.IPV4_24, Level.IPV4_16 };
+    private static final Level[] IPV6_LEVELS = { Level.IPV6_64, Level.IPV6_48 };
+
+    private final IPAddressMap<PrefixStats>[] levels;
+    private volatile int narrowMultiplier = 4;
+    private volatile int wideMultiplier = 20;
+    private volatile int narrowNameCapacity = INITIAL_TRACKED_NICKNAMES;
+    private volatile int wideNameCapacity = INITIAL_TRACKED_NICKNAMES;
+    private volatile long reconnectWindow = 10000L;
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public SubnetAggregates() {
+        this.levels = new IPAddressMap[Level.values().length];
+        for (int i = 0; i < levels.length; i++) {
+            levels[i] = new IPAddressMap<>();
+        }
+    }
+
+    public void setMultipliers(int narrowMultiplier, int wideMultiplier) {
+        this.narrowMultiplier = Math.max(1, narrowMultiplier);
+        this.wideMultiplier = Math.max(1, wideMultiplier);
+    }
+
+    /**
+     * Remember enough nicknames per prefix for {@link #findNicknamesExceeded}
+     * to see the scaled limit exceeded. Call after {@link #setMultipliers}.
+     *
+     * @return false if a scaled limit is beyond {@link #MAX_TRACKED_NICKNAMES}
+     * and can never be reached
+     */
+    public boolean setNicknameLimit(int perAddressLimit) {
+        int limit = Math.max(1, perAddressLimit);
+        long narrow = (long) limit * narrowMultiplier + 1;
+        long wide = (long) limit * wideMultiplier + 1;
+        this.narrowNameCapacity = (int) Math.min(narrow, MAX_TRACKED_NICKNAMES);
+        this.wideNameCapacity = (int) Math.min(wide, MAX_TRACKED_NICKNAMES);
+        return Math.max(narrow, wide) <= MAX_TRACKED_NICKNAMES;
+    }
+
+    /**
+     * A connection counts as a reconnection if its address connected within
+     * this time before; at most {@link #CONNECTION_WINDOW}.
+     */
+    public void setReconnectWindow(long window) {
+        this.reconnectWindow = Math.max(1000L, Math.min(window, CONNECTION_WINDOW));
+    }
+
+    /**
+     * Count a connection for every prefix containing the address.
+     */
+    public void record(long high, long low, String nickname, long now) {
+        int nameHash = nickname == null ? 0 : nickname.hashCode();
+        // IPv6 addresses are told apart per /64, like profiles
+        boolean ipv4 = IPAddressKey.isIPv4(high, low);
+        int addressHash = IPAddressKey.hash(high, ipv4 ? low : 0L);
+        for (Level level : levelsFor(high, low)) {
+            long maskedHigh = maskHigh(level, high);
+            long maskedLow = maskLow(level, low);
+            PrefixStats stats = levels[level.ordinal()].computeIfAbsent(maskedHigh, maskedLow, (h, l) -> new PrefixStats());
+            stats.record(addressHash, reconnectWindow, nameHash, nickname != null, now,
+                level.isNarrow() ? narrowNameCapacity : wideNameCapacity);
+        }
+    }
+
+    /**
+     * @return the first level whose connections within the window exceed the
+     * scaled per-address limit, or null
+     */
+    public Level findConnectionsExceeded(long high, long low, long window, int perAddressLimit, long now) {
+        for (Level level : levelsFor(high, low)) {
+            PrefixStats stats = get(level, high, low);
+            if (stats != null && stats.getConnections(window, now) > scale(level, perAddressLimit)) {
+                return level;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return the first level whose reconnections within the window exceed
+     * the scaled per-address allowance, or null
+     */
+    public Level findReconnectsExceeded(long high, long low, long window, int perAddressAllowance, long now) {
+        for (Level level : levelsFor(high, low)) {
+            PrefixStats stats = get(level, high, low);
+            if (stats != null && stats.getReconnects(window, now) > scale(level, perAddressAllowance)) {
+                return level;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Refuse every address in the prefix until the given time.
+     */
+    public void blockPrefix(Level level, long high, long low, long until) {
+        PrefixStats stats = levels[level.ordinal()].computeIfAbsent(maskHigh(level, high), maskLow(level, low),
+            (h, l) -> new PrefixStats());
+        synchronized (stats) {
+            stats.blockedUntil = Math.max(stats.blockedUntil, until);
+        }
+    }
+
+    /**
+     * @return the first level blocked by {@link #blockPrefix} for the address, or null
+     */
+    public Level findBlocked(long high, long low, long now) {
+        for (Level level : levelsFor(high, low)) {
+            PrefixStats stats = get(level, high, low);
+            if (stats != null && stats.blockedUntil > now) {
+                return level;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return the first level with more recent nicknames than the scaled
+     * per-address limit, or null
+     */
+    public Level findNicknamesExceeded(long high, long low, int perAddressLimit, long now) {
+        for (Level level : levelsFor(high, low)) {
+            PrefixStats stats = get(level, high, low);
+            if (stats != null && stats.getNicknames(now) > scale(level, perAddressLimit)) {
+                return level;
+            }
+        }
+        return null;
+    }
+
+    public int getConnections(Level level, long high, long low, long window, long now) {
+        PrefixStats stats = get(level, high, low);
+        return stats == null ? 0 : stats.getConnections(window, now);
+    }
+
+    public int getReconnects(Level level, long high, long low, long window, long now) {
+        PrefixStats stats = get(level, high, low);
+        return stats == null ? 0 : stats.getReconnects(window, now);
+    }
+
+    public int getNicknames(Level level, long high, long low, long now) {
+        PrefixStats stats = get(level, high, low);
+        return stats == null ? 0 : stats.getNicknames(now);
+    }
+
+    /**
+     * Drop prefixes without activity in the nickname window and no block.
+     */
+    public int removeInactive(long now) {
+        int removed = 0;
+        for (IPAddressMap<PrefixStats> level : levels) {
+            removed += level.removeIf((high, low, stats) -> stats.isInactive(now));
+        }
+        return removed;
+    }
+
+    public int size() {
+        int size = 0;
+        for (IPAddressMap<PrefixStats> level : levels) {
+            size += level.size();
+        }
+        return size;
+    }
+
+    public void clear() {
+        for (IPAddressMap<PrefixStats> level : levels) {
+            level.clear();
+        }
+    }
+
+    /**
+     * Text form of the prefix containing an address, e.g. "203.0.113.0/24".
+     */
+    public static String describe(Level level, long high, long low) {
+        return IPAddressKey.toString(maskHigh(level, high), maskLow(level, low)) + "/" + level.getPrefix();
+    }
+
+    private PrefixStats get(Level level, long high, long low) {
+        return levels[level.ordinal()].get(maskHigh(level, high), maskLow(level, low));
+    }
+
+    private int scale(Level level, int perAddressLimit) {
+        return perAddressLimit * (level.isNarrow() ? narrowMultiplier : wideMultiplier);
+    }
+
+    private static Level[] levelsFor(long high, long low) {
+        return IPAddressKey.isIPv4(high, low) ? IPV4_LEVELS : IPV6_LEVELS;
+    }
+
+    static long maskHigh(Level level, long high) {
+        // IPv4 lives in the low half; IPv6 prefixes up to /64 only need the high half
+        return level.isIPv4() ? high : high & (-1L << (64 - level.getPrefix()));
+    }
+
+    static long maskLow(Level level, long low) {
+        return level.isIPv4() ? low & (-1L << (32 - level.getPrefix())) : 0L;
+    }
+
+    /**
+     * Counters for one prefix. Synchronized; each is touched once per connection.
+     */
+    private static final class PrefixStats {
+        private final int[] counts = new int[(int) (CONNECTION_WINDOW / 1000)];
+        private final int[] reconnects = new int[counts.length];
+        private final long[] seconds = new long[counts.length];
+        private int[] addressHashes = new int[INITIAL_TRACKED_NICKNAMES];
+        private long[] addressSeen = new long[INITIAL_TRACKED_NICKNAMES];
+        private int addressCount;
+        // Grown on demand up to the capacity of the level
+        private int[] nameHashes = new int[INITIAL_TRACKED_NICKNAMES];
+        private long[] nameSeen = new long[INITIAL_TRACKED_NICKNAMES];
+        private int nameCount;
+        private volatile long lastSeen;
+        private volatile long blockedUntil;
+
+        synchronized void record(int addressHash, long reconnectWindow, int nameHash, boolean hasName,
+                                 long now, int nameCapacity) {
+            long second = now / 1000;
+            int slot = (int) (second % counts.length);
+            if (seconds[slot] != second) {
+                seconds[slot] = second;
+                counts[slot] = 0;
+                reconnects[slot] = 0;
+            }
+            counts[slot]++;
+            if (recordAddress(addressHash, reconnectWindow, now)) reconnects[slot]++;
+            lastSeen = now;
+
+            if (hasName) recordName(nameHash, now, nameCapacity);
+        }
+
+        /**
+         * @return whether the address connected within the reconnect window before
+         */
+        private boolean recordAddress(int addressHash, long reconnectWindow, long now) {
+            int oldest = 0;
+            for (int i = 0; i < addressCount; i++) {
+                if (addressHashes[i] == addressHash) {
+                    boolean repeat = now - addressSeen[i] <= reconnectWindow;
+                    addressSeen[i] = now;
+                    return repeat;
+                }
+                if (addressSeen[i] < addressSeen[oldest]) oldest = i;
+            }
+            if (addressCount < MAX_TRACKED_ADDRESSES && addressCount == addressHashes.length) {
+                int grown = Math.min(MAX_TRACKED_ADDRESSES, addressHashes.length * 2);
+                addressHashes = Arrays.copyOf(addressHashes, grown);
+                addressSeen = Arrays.copyOf(addressSeen, grown);
+            }
+            int index = addressCount < addressHashes.length ? addressCount++ : oldest;
+            addressHashes[index] = addressHash;
+            addressSeen[index] = now;
+            return false;
+        }
+
+        private void recordName(int nameHash, long now, int nameCapacity) {
+            int oldest = 0;
+            for (int i = 0; i < nameCount; i++) {
+                if (nameHashes[i] == nameHash) {
+                    nameSeen[i] = now;
+                    return;
+                }
+                if (nameSeen[i] < nameSeen[oldest]) oldest = i;
+            }
+            if (nameCount < nameCapacity && nameCount == nameHashes.length) {
+                int grown = Math.min(nameCapacity, nameHashes.length * 2);
+                nameHashes = Arrays.copyOf(nameHashes, grown);
+                nameSeen = Arrays.copyOf(nameSeen, grown);
+            }
+            // Full: replace the name seen longest ago
+            int index = nameCount < Math.min(nameCapacity, nameHashes.length) ? nameCount++ : oldest;
+            nameHashes[index] = nameHash;
+            nameSeen[index] = now;
+        }
+
+        synchronized int getConnections(long window, long now) {
+            return sum(counts, window, now);
+        }
+
+        synchronized int getReconnects(long window, long now) {
+            return sum(reconnects, window, now);
+        }
+
+        private int sum(int[] values, long window, long now) {
+            long second = now / 1000;
+            long oldest = second - Math.min(counts.length, Math.max(1, window / 1000)) + 1;
+            int total = 0;
+            for (int i = 0; i < values.length; i++) {
+                if (seconds[i] >= oldest && seconds[i] <= second) total += values[i];
+            }
+            return total;
+        }
+
+        synchronized int getNicknames(long now) {
+            long cutoff = now - NICKNAME_WINDOW;
+            int count = 0;
+            for (int i = 0; i < nameCount; i++) {
+                if (nameSeen[i] > cutoff) count++;
+            }
+            return count;
+        }
+
+        boolean isInactive(long now) {
+            return now - lastSeen > NICKNAME_WINDOW && blockedUntil <= now;
+        }
+    }
+}
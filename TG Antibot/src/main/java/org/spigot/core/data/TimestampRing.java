@@ -0,0 +1,178 @@
+package org.spigot.core.data;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Fixed-capacity ring of ascending millisecond timestamps. A timestamp older
+ * than the newest entry, e.g. after the wall clock steps back, is stored as
+ * the newest one so the entries stay sorted.
+ *
+ * The sum of intervals between consecutive entries is maintained on every add and
+ * eviction, and each tracked window keeps a cursor to its oldest entry, so the
+ * average interval and the tracked window counts are O(1) amortized and never
+ * allocate. Untracked windows fall back to a binary search.
+ *
+ * The backing array starts small and doubles up to the capacity, so the many
+ * profiles that only ever see a few entries stay small.
+ *
+ * Not thread-safe; callers synchronize externally.
+ */
+public class TimestampRing {
+
+    // Constants
+    private static final int INITIAL_LENGTH = 4;
+
+    private final int capacity;
+    private long[] timestamps;
+    private final long[] trackedWindows;
+    // Sequence number of the first entry inside each tracked window
+    private final long[] windowCursors;
+
+    // Total number of entries ever added; the newest entry has sequence added - 1
+    private long added;
+    private int size;
+    private long intervalSum;
+
+    public TimestampRing(int capacity, long... trackedWindows) {
+        if (capacity < 1) throw new IllegalArgumentException("capacity must be positive");
+        this.capacity = capacity;
+        this.timestamps = new long[Math.min(capacity, INITIAL_LENGTH)];
+        this.trackedWindows = trackedWindows.clone();
+        this.windowCursors = new long[trackedWindows.length];
+    }
+
+    public void add(long timestamp) {
+        if (size == timestamps.length) {
+            if (timestamps.length < capacity) {
+                grow();
+            } else {
+                evictOldest();
+            }
+        }
+        if (size > 0) {
+            long last = newest();
+            if (timestamp < last) timestamp = last;
+            intervalSum += timestamp - last;
+        }
+        timestamps[slot(added)] = timestamp;
+        added++;
+        size++;
+    }
+
+    /**
+     * Drop every entry older than the cutoff.
+     */
+    public void evictBefore(long cutoff) {
+        while (size > 0 && timestamps[slot(oldestSequence())] < cutoff) {
+            evictOldest();
+        }
+    }
+
+    private void grow() {
+        long[] grown = new long[Math.min(capacity, timestamps.length * 2)];
+        // Entries keep their sequence numbers, so each moves to its slot in the longer ring
+        for (long seq = oldestSequence(); seq < added; seq++) {
+            grown[(int) (seq % grown.length)] = timestamps[slot(seq)];
+        }
+        timestamps = grown;
+    }
+
+    private void evictOldest() {
+        if (size > 1) {
+            long oldest = timestamps[slot(oldestSequence())];
+            long next = timestamps[slot(oldestSequence() + 1)];
+            intervalSum -= next - oldest;
+        } else {
+            intervalSum = 0;
+        }
+        size--;
+    }
+
+    /**
+     * Number of entries strictly newer than {@code now - window}.
+     */
+    public int countWithin(long window, long now) {
+        if (window <= 0 || size == 0) return 0;
+        long cutoff = now - window;
+
+        for (int i = 0; i < trackedWindows.length; i++) {
+            if (trackedWindows[i] == window) {
+                long cursor = Math.max(windowCursors[i], oldestSequence());
+                while (cursor < added && timestamps[slot(cursor)] <= cutoff) {
+                    cursor++;
+                }
+                // An earlier now than the last query moves the cursor back
+                while (cursor > oldestSequence() && timestamps[slot(cursor - 1)] > cutoff) {
+                    cursor--;
+                }
+                windowCursors[i] = cursor;
+                return (int) (added - cursor);
+            }
+        }
+
+        // Untracked window: first entry newer than the cutoff
+        long lo = oldestSequence();
+        long hi = added;
+        while (lo < hi) {
+            long mid = (lo + hi) >>> 1;
+            if (timestamps[slot(mid)] <= cutoff) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return (int) (added - lo);
+    }
+
+    public long getAverageInterval() {
+        return size < 2 ? 0 : intervalSum / (size - 1);
+    }
+
+    public long newest() {
+        return size == 0 ? 0 : timestamps[slot(added - 1)];
+    }
+
+    public long oldest() {
+        return size == 0 ? 0 : timestamps[slot(oldestSequence())];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public int capacity() {
+        return capacity;
+    }
+
+    /**
+     * Entries oldest first, without boxing.
+     */
+    public long[] toArray() {
+        long[] array = new long[size];
+        for (int i = 0; i < size; i++) {
+            array[i] = timestamps[slot(oldestSequence() + i)];
+        }
+        return array;
+    }
+
+    public List<Long> toList() {
+        List<Long> list = new ArrayList<>(size);
+        for (long seq = oldestSequence(); seq < added; seq++) {
+            list.add(timestamps[slot(seq)]);
+        }
+        return list;
+    }
+
+    private long oldestSequence() {
+        return added - size;
+    }
+
+    private int slot(long sequence) {
+        return (int) (sequence % timestamps.length);
+    }
+}
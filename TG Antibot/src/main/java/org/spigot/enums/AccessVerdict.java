@@ -0,0 +1,28 @@
+package org.spigot.enums;
+
+public enum AccessVerdict {
+    NONE("None", "§7None"),
+    ALLOW("Allow", "§aAllow"),
+    BLOCK("Block", "§cBlock"),
+    TEMP_BLOCK("Temporary Block", "§eTemporary Block");
+
+    private final String name;
+    private final String displayName;
+
+    AccessVerdict(String name, String displayName) {
+        this.name = name;
+        this.displayName = displayName;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getDisplayName() {
+        return displayName;
+    }
+
+    public boolean isBlocked() {
+        return this == BLOCK || this == TEMP_BLOCK;
+    }
+}
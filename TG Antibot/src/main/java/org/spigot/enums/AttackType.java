@@ -1,23 +1,51 @@
 package org.spigot.enums;
 
+/**
+ * Kinds of attack. The code is what gets stored on disk; it must never change
+ * or be reused, whatever the order of the constants.
+ */
 public enum AttackType {
-    JOIN_FLOOD("Join Flood", "§cJoin Flood"),
-    PING_FLOOD("Ping Flood", "§ePing Flood"),
-    PACKET_FLOOD("Packet Flood", "§6Packet Flood"),
-    RECONNECT_SPAM("Reconnect Spam", "§dReconnect Spam"),
-    NICKNAME_SPAM("Nickname Spam", "§bNickname Spam"),
-    ACCOUNT_SPAM("Account Spam", "§5Account Spam"),
-    GEO_ANOMALY("Geographic Anomaly", "§9Geo Anomaly"),
-    BEHAVIOR_ANOMALY("Behavior Anomaly", "§aBehavior Anomaly");
+    JOIN_FLOOD(0, "Join Flood", "§cJoin Flood"),
+    PING_FLOOD(1, "Ping Flood", "§ePing Flood"),
+    PACKET_FLOOD(2, "Packet Flood", "§6Packet Flood"),
+    RECONNECT_SPAM(3, "Reconnect Spam", "§dReconnect Spam"),
+    NICKNAME_SPAM(4, "Nickname Spam", "§bNickname Spam"),
+    ACCOUNT_SPAM(5, "Account Spam", "§5Account Spam"),
+    GEO_ANOMALY(6, "Geographic Anomaly", "§9Geo Anomaly"),
+    BEHAVIOR_ANOMALY(7, "Behavior Anomaly", "§aBehavior Anomaly"),
+    // Stored by a newer version; never recorded
+    UNKNOWN(-1, "Unknown", "§7Unknown");
 
+    private static final AttackType[] BY_CODE = new AttackType[8];
+
+    static {
+        for (AttackType type : values()) {
+            if (type.code >= 0) BY_CODE[type.code] = type;
+        }
+    }
+
+    private final int code;
     private final String name;
     private final String displayName;
 
-    AttackType(String name, String displayName) {
+    AttackType(int code, String name, String displayName) {
+        this.code = code;
         this.name = name;
         this.displayName = displayName;
     }
 
+    /**
+     * @return the type stored under the code, {@link #UNKNOWN} if there is none
+     */
+    public static AttackType fromCode(int code) {
+        AttackType type = code >= 0 && code < BY_CODE.length ? BY_CODE[code] : null;
+        return type != null ? type : UNKNOWN;
+    }
+
+    public int getCode() {
+        return code;
+    }
+
     public String getName() {
         return name;
     }
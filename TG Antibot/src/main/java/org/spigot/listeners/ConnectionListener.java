@@ -9,8 +9,6 @@ import org.spigot.Main;
 import org.spigot.enums.AttackType;
 
 import java.util.UUID;
-import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.TimeUnit;
 
 public class ConnectionListener implements Listener {
 
@@ -43,13 +41,13 @@ public class ConnectionListener implements Listener {
         
         // Sanitize inputs
         name = name.trim();
-        ip = ip.trim();
 
         // Record connection analysis
         plugin.getAttackAnalyzer().recordConnectionAnalysis();
+        plugin.getBotProtectionManager().recordJoin(event.getAddress(), name);
 
         // Check firewall first
-        if (plugin.getFirewallManager().isBlocked(ip)) {
+        if (plugin.getFirewallManager().isBlocked(event.getAddress())) {
             String message = plugin.getMessages().get(
                 "ip-blocked",
                 "&cYour IP has been blocked from this server.\n&7If you believe this is a mistake, please contact staff.",
@@ -60,38 +58,19 @@ public class ConnectionListener implements Listener {
             return;
         }
 
-        // Check VPN if enabled (async to avoid blocking)
-        if (plugin.getConfigManager().isAsyncValidation()) {
-            CompletableFuture.supplyAsync(() -> plugin.getVPNChecker().isUsingVPN(ip))
-                .orTimeout(plugin.getConfigManager().getRequestTimeout(), TimeUnit.MILLISECONDS)
-                .whenComplete((isVPN, throwable) -> {
-                    if (throwable != null) {
-                        if (plugin.getConfigManager().isDebugMode()) {
-                            plugin.getLogger().warning("VPN check failed for " + ip + ": " + throwable.getMessage());
-                        }
-                        return;
-                    }
-                    
-                    if (isVPN && event.getLoginResult() == Result.ALLOWED) {
-                        String message = plugin.getMessages().get(
-                            "vpn-kick-message",
-                            "&cVPN/Proxy connections are not allowed on this server!"
-                        );
-                        event.disallow(Result.KICK_OTHER, message);
-                        plugin.getAttackAnalyzer().recordAttack(AttackType.BEHAVIOR_ANOMALY, ip, 1);
-                    }
-                });
-        } else {
-            // Synchronous VPN check
-            if (plugin.getVPNChecker().isUsingVPN(ip)) {
-                String message = plugin.getMessages().get(
-                    "vpn-kick-message",
-                    "&cVPN/Proxy connections are not allowed on this server!"
-                );
-                event.disallow(Result.KICK_OTHER, message);
-                plugin.getAttackAnalyzer().recordAttack(AttackType.BEHAVIOR_ANOMALY, ip, 1);
-                return;
-            }
+        // Check VPN if enabled. The lookup itself is async and shared with concurrent
+        // joins from the same IP; this thread only waits up to the configured deadline
+        long vpnWait = plugin.getConfigManager().isAsyncValidation()
+            ? plugin.getConfigManager().getLookupWait()
+            : plugin.getConfigManager().getRequestTimeout();
+        if (plugin.getVPNChecker().isUsingVPN(ip, vpnWait)) {
+            String message = plugin.getMessages().get(
+                "vpn-kick-message",
+                "&cVPN/Proxy connections are not allowed on this server!"
+            );
+            event.disallow(Result.KICK_OTHER, message);
+            plugin.getAttackAnalyzer().recordAttack(AttackType.BEHAVIOR_ANOMALY, ip, 1);
+            return;
         }
 
         // Run bot protection checks
@@ -110,6 +89,7 @@ public class ConnectionListener implements Listener {
             // Determine attack type based on current protection mode
             AttackType attackType = determineAttackType();
             plugin.getAttackAnalyzer().recordAttack(attackType, ip, 1);
+            plugin.getSecurityLog().record("KICK", "Denied " + name + " (" + ip + ") - Attack type: " + attackType);
             
             if (plugin.getConfigManager().isDebugMode()) {
                 plugin.getLogger().info("Blocked connection from " + name + " (" + ip + ") - Attack type: " + attackType);
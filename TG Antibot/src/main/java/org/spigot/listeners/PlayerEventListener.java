@@ -26,10 +26,11 @@ public class PlayerEventListener implements Listener {
             plugin.getNotificationManager().enableAutoNotifications(event.getPlayer());
         }
         
-        // Update security profile
+        // Update security profile and start counting play time
         if (event.getPlayer().getAddress() != null) {
             String ip = event.getPlayer().getAddress().getAddress().getHostAddress();
             plugin.getSecurityManager().updateSecurityProfile(ip, "JOIN");
+            plugin.getBotProtectionManager().handlePlayerJoin(event.getPlayer().getAddress().getAddress());
         }
     }
 
@@ -40,10 +41,11 @@ public class PlayerEventListener implements Listener {
         // Remove from notification systems
         plugin.getNotificationManager().removePlayer(event.getPlayer());
         
-        // Update security profile
+        // Update security profile and credit the play time
         if (event.getPlayer().getAddress() != null) {
             String ip = event.getPlayer().getAddress().getAddress().getHostAddress();
             plugin.getSecurityManager().updateSecurityProfile(ip, "QUIT");
+            plugin.getBotProtectionManager().handlePlayerQuit(event.getPlayer().getAddress().getAddress());
         }
     }
 
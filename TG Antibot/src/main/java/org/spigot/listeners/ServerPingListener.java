@@ -22,7 +22,7 @@ public class ServerPingListener implements Listener {
         plugin.getBotProtectionManager().handleServerPing(event.getAddress());
         
         // Check if IP is blocked
-        if (plugin.getFirewallManager().isBlocked(ip)) {
+        if (plugin.getFirewallManager().isBlocked(event.getAddress())) {
             // Don't reveal server info to blocked IPs
             event.setMotd("§cAccess Denied");
             event.setMaxPlayers(0);
@@ -0,0 +1,129 @@
+package org.spigot.utils;
+
+import java.util.Arrays;
+import java.util.Collection;
+
+/**
+ * Immutable set of autonomous system numbers.
+ *
+ * ASNs below 2^24 (every 16-bit ASN and the 32-bit ones handed out so far) are
+ * kept in a bitset sized to the largest member, anything above in a sorted
+ * array, so a membership test is a single word load in practice.
+ */
+public final class ASNSet {
+
+    // Constants
+    private static final long BITSET_LIMIT = 1L << 24;
+
+    public static final ASNSet EMPTY = new ASNSet(new long[0], new int[0], 0);
+
+    private final long[] bits;
+    private final int[] overflow;
+    private final int size;
+
+    private ASNSet(long[] bits, int[] overflow, int size) {
+        this.bits = bits;
+        this.overflow = overflow;
+        this.size = size;
+    }
+
+    /**
+     * @param asns unsigned 32-bit ASNs stored as ints; zero is ignored
+     */
+    public static ASNSet of(Collection<Integer> asns) {
+        long maxSmall = -1;
+        int large = 0;
+        for (int asn : asns) {
+            long value = asn & 0xFFFFFFFFL;
+            if (value == 0) continue;
+            if (value < BITSET_LIMIT) {
+                maxSmall = Math.max(maxSmall, value);
+            } else {
+                large++;
+            }
+        }
+
+        long[] bits = new long[(int) ((maxSmall >> 6) + 1)];
+        int[] overflow = new int[large];
+        int count = 0;
+        int size = 0;
+        for (int asn : asns) {
+            long value = asn & 0xFFFFFFFFL;
+            if (value == 0) continue;
+            if (value < BITSET_LIMIT) {
+                long mask = 1L << value;
+                if ((bits[(int) (value >> 6)] & mask) == 0) {
+                    bits[(int) (value >> 6)] |= mask;
+                    size++;
+                }
+            } else {
+                overflow[count++] = asn;
+            }
+        }
+
+        // Unsigned order, duplicates removed
+        long[] sorted = new long[count];
+        for (int i = 0; i < count; i++) {
+            sorted[i] = overflow[i] & 0xFFFFFFFFL;
+        }
+        Arrays.sort(sorted);
+        int unique = 0;
+        for (int i = 0; i < count; i++) {
+            if (unique == 0 || sorted[i] != sorted[unique - 1]) {
+                sorted[unique++] = sorted[i];
+            }
+        }
+        int[] large32 = new int[unique];
+        for (int i = 0; i < unique; i++) {
+            large32[i] = (int) sorted[i];
+        }
+        return new ASNSet(bits, large32, size + unique);
+    }
+
+    public boolean contains(int asn) {
+        long value = asn & 0xFFFFFFFFL;
+        if (value < BITSET_LIMIT) {
+            int word = (int) (value >> 6);
+            return word < bits.length && (bits[word] & (1L << value)) != 0;
+        }
+        return binarySearch(asn) >= 0;
+    }
+
+    private int binarySearch(int asn) {
+        int lo = 0;
+        int hi = overflow.length - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            int cmp = Integer.compareUnsigned(overflow[mid], asn);
+            if (cmp < 0) {
+                lo = mid + 1;
+            } else if (cmp > 0) {
+                hi = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -1;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Parse "AS13335" or "13335".
+     *
+     * @return the ASN as an unsigned int, or 0 if invalid
+     */
+    public static int parse(String value) {
+        if (value == null) return 0;
+        String digits = value.trim().toUpperCase();
+        if (digits.startsWith("AS")) digits = digits.substring(2);
+        try {
+            long number = Long.parseLong(digits);
+            return number > 0 && number < 0xFFFFFFFFL ? (int) number : 0;
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+}
@@ -0,0 +1,212 @@
+package org.spigot.utils;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.TimeZone;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Learned normal level of a rate, and the threshold above which it is an anomaly.
+ *
+ * The rate is sampled at a fixed interval. Two baselines are kept as
+ * exponentially weighted mean and variance: a level that follows the last few
+ * minutes, and a seasonal profile with one slot per half hour of local time,
+ * each remembering that half hour over the last several days. The expected
+ * value is whichever baseline is higher, so a quiet morning does not hide the
+ * usual evening peak and an unusually busy day is not flagged once it has
+ * lasted a while. The threshold is a number of standard deviations above the
+ * expected value, measured on the square root of the rate: arrivals are
+ * roughly Poisson, whose square root has a spread of at least 1/2 whatever
+ * the mean, so a quiet hour does not flag a few players arriving together.
+ * It is never below a fixed minimum.
+ *
+ * Samples above the threshold are clipped before they are learned, and the
+ * caller stops learning altogether during an attack, so a flood never raises
+ * its own baseline. Memory is fixed: a few numbers per slot.
+ */
+public class AdaptiveBaseline {
+
+    // Constants
+    private static final int SLOTS = 48;
+    private static final long SLOT_MILLIS = TimeUnit.DAYS.toMillis(1) / SLOTS;
+    private static final int VERSION = 1;
+
+    private final long sampleMillis;
+    private final double levelAlpha;
+    private final double slotAlpha;
+    private final long levelWarmup;
+    private final long slotWarmup;
+
+    // Guarded by this
+    private long levelCount;
+    private double levelMean;
+    private double levelVariance;
+    private final long[] slotCounts = new long[SLOTS];
+    private final double[] slotMeans = new double[SLOTS];
+    private final double[] slotVariances = new double[SLOTS];
+
+    private volatile double sensitivity = 4.0;
+    private volatile double minimum;
+    // NaN until enough has been learned
+    private volatile double threshold = Double.NaN;
+    private volatile double expected;
+
+    /**
+     * @param sampleInterval time between two samples
+     * @param levelWindow how far back the level looks, e.g. 5 minutes
+     * @param seasonDays how many days each half-hour slot remembers
+     * @param warmup samples needed before the threshold is used
+     */
+    public AdaptiveBaseline(long sampleInterval, long levelWindow, int seasonDays, long warmup, TimeUnit unit) {
+        this.sampleMillis = Math.max(1, unit.toMillis(sampleInterval));
+        double levelSamples = Math.max(1, unit.toMillis(levelWindow) / (double) sampleMillis);
+        double slotSamples = Math.max(1, seasonDays * SLOT_MILLIS / (double) sampleMillis);
+        this.levelAlpha = 1 - Math.exp(-1 / levelSamples);
+        this.slotAlpha = 1 - Math.exp(-1 / slotSamples);
+        this.levelWarmup = Math.max(1, unit.toMillis(warmup) / sampleMillis);
+        // A slot is trusted once it has seen a third of its half hour
+        this.slotWarmup = Math.max(1, SLOT_MILLIS / sampleMillis / 3);
+    }
+
+    /**
+     * @param sensitivity standard deviations above the expected value that count as an anomaly
+     * @param minimum the threshold is never lower than this
+     */
+    public void setLimits(double sensitivity, double minimum) {
+        this.sensitivity = Math.max(0.5, sensitivity);
+        this.minimum = Math.max(0, minimum);
+    }
+
+    /**
+     * Add a sample and recompute the threshold.
+     *
+     * @param learn false while under attack, the threshold is still updated for the time of day
+     */
+    public synchronized void sample(double value, long now, boolean learn) {
+        int slot = slotOf(now);
+        if (learn) {
+            double current = threshold;
+            double clipped = Double.isNaN(current) ? value : Math.min(value, current);
+
+            levelCount++;
+            double alpha = Math.max(levelAlpha, 1.0 / levelCount);
+            double diff = clipped - levelMean;
+            levelMean += alpha * diff;
+            levelVariance = (1 - alpha) * (levelVariance + alpha * diff * diff);
+
+            slotCounts[slot]++;
+            alpha = Math.max(slotAlpha, 1.0 / slotCounts[slot]);
+            diff = clipped - slotMeans[slot];
+            slotMeans[slot] += alpha * diff;
+            slotVariances[slot] = (1 - alpha) * (slotVariances[slot] + alpha * diff * diff);
+        }
+        recompute(slot);
+    }
+
+    /**
+     * @return the current threshold, or {@code fallback} while still learning
+     */
+    public double getThreshold(double fallback) {
+        double current = threshold;
+        return Double.isNaN(current) ? fallback : current;
+    }
+
+    public boolean isTrained() {
+        return !Double.isNaN(threshold);
+    }
+
+    /**
+     * @return the value considered normal now
+     */
+    public double getExpected() {
+        return expected;
+    }
+
+    public synchronized void reset() {
+        levelCount = 0;
+        levelMean = 0;
+        levelVariance = 0;
+        for (int i = 0; i < SLOTS; i++) {
+            slotCounts[i] = 0;
+            slotMeans[i] = 0;
+            slotVariances[i] = 0;
+        }
+        threshold = Double.NaN;
+        expected = 0;
+    }
+
+    // ================================
+    // PERSISTENCE
+    // ================================
+
+    public synchronized void writeTo(DataOutput out) throws IOException {
+        out.writeInt(VERSION);
+        out.writeLong(sampleMillis);
+        out.writeLong(levelCount);
+        out.writeDouble(levelMean);
+        out.writeDouble(levelVariance);
+        out.writeInt(SLOTS);
+        for (int i = 0; i < SLOTS; i++) {
+            out.writeLong(slotCounts[i]);
+            out.writeDouble(slotMeans[i]);
+            out.writeDouble(slotVariances[i]);
+        }
+    }
+
+    /**
+     * Restore what {@link #writeTo} saved. Data from another layout is read
+     * past and ignored.
+     */
+    public synchronized void readFrom(DataInput in) throws IOException {
+        int version = in.readInt();
+        long savedInterval = in.readLong();
+        long count = in.readLong();
+        double mean = in.readDouble();
+        double variance = in.readDouble();
+        int slots = in.readInt();
+        if (slots < 0 || slots > 1440) throw new IOException("Damaged baseline");
+        long[] counts = new long[slots];
+        double[] means = new double[slots];
+        double[] variances = new double[slots];
+        for (int i = 0; i < slots; i++) {
+            counts[i] = in.readLong();
+            means[i] = in.readDouble();
+            variances[i] = in.readDouble();
+        }
+        if (version != VERSION || savedInterval != sampleMillis || slots != SLOTS) return;
+
+        levelCount = count;
+        levelMean = mean;
+        levelVariance = variance;
+        System.arraycopy(counts, 0, slotCounts, 0, SLOTS);
+        System.arraycopy(means, 0, slotMeans, 0, SLOTS);
+        System.arraycopy(variances, 0, slotVariances, 0, SLOTS);
+        recompute(slotOf(System.currentTimeMillis()));
+    }
+
+    private void recompute(int slot) {
+        if (levelCount < levelWarmup) {
+            threshold = Double.NaN;
+            expected = levelMean;
+            return;
+        }
+        double mean = levelMean;
+        double variance = levelVariance;
+        if (slotCounts[slot] >= slotWarmup) {
+            mean = Math.max(mean, slotMeans[slot]);
+            variance = Math.max(variance, slotVariances[slot]);
+        }
+        // Spread of the square root by the delta method, at least that of a Poisson count
+        double root = Math.sqrt(Math.max(0, mean));
+        double spread = root > 0 ? Math.max(0.5, Math.sqrt(variance) / (2 * root)) : 0.5;
+        double limit = root + sensitivity * spread;
+        expected = mean;
+        threshold = Math.max(minimum, limit * limit);
+    }
+
+    private static int slotOf(long now) {
+        long local = now + TimeZone.getDefault().getOffset(now);
+        return (int) Math.floorMod(local / SLOT_MILLIS, (long) SLOTS);
+    }
+}
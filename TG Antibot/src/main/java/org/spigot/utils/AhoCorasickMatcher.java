@@ -0,0 +1,188 @@
+package org.spigot.utils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Case-insensitive multi-substring matcher (Aho-Corasick).
+ *
+ * The patterns are compiled once into a dense transition table over the
+ * characters that occur in them; every other character maps to a shared
+ * "other" class. Scanning a string is one table step per character, however
+ * many patterns there are, and allocates nothing. Immutable and thread-safe.
+ */
+public final class AhoCorasickMatcher {
+
+    // Constants
+    public static final int INITIAL_STATE = 0;
+    private static final int NO_MATCH = -1;
+
+    public static final AhoCorasickMatcher EMPTY = compile(new ArrayList<>());
+
+    private final String[] patterns;
+    private final int[] asciiClasses;
+    private final char[] otherChars;
+    private final int[] otherClasses;
+    private final int classCount;
+    // transitions[state * classCount + charClass]
+    private final int[] transitions;
+    // Pattern ending at a state or at any of its suffix states
+    private final int[] outputs;
+
+    private AhoCorasickMatcher(String[] patterns, int[] asciiClasses, char[] otherChars, int[] otherClasses,
+                               int classCount, int[] transitions, int[] outputs) {
+        this.patterns = patterns;
+        this.asciiClasses = asciiClasses;
+        this.otherChars = otherChars;
+        this.otherClasses = otherClasses;
+        this.classCount = classCount;
+        this.transitions = transitions;
+        this.outputs = outputs;
+    }
+
+    /**
+     * @param patterns substrings to look for; blank entries are ignored
+     */
+    public static AhoCorasickMatcher compile(Collection<String> patterns) {
+        List<String> kept = new ArrayList<>();
+        for (String pattern : patterns) {
+            if (pattern != null && !pattern.trim().isEmpty()) kept.add(pattern);
+        }
+
+        // Character classes: 0 is every character not used by a pattern
+        int[] asciiClasses = new int[128];
+        Map<Character, Integer> otherIndex = new HashMap<>();
+        int classCount = 1;
+        for (String pattern : kept) {
+            for (int i = 0; i < pattern.length(); i++) {
+                char c = fold(pattern.charAt(i));
+                if (c < 128) {
+                    if (asciiClasses[c] == 0) asciiClasses[c] = classCount++;
+                } else if (!otherIndex.containsKey(c)) {
+                    otherIndex.put(c, classCount++);
+                }
+            }
+        }
+        char[] otherChars = new char[otherIndex.size()];
+        int n = 0;
+        for (char c : otherIndex.keySet()) otherChars[n++] = c;
+        Arrays.sort(otherChars);
+        int[] otherClasses = new int[otherChars.length];
+        for (int i = 0; i < otherChars.length; i++) otherClasses[i] = otherIndex.get(otherChars[i]);
+
+        // Trie, with 0 meaning "no edge" (the root is never a child)
+        List<int[]> gotos = new ArrayList<>();
+        List<Integer> outputs = new ArrayList<>();
+        gotos.add(new int[classCount]);
+        outputs.add(NO_MATCH);
+        for (int p = 0; p < kept.size(); p++) {
+            String pattern = kept.get(p);
+            int state = 0;
+            for (int i = 0; i < pattern.length(); i++) {
+                int charClass = classOf(fold(pattern.charAt(i)), asciiClasses, otherChars, otherClasses);
+                int next = gotos.get(state)[charClass];
+                if (next == 0) {
+                    next = gotos.size();
+                    gotos.add(new int[classCount]);
+                    outputs.add(NO_MATCH);
+                    gotos.get(state)[charClass] = next;
+                }
+                state = next;
+            }
+            if (outputs.get(state) == NO_MATCH) outputs.set(state, p);
+        }
+
+        // Breadth-first: fill missing edges from the failure state and inherit its output
+        int stateCount = gotos.size();
+        int[] transitions = new int[stateCount * classCount];
+        int[] output = new int[stateCount];
+        int[] failure = new int[stateCount];
+        int[] queue = new int[stateCount];
+        int head = 0;
+        int tail = 0;
+        output[0] = outputs.get(0);
+        for (int c = 0; c < classCount; c++) {
+            int child = gotos.get(0)[c];
+            transitions[c] = child;
+            if (child != 0) {
+                failure[child] = 0;
+                queue[tail++] = child;
+            }
+        }
+        while (head < tail) {
+            int state = queue[head++];
+            int own = outputs.get(state);
+            output[state] = own != NO_MATCH ? own : output[failure[state]];
+            int[] edges = gotos.get(state);
+            for (int c = 0; c < classCount; c++) {
+                int child = edges[c];
+                int fallback = transitions[failure[state] * classCount + c];
+                if (child != 0) {
+                    failure[child] = fallback;
+                    transitions[state * classCount + c] = child;
+                    queue[tail++] = child;
+                } else {
+                    transitions[state * classCount + c] = fallback;
+                }
+            }
+        }
+
+        return new AhoCorasickMatcher(kept.toArray(new String[0]), asciiClasses, otherChars, otherClasses,
+            classCount, transitions, output);
+    }
+
+    /**
+     * @return the first pattern found in the text, or null if none occurs
+     */
+    public String findFirst(CharSequence text) {
+        if (patterns.length == 0 || text == null) return null;
+        int state = INITIAL_STATE;
+        for (int i = 0; i < text.length(); i++) {
+            state = step(state, text.charAt(i));
+            int match = outputs[state];
+            if (match != NO_MATCH) return patterns[match];
+        }
+        return null;
+    }
+
+    /**
+     * Advance the automaton by one character, for callers that scan the text
+     * themselves. Start from {@link #INITIAL_STATE}.
+     */
+    public int step(int state, char c) {
+        return transitions[state * classCount + classOf(fold(c), asciiClasses, otherChars, otherClasses)];
+    }
+
+    /**
+     * @return a pattern ending at the position that led to this state, or null
+     */
+    public String matchAt(int state) {
+        int match = outputs[state];
+        return match == NO_MATCH ? null : patterns[match];
+    }
+
+    public boolean matches(CharSequence text) {
+        return findFirst(text) != null;
+    }
+
+    public int getPatternCount() {
+        return patterns.length;
+    }
+
+    private static char fold(char c) {
+        if (c < 128) {
+            return c >= 'A' && c <= 'Z' ? (char) (c + 32) : c;
+        }
+        return Character.toLowerCase(c);
+    }
+
+    private static int classOf(char c, int[] asciiClasses, char[] otherChars, int[] otherClasses) {
+        if (c < 128) return asciiClasses[c];
+        int index = Arrays.binarySearch(otherChars, c);
+        return index >= 0 ? otherClasses[index] : 0;
+    }
+}
@@ -0,0 +1,312 @@
+package org.spigot.utils;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Logger;
+
+/**
+ * Allowed and blocked entries persisted in their own change log, outside config.yml.
+ *
+ * Every change is one line appended to the log: "+A", "-A", "+B" or "-B"
+ * followed by the entry. Changes are queued and written behind by a single
+ * writer thread, which batches everything queued within a short delay into
+ * one write and one fsync, so hundreds of auto-blacklistings cost a handful
+ * of disk writes. When the log has grown to several times the number of live
+ * entries it is compacted into a fresh log holding only the current entries,
+ * written to a temp file and swapped in atomically. A line cut short by a
+ * crash is ignored on load. If the log exists but cannot be read, the store
+ * keeps working in memory only and never writes, so the persisted entries
+ * are not overwritten by the few added since startup.
+ */
+public class BlocklistStore {
+
+    // Constants
+    private static final long FLUSH_DELAY_MS = 1000;
+    private static final int MIN_COMPACT_LINES = 1024;
+    private static final String ALLOW = "A";
+    private static final String BLOCK = "B";
+
+    private final String name;
+    private final File file;
+    private final Logger logger;
+    private final ScheduledExecutorService writer;
+
+    // Current entries and the lines not yet written, guarded by lock
+    private final Object lock = new Object();
+    private final Set<String> allowed = new LinkedHashSet<>();
+    private final Set<String> blocked = new LinkedHashSet<>();
+    private List<String> pending = new ArrayList<>();
+
+    private final AtomicBoolean flushScheduled = new AtomicBoolean();
+    // Writer thread only
+    private FileOutputStream appender;
+    private int logLines;
+    private boolean compactionNeeded;
+    private volatile boolean closed;
+    // Cleared when the log could not be read
+    private volatile boolean writable = true;
+
+    public BlocklistStore(String name, File file, Logger logger) {
+        this.name = name;
+        this.file = file;
+        this.logger = logger;
+        this.writer = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "TGA-" + name + "-Store");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /**
+     * Read the log. If there is none yet, start it with the given entries, e.g.
+     * the lists previously kept in config.yml. Blocking.
+     *
+     * @return true if the log existed
+     * @throws IOException if the log exists but cannot be read; the store then
+     * keeps changes in memory only
+     */
+    public boolean load(Collection<String> initialAllowed, Collection<String> initialBlocked) throws IOException {
+        boolean existed = file.isFile();
+        synchronized (lock) {
+            allowed.clear();
+            blocked.clear();
+            pending.clear();
+            if (existed) {
+                try {
+                    logLines = replay();
+                } catch (IOException e) {
+                    writable = false;
+                    throw e;
+                }
+            } else {
+                for (String entry : initialAllowed) apply("+" + ALLOW, entry);
+                for (String entry : initialBlocked) apply("+" + BLOCK, entry);
+            }
+        }
+        if (!existed) {
+            // Written right away, so the import only ever happens once
+            writer.execute(this::compact);
+            logger.info("[" + name + "] Imported " + (initialAllowed.size() + initialBlocked.size()) +
+                " entries into " + file.getName());
+        } else if (logLines < 0) {
+            // Rewrite without the torn line before anything is appended to it
+            writer.execute(this::compact);
+        }
+        return existed;
+    }
+
+    public void allow(String entry) {
+        record("+" + ALLOW, entry);
+    }
+
+    public void removeAllowed(String entry) {
+        record("-" + ALLOW, entry);
+    }
+
+    public void block(String entry) {
+        record("+" + BLOCK, entry);
+    }
+
+    public void removeBlocked(String entry) {
+        record("-" + BLOCK, entry);
+    }
+
+    public Set<String> getAllowed() {
+        synchronized (lock) {
+            return new LinkedHashSet<>(allowed);
+        }
+    }
+
+    public Set<String> getBlocked() {
+        synchronized (lock) {
+            return new LinkedHashSet<>(blocked);
+        }
+    }
+
+    /**
+     * Write what is queued and stop the writer. Blocking.
+     */
+    public void close() {
+        closed = true;
+        writer.shutdown();
+        try {
+            if (!writer.awaitTermination(5, TimeUnit.SECONDS)) {
+                writer.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            writer.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+        // Anything queued after the last scheduled flush
+        flush();
+        closeAppender();
+    }
+
+    // ================================
+    // WRITE-BEHIND
+    // ================================
+
+    private void record(String op, String entry) {
+        if (entry == null || entry.isEmpty()) return;
+        synchronized (lock) {
+            if (!apply(op, entry)) return;
+            pending.add(op + " " + entry);
+        }
+        if (closed) {
+            flushClosed();
+        } else if (flushScheduled.compareAndSet(false, true)) {
+            try {
+                writer.schedule(this::flush, FLUSH_DELAY_MS, TimeUnit.MILLISECONDS);
+            } catch (RejectedExecutionException e) {
+                // Closed in the meantime, e.g. a pre-login finishing during disable
+                flushClosed();
+            }
+        }
+    }
+
+    /**
+     * Write a change that arrived after {@link #close} on the calling thread.
+     */
+    private synchronized void flushClosed() {
+        flush();
+        closeAppender();
+    }
+
+    /**
+     * @return whether the change altered the entries
+     */
+    private boolean apply(String op, String entry) {
+        Set<String> target = op.endsWith(ALLOW) ? allowed : blocked;
+        if (op.startsWith("+")) {
+            // An entry is either allowed or blocked
+            (target == allowed ? blocked : allowed).remove(entry);
+            return target.add(entry);
+        }
+        return target.remove(entry);
+    }
+
+    private synchronized void flush() {
+        flushScheduled.set(false);
+        List<String> lines;
+        int live;
+        synchronized (lock) {
+            if (!writable) {
+                pending.clear();
+                return;
+            }
+            if (pending.isEmpty()) return;
+            lines = pending;
+            pending = new ArrayList<>();
+            live = allowed.size() + blocked.size();
+        }
+
+        if (compactionNeeded || logLines + lines.size() > Math.max(MIN_COMPACT_LINES, live * 4)) {
+            compact();
+            return;
+        }
+
+        StringBuilder builder = new StringBuilder(lines.size() * 24);
+        for (String line : lines) {
+            builder.append(line).append('\n');
+        }
+        try {
+            if (appender == null) {
+                appender = new FileOutputStream(file, true);
+            }
+            appender.write(builder.toString().getBytes(StandardCharsets.UTF_8));
+            // One sync for the whole batch
+            appender.getFD().sync();
+            logLines += lines.size();
+        } catch (IOException e) {
+            logger.warning("[" + name + "] Failed to write " + lines.size() + " changes: " + e.getMessage());
+            closeAppender();
+            // The entries are still in memory; the next flush rewrites them all
+            compactionNeeded = true;
+        }
+    }
+
+    /**
+     * Replace the log with the current entries.
+     */
+    private synchronized void compact() {
+        List<String> lines = new ArrayList<>();
+        synchronized (lock) {
+            if (!writable) return;
+            // Queued changes are already part of the entries written here
+            pending.clear();
+            for (String entry : allowed) lines.add("+" + ALLOW + " " + entry);
+            for (String entry : blocked) lines.add("+" + BLOCK + " " + entry);
+        }
+
+        File temp = new File(file.getPath() + ".tmp");
+        StringBuilder builder = new StringBuilder(lines.size() * 24);
+        for (String line : lines) {
+            builder.append(line).append('\n');
+        }
+        try {
+            File parent = file.getParentFile();
+            if (parent != null && !parent.isDirectory() && !parent.mkdirs()) {
+                throw new IOException("Cannot create " + parent.getPath());
+            }
+            try (FileOutputStream out = new FileOutputStream(temp)) {
+                out.write(builder.toString().getBytes(StandardCharsets.UTF_8));
+                out.getFD().sync();
+            }
+            closeAppender();
+            Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            logLines = lines.size();
+            compactionNeeded = false;
+        } catch (IOException e) {
+            logger.warning("[" + name + "] Failed to compact " + file.getName() + ": " + e.getMessage());
+            compactionNeeded = true;
+        }
+    }
+
+    /**
+     * @return the number of complete lines, or -1 if the last one was cut short
+     */
+    private int replay() throws IOException {
+        byte[] data = Files.readAllBytes(file.toPath());
+
+        int lines = 0;
+        int start = 0;
+        for (int i = 0; i < data.length; i++) {
+            if (data[i] != '\n') continue;
+            String line = new String(data, start, i - start, StandardCharsets.UTF_8);
+            start = i + 1;
+            lines++;
+            // "+A entry"; anything else is a foreign line
+            if (line.length() < 4 || line.charAt(2) != ' ') continue;
+            String op = line.substring(0, 2);
+            if (op.charAt(0) != '+' && op.charAt(0) != '-') continue;
+            if (!op.endsWith(ALLOW) && !op.endsWith(BLOCK)) continue;
+            apply(op, line.substring(3));
+        }
+        // A final line without its newline was torn by a crash
+        return start < data.length ? -1 : lines;
+    }
+
+    private void closeAppender() {
+        if (appender == null) return;
+        try {
+            appender.close();
+        } catch (IOException ignored) {
+            // Nothing left to save
+        }
+        appender = null;
+    }
+}
@@ -0,0 +1,117 @@
+package org.spigot.utils;
+
+import java.net.InetAddress;
+import java.util.Arrays;
+
+/**
+ * Immutable set of binary IP keys in one flat open-addressing table.
+ *
+ * Meant for large read-mostly lists that are rebuilt and swapped as a whole:
+ * there is no locking, and {@link #contains} is a couple of array reads without
+ * allocation. Slots holding the unspecified address (::) mark empty slots, so
+ * that address is tracked by a separate flag.
+ */
+public final class CompactIPSet {
+
+    // Constants
+    private static final float LOAD_FACTOR = 0.5f;
+
+    public static final CompactIPSet EMPTY = new Builder().build();
+
+    private final long[] highs;
+    private final long[] lows;
+    private final int mask;
+    private final int size;
+    private final boolean containsZero;
+
+    private CompactIPSet(long[] highs, long[] lows, int size, boolean containsZero) {
+        this.highs = highs;
+        this.lows = lows;
+        this.mask = highs.length - 1;
+        this.size = size;
+        this.containsZero = containsZero;
+    }
+
+    public boolean contains(long high, long low) {
+        if (high == 0L && low == 0L) return containsZero;
+
+        int index = IPAddressKey.hash(high, low) & mask;
+        while (true) {
+            long slotHigh = highs[index];
+            long slotLow = lows[index];
+            if (slotHigh == high && slotLow == low) return true;
+            if (slotHigh == 0L && slotLow == 0L) return false;
+            index = (index + 1) & mask;
+        }
+    }
+
+    public boolean contains(InetAddress address) {
+        return address != null && contains(IPAddressKey.high(address), IPAddressKey.low(address));
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Collects keys for a new set. Not thread-safe.
+     */
+    public static final class Builder {
+        private long[] highs = new long[16];
+        private long[] lows = new long[16];
+        private int count;
+
+        public Builder add(long high, long low) {
+            if (count == highs.length) {
+                highs = Arrays.copyOf(highs, count * 2);
+                lows = Arrays.copyOf(lows, count * 2);
+            }
+            highs[count] = high;
+            lows[count] = low;
+            count++;
+            return this;
+        }
+
+        /**
+         * @return false if the string is not an IP literal
+         */
+        public boolean add(String ip) {
+            IPAddressKey key = IPAddressKey.parse(ip);
+            if (key == null) return false;
+            add(key.getHigh(), key.getLow());
+            return true;
+        }
+
+        public CompactIPSet build() {
+            int capacity = Integer.highestOneBit(Math.max(2, (int) (count / LOAD_FACTOR)) - 1) << 1;
+            long[] tableHighs = new long[capacity];
+            long[] tableLows = new long[capacity];
+            int mask = capacity - 1;
+            int size = 0;
+            boolean containsZero = false;
+
+            for (int i = 0; i < count; i++) {
+                long high = highs[i];
+                long low = lows[i];
+                if (high == 0L && low == 0L) {
+                    if (!containsZero) size++;
+                    containsZero = true;
+                    continue;
+                }
+
+                int index = IPAddressKey.hash(high, low) & mask;
+                while (true) {
+                    if (tableHighs[index] == 0L && tableLows[index] == 0L) {
+                        tableHighs[index] = high;
+                        tableLows[index] = low;
+                        size++;
+                        break;
+                    }
+                    if (tableHighs[index] == high && tableLows[index] == low) break;
+                    index = (index + 1) & mask;
+                }
+            }
+            return new CompactIPSet(tableHighs, tableLows, size, containsZero);
+        }
+    }
+}
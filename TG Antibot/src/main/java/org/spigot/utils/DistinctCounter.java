@@ -0,0 +1,150 @@
+package org.spigot.utils;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free estimate of distinct values over a sliding window of real time.
+ *
+ * A HyperLogLog sketch is kept per time bucket, laid out like
+ * {@link SlidingWindowCounter}: each register packs the bucket epoch into the
+ * high bits and the register rank into the low byte, so a stale register is
+ * reset and raised in a single CAS. The window estimate merges the live buckets
+ * register by register. With 1024 registers the standard error is about 3%,
+ * and memory is fixed whatever the number of values.
+ */
+public class DistinctCounter {
+
+    // Constants
+    private static final int PRECISION = 10;
+    private static final int REGISTERS = 1 << PRECISION;
+    private static final int RANK_BITS = 8;
+    private static final long RANK_MASK = (1L << RANK_BITS) - 1;
+    private static final double ALPHA = 0.7213 / (1 + 1.079 / REGISTERS);
+    private static final long REFRESH_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
+    private final long resolutionNanos;
+    private final int bucketCount;
+    private final AtomicLongArray registers;
+    private final long origin;
+
+    // Last estimate, recomputed at most every REFRESH_NANOS
+    private volatile long cachedAt;
+    private volatile long cachedEstimate;
+
+    /**
+     * @param resolution bucket length
+     * @param window time covered by {@link #estimate}
+     */
+    public DistinctCounter(long resolution, long window, TimeUnit unit) {
+        if (resolution <= 0 || window < resolution) {
+            throw new IllegalArgumentException("window must be at least one bucket long");
+        }
+        this.resolutionNanos = unit.toNanos(resolution);
+        this.bucketCount = (int) (window / resolution);
+        // Bucket-major layout, one sketch after another
+        this.registers = new AtomicLongArray(bucketCount * REGISTERS);
+        this.origin = System.nanoTime();
+        this.cachedAt = origin - REFRESH_NANOS;
+    }
+
+    /**
+     * Record a value given as a well mixed 64-bit hash, see {@link #hash}.
+     */
+    public void offer(long hash) {
+        int register = (int) (hash >>> (64 - PRECISION));
+        // Rank of the first set bit in the remaining bits, capped by the guard bit
+        long rank = Long.numberOfLeadingZeros((hash << PRECISION) | (1L << (PRECISION - 1))) + 1;
+
+        long epoch = currentEpoch();
+        int index = (int) (epoch % bucketCount) * REGISTERS + register;
+        while (true) {
+            long current = registers.get(index);
+            if ((current >>> RANK_BITS) == epoch && (current & RANK_MASK) >= rank) {
+                return;
+            }
+            if (registers.compareAndSet(index, current, (epoch << RANK_BITS) | rank)) {
+                return;
+            }
+        }
+    }
+
+    public void offer(long high, long low) {
+        offer(hash(high, low));
+    }
+
+    public void offer(CharSequence value) {
+        offer(hash(value));
+    }
+
+    /**
+     * Estimated number of distinct values in the window.
+     */
+    public long estimate() {
+        long now = System.nanoTime();
+        if (now - cachedAt < REFRESH_NANOS) {
+            return cachedEstimate;
+        }
+
+        long epoch = (now - origin) / resolutionNanos + 1;
+        long oldest = epoch - bucketCount + 1;
+        double sum = 0;
+        int zeros = 0;
+        for (int register = 0; register < REGISTERS; register++) {
+            long rank = 0;
+            for (int bucket = 0; bucket < bucketCount; bucket++) {
+                long value = registers.get(bucket * REGISTERS + register);
+                long valueEpoch = value >>> RANK_BITS;
+                if (valueEpoch >= oldest && valueEpoch <= epoch) {
+                    rank = Math.max(rank, value & RANK_MASK);
+                }
+            }
+            sum += 1.0 / (1L << rank);
+            if (rank == 0) zeros++;
+        }
+
+        double estimate = ALPHA * REGISTERS * REGISTERS / sum;
+        if (estimate <= 2.5 * REGISTERS && zeros > 0) {
+            // Linear counting is more accurate for small cardinalities
+            estimate = REGISTERS * Math.log((double) REGISTERS / zeros);
+        }
+
+        long result = Math.round(estimate);
+        cachedEstimate = result;
+        cachedAt = now;
+        return result;
+    }
+
+    public void reset() {
+        for (int i = 0; i < registers.length(); i++) {
+            registers.set(i, 0);
+        }
+        cachedAt = System.nanoTime() - REFRESH_NANOS;
+    }
+
+    public static long hash(long high, long low) {
+        return mix(mix(high ^ 0x9E3779B97F4A7C15L) + low);
+    }
+
+    public static long hash(CharSequence value) {
+        long h = 0xCBF29CE484222325L;
+        for (int i = 0; i < value.length(); i++) {
+            h = (h ^ value.charAt(i)) * 0x100000001B3L;
+        }
+        return mix(h);
+    }
+
+    private static long mix(long h) {
+        h ^= h >>> 33;
+        h *= 0xFF51AFD7ED558CCDL;
+        h ^= h >>> 33;
+        h *= 0xC4CEB9FE1A85EC53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    private long currentEpoch() {
+        // Offset by one so a zeroed register never matches a live epoch
+        return (System.nanoTime() - origin) / resolutionNanos + 1;
+    }
+}
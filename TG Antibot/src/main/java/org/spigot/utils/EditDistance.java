@@ -0,0 +1,126 @@
+package org.spigot.utils;
+
+/**
+ * Case-insensitive Levenshtein distance with an upper bound.
+ *
+ * Uses Myers' bit-vector algorithm in Hyyrö's formulation: one DP column is
+ * held in two longs and advanced with a few word operations per character, so
+ * any string of up to 64 characters (Minecraft names have 16) is compared in
+ * a single pass without a DP table. Stops as soon as the bound can no longer be
+ * met. Longer strings fall back to a two-row DP.
+ */
+public final class EditDistance {
+
+    // Constants
+    private static final int MAX_PATTERN = 64;
+
+    // Match masks for ASCII characters of the current pattern, cleared after use
+    private static final ThreadLocal<long[]> ASCII_MASKS = ThreadLocal.withInitial(() -> new long[128]);
+
+    private EditDistance() {
+    }
+
+    /**
+     * @return true if the strings differ in at most {@code max} insertions,
+     * deletions or substitutions, ignoring case
+     */
+    public static boolean isWithin(CharSequence a, CharSequence b, int max) {
+        return distance(a, b, max) <= max;
+    }
+
+    /**
+     * @return the distance, or {@code max + 1} if it exceeds {@code max}
+     */
+    public static int distance(CharSequence a, CharSequence b, int max) {
+        if (max < 0) return 0;
+        // Shorter string is the pattern, the longer one is scanned
+        CharSequence pattern = a.length() <= b.length() ? a : b;
+        CharSequence text = pattern == a ? b : a;
+        int m = pattern.length();
+        int n = text.length();
+
+        if (n - m > max) return max + 1;
+        if (m == 0) return n;
+        if (m > MAX_PATTERN) return boundedDp(pattern, text, max);
+
+        long[] masks = ASCII_MASKS.get();
+        for (int i = 0; i < m; i++) {
+            char c = fold(pattern.charAt(i));
+            if (c < 128) masks[c] |= 1L << i;
+        }
+
+        try {
+            long last = 1L << (m - 1);
+            long pv = -1L;
+            long mv = 0L;
+            int score = m;
+
+            for (int j = 0; j < n; j++) {
+                char c = fold(text.charAt(j));
+                long eq = c < 128 ? masks[c] : nonAsciiMask(pattern, c);
+
+                long xv = eq | mv;
+                long xh = (((eq & pv) + pv) ^ pv) | eq;
+                long ph = mv | ~(xh | pv);
+                long mh = pv & xh;
+                if ((ph & last) != 0) {
+                    score++;
+                } else if ((mh & last) != 0) {
+                    score--;
+                }
+                // Row 0 grows by one per text character
+                ph = (ph << 1) | 1L;
+                mh <<= 1;
+                pv = mh | ~(xv | ph);
+                mv = ph & xv;
+
+                // Each remaining character lowers the score by at most one
+                if (score - (n - j - 1) > max) return max + 1;
+            }
+            return score <= max ? score : max + 1;
+        } finally {
+            for (int i = 0; i < m; i++) {
+                char c = fold(pattern.charAt(i));
+                if (c < 128) masks[c] = 0L;
+            }
+        }
+    }
+
+    private static long nonAsciiMask(CharSequence pattern, char c) {
+        long mask = 0L;
+        for (int i = 0; i < pattern.length(); i++) {
+            if (fold(pattern.charAt(i)) == c) mask |= 1L << i;
+        }
+        return mask;
+    }
+
+    private static int boundedDp(CharSequence pattern, CharSequence text, int max) {
+        int m = pattern.length();
+        int[] previous = new int[m + 1];
+        int[] current = new int[m + 1];
+        for (int i = 0; i <= m; i++) previous[i] = i;
+
+        for (int j = 1; j <= text.length(); j++) {
+            current[0] = j;
+            int rowMin = current[0];
+            char c = fold(text.charAt(j - 1));
+            for (int i = 1; i <= m; i++) {
+                int cost = fold(pattern.charAt(i - 1)) == c ? 0 : 1;
+                current[i] = Math.min(Math.min(previous[i] + 1, current[i - 1] + 1), previous[i - 1] + cost);
+                rowMin = Math.min(rowMin, current[i]);
+            }
+            if (rowMin > max) return max + 1;
+            int[] swap = previous;
+            previous = current;
+            current = swap;
+        }
+        return previous[m] <= max ? previous[m] : max + 1;
+    }
+
+    private static char fold(char c) {
+        if (c < 128) {
+            return c >= 'A' && c <= 'Z' ? (char) (c + 32) : c;
+        }
+        return Character.toLowerCase(c);
+    }
+}
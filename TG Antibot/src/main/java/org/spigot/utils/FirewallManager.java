@@ -3,15 +3,15 @@ package org.spigot.utils;
 import org.bukkit.Bukkit;
 import org.bukkit.entity.Player;
 import org.spigot.Main;
+import org.spigot.enums.AccessVerdict;
 
+import java.io.File;
+import java.io.IOException;
 import java.net.InetAddress;
 import java.util.ArrayList;
-import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ConcurrentMap;
-import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
@@ -19,23 +19,38 @@ import java.util.stream.Collectors;
 public class FirewallManager {
 
     private final Main plugin;
-    private final ConcurrentMap<String, Long> dynamicBlockedIPs;
-    private final ConcurrentMap<String, Long> tempBlockedIPs;
-    private final ScheduledExecutorService cleanupExecutor;
-    private volatile boolean isShutdown = false;
+    private final IPAccessList accessList;
+    private final ExecutorService rebuildExecutor;
+    private final BlocklistStore ruleStore;
 
     public FirewallManager(Main plugin) {
         this.plugin = plugin;
-        this.dynamicBlockedIPs = new ConcurrentHashMap<>();
-        this.tempBlockedIPs = new ConcurrentHashMap<>();
         
-        this.cleanupExecutor = Executors.newSingleThreadScheduledExecutor(r -> {
-            Thread t = new Thread(r, "TGA-Firewall-Cleanup");
+        this.rebuildExecutor = Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "TGA-Firewall-Rebuild");
             t.setDaemon(true);
             return t;
         });
+        // Lookups never wait for rebuilds, temporary blocks expire on the shared wheel
+        this.accessList = new IPAccessList("FirewallManager", plugin.getLogger(), rebuildExecutor, plugin.getExpiryWheel());
+        accessList.setExpiryListener((high, low, expiration) -> {
+            if (plugin.getConfigManager().isDebugMode()) {
+                plugin.getLogger().info("§aTemporary block expired for IP: " + IPAddressKey.toString(high, low));
+            }
+        });
+
+        // Rules added by command used to be saved into config.yml; they are imported into the store once
+        this.ruleStore = new BlocklistStore("FirewallManager",
+            new File(plugin.getDataFolder(), "lists/firewall.log"), plugin.getLogger());
+        try {
+            ruleStore.load(normalizeList(plugin.getConfig().getStringList("firewall.whitelist-ips")),
+                normalizeList(plugin.getConfig().getStringList("firewall.blocked-ips")));
+        } catch (IOException e) {
+            plugin.getLogger().severe("[FirewallManager] Failed to read the firewall rules, " +
+                "changes will not be saved until they can be read: " + e.getMessage());
+        }
         
-        startCleanupTask();
+        loadRules();
     }
 
     public boolean isBlocked(Player player) {
@@ -55,45 +70,47 @@ public class FirewallManager {
             return false;
         }
         
-        String ip = normalizeIP(address.getHostAddress());
-
-        return isBlocked(ip);
+        return isBlocked(address);
     }
 
-    public boolean isBlocked(String ip) {
-        if (!plugin.getConfigManager().isFirewallEnabled() || ip == null) {
+    public boolean isBlocked(InetAddress address) {
+        if (!plugin.getConfigManager().isFirewallEnabled() || address == null) {
             return false;
         }
+        return isBlocked(IPAddressKey.high(address), IPAddressKey.low(address));
+    }
 
-        ip = normalizeIP(ip);
-        
-        if (ip.isEmpty()) {
+    public boolean isBlocked(String ip) {
+        if (!plugin.getConfigManager().isFirewallEnabled() || ip == null) {
             return false;
         }
 
-        if (plugin.getConfigManager().isDebugMode()) {
-            plugin.getLogger().info("[FirewallManager] Checking IP: " + ip);
-        }
+        IPAddressKey key = IPAddressKey.parse(normalizeIP(ip));
+        return key != null && isBlocked(key.getHigh(), key.getLow());
+    }
 
-        // Check whitelist first
-        List<String> whitelistIps = normalizeList(plugin.getConfig().getStringList("firewall.whitelist-ips"));
-        if (whitelistIps.contains(ip)) {
-            if (plugin.getConfigManager().isDebugMode()) {
-                plugin.getLogger().info("[FirewallManager] IP is whitelisted: " + ip);
+    private boolean isBlocked(long high, long low) {
+        // Whitelisted ranges win over blocked ones
+        AccessVerdict verdict = accessList.lookup(high, low);
+        String reason = verdict.getDisplayName();
+        boolean blocked = verdict.isBlocked();
+        if (verdict == AccessVerdict.NONE) {
+            if (plugin.getConfigManager().isBlockTorNodes() && plugin.getTorExitList().contains(high, low)) {
+                reason = "Tor exit node";
+                blocked = true;
+            } else if (plugin.getConfigManager().isBlockHostingServices() &&
+                plugin.getHostingClassifier().isHosting(high, low)) {
+                reason = "Hosting provider AS" + Integer.toUnsignedString(plugin.getHostingClassifier().getASN(high, low));
+                blocked = true;
             }
-            return false;
         }
 
-        // Check static blocked IPs from config
-        List<String> configBlockedIps = normalizeList(plugin.getConfig().getStringList("firewall.blocked-ips"));
-        if (configBlockedIps.contains(ip) || dynamicBlockedIPs.containsKey(ip) || tempBlockedIPs.containsKey(ip)) {
-            if (plugin.getConfigManager().isDebugMode()) {
-                plugin.getLogger().info("[FirewallManager] Blocked connection from IP: " + ip);
-            }
-            return true;
+        if (plugin.getConfigManager().isDebugMode()) {
+            plugin.getLogger().info("[FirewallManager] Checked IP: " + IPAddressKey.toString(high, low) +
+                " (" + reason + ")");
         }
 
-        return false;
+        return blocked;
     }
 
     public void blockIP(String ip) {
@@ -103,27 +120,16 @@ public class FirewallManager {
         }
         
         final String normalizedIP = normalizeIP(ip);
-        if (normalizedIP.isEmpty()) {
+        if (!IPAccessList.isValidEntry(normalizedIP)) {
             plugin.getLogger().warning("[FirewallManager] Attempted to block invalid IP: " + ip);
             return;
         }
         
-        long currentTime = System.currentTimeMillis();
-        dynamicBlockedIPs.put(normalizedIP, currentTime);
-
-        List<String> configBlockedIps = normalizeList(plugin.getConfig().getStringList("firewall.blocked-ips"));
-        if (!configBlockedIps.contains(normalizedIP)) {
-            configBlockedIps.add(normalizedIP);
-            
-            try {
-                plugin.getConfig().set("firewall.blocked-ips", configBlockedIps);
-                plugin.saveConfig();
-            } catch (Exception e) {
-                plugin.getLogger().severe("[FirewallManager] Failed to save blocked IP to config: " + e.getMessage());
-            }
-        }
+        accessList.block(normalizedIP);
+        ruleStore.block(normalizedIP);
 
         plugin.getLogger().info("§cBlocked IP: " + normalizedIP);
+        plugin.getSecurityLog().record("FIREWALL", "Blocked IP: " + normalizedIP);
     }
 
     public void blockIPTemporary(String ip, long durationSeconds) {
@@ -138,17 +144,19 @@ public class FirewallManager {
         }
         
         final String normalizedIP = normalizeIP(ip);
-        if (normalizedIP.isEmpty()) {
+        IPAddressKey key = IPAddressKey.parse(normalizedIP);
+        if (key == null) {
             plugin.getLogger().warning("[FirewallManager] Attempted to temp block invalid IP: " + ip);
             return;
         }
         
         long expirationTime = System.currentTimeMillis() + (durationSeconds * 1000);
-        tempBlockedIPs.put(normalizedIP, expirationTime);
+        accessList.tempBlock(key.getHigh(), key.getLow(), expirationTime);
 
         plugin.getLogger().info("§eTemporarily blocked IP: " + normalizedIP + " for " + durationSeconds + " seconds");
+        plugin.getSecurityLog().record("FIREWALL", "Temporarily blocked IP: " + normalizedIP + " for " + durationSeconds + " seconds");
 
-        // The cleanup task will handle removal
+        // The expiry wheel will handle removal
     }
 
     public void unblockIP(String ip) {
@@ -161,22 +169,16 @@ public class FirewallManager {
             return;
         }
         
-        dynamicBlockedIPs.remove(normalizedIP);
-        tempBlockedIPs.remove(normalizedIP);
-
-        List<String> configBlockedIps = normalizeList(plugin.getConfig().getStringList("firewall.blocked-ips"));
-        if (configBlockedIps.contains(normalizedIP)) {
-            configBlockedIps.remove(normalizedIP);
-            
-            try {
-                plugin.getConfig().set("firewall.blocked-ips", configBlockedIps);
-                plugin.saveConfig();
-            } catch (Exception e) {
-                plugin.getLogger().severe("[FirewallManager] Failed to save unblocked IP to config: " + e.getMessage());
-            }
+        accessList.removeBlocked(normalizedIP);
+        accessList.removeTempBlock(normalizedIP);
+        ruleStore.removeBlocked(normalizedIP);
+        if (normalizeList(plugin.getConfig().getStringList("firewall.blocked-ips")).contains(normalizedIP)) {
+            plugin.getLogger().warning("[FirewallManager] IP " + normalizedIP + " is still listed under " +
+                "firewall.blocked-ips in config.yml and will be blocked again on reload");
         }
 
         plugin.getLogger().info("§aUnblocked IP: " + normalizedIP);
+        plugin.getSecurityLog().record("FIREWALL", "Unblocked IP: " + normalizedIP);
     }
 
     public void whitelistIP(String ip) {
@@ -186,25 +188,15 @@ public class FirewallManager {
         }
         
         final String normalizedIP = normalizeIP(ip);
-        if (normalizedIP.isEmpty()) {
+        if (!IPAccessList.isValidEntry(normalizedIP)) {
             plugin.getLogger().warning("[FirewallManager] Attempted to whitelist invalid IP: " + ip);
             return;
         }
         
-        List<String> whitelistIps = normalizeList(plugin.getConfig().getStringList("firewall.whitelist-ips"));
-        if (!whitelistIps.contains(normalizedIP)) {
-            whitelistIps.add(normalizedIP);
-            
-            try {
-                plugin.getConfig().set("firewall.whitelist-ips", whitelistIps);
-                plugin.saveConfig();
-            } catch (Exception e) {
-                plugin.getLogger().severe("[FirewallManager] Failed to save whitelisted IP to config: " + e.getMessage());
-            }
-        }
-
         // Remove from blocked lists
         unblockIP(normalizedIP);
+        accessList.allow(normalizedIP);
+        ruleStore.allow(normalizedIP);
 
         plugin.getLogger().info("§aWhitelisted IP: " + normalizedIP);
     }
@@ -244,58 +236,45 @@ public class FirewallManager {
     }
 
     public Set<String> getBlockedIPs() {
-        Set<String> allBlocked = new HashSet<>(dynamicBlockedIPs.keySet());
-        allBlocked.addAll(tempBlockedIPs.keySet());
-        allBlocked.addAll(normalizeList(plugin.getConfig().getStringList("firewall.blocked-ips")));
+        Set<String> allBlocked = accessList.getBlocked();
+        allBlocked.addAll(accessList.getTempBlocked());
         return allBlocked;
     }
 
     public Set<String> getWhitelistedIPs() {
-        return new HashSet<>(normalizeList(plugin.getConfig().getStringList("firewall.whitelist-ips")));
+        return accessList.getAllowed();
     }
-    
-    private void startCleanupTask() {
-        cleanupExecutor.scheduleAtFixedRate(() -> {
-            if (isShutdown) return;
-            
-            long currentTime = System.currentTimeMillis();
-            
-            // Clean up expired temporary blocks
-            tempBlockedIPs.entrySet().removeIf(entry -> {
-                if (entry.getValue() < currentTime) {
-                    if (plugin.getConfigManager().isDebugMode()) {
-                        plugin.getLogger().info("§aTemporary block expired for IP: " + entry.getKey());
-                    }
-                    return true;
-                }
-                return false;
-            });
-            
-            // Clean up old dynamic blocks (older than auto-block duration)
-            long autoBlockDuration = plugin.getConfigManager().getAutoBlockDuration() * 1000L;
-            dynamicBlockedIPs.entrySet().removeIf(entry -> {
-                if (currentTime - entry.getValue() > autoBlockDuration) {
-                    if (plugin.getConfigManager().isDebugMode()) {
-                        plugin.getLogger().info("§aAuto-unblocked expired IP: " + entry.getKey());
-                    }
-                    return true;
-                }
-                return false;
-            });
-            
-        }, 60, 60, TimeUnit.SECONDS); // Run every minute
+
+    /**
+     * Recompile the rule trie from the rule store and config. Called on plugin
+     * reload; temporary blocks are kept.
+     */
+    public void reload() {
+        loadRules();
+    }
+
+    private void loadRules() {
+        // Rules still listed in config.yml apply on top of the store
+        List<String> allowed = new ArrayList<>(ruleStore.getAllowed());
+        allowed.addAll(normalizeList(plugin.getConfigManager().getSafeAddresses()));
+        allowed.addAll(normalizeList(plugin.getConfig().getStringList("firewall.whitelist-ips")));
+
+        List<String> blocked = new ArrayList<>(ruleStore.getBlocked());
+        blocked.addAll(normalizeList(plugin.getConfigManager().getBlockedAddresses()));
+        blocked.addAll(normalizeList(plugin.getConfig().getStringList("firewall.blocked-ips")));
+
+        accessList.setEntries(allowed, blocked);
     }
     
     public void shutdown() {
-        isShutdown = true;
-        
-        cleanupExecutor.shutdown();
+        ruleStore.close();
+        rebuildExecutor.shutdown();
         try {
-            if (!cleanupExecutor.awaitTermination(5, TimeUnit.SECONDS)) {
-                cleanupExecutor.shutdownNow();
+            if (!rebuildExecutor.awaitTermination(5, TimeUnit.SECONDS)) {
+                rebuildExecutor.shutdownNow();
             }
         } catch (InterruptedException e) {
-            cleanupExecutor.shutdownNow();
+            rebuildExecutor.shutdownNow();
             Thread.currentThread().interrupt();
         }
         
@@ -305,7 +284,9 @@ public class FirewallManager {
     // Helper methods
     private String normalizeIP(String ip) {
         if (ip == null) return "";
-        return ip.replace("/", "").trim().toLowerCase();
+        // Only strip the leading slash of InetAddress.toString(), keep CIDR suffixes
+        String normalized = ip.trim().toLowerCase();
+        return normalized.startsWith("/") ? normalized.substring(1) : normalized;
     }
 
     private List<String> normalizeList(List<String> list) {
@@ -317,10 +298,6 @@ public class FirewallManager {
     }
     
     public String getStats() {
-        return String.format("Dynamic blocks: %d, Temp blocks: %d, Config blocks: %d, Whitelist: %d",
-            dynamicBlockedIPs.size(),
-            tempBlockedIPs.size(),
-            plugin.getConfig().getStringList("firewall.blocked-ips").size(),
-            plugin.getConfig().getStringList("firewall.whitelist-ips").size());
+        return accessList.getStats();
     }
 }
\ No newline at end of file
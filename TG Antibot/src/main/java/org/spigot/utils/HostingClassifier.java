@@ -0,0 +1,91 @@
+package org.spigot.utils;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.logging.Logger;
+
+/**
+ * Offline hosting-provider detection: maps an address to its ASN through an
+ * {@link IPRangeDatabase} and checks the ASN against a curated set of datacenter
+ * and VPS networks. Both lookups are allocation free, so this can run on every
+ * connection before any remote proxy check.
+ */
+public class HostingClassifier {
+
+    private final Logger logger;
+    private final IPRangeDatabase asnDatabase;
+    private volatile ASNSet hostingAsns = ASNSet.EMPTY;
+
+    public HostingClassifier(Logger logger) {
+        this.logger = logger;
+        this.asnDatabase = new IPRangeDatabase("ASN", logger, IPRangeImporter.ValueMode.NUMBER);
+    }
+
+    /**
+     * Load the ASN index and the hosting ASN list. Blocking; run it async.
+     *
+     * @param asnList one ASN per line ("AS16509" or "16509"), '#' starts a comment
+     * @param extraAsns additional ASNs from the config
+     */
+    public boolean load(File asnIndex, File asnSource, File asnList, Collection<String> extraAsns) {
+        List<Integer> asns = new ArrayList<>();
+        if (asnList != null && asnList.isFile()) {
+            try {
+                for (String line : Files.readAllLines(asnList.toPath(), StandardCharsets.UTF_8)) {
+                    int comment = line.indexOf('#');
+                    String value = (comment >= 0 ? line.substring(0, comment) : line).trim();
+                    if (value.isEmpty()) continue;
+
+                    int asn = ASNSet.parse(value);
+                    if (asn != 0) {
+                        asns.add(asn);
+                    } else {
+                        logger.warning("[HostingClassifier] Ignoring invalid ASN in " + asnList.getName() + ": " + value);
+                    }
+                }
+            } catch (IOException e) {
+                logger.warning("[HostingClassifier] Failed to read " + asnList.getName() + ": " + e.getMessage());
+            }
+        }
+        if (extraAsns != null) {
+            for (String value : extraAsns) {
+                int asn = ASNSet.parse(value);
+                if (asn != 0) asns.add(asn);
+            }
+        }
+        hostingAsns = ASNSet.of(asns);
+        logger.info("[HostingClassifier] Loaded " + hostingAsns.size() + " hosting ASNs");
+
+        return asnDatabase.load(asnIndex, asnSource);
+    }
+
+    /**
+     * @return the ASN announcing the address, or {@link IPRangeIndex#NOT_FOUND}
+     */
+    public int getASN(long high, long low) {
+        return asnDatabase.lookup(high, low);
+    }
+
+    public boolean isHosting(long high, long low) {
+        int asn = asnDatabase.lookup(high, low);
+        return asn != IPRangeIndex.NOT_FOUND && hostingAsns.contains(asn);
+    }
+
+    public boolean isHosting(InetAddress address) {
+        return address != null && isHosting(IPAddressKey.high(address), IPAddressKey.low(address));
+    }
+
+    public boolean isLoaded() {
+        return asnDatabase.isLoaded();
+    }
+
+    public String getStats() {
+        return String.format("%s, %d hosting ASNs", asnDatabase.getStats(), hostingAsns.size());
+    }
+}
@@ -0,0 +1,269 @@
+package org.spigot.utils;
+
+import org.spigot.enums.AccessVerdict;
+
+import java.net.InetAddress;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Logger;
+
+/**
+ * Allow/block list with CIDR support and temporary blocks behind a single lookup.
+ *
+ * Permanent entries are compiled into an {@link IPPrefixTrie}. Changes only touch
+ * the entry sets and request a rebuild, which runs on the supplied executor and
+ * publishes the new trie through a volatile field; requests that arrive while a
+ * rebuild is queued are coalesced into it. Temporary blocks are exact addresses
+ * with an expiry time and take effect immediately; the shared {@link TimingWheel}
+ * removes them once they expire. An IPv6 temporary block keyed by its /64 (the
+ * low half zero) also covers every address in that /64.
+ */
+public class IPAccessList {
+
+    private final String name;
+    private final Logger logger;
+    private final Executor rebuildExecutor;
+    private final TimingWheel expiryWheel;
+
+    private final Set<String> allowed;
+    private final Set<String> blocked;
+    private final IPAddressMap<Long> tempBlocks;
+
+    private volatile IPPrefixTrie trie;
+    private final AtomicBoolean rebuildQueued;
+    private volatile IPAddressMap.EntryConsumer<Long> expiryListener;
+
+    public IPAccessList(String name, Logger logger, Executor rebuildExecutor, TimingWheel expiryWheel) {
+        this.name = name;
+        this.logger = logger;
+        this.rebuildExecutor = rebuildExecutor;
+        this.expiryWheel = expiryWheel;
+        this.allowed = ConcurrentHashMap.newKeySet();
+        this.blocked = ConcurrentHashMap.newKeySet();
+        this.tempBlocks = new IPAddressMap<>();
+        this.trie = IPPrefixTrie.empty();
+        this.rebuildQueued = new AtomicBoolean(false);
+    }
+
+    public AccessVerdict lookup(InetAddress address) {
+        if (address == null) return AccessVerdict.NONE;
+        return lookup(IPAddressKey.high(address), IPAddressKey.low(address));
+    }
+
+    public AccessVerdict lookup(String ip) {
+        IPAddressKey key = IPAddressKey.parse(ip);
+        return key == null ? AccessVerdict.NONE : lookup(key.getHigh(), key.getLow());
+    }
+
+    public AccessVerdict lookup(long high, long low) {
+        int verdict = trie.lookup(high, low);
+        if (verdict == IPPrefixTrie.ALLOW) return AccessVerdict.ALLOW;
+        if (verdict == IPPrefixTrie.BLOCK) return AccessVerdict.BLOCK;
+
+        Long expiration = getTempExpiration(high, low);
+        if (expiration != null && expiration > System.currentTimeMillis()) {
+            return AccessVerdict.TEMP_BLOCK;
+        }
+        return AccessVerdict.NONE;
+    }
+
+    private Long getTempExpiration(long high, long low) {
+        Long expiration = tempBlocks.get(high, low);
+        if (expiration == null && low != 0 && !IPAddressKey.isIPv4(high, low)) {
+            expiration = tempBlocks.get(high, 0L);
+        }
+        return expiration;
+    }
+
+    // ================================
+    // PERMANENT ENTRIES
+    // ================================
+
+    public void allow(String cidr) {
+        if (cidr == null) return;
+        String entry = normalize(cidr);
+        blocked.remove(entry);
+        if (allowed.add(entry)) {
+            requestRebuild();
+        }
+    }
+
+    public void block(String cidr) {
+        if (cidr == null) return;
+        String entry = normalize(cidr);
+        allowed.remove(entry);
+        if (blocked.add(entry)) {
+            requestRebuild();
+        }
+    }
+
+    public boolean removeAllowed(String cidr) {
+        if (cidr == null) return false;
+        boolean removed = allowed.remove(normalize(cidr));
+        if (removed) {
+            requestRebuild();
+        }
+        return removed;
+    }
+
+    public boolean removeBlocked(String cidr) {
+        if (cidr == null) return false;
+        boolean removed = blocked.remove(normalize(cidr));
+        if (removed) {
+            requestRebuild();
+        }
+        return removed;
+    }
+
+    /**
+     * Replace all permanent entries, e.g. after a config reload.
+     */
+    public void setEntries(Collection<String> allowedEntries, Collection<String> blockedEntries) {
+        allowed.clear();
+        blocked.clear();
+        if (allowedEntries != null) {
+            for (String entry : allowedEntries) {
+                if (entry != null && !entry.trim().isEmpty()) allowed.add(normalize(entry));
+            }
+        }
+        if (blockedEntries != null) {
+            for (String entry : blockedEntries) {
+                if (entry != null && !entry.trim().isEmpty()) blocked.add(normalize(entry));
+            }
+        }
+        requestRebuild();
+    }
+
+    public boolean isAllowedEntry(String cidr) {
+        return cidr != null && allowed.contains(normalize(cidr));
+    }
+
+    public boolean isBlockedEntry(String cidr) {
+        return cidr != null && blocked.contains(normalize(cidr));
+    }
+
+    public Set<String> getAllowed() { return new HashSet<>(allowed); }
+    public Set<String> getBlocked() { return new HashSet<>(blocked); }
+
+    // ================================
+    // TEMPORARY BLOCKS
+    // ================================
+
+    /**
+     * @return false if the address was already temporarily blocked
+     */
+    public boolean tempBlock(long high, long low, long expirationTime) {
+        Long expiration = expirationTime;
+        boolean added = tempBlocks.put(high, low, expiration) == null;
+
+        // A renewed block leaves the old timeout in place; it no longer matches and is ignored
+        long delay = expirationTime - System.currentTimeMillis();
+        expiryWheel.schedule(() -> expire(high, low, expiration), delay, TimeUnit.MILLISECONDS);
+        return added;
+    }
+
+    private void expire(long high, long low, Long expiration) {
+        if (!tempBlocks.remove(high, low, expiration)) {
+            return; // Renewed or removed in the meantime
+        }
+        IPAddressMap.EntryConsumer<Long> listener = expiryListener;
+        if (listener != null) {
+            listener.accept(high, low, expiration);
+        }
+    }
+
+    /**
+     * Called on the timing wheel thread whenever a temporary block expires.
+     */
+    public void setExpiryListener(IPAddressMap.EntryConsumer<Long> listener) {
+        this.expiryListener = listener;
+    }
+
+    public boolean removeTempBlock(long high, long low) {
+        return tempBlocks.remove(high, low) != null;
+    }
+
+    public boolean removeTempBlock(String ip) {
+        IPAddressKey key = IPAddressKey.parse(ip);
+        return key != null && removeTempBlock(key.getHigh(), key.getLow());
+    }
+
+    public boolean isTempBlocked(long high, long low) {
+        Long expiration = getTempExpiration(high, low);
+        return expiration != null && expiration > System.currentTimeMillis();
+    }
+
+    public Set<String> getTempBlocked() {
+        return new HashSet<>(tempBlocks.keysAsStrings());
+    }
+
+    public int getTempBlockCount() {
+        return tempBlocks.size();
+    }
+
+    public void clearTempBlocks() {
+        tempBlocks.clear();
+    }
+
+    // ================================
+    // COMPILATION
+    // ================================
+
+    public void requestRebuild() {
+        if (!rebuildQueued.compareAndSet(false, true)) {
+            return; // A queued rebuild will pick up this change
+        }
+        try {
+            rebuildExecutor.execute(this::rebuild);
+        } catch (RuntimeException e) {
+            // Executor is shutting down or rejected the task, compile inline instead
+            rebuild();
+        }
+    }
+
+    /**
+     * Compile the current entries and swap them in. Runs on the rebuild executor,
+     * but may also be called directly when a synchronous rebuild is required.
+     */
+    public void rebuild() {
+        // Clear before reading so changes made during compilation queue another rebuild
+        rebuildQueued.set(false);
+        long start = System.nanoTime();
+        IPPrefixTrie compiled = IPPrefixTrie.build(allowed, blocked);
+        trie = compiled;
+
+        if (compiled.getInvalidCount() > 0) {
+            logger.warning("[" + name + "] Ignored " + compiled.getInvalidCount() + " invalid IP/CIDR entries");
+        }
+        if (logger.isLoggable(java.util.logging.Level.FINE)) {
+            logger.fine("[" + name + "] Compiled " + compiled.getEntryCount() + " entries into " +
+                compiled.getNodeCount() + " nodes in " + (System.nanoTime() - start) / 1000 + "us");
+        }
+    }
+
+    /**
+     * @return true for a single address or a CIDR range this list can compile
+     */
+    public static boolean isValidEntry(String cidr) {
+        return new IPPrefixTrie.Builder().add(cidr, IPPrefixTrie.BLOCK);
+    }
+
+    /**
+     * The form entries are stored in: trimmed, lower case, without a leading slash.
+     */
+    public static String normalize(String cidr) {
+        String entry = cidr.trim().toLowerCase();
+        return entry.startsWith("/") ? entry.substring(1) : entry;
+    }
+
+    public String getStats() {
+        IPPrefixTrie current = trie;
+        return String.format("Allowed: %d, Blocked: %d, Temp blocked: %d, Trie nodes: %d",
+            allowed.size(), blocked.size(), tempBlocks.size(), current.getNodeCount());
+    }
+}
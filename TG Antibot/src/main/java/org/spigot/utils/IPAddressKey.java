@@ -0,0 +1,183 @@
+package org.spigot.utils;
+
+import java.net.Inet4Address;
+import java.net.Inet6Address;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+
+/**
+ * Canonical binary form of an IP address.
+ *
+ * Every address is stored as 128 bits split into a high and a low long. IPv4
+ * addresses use the IPv4-mapped IPv6 layout (::ffff:a.b.c.d), so their high half
+ * is always 0 and the whole address fits in the low long. The static helpers work
+ * on the two longs directly so hot paths can key maps without allocating.
+ */
+public final class IPAddressKey {
+
+    private static final long IPV4_MAPPED_PREFIX = 0x0000FFFF00000000L;
+    private static final long IPV4_MASK = 0x00000000FFFFFFFFL;
+
+    private final long high;
+    private final long low;
+
+    private IPAddressKey(long high, long low) {
+        this.high = high;
+        this.low = low;
+    }
+
+    public static IPAddressKey of(long high, long low) {
+        return new IPAddressKey(high, low);
+    }
+
+    public static IPAddressKey of(InetAddress address) {
+        if (address == null) return null;
+        return new IPAddressKey(high(address), low(address));
+    }
+
+    /**
+     * Parse a textual IPv4 or IPv6 literal. Host names are never resolved.
+     *
+     * @return the key, or null if the string is not an IP literal
+     */
+    public static IPAddressKey parse(String ip) {
+        if (ip == null) return null;
+        String value = ip.trim();
+        if (value.startsWith("/")) {
+            value = value.substring(1);
+        }
+        if (value.isEmpty()) return null;
+
+        long ipv4 = parseIPv4(value);
+        if (ipv4 >= 0) {
+            return new IPAddressKey(0L, IPV4_MAPPED_PREFIX | ipv4);
+        }
+
+        if (value.indexOf(':') < 0) return null;
+        if (value.startsWith("[") && value.endsWith("]")) {
+            value = value.substring(1, value.length() - 1);
+        }
+        int zone = value.indexOf('%');
+        if (zone >= 0) {
+            value = value.substring(0, zone);
+        }
+
+        try {
+            // Strings containing ':' are treated as IPv6 literals, no DNS lookup happens
+            return of(InetAddress.getByName(value));
+        } catch (UnknownHostException | SecurityException e) {
+            return null;
+        }
+    }
+
+    public static long high(InetAddress address) {
+        if (address instanceof Inet6Address) {
+            return readLong(address.getAddress(), 0);
+        }
+        return 0L;
+    }
+
+    public static long low(InetAddress address) {
+        if (address instanceof Inet4Address) {
+            // Inet4Address.hashCode() is the raw address, which avoids cloning the byte array
+            return IPV4_MAPPED_PREFIX | (address.hashCode() & IPV4_MASK);
+        }
+        if (address instanceof Inet6Address) {
+            return readLong(address.getAddress(), 8);
+        }
+        return 0L;
+    }
+
+    public static boolean isIPv4(long high, long low) {
+        return high == 0L && (low & ~IPV4_MASK) == IPV4_MAPPED_PREFIX;
+    }
+
+    /**
+     * Mix both halves into a well distributed 32-bit hash.
+     */
+    public static int hash(long high, long low) {
+        long h = high * 0x9E3779B97F4A7C15L + low;
+        h ^= h >>> 32;
+        h *= 0xD6E8FEB86659FD93L;
+        h ^= h >>> 32;
+        return (int) h;
+    }
+
+    public static String toString(long high, long low) {
+        if (isIPv4(high, low)) {
+            return ((low >>> 24) & 0xFF) + "." + ((low >>> 16) & 0xFF) + "." +
+                ((low >>> 8) & 0xFF) + "." + (low & 0xFF);
+        }
+
+        byte[] bytes = new byte[16];
+        writeLong(bytes, 0, high);
+        writeLong(bytes, 8, low);
+        try {
+            return InetAddress.getByAddress(bytes).getHostAddress();
+        } catch (UnknownHostException e) {
+            // Cannot happen for a 16 byte array
+            return Long.toHexString(high) + ":" + Long.toHexString(low);
+        }
+    }
+
+    private static long parseIPv4(String value) {
+        long result = 0;
+        int octet = -1;
+        int dots = 0;
+
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c >= '0' && c <= '9') {
+                octet = (octet < 0 ? 0 : octet * 10) + (c - '0');
+                if (octet > 255) return -1;
+            } else if (c == '.') {
+                if (octet < 0 || ++dots > 3) return -1;
+                result = (result << 8) | octet;
+                octet = -1;
+            } else {
+                return -1;
+            }
+        }
+
+        if (dots != 3 || octet < 0) return -1;
+        return (result << 8) | octet;
+    }
+
+    private static long readLong(byte[] bytes, int offset) {
+        long value = 0;
+        for (int i = 0; i < 8; i++) {
+            value = (value << 8) | (bytes[offset + i] & 0xFF);
+        }
+        return value;
+    }
+
+    private static void writeLong(byte[] bytes, int offset, long value) {
+        for (int i = 7; i >= 0; i--) {
+            bytes[offset + i] = (byte) value;
+            value >>>= 8;
+        }
+    }
+
+    // Getters
+    public long getHigh() { return high; }
+    public long getLow() { return low; }
+    public boolean isIPv4() { return isIPv4(high, low); }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof IPAddressKey)) return false;
+        IPAddressKey other = (IPAddressKey) o;
+        return high == other.high && low == other.low;
+    }
+
+    @Override
+    public int hashCode() {
+        return hash(high, low);
+    }
+
+    @Override
+    public String toString() {
+        return toString(high, low);
+    }
+}
@@ -0,0 +1,415 @@
+package org.spigot.utils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * Concurrent map keyed by binary IP addresses (see {@link IPAddressKey}).
+ *
+ * Keys are stored as primitive longs in open-addressing tables with linear probing
+ * and backward-shift deletion, so lookups and updates do not allocate. The table is
+ * split into independently locked segments; reads are optimistic and only fall back
+ * to a read lock when a writer touched the same segment concurrently.
+ *
+ * Null values are not permitted.
+ */
+public class IPAddressMap<V> {
+
+    // Constants
+    private static final int SEGMENT_BITS = 4;
+    private static final int SEGMENT_COUNT = 1 << SEGMENT_BITS;
+    private static final int MIN_SEGMENT_CAPACITY = 16;
+    private static final float LOAD_FACTOR = 0.6f;
+
+    private final Segment<V>[] segments;
+
+    @FunctionalInterface
+    public interface Factory<V> {
+        V create(long high, long low);
+    }
+
+    @FunctionalInterface
+    public interface EntryConsumer<V> {
+        void accept(long high, long low, V value);
+    }
+
+    @FunctionalInterface
+    public interface EntryPredicate<V> {
+        boolean test(long high, long low, V value);
+    }
+
+    public IPAddressMap() {
+        this(256);
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public IPAddressMap(int expectedSize) {
+        int perSegment = Math.max(MIN_SEGMENT_CAPACITY, expectedSize / SEGMENT_COUNT);
+        this.segments = new Segment[SEGMENT_COUNT];
+        for (int i = 0; i < SEGMENT_COUNT; i++) {
+            segments[i] = new Segment<>(perSegment);
+        }
+    }
+
+    private Segment<V> segmentFor(int hash) {
+        return segments[hash >>> (32 - SEGMENT_BITS)];
+    }
+
+    public V get(long high, long low) {
+        int hash = IPAddressKey.hash(high, low);
+        return segmentFor(hash).get(high, low, hash);
+    }
+
+    public V get(IPAddressKey key) {
+        return key == null ? null : get(key.getHigh(), key.getLow());
+    }
+
+    public boolean containsKey(long high, long low) {
+        return get(high, low) != null;
+    }
+
+    public boolean containsKey(IPAddressKey key) {
+        return get(key) != null;
+    }
+
+    /**
+     * @return the previous value, or null if there was none
+     */
+    public V put(long high, long low, V value) {
+        if (value == null) throw new NullPointerException("value");
+        int hash = IPAddressKey.hash(high, low);
+        return segmentFor(hash).put(high, low, hash, value, false);
+    }
+
+    public V put(IPAddressKey key, V value) {
+        return put(key.getHigh(), key.getLow(), value);
+    }
+
+    /**
+     * @return the existing value, or null if the value was inserted
+     */
+    public V putIfAbsent(long high, long low, V value) {
+        if (value == null) throw new NullPointerException("value");
+        int hash = IPAddressKey.hash(high, low);
+        return segmentFor(hash).put(high, low, hash, value, true);
+    }
+
+    public V computeIfAbsent(long high, long low, Factory<V> factory) {
+        int hash = IPAddressKey.hash(high, low);
+        Segment<V> segment = segmentFor(hash);
+        V existing = segment.get(high, low, hash);
+        if (existing != null) return existing;
+        return segment.computeIfAbsent(high, low, hash, factory);
+    }
+
+    public V remove(long high, long low) {
+        int hash = IPAddressKey.hash(high, low);
+        return segmentFor(hash).remove(high, low, hash, null);
+    }
+
+    /**
+     * Remove the entry only while it still maps to the given value (compared with equals).
+     */
+    public boolean remove(long high, long low, V expected) {
+        if (expected == null) return false;
+        int hash = IPAddressKey.hash(high, low);
+        return segmentFor(hash).remove(high, low, hash, expected) != null;
+    }
+
+    public V remove(IPAddressKey key) {
+        return key == null ? null : remove(key.getHigh(), key.getLow());
+    }
+
+    public int size() {
+        int size = 0;
+        for (Segment<V> segment : segments) {
+            size += segment.size();
+        }
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    public void clear() {
+        for (Segment<V> segment : segments) {
+            segment.clear();
+        }
+    }
+
+    /**
+     * Visit every entry. The consumer runs under a segment read lock and must not
+     * modify this map.
+     */
+    public void forEach(EntryConsumer<V> consumer) {
+        for (Segment<V> segment : segments) {
+            segment.forEach(consumer);
+        }
+    }
+
+    /**
+     * Remove every entry matching the predicate.
+     *
+     * @return the number of removed entries
+     */
+    public int removeIf(EntryPredicate<V> predicate) {
+        int removed = 0;
+        for (Segment<V> segment : segments) {
+            removed += segment.removeIf(predicate);
+        }
+        return removed;
+    }
+
+    /**
+     * Textual form of every key, for commands and persistence.
+     */
+    public List<String> keysAsStrings() {
+        List<String> keys = new ArrayList<>(size());
+        forEach((high, low, value) -> keys.add(IPAddressKey.toString(high, low)));
+        return keys;
+    }
+
+    private static final class Table {
+        final long[] highs;
+        final long[] lows;
+        final int[] hashes;
+        final Object[] values;
+        final int mask;
+
+        Table(int capacity) {
+            this.highs = new long[capacity];
+            this.lows = new long[capacity];
+            this.hashes = new int[capacity];
+            this.values = new Object[capacity];
+            this.mask = capacity - 1;
+        }
+    }
+
+    private static final class Segment<V> {
+        private final StampedLock lock = new StampedLock();
+        private Table table;
+        private int size;
+        private int threshold;
+
+        Segment(int expected) {
+            int capacity = Integer.highestOneBit(Math.max(MIN_SEGMENT_CAPACITY, (int) (expected / LOAD_FACTOR)) - 1) << 1;
+            this.table = new Table(capacity);
+            this.threshold = (int) (capacity * LOAD_FACTOR);
+        }
+
+        V get(long high, long low, int hash) {
+            long stamp = lock.tryOptimisticRead();
+            V value = find(table, high, low, hash);
+            if (!lock.validate(stamp)) {
+                stamp = lock.readLock();
+                try {
+                    value = find(table, high, low, hash);
+                } finally {
+                    lock.unlockRead(stamp);
+                }
+            }
+            return value;
+        }
+
+        @SuppressWarnings("unchecked")
+        private V find(Table t, long high, long low, int hash) {
+            // Bounded by capacity so a torn optimistic read can never spin forever
+            for (int i = hash & t.mask, probes = 0; probes <= t.mask; i = (i + 1) & t.mask, probes++) {
+                Object value = t.values[i];
+                if (value == null) return null;
+                if (t.hashes[i] == hash && t.highs[i] == high && t.lows[i] == low) {
+                    return (V) value;
+                }
+            }
+            return null;
+        }
+
+        @SuppressWarnings("unchecked")
+        V put(long high, long low, int hash, V value, boolean onlyIfAbsent) {
+            long stamp = lock.writeLock();
+            try {
+                Table t = table;
+                int i = hash & t.mask;
+                while (t.values[i] != null) {
+                    if (t.hashes[i] == hash && t.highs[i] == high && t.lows[i] == low) {
+                        V previous = (V) t.values[i];
+                        if (!onlyIfAbsent) {
+                            t.values[i] = value;
+                        }
+                        return previous;
+                    }
+                    i = (i + 1) & t.mask;
+                }
+                insertAt(t, i, high, low, hash, value);
+                return null;
+            } finally {
+                lock.unlockWrite(stamp);
+            }
+        }
+
+        V computeIfAbsent(long high, long low, int hash, Factory<V> factory) {
+            long stamp = lock.writeLock();
+            try {
+                V existing = find(table, high, low, hash);
+                if (existing != null) return existing;
+
+                V created = factory.create(high, low);
+                if (created == null) return null;
+
+                Table t = table;
+                int i = hash & t.mask;
+                while (t.values[i] != null) {
+                    i = (i + 1) & t.mask;
+                }
+                insertAt(t, i, high, low, hash, created);
+                return created;
+            } finally {
+                lock.unlockWrite(stamp);
+            }
+        }
+
+        private void insertAt(Table t, int i, long high, long low, int hash, Object value) {
+            t.highs[i] = high;
+            t.lows[i] = low;
+            t.hashes[i] = hash;
+            t.values[i] = value;
+            if (++size > threshold) {
+                resize();
+            }
+        }
+
+        private void resize() {
+            Table old = table;
+            Table grown = new Table((old.mask + 1) << 1);
+            for (int j = 0; j <= old.mask; j++) {
+                if (old.values[j] == null) continue;
+                int i = old.hashes[j] & grown.mask;
+                while (grown.values[i] != null) {
+                    i = (i + 1) & grown.mask;
+                }
+                grown.highs[i] = old.highs[j];
+                grown.lows[i] = old.lows[j];
+                grown.hashes[i] = old.hashes[j];
+                grown.values[i] = old.values[j];
+            }
+            table = grown;
+            threshold = (int) ((grown.mask + 1) * LOAD_FACTOR);
+        }
+
+        @SuppressWarnings("unchecked")
+        V remove(long high, long low, int hash, V expected) {
+            long stamp = lock.writeLock();
+            try {
+                Table t = table;
+                int i = hash & t.mask;
+                while (t.values[i] != null) {
+                    if (t.hashes[i] == hash && t.highs[i] == high && t.lows[i] == low) {
+                        V previous = (V) t.values[i];
+                        if (expected != null && !expected.equals(previous)) {
+                            return null;
+                        }
+                        deleteAt(t, i);
+                        return previous;
+                    }
+                    i = (i + 1) & t.mask;
+                }
+                return null;
+            } finally {
+                lock.unlockWrite(stamp);
+            }
+        }
+
+        /**
+         * Backward-shift deletion keeps probe chains intact without tombstones.
+         */
+        private void deleteAt(Table t, int hole) {
+            t.values[hole] = null;
+            size--;
+
+            int j = hole;
+            while (true) {
+                j = (j + 1) & t.mask;
+                if (t.values[j] == null) return;
+
+                int home = t.hashes[j] & t.mask;
+                boolean movable = hole <= j
+                    ? (home <= hole || home > j)
+                    : (home <= hole && home > j);
+                if (movable) {
+                    t.highs[hole] = t.highs[j];
+                    t.lows[hole] = t.lows[j];
+                    t.hashes[hole] = t.hashes[j];
+                    t.values[hole] = t.values[j];
+                    t.values[j] = null;
+                    hole = j;
+                }
+            }
+        }
+
+        int size() {
+            long stamp = lock.tryOptimisticRead();
+            int result = size;
+            if (!lock.validate(stamp)) {
+                stamp = lock.readLock();
+                try {
+                    result = size;
+                } finally {
+                    lock.unlockRead(stamp);
+                }
+            }
+            return result;
+        }
+
+        void clear() {
+            long stamp = lock.writeLock();
+            try {
+                table = new Table(MIN_SEGMENT_CAPACITY);
+                threshold = (int) (MIN_SEGMENT_CAPACITY * LOAD_FACTOR);
+                size = 0;
+            } finally {
+                lock.unlockWrite(stamp);
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        void forEach(EntryConsumer<V> consumer) {
+            long stamp = lock.readLock();
+            try {
+                Table t = table;
+                for (int i = 0; i <= t.mask; i++) {
+                    Object value = t.values[i];
+                    if (value != null) {
+                        consumer.accept(t.highs[i], t.lows[i], (V) value);
+                    }
+                }
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        int removeIf(EntryPredicate<V> predicate) {
+            long stamp = lock.writeLock();
+            try {
+                Table t = table;
+                int removed = 0;
+                int i = 0;
+                while (i <= t.mask) {
+                    Object value = t.values[i];
+                    if (value != null && predicate.test(t.highs[i], t.lows[i], (V) value)) {
+                        // The shift may pull a later entry into slot i, so re-examine it
+                        deleteAt(t, i);
+                        removed++;
+                    } else {
+                        i++;
+                    }
+                }
+                return removed;
+            } finally {
+                lock.unlockWrite(stamp);
+            }
+        }
+    }
+}
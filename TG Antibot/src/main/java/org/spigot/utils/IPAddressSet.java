@@ -0,0 +1,69 @@
+package org.spigot.utils;
+
+import java.net.InetAddress;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Concurrent set of binary IP keys backed by an {@link IPAddressMap}.
+ */
+public class IPAddressSet {
+
+    private final IPAddressMap<Boolean> map;
+
+    public IPAddressSet() {
+        this.map = new IPAddressMap<>();
+    }
+
+    public boolean contains(long high, long low) {
+        return map.containsKey(high, low);
+    }
+
+    public boolean contains(InetAddress address) {
+        return address != null && contains(IPAddressKey.high(address), IPAddressKey.low(address));
+    }
+
+    public boolean contains(String ip) {
+        return map.containsKey(IPAddressKey.parse(ip));
+    }
+
+    /**
+     * @return false if the string is not a valid IP literal or was already present
+     */
+    public boolean add(String ip) {
+        IPAddressKey key = IPAddressKey.parse(ip);
+        return key != null && map.putIfAbsent(key.getHigh(), key.getLow(), Boolean.TRUE) == null;
+    }
+
+    public boolean add(long high, long low) {
+        return map.putIfAbsent(high, low, Boolean.TRUE) == null;
+    }
+
+    public void addAll(Collection<String> ips) {
+        if (ips == null) return;
+        for (String ip : ips) {
+            add(ip);
+        }
+    }
+
+    public boolean remove(String ip) {
+        return map.remove(IPAddressKey.parse(ip)) != null;
+    }
+
+    public boolean remove(long high, long low) {
+        return map.remove(high, low) != null;
+    }
+
+    public int size() {
+        return map.size();
+    }
+
+    public void clear() {
+        map.clear();
+    }
+
+    public Set<String> toStringSet() {
+        return new HashSet<>(map.keysAsStrings());
+    }
+}
@@ -0,0 +1,162 @@
+package org.spigot.utils;
+
+import java.util.Arrays;
+import java.util.Collection;
+
+/**
+ * Immutable binary trie of IPv4 and IPv6 CIDR prefixes with allow and block flags.
+ *
+ * Nodes live in flat int arrays; IPv4 prefixes hang off their own root so an IPv4
+ * lookup walks at most 32 levels. A lookup ORs together the flags of every prefix
+ * on the path, and an allow flag always wins over a block flag, matching the old
+ * "whitelist first" behaviour. Instances are built once and shared between threads.
+ */
+public final class IPPrefixTrie {
+
+    public static final int NONE = 0;
+    public static final int ALLOW = 1;
+    public static final int BLOCK = 2;
+
+    private static final int IPV4_ROOT = 0;
+    private static final int IPV6_ROOT = 1;
+
+    private static final IPPrefixTrie EMPTY = new Builder().build();
+
+    // children[2 * node + bit], 0 means no child since roots are never children
+    private final int[] children;
+    private final byte[] flags;
+    private final int entries;
+    private final int invalid;
+
+    private IPPrefixTrie(int[] children, byte[] flags, int entries, int invalid) {
+        this.children = children;
+        this.flags = flags;
+        this.entries = entries;
+        this.invalid = invalid;
+    }
+
+    public static IPPrefixTrie empty() {
+        return EMPTY;
+    }
+
+    public static IPPrefixTrie build(Collection<String> allowed, Collection<String> blocked) {
+        Builder builder = new Builder();
+        if (allowed != null) {
+            for (String cidr : allowed) builder.add(cidr, ALLOW);
+        }
+        if (blocked != null) {
+            for (String cidr : blocked) builder.add(cidr, BLOCK);
+        }
+        return builder.build();
+    }
+
+    /**
+     * @return {@link #ALLOW}, {@link #BLOCK} or {@link #NONE}
+     */
+    public int lookup(long high, long low) {
+        boolean ipv4 = IPAddressKey.isIPv4(high, low);
+        int node = ipv4 ? IPV4_ROOT : IPV6_ROOT;
+        int bits = ipv4 ? 32 : 128;
+        int result = flags[node];
+
+        for (int i = 0; i < bits && (result & ALLOW) == 0; i++) {
+            int bit = bitAt(high, low, ipv4, i);
+            node = children[(node << 1) | bit];
+            if (node == 0) break;
+            result |= flags[node];
+        }
+
+        if ((result & ALLOW) != 0) return ALLOW;
+        return (result & BLOCK) != 0 ? BLOCK : NONE;
+    }
+
+    private static int bitAt(long high, long low, boolean ipv4, int index) {
+        if (ipv4) {
+            return (int) (low >>> (31 - index)) & 1;
+        }
+        return index < 64
+            ? (int) (high >>> (63 - index)) & 1
+            : (int) (low >>> (127 - index)) & 1;
+    }
+
+    public int getEntryCount() { return entries; }
+    public int getInvalidCount() { return invalid; }
+    public int getNodeCount() { return flags.length; }
+
+    public static final class Builder {
+        private int[] children = new int[64];
+        private byte[] flags = new byte[32];
+        private int nodes = 2; // both roots
+        private int entries;
+        private int invalid;
+
+        /**
+         * Add an address or CIDR range such as {@code 10.0.0.0/8} or {@code 2001:db8::/32}.
+         *
+         * @return false if the entry could not be parsed
+         */
+        public boolean add(String cidr, int flag) {
+            if (cidr == null || cidr.trim().isEmpty()) return false;
+            String value = cidr.trim();
+            if (value.startsWith("/")) {
+                value = value.substring(1);
+            }
+
+            int prefixLength = -1;
+            int slash = value.indexOf('/');
+            if (slash >= 0) {
+                try {
+                    prefixLength = Integer.parseInt(value.substring(slash + 1).trim());
+                } catch (NumberFormatException e) {
+                    invalid++;
+                    return false;
+                }
+                value = value.substring(0, slash);
+            }
+
+            IPAddressKey key = IPAddressKey.parse(value);
+            if (key == null) {
+                invalid++;
+                return false;
+            }
+
+            boolean ipv4 = key.isIPv4();
+            int maxLength = ipv4 ? 32 : 128;
+            if (prefixLength < 0) {
+                prefixLength = maxLength;
+            } else if (prefixLength > maxLength) {
+                invalid++;
+                return false;
+            }
+
+            int node = ipv4 ? IPV4_ROOT : IPV6_ROOT;
+            for (int i = 0; i < prefixLength; i++) {
+                int slot = (node << 1) | bitAt(key.getHigh(), key.getLow(), ipv4, i);
+                int child = children[slot];
+                if (child == 0) {
+                    child = newNode();
+                    children[slot] = child;
+                }
+                node = child;
+            }
+            flags[node] |= (byte) flag;
+            entries++;
+            return true;
+        }
+
+        private int newNode() {
+            if (nodes == flags.length) {
+                flags = Arrays.copyOf(flags, flags.length << 1);
+                children = Arrays.copyOf(children, children.length << 1);
+            }
+            return nodes++;
+        }
+
+        public IPPrefixTrie build() {
+            return new IPPrefixTrie(
+                Arrays.copyOf(children, nodes << 1),
+                Arrays.copyOf(flags, nodes),
+                entries, invalid);
+        }
+    }
+}
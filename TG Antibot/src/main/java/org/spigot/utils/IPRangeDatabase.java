@@ -0,0 +1,91 @@
+package org.spigot.utils;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.util.logging.Logger;
+
+/**
+ * Holds the current {@link IPRangeIndex} for one offline database and reloads it.
+ *
+ * When a CSV source is present and newer than the compiled index, it is imported
+ * first. Loading happens off the caller's thread; until an index is available,
+ * every lookup reports {@link IPRangeIndex#NOT_FOUND}.
+ */
+public class IPRangeDatabase {
+
+    private final String name;
+    private final Logger logger;
+    private final IPRangeImporter.ValueMode valueMode;
+    private volatile IPRangeIndex index;
+
+    public IPRangeDatabase(String name, Logger logger) {
+        this(name, logger, IPRangeImporter.ValueMode.LABEL);
+    }
+
+    public IPRangeDatabase(String name, Logger logger, IPRangeImporter.ValueMode valueMode) {
+        this.name = name;
+        this.logger = logger;
+        this.valueMode = valueMode;
+    }
+
+    /**
+     * Import the CSV if needed and map the index file. Blocking; run it async.
+     *
+     * @return true if an index is available afterwards
+     */
+    public boolean load(File indexFile, File sourceCsv) {
+        try {
+            if (sourceCsv != null && sourceCsv.isFile() &&
+                (!indexFile.isFile() || sourceCsv.lastModified() > indexFile.lastModified())) {
+                long start = System.currentTimeMillis();
+                IPRangeImporter.Result result = IPRangeImporter.importCsv(sourceCsv, indexFile, valueMode);
+                logger.info("[" + name + "] Imported " + sourceCsv.getName() + ": " + result +
+                    " (" + (System.currentTimeMillis() - start) + "ms)");
+            }
+
+            if (!indexFile.isFile()) {
+                logger.warning("[" + name + "] No database found at " + indexFile.getPath() + ", lookups are disabled");
+                index = null;
+                return false;
+            }
+
+            IPRangeIndex loaded = IPRangeIndex.open(indexFile);
+            index = loaded;
+            logger.info("[" + name + "] Loaded " + loaded.getRangeCount() + " ranges from " + indexFile.getName());
+            return true;
+        } catch (IOException e) {
+            logger.warning("[" + name + "] Failed to load database: " + e.getMessage());
+            return false;
+        }
+    }
+
+    public int lookup(long high, long low) {
+        IPRangeIndex current = index;
+        return current == null ? IPRangeIndex.NOT_FOUND : current.lookup(high, low);
+    }
+
+    public int lookup(InetAddress address) {
+        if (address == null) return IPRangeIndex.NOT_FOUND;
+        return lookup(IPAddressKey.high(address), IPAddressKey.low(address));
+    }
+
+    /**
+     * @return the label of the range containing the address, or null
+     */
+    public String lookupLabel(InetAddress address) {
+        IPRangeIndex current = index;
+        if (current == null || address == null) return null;
+        return current.getLabel(current.lookup(IPAddressKey.high(address), IPAddressKey.low(address)));
+    }
+
+    public boolean isLoaded() {
+        return index != null;
+    }
+
+    public String getStats() {
+        IPRangeIndex current = index;
+        return current == null ? "not loaded" :
+            String.format("%d ranges, %d labels", current.getRangeCount(), current.getLabelCount());
+    }
+}
@@ -0,0 +1,292 @@
+package org.spigot.utils;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Builds an {@link IPRangeIndex} file from a CSV range dump.
+ *
+ * Accepted rows are {@code start,end,label} with the bounds given as IP literals
+ * or as decimal numbers (the DB-IP and IP2Location "lite" layouts), or
+ * {@code network/prefix,label}; columns may also be tab separated (iptoasn.com).
+ * Quotes are stripped and only the first columns are read, so extra columns such
+ * as country or organization names are ignored. Header lines and malformed rows
+ * are skipped and counted; overlapping ranges keep the first one.
+ *
+ * Labels are either stored in the label table ({@link ValueMode#LABEL}, e.g.
+ * country codes) or parsed as the value itself ({@link ValueMode#NUMBER}, e.g.
+ * "AS13335" or "13335").
+ *
+ * Can also be run standalone:
+ * {@code java -cp TG-AntiBot.jar org.spigot.utils.IPRangeImporter <in.csv> <out.dat> [label|number]}
+ */
+public final class IPRangeImporter {
+
+    private static final BigInteger LOW_MASK = BigInteger.ONE.shiftLeft(64).subtract(BigInteger.ONE);
+
+    public enum ValueMode {
+        LABEL,
+        NUMBER
+    }
+
+    private IPRangeImporter() {
+    }
+
+    public static final class Result {
+        private final int ranges;
+        private final int labels;
+        private final int skipped;
+        private final int overlapping;
+
+        Result(int ranges, int labels, int skipped, int overlapping) {
+            this.ranges = ranges;
+            this.labels = labels;
+            this.skipped = skipped;
+            this.overlapping = overlapping;
+        }
+
+        public int getRanges() { return ranges; }
+        public int getLabels() { return labels; }
+        public int getSkipped() { return skipped; }
+        public int getOverlapping() { return overlapping; }
+
+        @Override
+        public String toString() {
+            return String.format("%d ranges, %d labels, %d rows skipped, %d overlapping ranges dropped",
+                ranges, labels, skipped, overlapping);
+        }
+    }
+
+    private static final class Range {
+        final long startHigh;
+        final long startLow;
+        final long endHigh;
+        final long endLow;
+        final int value;
+
+        Range(long startHigh, long startLow, long endHigh, long endLow, int value) {
+            this.startHigh = startHigh;
+            this.startLow = startLow;
+            this.endHigh = endHigh;
+            this.endLow = endLow;
+            this.value = value;
+        }
+
+        boolean isIPv4() {
+            return IPAddressKey.isIPv4(startHigh, startLow);
+        }
+    }
+
+    public static Result importCsv(File csv, File output) throws IOException {
+        return importCsv(csv, output, ValueMode.LABEL);
+    }
+
+    /**
+     * Convert a CSV file, replacing the output file atomically.
+     */
+    public static Result importCsv(File csv, File output, ValueMode mode) throws IOException {
+        List<Range> v4 = new ArrayList<>();
+        List<Range> v6 = new ArrayList<>();
+        List<String> labels = new ArrayList<>();
+        Map<String, Integer> labelIndex = new HashMap<>();
+        int skipped = 0;
+
+        try (BufferedReader reader = Files.newBufferedReader(csv.toPath(), StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.trim().isEmpty() || line.startsWith("#")) continue;
+
+                Range range = parseRow(line.split("[,\t]", 4), mode, labels, labelIndex);
+                if (range == null) {
+                    skipped++;
+                } else if (range.isIPv4()) {
+                    v4.add(range);
+                } else {
+                    v6.add(range);
+                }
+            }
+        }
+
+        int overlapping = removeOverlaps(v4) + removeOverlaps(v6);
+        write(output, labels, v4, v6);
+        return new Result(v4.size() + v6.size(), labels.size(), skipped, overlapping);
+    }
+
+    private static Range parseRow(String[] columns, ValueMode mode, List<String> labels, Map<String, Integer> labelIndex) {
+        if (columns.length < 2) return null;
+
+        long[] start;
+        long[] end;
+        String label;
+        String first = unquote(columns[0]);
+        if (first.indexOf('/') >= 0) {
+            long[] network = parseNetwork(first);
+            if (network == null) return null;
+            start = new long[] { network[0], network[1] };
+            end = new long[] { network[2], network[3] };
+            label = unquote(columns[1]);
+        } else {
+            if (columns.length < 3) return null;
+            start = parseAddress(first);
+            end = parseAddress(unquote(columns[1]));
+            label = unquote(columns[2]);
+        }
+
+        if (start == null || end == null || label.isEmpty() || label.equals("-")) return null;
+        if (IPAddressKey.isIPv4(start[0], start[1]) != IPAddressKey.isIPv4(end[0], end[1])) return null;
+        if (IPRangeIndex.compare(start[0], start[1], end[0], end[1]) > 0) return null;
+
+        label = label.toUpperCase();
+        if (mode == ValueMode.NUMBER) {
+            // Zero is iptoasn's "not routed" marker
+            int asn = ASNSet.parse(label);
+            return asn == 0 ? null : new Range(start[0], start[1], end[0], end[1], asn);
+        }
+
+        Integer value = labelIndex.get(label);
+        if (value == null) {
+            value = labels.size();
+            labels.add(label);
+            labelIndex.put(label, value);
+        }
+        return new Range(start[0], start[1], end[0], end[1], value);
+    }
+
+    /**
+     * Parse an IP literal or a decimal address; decimals up to 2^32 - 1 are IPv4.
+     */
+    static long[] parseAddress(String value) {
+        if (value.isEmpty()) return null;
+        if (Character.isDigit(value.charAt(0)) && value.indexOf('.') < 0 && value.indexOf(':') < 0) {
+            try {
+                BigInteger number = new BigInteger(value);
+                if (number.signum() < 0 || number.bitLength() > 128) return null;
+                if (number.bitLength() <= 32) {
+                    // IPv4-mapped layout, as used by IPAddressKey
+                    return new long[] { 0, 0xFFFF00000000L | number.longValue() };
+                }
+                return new long[] { number.shiftRight(64).longValue(), number.and(LOW_MASK).longValue() };
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+        IPAddressKey key = IPAddressKey.parse(value);
+        return key == null ? null : new long[] { key.getHigh(), key.getLow() };
+    }
+
+    /**
+     * @return start high, start low, end high, end low
+     */
+    static long[] parseNetwork(String cidr) {
+        int slash = cidr.indexOf('/');
+        IPAddressKey key = IPAddressKey.parse(cidr.substring(0, slash));
+        if (key == null) return null;
+
+        int prefix;
+        try {
+            prefix = Integer.parseInt(cidr.substring(slash + 1).trim());
+        } catch (NumberFormatException e) {
+            return null;
+        }
+        // IPv4 prefixes apply to the last 32 bits of the mapped address
+        int bits = key.isIPv4() ? prefix + 96 : prefix;
+        if (prefix < 0 || bits > 128 || (key.isIPv4() && prefix > 32)) return null;
+
+        long highMask = bits >= 64 ? -1L : (bits == 0 ? 0 : -1L << (64 - bits));
+        long lowMask = bits <= 64 ? 0 : (bits == 128 ? -1L : -1L << (128 - bits));
+        return new long[] {
+            key.getHigh() & highMask, key.getLow() & lowMask,
+            key.getHigh() | ~highMask, key.getLow() | ~lowMask
+        };
+    }
+
+    private static String unquote(String value) {
+        String trimmed = value.trim();
+        if (trimmed.length() >= 2 && trimmed.charAt(0) == '"' && trimmed.charAt(trimmed.length() - 1) == '"') {
+            trimmed = trimmed.substring(1, trimmed.length() - 1).trim();
+        }
+        return trimmed;
+    }
+
+    private static int removeOverlaps(List<Range> ranges) {
+        // Stable sort keeps file order among equal starts, so the first row wins
+        ranges.sort((a, b) -> IPRangeIndex.compare(a.startHigh, a.startLow, b.startHigh, b.startLow));
+
+        List<Range> kept = new ArrayList<>(ranges.size());
+        Range last = null;
+        for (Range range : ranges) {
+            if (last != null && IPRangeIndex.compare(range.startHigh, range.startLow, last.endHigh, last.endLow) <= 0) {
+                continue;
+            }
+            kept.add(range);
+            last = range;
+        }
+        int dropped = ranges.size() - kept.size();
+        ranges.clear();
+        ranges.addAll(kept);
+        return dropped;
+    }
+
+    private static void write(File output, List<String> labels, List<Range> v4, List<Range> v6) throws IOException {
+        File parent = output.getAbsoluteFile().getParentFile();
+        if (parent != null && !parent.exists() && !parent.mkdirs()) {
+            throw new IOException("Could not create " + parent);
+        }
+
+        File temp = new File(output.getPath() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)))) {
+            out.writeInt(IPRangeIndex.MAGIC);
+            out.writeInt(IPRangeIndex.VERSION);
+            out.writeInt(v4.size());
+            out.writeInt(v6.size());
+            out.writeInt(labels.size());
+            for (String label : labels) {
+                byte[] bytes = label.getBytes(StandardCharsets.UTF_8);
+                out.writeShort(bytes.length);
+                out.write(bytes);
+            }
+            pad(out);
+
+            for (Range range : v4) out.writeInt((int) range.startLow);
+            for (Range range : v4) out.writeInt((int) range.endLow);
+            for (Range range : v4) out.writeInt(range.value);
+            pad(out);
+
+            for (Range range : v6) out.writeLong(range.startHigh);
+            for (Range range : v6) out.writeLong(range.startLow);
+            for (Range range : v6) out.writeLong(range.endHigh);
+            for (Range range : v6) out.writeLong(range.endLow);
+            for (Range range : v6) out.writeInt(range.value);
+        }
+        Files.move(temp.toPath(), output.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static void pad(DataOutputStream out) throws IOException {
+        while ((out.size() & 7) != 0) {
+            out.writeByte(0);
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2 || args.length > 3) {
+            System.err.println("Usage: IPRangeImporter <input.csv> <output.dat> [label|number]");
+            System.exit(1);
+        }
+        ValueMode mode = args.length == 3 ? ValueMode.valueOf(args[2].toUpperCase()) : ValueMode.LABEL;
+        long start = System.currentTimeMillis();
+        Result result = importCsv(new File(args[0]), new File(args[1]), mode);
+        System.out.println("Imported " + result + " in " + (System.currentTimeMillis() - start) + "ms");
+    }
+}
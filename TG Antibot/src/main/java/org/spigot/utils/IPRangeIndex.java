@@ -0,0 +1,182 @@
+package org.spigot.utils;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Read-only, memory-mapped table of sorted, non-overlapping IP ranges, each
+ * mapped to an int value (for example an index into the label table, such as a
+ * country code).
+ *
+ * IPv4 and IPv6 ranges are kept in separate column arrays inside the mapped
+ * file and looked up by binary search, without allocating. Files are written by
+ * {@link IPRangeImporter}.
+ *
+ * Layout (big-endian): magic, version, IPv4 count, IPv6 count, label count, the
+ * labels as length-prefixed UTF-8, padding to 8 bytes, the IPv4 columns (start,
+ * end, value as ints), padding, then the IPv6 columns (start high/low and end
+ * high/low as longs, value as ints).
+ */
+public final class IPRangeIndex {
+
+    // Constants
+    public static final int NOT_FOUND = -1;
+    static final int MAGIC = 0x54475249; // "TGRI"
+    static final int VERSION = 1;
+
+    private final IntBuffer v4Starts;
+    private final IntBuffer v4Ends;
+    private final IntBuffer v4Values;
+    private final LongBuffer v6StartHighs;
+    private final LongBuffer v6StartLows;
+    private final LongBuffer v6EndHighs;
+    private final LongBuffer v6EndLows;
+    private final IntBuffer v6Values;
+    private final int v4Count;
+    private final int v6Count;
+    private final String[] labels;
+
+    private IPRangeIndex(ByteBuffer buffer) throws IOException {
+        if (buffer.remaining() < 20 || buffer.getInt() != MAGIC) {
+            throw new IOException("Not an IP range index");
+        }
+        int version = buffer.getInt();
+        if (version != VERSION) {
+            throw new IOException("Unsupported IP range index version " + version);
+        }
+        this.v4Count = buffer.getInt();
+        this.v6Count = buffer.getInt();
+        int labelCount = buffer.getInt();
+        if (v4Count < 0 || v6Count < 0 || labelCount < 0) {
+            throw new IOException("Corrupt IP range index header");
+        }
+
+        this.labels = new String[labelCount];
+        for (int i = 0; i < labelCount; i++) {
+            byte[] bytes = new byte[buffer.getShort() & 0xFFFF];
+            buffer.get(bytes);
+            labels[i] = new String(bytes, StandardCharsets.UTF_8);
+        }
+        align(buffer);
+
+        int v4Bytes = v4Count * 4;
+        this.v4Starts = section(buffer, v4Bytes).asIntBuffer();
+        this.v4Ends = section(buffer, v4Bytes).asIntBuffer();
+        this.v4Values = section(buffer, v4Bytes).asIntBuffer();
+        align(buffer);
+
+        int v6LongBytes = v6Count * 8;
+        this.v6StartHighs = section(buffer, v6LongBytes).asLongBuffer();
+        this.v6StartLows = section(buffer, v6LongBytes).asLongBuffer();
+        this.v6EndHighs = section(buffer, v6LongBytes).asLongBuffer();
+        this.v6EndLows = section(buffer, v6LongBytes).asLongBuffer();
+        this.v6Values = section(buffer, v6Count * 4).asIntBuffer();
+    }
+
+    /**
+     * Map an index file into memory. The file handle is closed right away; the
+     * mapping stays valid until the index is garbage collected.
+     */
+    public static IPRangeIndex open(File file) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r");
+             FileChannel channel = raf.getChannel()) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            try {
+                return new IPRangeIndex(buffer);
+            } catch (RuntimeException e) {
+                // Truncated sections surface as buffer underflows
+                throw new IOException("Corrupt IP range index: " + e, e);
+            }
+        }
+    }
+
+    /**
+     * @return the value of the range containing the address, or {@link #NOT_FOUND}
+     */
+    public int lookup(long high, long low) {
+        if (IPAddressKey.isIPv4(high, low)) {
+            return lookupIPv4((int) low);
+        }
+        return lookupIPv6(high, low);
+    }
+
+    private int lookupIPv4(int ip) {
+        // Last range starting at or before the address
+        int lo = 0;
+        int hi = v4Count - 1;
+        int found = -1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            if (Integer.compareUnsigned(v4Starts.get(mid), ip) <= 0) {
+                found = mid;
+                lo = mid + 1;
+            } else {
+                hi = mid - 1;
+            }
+        }
+        if (found < 0 || Integer.compareUnsigned(ip, v4Ends.get(found)) > 0) {
+            return NOT_FOUND;
+        }
+        return v4Values.get(found);
+    }
+
+    private int lookupIPv6(long high, long low) {
+        int lo = 0;
+        int hi = v6Count - 1;
+        int found = -1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            if (compare(v6StartHighs.get(mid), v6StartLows.get(mid), high, low) <= 0) {
+                found = mid;
+                lo = mid + 1;
+            } else {
+                hi = mid - 1;
+            }
+        }
+        if (found < 0 || compare(high, low, v6EndHighs.get(found), v6EndLows.get(found)) > 0) {
+            return NOT_FOUND;
+        }
+        return v6Values.get(found);
+    }
+
+    static int compare(long highA, long lowA, long highB, long lowB) {
+        int result = Long.compareUnsigned(highA, highB);
+        return result != 0 ? result : Long.compareUnsigned(lowA, lowB);
+    }
+
+    /**
+     * @return the label stored for a value, or null if the value has none
+     */
+    public String getLabel(int value) {
+        return value >= 0 && value < labels.length ? labels[value] : null;
+    }
+
+    public int getRangeCount() {
+        return v4Count + v6Count;
+    }
+
+    public int getLabelCount() {
+        return labels.length;
+    }
+
+    private static ByteBuffer section(ByteBuffer buffer, int length) {
+        ByteBuffer slice = buffer.slice();
+        slice.limit(length);
+        buffer.position(buffer.position() + length);
+        return slice;
+    }
+
+    private static void align(ByteBuffer buffer) {
+        int misalignment = buffer.position() & 7;
+        if (misalignment != 0) {
+            buffer.position(buffer.position() + 8 - misalignment);
+        }
+    }
+}
@@ -0,0 +1,441 @@
+package org.spigot.utils;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.text.SimpleDateFormat;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.TimeZone;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Logger;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Security events written to their own log file, off the calling thread.
+ *
+ * Any thread records an event by claiming a slot in a bounded ring buffer with
+ * a single CAS; each slot carries a sequence number that tells the writer when
+ * it has been filled and the producers when it is free again. When the ring is
+ * full the event is dropped and counted, so recording never blocks a pre-login
+ * thread. A single writer thread drains the ring in batches, encodes the lines
+ * into a reusable direct buffer and writes them with one call per batch.
+ *
+ * The file is rolled when it reaches the size limit or the rotation interval
+ * ends; rolled files are gzipped in the background and only the newest are kept.
+ */
+public class SecurityLog {
+
+    // Constants
+    private static final int CAPACITY = 8192;
+    private static final int MAX_BATCH = 1024;
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(50);
+    private static final int WAKE_INTERVAL = CAPACITY / 4;
+    private static final String ROLLED_SUFFIX = ".gz";
+
+    private final File directory;
+    private final String baseName;
+    private final String extension;
+    private final Logger logger;
+
+    // Ring buffer: sequences[slot] == position when free, position + 1 when filled
+    private final int mask = CAPACITY - 1;
+    private final AtomicLongArray sequences = new AtomicLongArray(CAPACITY);
+    private final long[] timestamps = new long[CAPACITY];
+    private final String[] categories = new String[CAPACITY];
+    private final String[] messages = new String[CAPACITY];
+    private final AtomicLong tail = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+
+    private volatile long maxBytes = 10L * 1024 * 1024;
+    private volatile long rotateMillis = TimeUnit.DAYS.toMillis(1);
+    private volatile int keepFiles = 14;
+    private volatile boolean running;
+    private boolean stopped;
+    private volatile Thread writerThread;
+    private final ExecutorService compressor;
+
+    // Writer thread only
+    private long head;
+    private long droppedReported;
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+    private final CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder()
+        .onMalformedInput(CodingErrorAction.REPLACE)
+        .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    private final StringBuilder line = new StringBuilder(256);
+    private final SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss");
+    private final SimpleDateFormat rollFormat = new SimpleDateFormat("yyyyMMdd-HHmmss-SSS");
+    private long cachedSecond = Long.MIN_VALUE;
+    private String cachedDate;
+    private FileChannel channel;
+    private long fileSize;
+    private long filePeriod;
+    private boolean failing;
+
+    public SecurityLog(File directory, String fileName, Logger logger) {
+        this.directory = directory;
+        int dot = fileName.lastIndexOf('.');
+        this.baseName = dot > 0 ? fileName.substring(0, dot) : fileName;
+        this.extension = dot > 0 ? fileName.substring(dot) : ".log";
+        this.logger = logger;
+        for (int i = 0; i < CAPACITY; i++) {
+            sequences.set(i, i);
+        }
+        this.compressor = Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "TGA-SecurityLog-Compress");
+            t.setDaemon(true);
+            t.setPriority(Thread.MIN_PRIORITY);
+            return t;
+        });
+    }
+
+    /**
+     * @param maxBytes roll the file once it reaches this size
+     * @param rotateMillis roll the file when this period of local time ends
+     * @param keepFiles number of rolled files kept
+     */
+    public void setLimits(long maxBytes, long rotateMillis, int keepFiles) {
+        this.maxBytes = Math.max(64 * 1024, maxBytes);
+        this.rotateMillis = Math.max(TimeUnit.MINUTES.toMillis(1), rotateMillis);
+        this.keepFiles = Math.max(1, keepFiles);
+    }
+
+    /**
+     * Start writing. Does nothing once the log has been shut down.
+     */
+    public synchronized void start() {
+        if (running || stopped) return;
+        running = true;
+        writerThread = new Thread(this::runWriter, "TGA-SecurityLog");
+        writerThread.setDaemon(true);
+        writerThread.start();
+        // Files rolled just before a crash were never compressed
+        for (File rolled : listRolled(false)) {
+            compressor.execute(() -> compress(rolled));
+        }
+    }
+
+    /**
+     * Queue an event. Never blocks; color codes are stripped when written.
+     *
+     * @return false if the log is not running or the event was dropped
+     */
+    public boolean record(String category, String message) {
+        if (!running) return false;
+        long position;
+        int slot;
+        while (true) {
+            position = tail.get();
+            slot = (int) (position & mask);
+            long sequence = sequences.get(slot);
+            if (sequence == position) {
+                if (tail.compareAndSet(position, position + 1)) break;
+            } else if (sequence < position) {
+                // The writer has not freed this slot yet: the ring is full
+                dropped.incrementAndGet();
+                return false;
+            }
+            // Another producer claimed the slot first
+        }
+        timestamps[slot] = System.currentTimeMillis();
+        categories[slot] = category;
+        messages[slot] = message;
+        // Publishes the fields above to the writer
+        sequences.lazySet(slot, position + 1);
+        // A burst could fill the ring while the writer sleeps; wake it every quarter lap
+        if ((position & (WAKE_INTERVAL - 1)) == 0) {
+            Thread writer = writerThread;
+            if (writer != null) LockSupport.unpark(writer);
+        }
+        return true;
+    }
+
+    public boolean isActive() {
+        return running;
+    }
+
+    /**
+     * @return events dropped because the buffer was full
+     */
+    public long getDroppedCount() {
+        return dropped.get();
+    }
+
+    /**
+     * Write what is queued, close the file and wait for compression. Blocking.
+     */
+    public void shutdown() {
+        Thread writer;
+        synchronized (this) {
+            running = false;
+            stopped = true;
+            writer = writerThread;
+            writerThread = null;
+        }
+        if (writer != null) {
+            LockSupport.unpark(writer);
+            try {
+                writer.join(TimeUnit.SECONDS.toMillis(5));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        compressor.shutdown();
+        try {
+            if (!compressor.awaitTermination(10, TimeUnit.SECONDS)) {
+                compressor.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            compressor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // ================================
+    // WRITER
+    // ================================
+
+    private void runWriter() {
+        while (true) {
+            int drained;
+            try {
+                drained = drain();
+            } catch (RuntimeException e) {
+                // Ending the thread would silently stop the log; the failed batch is dropped
+                logger.warning("[SecurityLog] Failed to write events: " + e);
+                buffer.clear();
+                drained = 0;
+            }
+            if (drained == 0) {
+                // Exit only once everything recorded before the stop is written
+                if (!running) break;
+                LockSupport.parkNanos(this, IDLE_PARK_NANOS);
+            }
+        }
+        closeChannel();
+    }
+
+    private int drain() {
+        int count = 0;
+        long droppedNow = dropped.get();
+        if (droppedNow != droppedReported) {
+            append(System.currentTimeMillis(), "LOG", (droppedNow - droppedReported) +
+                " events dropped, the log buffer was full");
+            droppedReported = droppedNow;
+        }
+
+        while (count < MAX_BATCH) {
+            int slot = (int) (head & mask);
+            if (sequences.get(slot) != head + 1) break;
+            long timestamp = timestamps[slot];
+            String category = categories[slot];
+            String message = messages[slot];
+            categories[slot] = null;
+            messages[slot] = null;
+            // Hands the slot back to the producers for the next lap
+            sequences.lazySet(slot, head + CAPACITY);
+            head++;
+            append(timestamp, category, message);
+            count++;
+        }
+        flushBuffer();
+        return count;
+    }
+
+    private void append(long timestamp, String category, String message) {
+        long period = periodOf(timestamp);
+        if (channel == null) {
+            open(timestamp);
+        } else if (fileSize + buffer.position() >= maxBytes || period != filePeriod) {
+            roll(timestamp);
+        }
+        if (channel == null) return;
+
+        long second = timestamp / 1000;
+        if (second != cachedSecond) {
+            cachedSecond = second;
+            cachedDate = dateFormat.format(new Date(second * 1000));
+        }
+        int millis = (int) (timestamp % 1000);
+        line.setLength(0);
+        line.append(cachedDate).append('.')
+            .append((char) ('0' + millis / 100))
+            .append((char) ('0' + millis / 10 % 10))
+            .append((char) ('0' + millis % 10))
+            .append(" [").append(category).append("] ");
+        for (int i = 0; i < message.length(); i++) {
+            char c = message.charAt(i);
+            if (c == '§') {
+                i++; // Color code
+            } else if (c != '\n' && c != '\r') {
+                line.append(c);
+            }
+        }
+        line.append('\n');
+
+        CharBuffer chars = CharBuffer.wrap(line);
+        encoder.reset();
+        while (true) {
+            CoderResult result = encoder.encode(chars, buffer, true);
+            if (!result.isOverflow()) break;
+            flushBuffer();
+        }
+    }
+
+    private void flushBuffer() {
+        if (buffer.position() == 0) return;
+        if (channel == null) {
+            // Could not be opened; the failure has been reported
+            buffer.clear();
+            return;
+        }
+        buffer.flip();
+        try {
+            while (buffer.hasRemaining()) {
+                fileSize += channel.write(buffer);
+            }
+            failing = false;
+        } catch (IOException e) {
+            if (!failing) {
+                logger.warning("[SecurityLog] Failed to write " + currentFile().getName() + ": " + e.getMessage());
+                failing = true;
+            }
+            closeChannel();
+        } finally {
+            buffer.clear();
+        }
+    }
+
+    private void open(long timestamp) {
+        File file = currentFile();
+        try {
+            if (!directory.isDirectory() && !directory.mkdirs()) {
+                throw new IOException("Cannot create " + directory.getPath());
+            }
+            // A file left by an earlier period is rolled before anything is added to it
+            if (file.isFile() && file.length() > 0 && periodOf(file.lastModified()) != periodOf(timestamp)) {
+                rollFile(file, file.lastModified());
+            }
+            channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+            fileSize = channel.size();
+            filePeriod = periodOf(timestamp);
+        } catch (IOException e) {
+            if (!failing) {
+                logger.warning("[SecurityLog] Failed to open " + file.getName() + ": " + e.getMessage());
+                failing = true;
+            }
+            closeChannel();
+        }
+    }
+
+    private void roll(long timestamp) {
+        flushBuffer();
+        closeChannel();
+        try {
+            rollFile(currentFile(), timestamp);
+        } catch (IOException e) {
+            logger.warning("[SecurityLog] Failed to roll " + currentFile().getName() + ": " + e.getMessage());
+        }
+        open(timestamp);
+    }
+
+    private void rollFile(File file, long timestamp) throws IOException {
+        String stamp = rollFormat.format(new Date(timestamp));
+        File rolled = new File(directory, baseName + "-" + stamp + extension);
+        for (int i = 1; rolled.exists() || new File(rolled.getPath() + ROLLED_SUFFIX).exists(); i++) {
+            rolled = new File(directory, baseName + "-" + stamp + "-" + i + extension);
+        }
+        Files.move(file.toPath(), rolled.toPath(), StandardCopyOption.ATOMIC_MOVE);
+        File target = rolled;
+        compressor.execute(() -> compress(target));
+    }
+
+    private void closeChannel() {
+        if (channel == null) return;
+        try {
+            channel.close();
+        } catch (IOException ignored) {
+            // Already written what it could
+        }
+        channel = null;
+    }
+
+    private long periodOf(long timestamp) {
+        // Local time, so daily rotation happens at midnight
+        long local = timestamp + TimeZone.getDefault().getOffset(timestamp);
+        return local / rotateMillis;
+    }
+
+    private File currentFile() {
+        return new File(directory, baseName + extension);
+    }
+
+    // ================================
+    // COMPRESSION
+    // ================================
+
+    private void compress(File rolled) {
+        File gzip = new File(rolled.getPath() + ROLLED_SUFFIX);
+        File temp = new File(gzip.getPath() + ".tmp");
+        try (InputStream in = new FileInputStream(rolled);
+             OutputStream out = new GZIPOutputStream(new FileOutputStream(temp), 64 * 1024)) {
+            byte[] chunk = new byte[64 * 1024];
+            int read;
+            while ((read = in.read(chunk)) > 0) {
+                out.write(chunk, 0, read);
+            }
+        } catch (IOException e) {
+            logger.warning("[SecurityLog] Failed to compress " + rolled.getName() + ": " + e.getMessage());
+            temp.delete();
+            return;
+        }
+        try {
+            Files.move(temp.toPath(), gzip.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            Files.delete(rolled.toPath());
+        } catch (IOException e) {
+            logger.warning("[SecurityLog] Failed to replace " + rolled.getName() + ": " + e.getMessage());
+        }
+        pruneRolled();
+    }
+
+    private void pruneRolled() {
+        File[] rolled = listRolled(true);
+        for (int i = 0; i < rolled.length - keepFiles; i++) {
+            if (!rolled[i].delete()) {
+                logger.fine("[SecurityLog] Could not delete " + rolled[i].getName());
+            }
+        }
+    }
+
+    private File[] listRolled(boolean compressed) {
+        String prefix = baseName + "-";
+        String suffix = compressed ? extension + ROLLED_SUFFIX : extension;
+        File[] files = directory.listFiles((dir, name) -> name.startsWith(prefix) && name.endsWith(suffix));
+        if (files == null) return new File[0];
+        // Roll stamps sort chronologically, a name without a collision counter comes first
+        int strip = suffix.length();
+        Arrays.sort(files, Comparator.comparing((File file) -> file.getName().substring(0, file.getName().length() - strip)));
+        return files;
+    }
+}
@@ -0,0 +1,114 @@
+package org.spigot.utils;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free event counter over a sliding window of real time.
+ *
+ * Time is split into fixed-size buckets measured with {@link System#nanoTime()},
+ * so the window length does not depend on server TPS. Each bucket slot packs the
+ * bucket epoch into the high bits and the event count into the low bits; a stale
+ * slot is reset and incremented in a single CAS. Writers are spread over several
+ * stripes chosen by thread, so async pre-login threads rarely touch the same slot,
+ * and readers sum all stripes without locking.
+ */
+public class SlidingWindowCounter {
+
+    // Constants
+    private static final int COUNT_BITS = 24;
+    private static final long COUNT_MASK = (1L << COUNT_BITS) - 1;
+    private static final int MAX_STRIPES = 64;
+
+    private final long resolutionNanos;
+    private final int bucketCount;
+    private final int stripeMask;
+    private final AtomicLongArray slots;
+    private final long origin;
+
+    /**
+     * @param resolution bucket length
+     * @param window longest window that can be queried
+     */
+    public SlidingWindowCounter(long resolution, long window, TimeUnit unit) {
+        if (resolution <= 0 || window < resolution) {
+            throw new IllegalArgumentException("window must be at least one bucket long");
+        }
+        this.resolutionNanos = unit.toNanos(resolution);
+        this.bucketCount = (int) (window / resolution);
+
+        int stripes = Integer.highestOneBit(Math.max(1, Runtime.getRuntime().availableProcessors() * 2 - 1)) << 1;
+        stripes = Math.min(stripes, MAX_STRIPES);
+        this.stripeMask = stripes - 1;
+        // Stripe-major layout keeps one stripe's buckets together and different stripes apart
+        this.slots = new AtomicLongArray(stripes * bucketCount);
+        this.origin = System.nanoTime();
+    }
+
+    public void increment() {
+        add(1);
+    }
+
+    public void add(long amount) {
+        if (amount <= 0) return;
+
+        long epoch = currentEpoch();
+        int index = stripeIndex() * bucketCount + (int) (epoch % bucketCount);
+        while (true) {
+            long current = slots.get(index);
+            long updated;
+            if ((current >>> COUNT_BITS) == epoch) {
+                long count = Math.min(COUNT_MASK, (current & COUNT_MASK) + amount);
+                updated = (epoch << COUNT_BITS) | count;
+            } else {
+                updated = (epoch << COUNT_BITS) | Math.min(COUNT_MASK, amount);
+            }
+            if (slots.compareAndSet(index, current, updated)) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Number of events in the most recent window, including the current bucket.
+     */
+    public long sum(long window, TimeUnit unit) {
+        int buckets = (int) Math.max(1, Math.min(bucketCount, unit.toNanos(window) / resolutionNanos));
+        long epoch = currentEpoch();
+        long oldest = epoch - buckets + 1;
+
+        long total = 0;
+        for (int i = 0; i < slots.length(); i++) {
+            long value = slots.get(i);
+            long slotEpoch = value >>> COUNT_BITS;
+            if (slotEpoch >= oldest && slotEpoch <= epoch) {
+                total += value & COUNT_MASK;
+            }
+        }
+        return total;
+    }
+
+    /**
+     * Average events per second over the given window.
+     */
+    public double ratePerSecond(long window, TimeUnit unit) {
+        double seconds = unit.toNanos(window) / (double) TimeUnit.SECONDS.toNanos(1);
+        return seconds <= 0 ? 0 : sum(window, unit) / seconds;
+    }
+
+    public void reset() {
+        for (int i = 0; i < slots.length(); i++) {
+            slots.set(i, 0);
+        }
+    }
+
+    private long currentEpoch() {
+        // Offset by one so a zeroed slot never matches a live epoch
+        return (System.nanoTime() - origin) / resolutionNanos + 1;
+    }
+
+    private int stripeIndex() {
+        long id = Thread.currentThread().getId();
+        return (int) ((id * 0x9E3779B97F4A7C15L) >>> 32) & stripeMask;
+    }
+}
@@ -0,0 +1,234 @@
+package org.spigot.utils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Approximate counts of the most frequent IPs in a fixed amount of memory.
+ *
+ * Implements the Space-Saving algorithm: at most {@code capacity} addresses are
+ * monitored. An unmonitored address replaces the one with the smallest count
+ * and inherits that count as its possible overestimate. Any address seen more
+ * than {@code total / capacity} times is guaranteed to be monitored, and every
+ * count is off by at most its recorded error. The minimum is kept in a binary
+ * heap and addresses are found through an open-addressing index, so adding is
+ * O(log capacity).
+ */
+public final class SpaceSavingSketch {
+
+    private final int capacity;
+    private final long[] highs;
+    private final long[] lows;
+    private final long[] counts;
+    private final long[] errors;
+    // heap[position] = slot, ordered by count; positions[slot] = position
+    private final int[] heap;
+    private final int[] positions;
+    // table[hash] = slot + 1, 0 when empty
+    private final int[] table;
+    private final int mask;
+    private int size;
+    private long total;
+
+    public SpaceSavingSketch(int capacity) {
+        if (capacity < 1) throw new IllegalArgumentException("capacity must be positive");
+        this.capacity = capacity;
+        this.highs = new long[capacity];
+        this.lows = new long[capacity];
+        this.counts = new long[capacity];
+        this.errors = new long[capacity];
+        this.heap = new int[capacity];
+        this.positions = new int[capacity];
+        this.table = new int[Integer.highestOneBit(capacity * 2 - 1) << 1];
+        this.mask = table.length - 1;
+    }
+
+    /**
+     * Count one occurrence of an address.
+     *
+     * @return how many times the address was certainly seen, i.e. its count
+     * minus the possible overestimate
+     */
+    public synchronized long add(long high, long low) {
+        total++;
+        int slot = find(high, low);
+        if (slot < 0) {
+            if (size < capacity) {
+                slot = size++;
+                highs[slot] = high;
+                lows[slot] = low;
+                counts[slot] = 1;
+                errors[slot] = 0;
+                index(slot);
+                heap[slot] = slot;
+                siftUp(slot);
+                return 1;
+            }
+            // Take over the least frequent entry
+            slot = heap[0];
+            unindex(slot);
+            errors[slot] = counts[slot];
+            highs[slot] = high;
+            lows[slot] = low;
+            index(slot);
+        }
+        counts[slot]++;
+        siftDown(positions[slot]);
+        return counts[slot] - errors[slot];
+    }
+
+    /**
+     * @return the estimated count, or 0 if the address is not monitored
+     */
+    public synchronized long estimate(long high, long low) {
+        int slot = find(high, low);
+        return slot < 0 ? 0 : counts[slot];
+    }
+
+    /**
+     * The most frequent addresses, highest estimate first.
+     */
+    public synchronized List<Entry> top(int limit) {
+        Integer[] slots = new Integer[size];
+        for (int i = 0; i < size; i++) slots[i] = i;
+        Arrays.sort(slots, Comparator.comparingLong((Integer slot) -> counts[slot]).reversed());
+
+        int n = Math.min(Math.max(0, limit), size);
+        List<Entry> result = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            int slot = slots[i];
+            result.add(new Entry(highs[slot], lows[slot], counts[slot], errors[slot]));
+        }
+        return result;
+    }
+
+    public synchronized void clear() {
+        Arrays.fill(table, 0);
+        size = 0;
+        total = 0;
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    /**
+     * @return all occurrences counted since the last clear
+     */
+    public synchronized long getTotal() {
+        return total;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    // ================================
+    // INDEX
+    // ================================
+
+    private int find(long high, long low) {
+        int index = IPAddressKey.hash(high, low) & mask;
+        int entry;
+        while ((entry = table[index]) != 0) {
+            int slot = entry - 1;
+            if (highs[slot] == high && lows[slot] == low) return slot;
+            index = (index + 1) & mask;
+        }
+        return -1;
+    }
+
+    private void index(int slot) {
+        int index = IPAddressKey.hash(highs[slot], lows[slot]) & mask;
+        while (table[index] != 0) {
+            index = (index + 1) & mask;
+        }
+        table[index] = slot + 1;
+    }
+
+    private void unindex(int slot) {
+        int index = IPAddressKey.hash(highs[slot], lows[slot]) & mask;
+        while (table[index] != slot + 1) {
+            index = (index + 1) & mask;
+        }
+        // Backward-shift deletion keeps probe chains intact without tombstones
+        int gap = index;
+        int next = (gap + 1) & mask;
+        while (table[next] != 0) {
+            int other = table[next] - 1;
+            int home = IPAddressKey.hash(highs[other], lows[other]) & mask;
+            if (((next - home) & mask) >= ((next - gap) & mask)) {
+                table[gap] = table[next];
+                gap = next;
+            }
+            next = (next + 1) & mask;
+        }
+        table[gap] = 0;
+    }
+
+    // ================================
+    // HEAP
+    // ================================
+
+    private void siftUp(int position) {
+        int slot = heap[position];
+        long count = counts[slot];
+        while (position > 0) {
+            int parent = (position - 1) / 2;
+            if (counts[heap[parent]] <= count) break;
+            heap[position] = heap[parent];
+            positions[heap[position]] = position;
+            position = parent;
+        }
+        heap[position] = slot;
+        positions[slot] = position;
+    }
+
+    private void siftDown(int position) {
+        int slot = heap[position];
+        long count = counts[slot];
+        while (true) {
+            int child = position * 2 + 1;
+            if (child >= size) break;
+            if (child + 1 < size && counts[heap[child + 1]] < counts[heap[child]]) child++;
+            if (counts[heap[child]] >= count) break;
+            heap[position] = heap[child];
+            positions[heap[position]] = position;
+            position = child;
+        }
+        heap[position] = slot;
+        positions[slot] = position;
+    }
+
+    public static final class Entry {
+        private final long high;
+        private final long low;
+        private final long count;
+        private final long error;
+
+        Entry(long high, long low, long count, long error) {
+            this.high = high;
+            this.low = low;
+            this.count = count;
+            this.error = error;
+        }
+
+        // Getters
+        public long getHigh() { return high; }
+        public long getLow() { return low; }
+        public long getCount() { return count; }
+        public long getError() { return error; }
+
+        /**
+         * @return the count that is certain, without the possible overestimate
+         */
+        public long getGuaranteedCount() { return count - error; }
+
+        @Override
+        public String toString() {
+            return IPAddressKey.toString(high, low) + "=" + count;
+        }
+    }
+}
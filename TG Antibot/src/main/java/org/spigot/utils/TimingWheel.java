@@ -0,0 +1,276 @@
+package org.spigot.utils;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Hierarchical timing wheel for expiring bans and blocks.
+ *
+ * Five levels of 64 slots each, the first one tick wide, every next level 64
+ * times coarser, cover over three years at a 100ms tick. Timeouts sit in
+ * intrusive doubly linked slot lists: scheduling and cancelling are O(1), and
+ * a timeout is moved down at most once per level before it fires, so expiry is
+ * O(1) amortized no matter how many entries are pending.
+ *
+ * Any thread may schedule or cancel; both only enqueue work. A single daemon
+ * thread owns the wheel, applies the queued changes on every tick and runs the
+ * expired tasks, so they must be short and thread-safe.
+ */
+public class TimingWheel {
+
+    // Constants
+    private static final int WHEEL_BITS = 6;
+    private static final int WHEEL_SIZE = 1 << WHEEL_BITS;
+    private static final int WHEEL_MASK = WHEEL_SIZE - 1;
+    private static final int LEVELS = 5;
+    private static final long MAX_TICKS = 1L << (WHEEL_BITS * LEVELS);
+
+    private final Logger logger;
+    private final long tickNanos;
+    private final long origin;
+
+    private final Timeout[][] wheels;
+    private final ConcurrentLinkedQueue<Timeout> scheduled;
+    private final ConcurrentLinkedQueue<Timeout> cancelled;
+    private final AtomicInteger pending;
+    private final Thread worker;
+
+    // Next tick to process, only touched by the worker thread
+    private long currentTick;
+    private volatile boolean isShutdown = false;
+
+    public TimingWheel(String name, long tickDuration, TimeUnit unit, Logger logger) {
+        if (tickDuration <= 0) throw new IllegalArgumentException("tickDuration must be positive");
+        this.logger = logger;
+        this.tickNanos = unit.toNanos(tickDuration);
+        this.origin = System.nanoTime();
+        this.wheels = new Timeout[LEVELS][WHEEL_SIZE];
+        this.scheduled = new ConcurrentLinkedQueue<>();
+        this.cancelled = new ConcurrentLinkedQueue<>();
+        this.pending = new AtomicInteger();
+
+        this.worker = new Thread(this::run, name);
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    /**
+     * Run the task once the delay has passed, on the wheel thread. Precision is one tick.
+     */
+    public Timeout schedule(Runnable task, long delay, TimeUnit unit) {
+        if (task == null) throw new NullPointerException("task");
+        long elapsed = System.nanoTime() - origin + Math.max(0, unit.toNanos(delay));
+        // Round up so a task never fires early
+        Timeout timeout = new Timeout(this, task, (elapsed + tickNanos - 1) / tickNanos);
+        if (isShutdown) {
+            timeout.state = Timeout.CANCELLED;
+            return timeout;
+        }
+        pending.incrementAndGet();
+        scheduled.offer(timeout);
+        return timeout;
+    }
+
+    public int getPendingCount() {
+        return pending.get();
+    }
+
+    public void shutdown() {
+        isShutdown = true;
+        worker.interrupt();
+        try {
+            worker.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        scheduled.clear();
+        cancelled.clear();
+        pending.set(0);
+    }
+
+    // ================================
+    // WORKER THREAD
+    // ================================
+
+    private void run() {
+        while (!isShutdown) {
+            long targetTick = (System.nanoTime() - origin) / tickNanos;
+
+            // Catch up on every missed tick so cascades stay consistent
+            while (currentTick <= targetTick && !isShutdown) {
+                drainQueues();
+                processTick();
+            }
+
+            long sleepNanos = (currentTick * tickNanos) - (System.nanoTime() - origin);
+            if (sleepNanos > 0) {
+                try {
+                    TimeUnit.NANOSECONDS.sleep(sleepNanos);
+                } catch (InterruptedException e) {
+                    if (isShutdown) return;
+                }
+            }
+        }
+    }
+
+    private void drainQueues() {
+        Timeout timeout;
+        while ((timeout = cancelled.poll()) != null) {
+            if (timeout.level >= 0) {
+                unlink(timeout);
+                pending.decrementAndGet();
+            }
+        }
+        while ((timeout = scheduled.poll()) != null) {
+            if (timeout.state == Timeout.CANCELLED) {
+                pending.decrementAndGet();
+                continue;
+            }
+            place(timeout);
+        }
+    }
+
+    private void processTick() {
+        int index = (int) (currentTick & WHEEL_MASK);
+        if (index == 0) {
+            // Move the next slot of each coarser level down, stopping at the first level that does not wrap
+            for (int level = 1; level < LEVELS; level++) {
+                int slot = (int) ((currentTick >>> (WHEEL_BITS * level)) & WHEEL_MASK);
+                cascade(level, slot);
+                if (slot != 0) break;
+            }
+        }
+
+        Timeout timeout = wheels[0][index];
+        wheels[0][index] = null;
+        while (timeout != null) {
+            Timeout next = timeout.next;
+            timeout.next = null;
+            timeout.prev = null;
+            timeout.level = -1;
+
+            if (timeout.deadline > currentTick) {
+                // Clamped beyond the wheel's range, place it again
+                place(timeout);
+            } else {
+                pending.decrementAndGet();
+                timeout.expire();
+            }
+            timeout = next;
+        }
+        currentTick++;
+    }
+
+    private void cascade(int level, int slot) {
+        Timeout timeout = wheels[level][slot];
+        wheels[level][slot] = null;
+        while (timeout != null) {
+            Timeout next = timeout.next;
+            timeout.next = null;
+            timeout.prev = null;
+            timeout.level = -1;
+            place(timeout);
+            timeout = next;
+        }
+    }
+
+    private void place(Timeout timeout) {
+        long delta = timeout.deadline - currentTick;
+        long target = timeout.deadline;
+        if (delta < 0) {
+            target = currentTick;
+            delta = 0;
+        } else if (delta >= MAX_TICKS) {
+            target = currentTick + MAX_TICKS - 1;
+            delta = MAX_TICKS - 1;
+        }
+
+        int level = 0;
+        while (level < LEVELS - 1 && delta >= (1L << (WHEEL_BITS * (level + 1)))) {
+            level++;
+        }
+        int slot = (int) ((target >>> (WHEEL_BITS * level)) & WHEEL_MASK);
+
+        Timeout head = wheels[level][slot];
+        timeout.next = head;
+        if (head != null) head.prev = timeout;
+        wheels[level][slot] = timeout;
+        timeout.level = level;
+        timeout.slot = slot;
+    }
+
+    private void unlink(Timeout timeout) {
+        if (timeout.prev != null) {
+            timeout.prev.next = timeout.next;
+        } else {
+            wheels[timeout.level][timeout.slot] = timeout.next;
+        }
+        if (timeout.next != null) {
+            timeout.next.prev = timeout.prev;
+        }
+        timeout.next = null;
+        timeout.prev = null;
+        timeout.level = -1;
+    }
+
+    /**
+     * Handle of a scheduled task.
+     */
+    public static final class Timeout {
+        private static final int WAITING = 0;
+        private static final int CANCELLED = 1;
+        private static final int EXPIRED = 2;
+
+        private final TimingWheel wheel;
+        private final Runnable task;
+        private final long deadline;
+        private volatile int state;
+
+        // Slot links, owned by the worker thread
+        private Timeout next;
+        private Timeout prev;
+        private int level = -1;
+        private int slot;
+
+        private Timeout(TimingWheel wheel, Runnable task, long deadline) {
+            this.wheel = wheel;
+            this.task = task;
+            this.deadline = deadline;
+        }
+
+        /**
+         * @return false if the task already ran or was cancelled
+         */
+        public boolean cancel() {
+            synchronized (this) {
+                if (state != WAITING) return false;
+                state = CANCELLED;
+            }
+            wheel.cancelled.offer(this);
+            return true;
+        }
+
+        public boolean isCancelled() {
+            return state == CANCELLED;
+        }
+
+        public boolean isExpired() {
+            return state == EXPIRED;
+        }
+
+        private void expire() {
+            synchronized (this) {
+                if (state != WAITING) return;
+                state = EXPIRED;
+            }
+            try {
+                task.run();
+            } catch (Throwable t) {
+                wheel.logger.log(Level.WARNING, "[TimingWheel] Expiry task failed", t);
+            }
+        }
+    }
+}
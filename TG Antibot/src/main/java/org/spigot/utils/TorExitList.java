@@ -0,0 +1,177 @@
+package org.spigot.utils;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+/**
+ * Set of Tor exit addresses read from a local exit-list file.
+ *
+ * Accepts the plain one-address-per-line bulk list as well as the
+ * "ExitAddress a.b.c.d ..." lines of the full exit list. A daemon thread watches
+ * the file's directory and, once writes have settled, parses the file into a new
+ * {@link CompactIPSet} and swaps it in, so lookups never wait for a reload.
+ */
+public class TorExitList {
+
+    // Constants
+    private static final long SETTLE_MILLIS = 500L;
+
+    private final Logger logger;
+    private volatile CompactIPSet exits = CompactIPSet.EMPTY;
+    private volatile File file;
+    private volatile long loadedModified;
+    private WatchService watchService;
+    private Thread watchThread;
+
+    public TorExitList(Logger logger) {
+        this.logger = logger;
+    }
+
+    public boolean contains(long high, long low) {
+        return exits.contains(high, low);
+    }
+
+    public boolean contains(InetAddress address) {
+        return exits.contains(address);
+    }
+
+    /**
+     * Load the file and watch it for changes, replacing any previous watch.
+     */
+    public synchronized void start(File file) {
+        stop();
+        this.file = file.getAbsoluteFile();
+        this.loadedModified = 0L;
+
+        Path directory = this.file.getParentFile().toPath();
+        try {
+            Files.createDirectories(directory);
+            WatchService service = FileSystems.getDefault().newWatchService();
+            directory.register(service, StandardWatchEventKinds.ENTRY_CREATE,
+                StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE);
+            watchService = service;
+        } catch (IOException e) {
+            logger.warning("[TorExitList] Could not watch " + directory + ", changes need a reload: " + e.getMessage());
+        }
+
+        WatchService service = watchService;
+        watchThread = new Thread(() -> {
+            reload();
+            if (service != null) watch(service);
+        }, "TGA-Tor-Watch");
+        watchThread.setDaemon(true);
+        watchThread.start();
+    }
+
+    public synchronized void stop() {
+        if (watchService != null) {
+            try {
+                watchService.close();
+            } catch (IOException ignored) {
+            }
+            watchService = null;
+        }
+        if (watchThread != null) {
+            watchThread.interrupt();
+            watchThread = null;
+        }
+    }
+
+    private void watch(WatchService service) {
+        String name = file.getName();
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                WatchKey key = service.take();
+                boolean relevant = false;
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    Object context = event.context();
+                    if (event.kind() == StandardWatchEventKinds.OVERFLOW ||
+                        (context instanceof Path && ((Path) context).toString().equals(name))) {
+                        relevant = true;
+                    }
+                }
+                key.reset();
+                if (!relevant) continue;
+
+                // Downloads arrive as several writes; wait until they stop
+                WatchKey more;
+                while ((more = service.poll(SETTLE_MILLIS, TimeUnit.MILLISECONDS)) != null) {
+                    more.pollEvents();
+                    more.reset();
+                }
+                reload();
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            // Stopped
+        }
+    }
+
+    /**
+     * Parse the file and swap the set in. Skips the parse if the file is unchanged.
+     */
+    public void reload() {
+        File current = file;
+        if (current == null) return;
+        if (!current.isFile()) {
+            if (exits.size() > 0) {
+                logger.info("[TorExitList] " + current.getName() + " removed, Tor exit list cleared");
+            } else {
+                logger.warning("[TorExitList] No exit list found at " + current.getPath() + ", Tor blocking is inactive");
+            }
+            exits = CompactIPSet.EMPTY;
+            loadedModified = 0L;
+            return;
+        }
+
+        long modified = current.lastModified();
+        if (modified == loadedModified) return;
+
+        CompactIPSet.Builder builder = new CompactIPSet.Builder();
+        int skipped = 0;
+        try (BufferedReader reader = Files.newBufferedReader(current.toPath(), StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String trimmed = line.trim();
+                if (trimmed.isEmpty() || trimmed.startsWith("#")) continue;
+
+                String[] tokens = trimmed.split("\\s+");
+                String address;
+                if (tokens[0].equals("ExitAddress")) {
+                    if (tokens.length < 2) continue;
+                    address = tokens[1];
+                } else if (tokens.length == 1) {
+                    address = tokens[0];
+                } else {
+                    // ExitNode, Published and LastStatus lines of the full list
+                    continue;
+                }
+                if (!builder.add(address)) skipped++;
+            }
+        } catch (IOException e) {
+            logger.warning("[TorExitList] Failed to read " + current.getName() + ": " + e.getMessage());
+            return;
+        }
+
+        exits = builder.build();
+        loadedModified = modified;
+        logger.info("[TorExitList] Loaded " + exits.size() + " Tor exit addresses" +
+            (skipped > 0 ? " (" + skipped + " invalid lines skipped)" : ""));
+    }
+
+    public int size() {
+        return exits.size();
+    }
+}
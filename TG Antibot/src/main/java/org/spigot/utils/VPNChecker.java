@@ -6,36 +6,53 @@ import okhttp3.OkHttpClient;
 import okhttp3.Request;
 import okhttp3.Response;
 import okhttp3.ResponseBody;
+import org.bukkit.Bukkit;
 import org.bukkit.entity.Player;
 import org.spigot.Main;
 
+import java.io.File;
 import java.io.IOException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
 
+/**
+ * Proxy/VPN lookups against proxycheck.io.
+ *
+ * Lookups run on a small dedicated pool and concurrent lookups for the same IP
+ * share one in-flight request. Callers wait at most a fixed deadline for the
+ * verdict; a timeout, API error or full queue resolves to the configured
+ * fail-open or fail-closed result, while the request keeps running and fills
+ * the cache for the next attempt.
+ */
 public class VPNChecker {
 
+    // Constants
+    private static final int MAX_QUEUED_LOOKUPS = 512;
+    private static final String SNAPSHOT_FILE = "vpn-cache.dat";
+    private static final long SNAPSHOT_INTERVAL_TICKS = 12000L; // 10 minutes
+
     private final Main plugin;
     private final OkHttpClient httpClient;
     private final ObjectMapper jsonMapper;
-    private final ConcurrentMap<String, CacheEntry> vpnCache;
-    private final long cacheExpirationTime;
-    
-    private static class CacheEntry {
-        final boolean isVPN;
-        final long timestamp;
-        
-        CacheEntry(boolean isVPN) {
-            this.isVPN = isVPN;
-            this.timestamp = System.currentTimeMillis();
-        }
-        
-        boolean isExpired(long expirationTime) {
-            return System.currentTimeMillis() - timestamp > expirationTime;
-        }
-    }
+    private final VPNVerdictCache vpnCache;
+    private final File snapshotFile;
+    private final ConcurrentMap<String, CompletableFuture<Boolean>> inFlight;
+    private final ThreadPoolExecutor lookupExecutor;
 
+    // Statistics
+    private final LongAdder coalescedLookups;
+    private final LongAdder timedOutLookups;
+    private final LongAdder failedLookups;
+    
     public VPNChecker(Main plugin) {
         this.plugin = plugin;
         this.httpClient = new OkHttpClient.Builder()
@@ -44,24 +61,63 @@ public class VPNChecker {
             .writeTimeout(plugin.getConfigManager().getRequestTimeout(), TimeUnit.MILLISECONDS)
             .build();
         this.jsonMapper = new ObjectMapper();
-        this.vpnCache = new ConcurrentHashMap<>();
-        this.cacheExpirationTime = TimeUnit.MINUTES.toMillis(plugin.getConfigManager().getCacheLifetimeMinutes());
+        this.vpnCache = new VPNVerdictCache(plugin.getConfigManager().getVerdictCacheSize(),
+            TimeUnit.MINUTES.toMillis(plugin.getConfigManager().getCacheLifetimeMinutes()),
+            TimeUnit.MINUTES.toMillis(plugin.getConfigManager().getCleanCacheLifetimeMinutes()));
+        this.snapshotFile = new File(plugin.getDataFolder(), SNAPSHOT_FILE);
+        this.inFlight = new ConcurrentHashMap<>();
+        this.coalescedLookups = new LongAdder();
+        this.timedOutLookups = new LongAdder();
+        this.failedLookups = new LongAdder();
+
+        int threads = Math.max(1, plugin.getConfigManager().getMaxConcurrentLookups());
+        AtomicInteger threadIndex = new AtomicInteger();
+        this.lookupExecutor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+            new ArrayBlockingQueue<>(MAX_QUEUED_LOOKUPS), r -> {
+                Thread t = new Thread(r, "TGA-VPN-Lookup-" + threadIndex.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            });
+        lookupExecutor.allowCoreThreadTimeOut(true);
+
+        // Restore verdicts from the last run without delaying startup
+        Bukkit.getScheduler().runTaskAsynchronously(plugin, this::loadSnapshot);
+        Bukkit.getScheduler().runTaskTimerAsynchronously(plugin, () -> {
+            vpnCache.removeExpired();
+            saveSnapshot();
+        }, SNAPSHOT_INTERVAL_TICKS, SNAPSHOT_INTERVAL_TICKS);
     }
 
     /**
-     * Check if a Player is using a VPN.
+     * Check if a Player is using a VPN. Never blocks: answers from the cache and
+     * otherwise starts a lookup in the background and reports no VPN for now.
      */
     public boolean isUsingVPN(Player player) {
         if (player == null || player.getAddress() == null) {
             return false;
         }
-        return isUsingVPN(player.getAddress().getAddress().getHostAddress());
+        String ip = normalizeIP(player.getAddress().getAddress().getHostAddress());
+        if (!shouldCheck(ip)) {
+            return false;
+        }
+
+        CompletableFuture<Boolean> verdict = lookup(ip);
+        return verdict.isDone() && !verdict.isCompletedExceptionally() && verdict.join();
     }
 
     /**
-     * Check if an IP address is using a VPN (for AsyncPlayerPreLoginEvent or raw IP checks).
+     * Check if an IP address is using a VPN, waiting at most the API request timeout.
      */
     public boolean isUsingVPN(String ip) {
+        return isUsingVPN(ip, plugin.getConfigManager().getRequestTimeout());
+    }
+
+    /**
+     * Check if an IP address is using a VPN, waiting at most {@code maxWaitMillis}
+     * for the verdict (for AsyncPlayerPreLoginEvent). Without a verdict in time the
+     * configured fail mode decides.
+     */
+    public boolean isUsingVPN(String ip, long maxWaitMillis) {
         if (!plugin.getConfigManager().isVpnProtectionEnabled()) {
             return false;
         }
@@ -71,52 +127,97 @@ public class VPNChecker {
             return false;
         }
         
-        // Normalize IP address
-        ip = ip.replace("/", "").trim();
-        
-        // Check if IP is whitelisted
-        if (plugin.getConfigManager().getSafeAddresses().contains(ip)) {
+        ip = normalizeIP(ip);
+        if (!shouldCheck(ip)) {
             return false;
         }
-        
+
+        try {
+            return lookup(ip).get(Math.max(0, maxWaitMillis), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            timedOutLookups.increment();
+            if (plugin.getConfigManager().isDebugMode()) {
+                plugin.getLogger().info("[VPNChecker] No verdict for " + ip + " within " + maxWaitMillis + "ms");
+            }
+        } catch (ExecutionException e) {
+            // Already logged by the lookup
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return plugin.getConfigManager().isFailClosed();
+    }
+
+    private boolean shouldCheck(String ip) {
+        // Check if IP is whitelisted
+        return plugin.getConfigManager().isVpnProtectionEnabled() &&
+            !plugin.getConfigManager().getSafeAddresses().contains(ip);
+    }
+
+    /**
+     * Cached verdict, the in-flight request for this IP, or a newly started one.
+     */
+    private CompletableFuture<Boolean> lookup(String ip) {
         // Check cache first
-        CacheEntry cached = vpnCache.get(ip);
-        if (cached != null && !cached.isExpired(cacheExpirationTime)) {
+        IPAddressKey key = IPAddressKey.parse(ip);
+        Boolean cached = key == null ? null : vpnCache.get(key);
+        if (cached != null) {
+            if (plugin.getConfigManager().isDebugMode()) {
+                plugin.getLogger().info("[VPNChecker] Using cached result for IP: " + ip + " -> " + cached);
+            }
+            return CompletableFuture.completedFuture(cached);
+        }
+
+        // Known datacenter ranges are answered locally, without an API request
+        if (key != null && plugin.getConfigManager().isBlockHostingServices() &&
+            plugin.getHostingClassifier().isHosting(key.getHigh(), key.getLow())) {
             if (plugin.getConfigManager().isDebugMode()) {
-                plugin.getLogger().info("[VPNChecker] Using cached result for IP: " + ip + " -> " + cached.isVPN);
+                plugin.getLogger().info("[VPNChecker] IP " + ip + " belongs to a hosting provider");
             }
-            return cached.isVPN;
+            return CompletableFuture.completedFuture(true);
         }
 
+        CompletableFuture<Boolean> created = new CompletableFuture<>();
+        CompletableFuture<Boolean> existing = inFlight.putIfAbsent(ip, created);
+        if (existing != null) {
+            coalescedLookups.increment();
+            return existing;
+        }
+
+        try {
+            lookupExecutor.execute(() -> runLookup(ip, key, created));
+        } catch (RejectedExecutionException e) {
+            inFlight.remove(ip, created);
+            failedLookups.increment();
+            plugin.getLogger().warning("[VPNChecker] Lookup queue full, skipping check for IP " + ip);
+            created.completeExceptionally(e);
+        }
+        return created;
+    }
+
+    private void runLookup(String ip, IPAddressKey key, CompletableFuture<Boolean> result) {
         if (plugin.getConfigManager().isDebugMode()) {
             plugin.getLogger().info("[VPNChecker] Checking IP: " + ip);
         }
 
-        boolean isVPN = false;
         try {
-            isVPN = checkVPNWithAPI(ip);
-            
-            // Cache the result
-            vpnCache.put(ip, new CacheEntry(isVPN));
-            
-            // Clean up expired cache entries periodically
-            if (vpnCache.size() > 1000) {
-                cleanupCache();
-            }
+            boolean isVPN = checkVPNWithAPI(ip);
             
-        } catch (IOException e) {
-            plugin.getLogger().warning("[VPNChecker] Error checking VPN for IP " + ip + ": " + e.getMessage());
-            if (plugin.getConfigManager().isDebugMode()) {
-                e.printStackTrace();
+            // Cache the result before releasing waiters so later joins hit the cache
+            if (key != null) {
+                vpnCache.put(key, isVPN);
             }
+
+            inFlight.remove(ip, result);
+            result.complete(isVPN);
         } catch (Exception e) {
-            plugin.getLogger().warning("[VPNChecker] Unexpected error for IP " + ip + ": " + e.getMessage());
+            failedLookups.increment();
+            plugin.getLogger().warning("[VPNChecker] Error checking VPN for IP " + ip + ": " + e.getMessage());
             if (plugin.getConfigManager().isDebugMode()) {
                 e.printStackTrace();
             }
+            inFlight.remove(ip, result);
+            result.completeExceptionally(e);
         }
-
-        return isVPN;
     }
     
     private boolean checkVPNWithAPI(String ip) throws IOException {
@@ -131,21 +232,19 @@ public class VPNChecker {
             .build();
             
         try (Response response = httpClient.newCall(request).execute()) {
+            // Failures are not cached, the fail mode decides for the waiting joins
             if (!response.isSuccessful()) {
-                plugin.getLogger().warning("[VPNChecker] API request failed with code: " + response.code());
-                return false;
+                throw new IOException("API request failed with code: " + response.code());
             }
 
             ResponseBody body = response.body();
             if (body == null) {
-                plugin.getLogger().warning("[VPNChecker] Empty response body from API");
-                return false;
+                throw new IOException("Empty response body from API");
             }
             
             String responseText = body.string();
             if (responseText.trim().isEmpty()) {
-                plugin.getLogger().warning("[VPNChecker] Empty response from API");
-                return false;
+                throw new IOException("Empty response from API");
             }
             
             JsonNode json = jsonMapper.readTree(responseText);
@@ -169,11 +268,25 @@ public class VPNChecker {
         return false;
     }
     
-    private void cleanupCache() {
-        vpnCache.entrySet().removeIf(entry -> entry.getValue().isExpired(cacheExpirationTime));
-        
-        if (plugin.getConfigManager().isDebugMode()) {
-            plugin.getLogger().info("[VPNChecker] Cache cleanup completed. Current size: " + vpnCache.size());
+    private void loadSnapshot() {
+        try {
+            int restored = vpnCache.readSnapshot(snapshotFile);
+            if (restored > 0) {
+                plugin.getLogger().info("[VPNChecker] Restored " + restored + " cached verdicts");
+            }
+        } catch (IOException e) {
+            plugin.getLogger().warning("[VPNChecker] Failed to load VPN cache snapshot: " + e.getMessage());
+        }
+    }
+
+    private void saveSnapshot() {
+        try {
+            int written = vpnCache.writeSnapshot(snapshotFile);
+            if (plugin.getConfigManager().isDebugMode()) {
+                plugin.getLogger().info("[VPNChecker] Saved " + written + " cached verdicts");
+            }
+        } catch (IOException e) {
+            plugin.getLogger().warning("[VPNChecker] Failed to save VPN cache snapshot: " + e.getMessage());
         }
     }
     
@@ -189,19 +302,32 @@ public class VPNChecker {
      * Get cache statistics
      */
     public String getCacheStats() {
-        long expired = vpnCache.values().stream()
-            .mapToLong(entry -> entry.isExpired(cacheExpirationTime) ? 1 : 0)
-            .sum();
-            
-        return String.format("Cache size: %d, Expired: %d, Valid: %d", 
-            vpnCache.size(), expired, vpnCache.size() - expired);
+        return String.format("%s, In flight: %d, Coalesced: %d, Timed out: %d, Failed: %d", 
+            vpnCache.getStats(), inFlight.size(),
+            coalescedLookups.sum(), timedOutLookups.sum(), failedLookups.sum());
     }
     
+    /**
+     * Apply the cache lifetimes from the config to new verdicts. The cache
+     * size, timeouts and lookup threads only change on restart.
+     */
+    public void reload() {
+        vpnCache.setLifetimes(TimeUnit.MINUTES.toMillis(plugin.getConfigManager().getCacheLifetimeMinutes()),
+            TimeUnit.MINUTES.toMillis(plugin.getConfigManager().getCleanCacheLifetimeMinutes()));
+    }
+
     /**
      * Shutdown the VPN checker and cleanup resources
      */
     public void shutdown() {
-        vpnCache.clear();
+        lookupExecutor.shutdownNow();
+        inFlight.clear();
+        saveSnapshot();
         // OkHttpClient will be garbage collected
     }
+
+    private String normalizeIP(String ip) {
+        ip = ip.trim();
+        return ip.startsWith("/") ? ip.substring(1) : ip;
+    }
 }
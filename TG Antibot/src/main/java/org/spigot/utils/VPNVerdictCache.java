@@ -0,0 +1,337 @@
+package org.spigot.utils;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Size-bounded cache of proxy verdicts with W-TinyLFU eviction.
+ *
+ * New entries land in a small LRU window. When the window overflows, its oldest
+ * entry only enters the main segmented LRU if the {@link FrequencySketch} has
+ * seen it more often than the entry it would evict, so a flood of one-off IPs
+ * cannot push out regular players. Proxy and clean verdicts expire after their
+ * own lifetimes. The cache can be written to and restored from a compact binary
+ * snapshot so verdicts survive restarts.
+ *
+ * All methods are synchronized; the cache is only touched once per lookup.
+ */
+public class VPNVerdictCache {
+
+    // Constants
+    private static final int SNAPSHOT_MAGIC = 0x54475643; // "TGVC"
+    private static final int SNAPSHOT_VERSION = 1;
+    private static final int WINDOW = 0;
+    private static final int PROBATION = 1;
+    private static final int PROTECTED = 2;
+
+    private final int maximumSize;
+    private final int windowMaximum;
+    private final int protectedMaximum;
+
+    private final Map<IPAddressKey, Node> data;
+    private final FrequencySketch sketch;
+    // Circular lists with sentinel heads; head.next is the least recently used entry
+    private final Node[] queues;
+    private final int[] queueSizes;
+
+    private volatile long proxyLifetime;
+    private volatile long cleanLifetime;
+
+    // Statistics
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    /**
+     * @param proxyLifetime milliseconds a positive verdict stays valid
+     * @param cleanLifetime milliseconds a negative verdict stays valid
+     */
+    public VPNVerdictCache(int maximumSize, long proxyLifetime, long cleanLifetime) {
+        this.maximumSize = Math.max(2, maximumSize);
+        this.windowMaximum = Math.max(1, this.maximumSize / 100);
+        this.protectedMaximum = (int) ((this.maximumSize - windowMaximum) * 0.8);
+        this.data = new HashMap<>();
+        this.sketch = new FrequencySketch(this.maximumSize);
+        this.queues = new Node[] { new Node(), new Node(), new Node() };
+        this.queueSizes = new int[3];
+        this.proxyLifetime = proxyLifetime;
+        this.cleanLifetime = cleanLifetime;
+    }
+
+    /**
+     * @return the cached verdict, or null if unknown or expired
+     */
+    public synchronized Boolean get(IPAddressKey key) {
+        sketch.increment(key.hashCode());
+        Node node = data.get(key);
+        if (node == null) {
+            misses++;
+            return null;
+        }
+        if (node.expiresAt <= System.currentTimeMillis()) {
+            remove(node);
+            misses++;
+            return null;
+        }
+
+        hits++;
+        onAccess(node);
+        return node.proxy;
+    }
+
+    public synchronized void put(IPAddressKey key, boolean proxy) {
+        long expiresAt = System.currentTimeMillis() + (proxy ? proxyLifetime : cleanLifetime);
+        Node node = data.get(key);
+        if (node != null) {
+            node.proxy = proxy;
+            node.expiresAt = expiresAt;
+            onAccess(node);
+            return;
+        }
+
+        node = new Node(key, proxy, expiresAt);
+        data.put(key, node);
+        link(node, WINDOW);
+        evict();
+    }
+
+    public synchronized int size() {
+        return data.size();
+    }
+
+    public synchronized void clear() {
+        data.clear();
+        for (int i = 0; i < queues.length; i++) {
+            queues[i].next = queues[i];
+            queues[i].prev = queues[i];
+            queueSizes[i] = 0;
+        }
+        sketch.clear();
+    }
+
+    /**
+     * Drop expired entries. Expired entries are also dropped lazily on access.
+     */
+    public synchronized int removeExpired() {
+        long now = System.currentTimeMillis();
+        List<Node> expired = new ArrayList<>();
+        for (Node node : data.values()) {
+            if (node.expiresAt <= now) expired.add(node);
+        }
+        for (Node node : expired) {
+            remove(node);
+        }
+        return expired.size();
+    }
+
+    public void setLifetimes(long proxyLifetime, long cleanLifetime) {
+        this.proxyLifetime = proxyLifetime;
+        this.cleanLifetime = cleanLifetime;
+    }
+
+    // ================================
+    // ADMISSION AND EVICTION
+    // ================================
+
+    private void onAccess(Node node) {
+        switch (node.queue) {
+            case WINDOW:
+            case PROTECTED:
+                moveToTail(node, node.queue);
+                break;
+            case PROBATION:
+                // A second hit promotes to protected, demoting its oldest entry if full
+                unlink(node);
+                link(node, PROTECTED);
+                if (queueSizes[PROTECTED] > protectedMaximum) {
+                    Node demoted = queues[PROTECTED].next;
+                    unlink(demoted);
+                    link(demoted, PROBATION);
+                }
+                break;
+            default:
+                break;
+        }
+    }
+
+    private void evict() {
+        while (queueSizes[WINDOW] > windowMaximum) {
+            Node candidate = queues[WINDOW].next;
+            unlink(candidate);
+
+            if (data.size() <= maximumSize) {
+                link(candidate, PROBATION);
+                continue;
+            }
+
+            Node victim = queueSizes[PROBATION] > 0 ? queues[PROBATION].next : queues[PROTECTED].next;
+            if (victim == queues[PROTECTED]) {
+                link(candidate, PROBATION);
+                continue;
+            }
+
+            // Expired entries always lose, otherwise the more frequent key stays
+            long now = System.currentTimeMillis();
+            boolean admit = victim.expiresAt <= now ||
+                (candidate.expiresAt > now &&
+                 sketch.frequency(candidate.key.hashCode()) > sketch.frequency(victim.key.hashCode()));
+            if (admit) {
+                remove(victim);
+                link(candidate, PROBATION);
+            } else {
+                data.remove(candidate.key);
+            }
+            evictions++;
+        }
+    }
+
+    private void remove(Node node) {
+        unlink(node);
+        data.remove(node.key);
+    }
+
+    private void link(Node node, int queue) {
+        Node head = queues[queue];
+        node.prev = head.prev;
+        node.next = head;
+        head.prev.next = node;
+        head.prev = node;
+        node.queue = queue;
+        queueSizes[queue]++;
+    }
+
+    private void unlink(Node node) {
+        node.prev.next = node.next;
+        node.next.prev = node.prev;
+        node.prev = null;
+        node.next = null;
+        queueSizes[node.queue]--;
+    }
+
+    private void moveToTail(Node node, int queue) {
+        unlink(node);
+        link(node, queue);
+    }
+
+    // ================================
+    // SNAPSHOTS
+    // ================================
+
+    /**
+     * Write all live entries, most valuable first, replacing the file atomically.
+     *
+     * @return number of entries written
+     */
+    public int writeSnapshot(File file) throws IOException {
+        List<Node> entries = new ArrayList<>();
+        long now = System.currentTimeMillis();
+        synchronized (this) {
+            for (int queue : new int[] { PROTECTED, PROBATION, WINDOW }) {
+                // Most recently used first
+                for (Node node = queues[queue].prev; node != queues[queue]; node = node.prev) {
+                    if (node.expiresAt > now) entries.add(node.copy());
+                }
+            }
+        }
+
+        File parent = file.getAbsoluteFile().getParentFile();
+        if (parent != null && !parent.exists() && !parent.mkdirs()) {
+            throw new IOException("Could not create " + parent);
+        }
+        File temp = new File(file.getPath() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)))) {
+            out.writeInt(SNAPSHOT_MAGIC);
+            out.writeByte(SNAPSHOT_VERSION);
+            out.writeInt(entries.size());
+            for (Node node : entries) {
+                out.writeLong(node.key.getHigh());
+                out.writeLong(node.key.getLow());
+                out.writeBoolean(node.proxy);
+                out.writeLong(node.expiresAt);
+            }
+        }
+        Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return entries.size();
+    }
+
+    /**
+     * Load a snapshot written by {@link #writeSnapshot}. Entries cached since startup
+     * take precedence, and expired or excess entries are skipped.
+     *
+     * @return number of entries restored
+     */
+    public int readSnapshot(File file) throws IOException {
+        if (!file.exists()) return 0;
+
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != SNAPSHOT_MAGIC || in.readByte() != SNAPSHOT_VERSION) {
+                throw new IOException("Unrecognized VPN cache snapshot format");
+            }
+            int count = in.readInt();
+            long now = System.currentTimeMillis();
+            int restored = 0;
+
+            for (int i = 0; i < count; i++) {
+                IPAddressKey key = IPAddressKey.of(in.readLong(), in.readLong());
+                boolean proxy = in.readBoolean();
+                long expiresAt = in.readLong();
+                if (expiresAt <= now) continue;
+
+                synchronized (this) {
+                    // Restored entries go straight to the main space, hottest first
+                    if (data.size() >= maximumSize - windowMaximum) break;
+                    if (data.containsKey(key)) continue;
+                    Node node = new Node(key, proxy, expiresAt);
+                    data.put(key, node);
+                    link(node, PROBATION);
+                    restored++;
+                }
+            }
+            return restored;
+        }
+    }
+
+    public synchronized String getStats() {
+        long requests = hits + misses;
+        return String.format("Size: %d/%d, Hit rate: %.1f%%, Evictions: %d",
+            data.size(), maximumSize, requests == 0 ? 0.0 : hits * 100.0 / requests, evictions);
+    }
+
+    private static final class Node {
+        final IPAddressKey key;
+        boolean proxy;
+        long expiresAt;
+        int queue;
+        Node prev;
+        Node next;
+
+        // Sentinel
+        Node() {
+            this.key = null;
+            this.prev = this;
+            this.next = this;
+        }
+
+        Node(IPAddressKey key, boolean proxy, long expiresAt) {
+            this.key = key;
+            this.proxy = proxy;
+            this.expiresAt = expiresAt;
+        }
+
+        Node copy() {
+            return new Node(key, proxy, expiresAt);
+        }
+    }
+}
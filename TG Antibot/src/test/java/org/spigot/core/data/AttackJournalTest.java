@@ -0,0 +1,153 @@
+package org.spigot.core.data;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.spigot.enums.AttackType;
+import org.spigot.utils.IPAddressKey;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class AttackJournalTest {
+
+    // Records per segment, see AttackJournal
+    private static final int SEGMENT_RECORDS = 1 << 18;
+
+    private File directory;
+    private Logger logger;
+    private AttackJournal journal;
+
+    @Before
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("attack-journal").toFile();
+        logger = Logger.getLogger("AttackJournalTest");
+        logger.setUseParentHandlers(false);
+        journal = open();
+    }
+
+    @After
+    public void tearDown() {
+        journal.close();
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) file.delete();
+        }
+        directory.delete();
+    }
+
+    @Test
+    public void queriesReturnNewestFirst() {
+        long base = System.currentTimeMillis();
+        append(AttackType.JOIN_FLOOD, "203.0.113.1", base);
+        append(AttackType.PING_FLOOD, "2001:db8::1", base + 10);
+        append(AttackType.JOIN_FLOOD, "not-an-ip", base + 20);
+
+        List<AttackLog> all = journal.query(0, Long.MAX_VALUE, 10, null);
+        assertEquals(3, all.size());
+        assertEquals("unknown", all.get(0).getSourceIP());
+        assertEquals(IPAddressKey.parse("2001:db8::1").toString(), all.get(1).getSourceIP());
+        assertEquals(AttackType.PING_FLOOD, all.get(1).getType());
+        assertEquals(base, all.get(2).getTimestamp());
+
+        assertEquals(1, journal.query(base + 5, base + 15, 10, null).size());
+        assertEquals(1, journal.query(0, Long.MAX_VALUE, 1, null).size());
+        assertEquals(2, journal.query(0, Long.MAX_VALUE, 10, log -> log.getType() == AttackType.JOIN_FLOOD).size());
+
+        Map<AttackType, Long> counts = journal.countByType(base, base + 10);
+        assertEquals(Long.valueOf(1), counts.get(AttackType.JOIN_FLOOD));
+        assertEquals(Long.valueOf(1), counts.get(AttackType.PING_FLOOD));
+    }
+
+    @Test
+    public void rollsToANewSegmentWhenFull() {
+        long base = System.currentTimeMillis();
+        int total = SEGMENT_RECORDS + 100;
+        for (int i = 0; i < total; i++) {
+            append(AttackType.values()[i % 3], "198.51.100.7", base + i);
+        }
+        assertEquals(2, journal.getSegmentCount());
+
+        Map<AttackType, Long> counts = journal.countByType(0, Long.MAX_VALUE);
+        long sum = 0;
+        for (long count : counts.values()) sum += count;
+        assertEquals(total, sum);
+
+        // The range spans the segment boundary
+        List<AttackLog> recent = journal.query(base + SEGMENT_RECORDS - 50, Long.MAX_VALUE, 1000, null);
+        assertEquals(150, recent.size());
+        assertEquals(base + total - 1, recent.get(0).getTimestamp());
+        assertEquals(base + SEGMENT_RECORDS - 50, recent.get(149).getTimestamp());
+    }
+
+    @Test
+    public void reopenResumesTheNewestSegment() throws IOException {
+        long base = System.currentTimeMillis();
+        for (int i = 0; i < 100; i++) {
+            append(AttackType.RECONNECT_SPAM, "192.0.2.9", base + i);
+        }
+        journal.close();
+
+        journal = open();
+        assertEquals(100, journal.query(0, Long.MAX_VALUE, 1000, null).size());
+        append(AttackType.RECONNECT_SPAM, "192.0.2.9", base + 100);
+        assertEquals(1, journal.getSegmentCount());
+        assertEquals(101, journal.query(0, Long.MAX_VALUE, 1000, null).size());
+    }
+
+    @Test
+    public void maintainDropsExpiredSegments() {
+        long now = System.currentTimeMillis();
+        long old = now - TimeUnit.DAYS.toMillis(10);
+        // Two full segments of old attacks, then a recent one
+        for (int i = 0; i < 2 * SEGMENT_RECORDS; i++) {
+            append(AttackType.JOIN_FLOOD, "192.0.2.1", old + i);
+        }
+        append(AttackType.PING_FLOOD, "192.0.2.2", now);
+        assertEquals(3, journal.getSegmentCount());
+        // Maps the sealed segments, so the deleted one is also dropped from the cache
+        assertEquals(Long.valueOf(2L * SEGMENT_RECORDS), journal.countByType(0, Long.MAX_VALUE).get(AttackType.JOIN_FLOOD));
+
+        // Only the first segment is known to be expired: the next one starts before the cutoff
+        journal.setLimits(TimeUnit.DAYS.toMillis(7), Long.MAX_VALUE);
+        journal.maintain();
+        assertEquals(2, journal.getSegmentCount());
+        Map<AttackType, Long> counts = journal.countByType(0, Long.MAX_VALUE);
+        assertEquals(Long.valueOf(SEGMENT_RECORDS), counts.get(AttackType.JOIN_FLOOD));
+        assertEquals(Long.valueOf(1), counts.get(AttackType.PING_FLOOD));
+    }
+
+    @Test
+    public void maintainEnforcesTheSizeLimit() {
+        long base = System.currentTimeMillis();
+        for (int i = 0; i < 2 * SEGMENT_RECORDS + 1; i++) {
+            append(AttackType.JOIN_FLOOD, "192.0.2.1", base + i);
+        }
+        assertEquals(3, journal.getSegmentCount());
+
+        // Never below one segment
+        journal.setLimits(TimeUnit.DAYS.toMillis(7), 1);
+        journal.maintain();
+        assertEquals(1, journal.getSegmentCount());
+        assertTrue(journal.getSizeBytes() > 0);
+        assertEquals(1, journal.query(0, Long.MAX_VALUE, 10, null).size());
+    }
+
+    private AttackJournal open() throws IOException {
+        AttackJournal opened = new AttackJournal(directory, logger);
+        opened.open();
+        return opened;
+    }
+
+    private void append(AttackType type, String source, long timestamp) {
+        journal.append(new AttackLog(type, source, 1, timestamp), IPAddressKey.parse(source));
+    }
+}
@@ -0,0 +1,90 @@
+package org.spigot.core.data;
+
+import org.junit.Test;
+import org.spigot.enums.AttackType;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+public class AttackStatisticsTest {
+
+    // Timestamps run ahead of the wall clock, so queries never move the window themselves
+    private final long base = System.currentTimeMillis() + 60_000;
+
+    @Test
+    public void countsPerTypeAndInTotal() {
+        AttackStatistics statistics = new AttackStatistics();
+        statistics.record(AttackType.JOIN_FLOOD, base);
+        statistics.record(AttackType.JOIN_FLOOD, base + 100);
+        assertEquals(3, statistics.record(AttackType.PING_FLOOD, base + 200));
+
+        assertEquals(2, statistics.getLastMinute(AttackType.JOIN_FLOOD));
+        assertEquals(1, statistics.getLastHour(AttackType.PING_FLOOD));
+        assertEquals(3, statistics.getTotalLastMinute());
+        assertEquals(3, statistics.getTotalLastHour());
+    }
+
+    @Test
+    public void secondsRollOutOfTheWindows() {
+        AttackStatistics statistics = new AttackStatistics();
+        statistics.record(AttackType.JOIN_FLOOD, base);
+        statistics.record(AttackType.JOIN_FLOOD, base + 59_000);
+        assertEquals(2, statistics.getTotalLastMinute());
+
+        // The first second has left the minute but not the hour
+        assertEquals(2, statistics.record(AttackType.JOIN_FLOOD, base + 60_000));
+        assertEquals(3, statistics.getTotalLastHour());
+
+        statistics.record(AttackType.PING_FLOOD, base + 3_600_000);
+        assertEquals(1, statistics.getTotalLastMinute());
+        assertEquals(3, statistics.getTotalLastHour());
+
+        // A gap longer than the hour clears everything
+        assertEquals(1, statistics.record(AttackType.PING_FLOOD, base + 3 * 3_600_000));
+        assertEquals(1, statistics.getTotalLastHour());
+    }
+
+    @Test
+    public void lateTimestampsCountTowardsTheCurrentSecond() {
+        AttackStatistics statistics = new AttackStatistics();
+        statistics.record(AttackType.JOIN_FLOOD, base + 120_000);
+        assertEquals(2, statistics.record(AttackType.JOIN_FLOOD, base));
+        assertEquals(2, statistics.getLastMinute(AttackType.JOIN_FLOOD));
+    }
+
+    @Test
+    public void matchesBruteForceOverRandomTraffic() {
+        AttackStatistics statistics = new AttackStatistics();
+        AttackType[] types = AttackType.values();
+        List<long[]> oracle = new ArrayList<>();
+        Random random = new Random(11);
+        long timestamp = base;
+        for (int i = 0; i < 20_000; i++) {
+            // Bursts within a second and pauses of up to a few minutes
+            timestamp += random.nextInt(10) == 0 ? random.nextInt(300_000) : random.nextInt(800);
+            AttackType type = types[random.nextInt(types.length)];
+            oracle.add(new long[] {timestamp / 1000, type.ordinal()});
+
+            long second = timestamp / 1000;
+            assertEquals(count(oracle, second, 60, -1), statistics.record(type, timestamp));
+            if (i % 97 == 0) {
+                assertEquals(count(oracle, second, 3600, -1), statistics.getTotalLastHour());
+                for (AttackType check : types) {
+                    assertEquals(count(oracle, second, 60, check.ordinal()), statistics.getLastMinute(check));
+                    assertEquals(count(oracle, second, 3600, check.ordinal()), statistics.getLastHour(check));
+                }
+            }
+        }
+    }
+
+    private static long count(List<long[]> events, long now, int seconds, int type) {
+        long count = 0;
+        for (long[] event : events) {
+            if (event[0] > now - seconds && (type < 0 || event[1] == type)) count++;
+        }
+        return count;
+    }
+}
@@ -0,0 +1,104 @@
+package org.spigot.core.data;
+
+import org.junit.Test;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class TimestampRingTest {
+
+    @Test
+    public void keepsNewestEntriesOnceFull() {
+        TimestampRing ring = new TimestampRing(3);
+        for (long t = 1; t <= 5; t++) {
+            ring.add(t * 100);
+        }
+        assertEquals(3, ring.size());
+        assertArrayEquals(new long[] {300, 400, 500}, ring.toArray());
+        assertEquals(300, ring.oldest());
+        assertEquals(500, ring.newest());
+        assertEquals(100, ring.getAverageInterval());
+    }
+
+    @Test
+    public void evictBeforeDropsOldEntries() {
+        TimestampRing ring = new TimestampRing(10, 1000);
+        for (long t = 0; t < 10; t++) {
+            ring.add(t * 100);
+        }
+        ring.evictBefore(500);
+        assertArrayEquals(new long[] {500, 600, 700, 800, 900}, ring.toArray());
+        assertEquals(100, ring.getAverageInterval());
+
+        ring.evictBefore(10_000);
+        assertTrue(ring.isEmpty());
+        assertEquals(0, ring.getAverageInterval());
+        assertEquals(0, ring.countWithin(1000, 10_000));
+    }
+
+    @Test
+    public void olderTimestampIsClampedToNewest() {
+        TimestampRing ring = new TimestampRing(8, 100);
+        ring.add(1000);
+        ring.add(1050);
+        ring.add(900);
+        ring.add(1100);
+        assertArrayEquals(new long[] {1000, 1050, 1050, 1100}, ring.toArray());
+        assertEquals(3, ring.countWithin(60, 1100));
+    }
+
+    @Test
+    public void windowCountsMatchBruteForce() {
+        long[] windows = {50, 500};
+        TimestampRing ring = new TimestampRing(64, windows);
+        Deque<Long> oracle = new ArrayDeque<>();
+        Random random = new Random(7);
+        long now = 0;
+        for (int i = 0; i < 50_000; i++) {
+            now += random.nextInt(40);
+            ring.add(now);
+            oracle.addLast(now);
+            if (oracle.size() > 64) oracle.removeFirst();
+
+            if (random.nextInt(50) == 0) {
+                long cutoff = now - random.nextInt(1000);
+                ring.evictBefore(cutoff);
+                while (!oracle.isEmpty() && oracle.peekFirst() < cutoff) oracle.removeFirst();
+            }
+
+            // Tracked windows use cursors, the untracked one the binary search
+            for (long window : new long[] {50, 500, 777}) {
+                long query = now + random.nextInt(100);
+                assertEquals(bruteCount(oracle, window, query), ring.countWithin(window, query));
+            }
+            assertEquals(oracle.size(), ring.size());
+            long expectedAverage = oracle.size() < 2 ? 0
+                : (oracle.peekLast() - oracle.peekFirst()) / (oracle.size() - 1);
+            assertEquals(expectedAverage, ring.getAverageInterval());
+        }
+    }
+
+    @Test
+    public void growsUpToCapacity() {
+        TimestampRing ring = new TimestampRing(100);
+        for (long t = 0; t < 250; t++) {
+            ring.add(t);
+        }
+        assertEquals(100, ring.size());
+        assertEquals(150, ring.oldest());
+        assertEquals(100, ring.toList().size());
+    }
+
+    private static int bruteCount(Deque<Long> entries, long window, long now) {
+        int count = 0;
+        for (long entry : entries) {
+            if (entry > now - window) count++;
+        }
+        return count;
+    }
+}
@@ -0,0 +1,111 @@
+package org.spigot.utils;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class AhoCorasickMatcherTest {
+
+    @Test
+    public void findsPatternsIgnoringCase() {
+        AhoCorasickMatcher matcher = AhoCorasickMatcher.compile(Arrays.asList("bot", "Spam", "ÄRGER"));
+        assertEquals("bot", matcher.findFirst("xXBoT_123"));
+        assertEquals("Spam", matcher.findFirst("nospamhere"));
+        assertEquals("ÄRGER", matcher.findFirst("großer_ärger"));
+        assertNull(matcher.findFirst("Steve"));
+        assertFalse(matcher.matches(null));
+        assertEquals(3, matcher.getPatternCount());
+    }
+
+    @Test
+    public void reportsThePatternThatEndsFirst() {
+        AhoCorasickMatcher matcher = AhoCorasickMatcher.compile(Arrays.asList("abcd", "bc"));
+        assertEquals("bc", matcher.findFirst("xabcd"));
+        // A suffix of a longer partial match is found through the failure links
+        AhoCorasickMatcher nested = AhoCorasickMatcher.compile(Arrays.asList("she", "he", "hers"));
+        assertEquals("she", nested.findFirst("ushers"));
+    }
+
+    @Test
+    public void ignoresBlankPatterns() {
+        AhoCorasickMatcher matcher = AhoCorasickMatcher.compile(Arrays.asList("", "  ", null));
+        assertEquals(0, matcher.getPatternCount());
+        assertNull(matcher.findFirst("anything"));
+        assertNull(AhoCorasickMatcher.EMPTY.findFirst("anything"));
+        assertNull(AhoCorasickMatcher.compile(Collections.<String>emptyList()).findFirst("x"));
+    }
+
+    @Test
+    public void stepAndMatchAtFollowFindFirst() {
+        AhoCorasickMatcher matcher = AhoCorasickMatcher.compile(Arrays.asList("abc", "cd"));
+        int state = AhoCorasickMatcher.INITIAL_STATE;
+        String found = null;
+        for (char c : "zabcd".toCharArray()) {
+            state = matcher.step(state, c);
+            if (found == null) found = matcher.matchAt(state);
+        }
+        assertEquals("abc", found);
+        assertEquals("cd", matcher.matchAt(state));
+    }
+
+    @Test
+    public void matchesBruteForceOnRandomText() {
+        Random random = new Random(13);
+        String alphabet = "abcABCé_";
+        for (int round = 0; round < 200; round++) {
+            List<String> patterns = new ArrayList<>();
+            for (int i = 0, count = 1 + random.nextInt(12); i < count; i++) {
+                patterns.add(randomString(random, alphabet, 1 + random.nextInt(4)));
+            }
+            AhoCorasickMatcher matcher = AhoCorasickMatcher.compile(patterns);
+
+            for (int i = 0; i < 200; i++) {
+                String text = randomString(random, alphabet, random.nextInt(20));
+                int earliestEnd = earliestEnd(patterns, text);
+                String found = matcher.findFirst(text);
+                if (earliestEnd < 0) {
+                    assertNull(found);
+                } else {
+                    assertTrue(found != null && endsAt(text, found, earliestEnd));
+                }
+            }
+        }
+    }
+
+    private static int earliestEnd(List<String> patterns, String text) {
+        for (int end = 1; end <= text.length(); end++) {
+            for (String pattern : patterns) {
+                if (endsAt(text, pattern, end)) return end;
+            }
+        }
+        return -1;
+    }
+
+    private static boolean endsAt(String text, String pattern, int end) {
+        int start = end - pattern.length();
+        return start >= 0 && fold(text.substring(start, end)).equals(fold(pattern));
+    }
+
+    private static String fold(String value) {
+        StringBuilder folded = new StringBuilder(value.length());
+        for (char c : value.toCharArray()) folded.append(Character.toLowerCase(c));
+        return folded.toString();
+    }
+
+    private static String randomString(Random random, String alphabet, int length) {
+        StringBuilder value = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            value.append(alphabet.charAt(random.nextInt(alphabet.length())));
+        }
+        return value.toString();
+    }
+}
@@ -0,0 +1,148 @@
+package org.spigot.utils;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.logging.Logger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.junit.Assume.assumeFalse;
+
+public class BlocklistStoreTest {
+
+    private File directory;
+    private File file;
+    private Logger logger;
+
+    @Before
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("blocklist-store").toFile();
+        file = new File(directory, "lists.log");
+        logger = Logger.getLogger("BlocklistStoreTest");
+        logger.setUseParentHandlers(false);
+    }
+
+    @After
+    public void tearDown() {
+        file.setReadable(true);
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File child : files) child.delete();
+        }
+        directory.delete();
+    }
+
+    @Test
+    public void importsInitialEntriesOnlyOnce() throws IOException {
+        BlocklistStore store = new BlocklistStore("Test", file, logger);
+        assertFalse(store.load(Collections.singletonList("10.0.0.1"), Collections.singletonList("10.0.0.2")));
+        store.close();
+
+        BlocklistStore reopened = new BlocklistStore("Test", file, logger);
+        assertTrue(reopened.load(Collections.singletonList("10.0.0.9"), Collections.<String>emptyList()));
+        assertEquals(set("10.0.0.1"), reopened.getAllowed());
+        assertEquals(set("10.0.0.2"), reopened.getBlocked());
+        reopened.close();
+    }
+
+    @Test
+    public void changesSurviveAReopen() throws IOException {
+        BlocklistStore store = open();
+        store.block("198.51.100.1");
+        store.block("198.51.100.2");
+        store.allow("198.51.100.3");
+        store.removeBlocked("198.51.100.2");
+        // Allowing a blocked entry moves it
+        store.allow("198.51.100.1");
+        store.close();
+
+        BlocklistStore reopened = open();
+        assertEquals(set("198.51.100.3", "198.51.100.1"), reopened.getAllowed());
+        assertEquals(set(), reopened.getBlocked());
+        reopened.removeAllowed("198.51.100.3");
+        reopened.close();
+
+        assertEquals(set("198.51.100.1"), open().getAllowed());
+    }
+
+    @Test
+    public void changesAfterCloseAreStillWritten() throws IOException {
+        BlocklistStore store = open();
+        store.close();
+        store.block("203.0.113.50");
+
+        assertEquals(set("203.0.113.50"), open().getBlocked());
+    }
+
+    @Test
+    public void tornLastLineIsIgnoredAndRemoved() throws IOException {
+        Files.write(file.toPath(), "+B 192.0.2.1\n+B 192.0.2.2\n+B 192.0".getBytes(StandardCharsets.UTF_8));
+        BlocklistStore store = open();
+        assertEquals(set("192.0.2.1", "192.0.2.2"), store.getBlocked());
+        store.close();
+
+        assertEquals(Arrays.asList("+B 192.0.2.1", "+B 192.0.2.2"), lines());
+    }
+
+    @Test
+    public void growingLogIsCompacted() throws IOException {
+        BlocklistStore store = open();
+        store.block("192.0.2.100");
+        for (int i = 0; i < 3000; i++) {
+            store.block("192.0.2.1");
+            store.removeBlocked("192.0.2.1");
+        }
+        store.close();
+
+        assertTrue("log has " + lines().size() + " lines", lines().size() < 1024);
+        assertEquals(set("192.0.2.100"), open().getBlocked());
+    }
+
+    @Test
+    public void unreadableLogIsNeverOverwritten() throws IOException {
+        Files.write(file.toPath(), "+B 192.0.2.1\n".getBytes(StandardCharsets.UTF_8));
+        file.setReadable(false);
+        // Permissions do not apply to every user, e.g. root
+        assumeFalse(file.canRead());
+
+        BlocklistStore store = new BlocklistStore("Test", file, logger);
+        try {
+            store.load(Collections.<String>emptyList(), Collections.<String>emptyList());
+            fail("expected the read to fail");
+        } catch (IOException expected) {
+            // The store keeps working in memory
+        }
+        store.block("192.0.2.2");
+        assertEquals(set("192.0.2.2"), store.getBlocked());
+        store.close();
+
+        file.setReadable(true);
+        assertEquals(Collections.singletonList("+B 192.0.2.1"), lines());
+    }
+
+    private BlocklistStore open() throws IOException {
+        BlocklistStore store = new BlocklistStore("Test", file, logger);
+        store.load(Collections.<String>emptyList(), Collections.<String>emptyList());
+        return store;
+    }
+
+    private List<String> lines() throws IOException {
+        return Files.readAllLines(file.toPath(), StandardCharsets.UTF_8);
+    }
+
+    private static LinkedHashSet<String> set(String... entries) {
+        return new LinkedHashSet<>(Arrays.asList(entries));
+    }
+}
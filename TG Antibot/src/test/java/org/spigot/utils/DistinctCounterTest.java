@@ -0,0 +1,90 @@
+package org.spigot.utils;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class DistinctCounterTest {
+
+    @Test
+    public void estimatesWithinTheErrorBound() {
+        for (int cardinality : new int[] {10, 500, 5_000, 50_000, 300_000}) {
+            // A fresh counter per size, estimates are cached for 100ms
+            DistinctCounter counter = new DistinctCounter(1, 60, TimeUnit.SECONDS);
+            for (int i = 0; i < cardinality; i++) {
+                counter.offer(0L, 0x0000FFFF00000000L | i);
+            }
+            assertWithin(cardinality, counter.estimate(), 0.1);
+        }
+    }
+
+    @Test
+    public void repeatedValuesAreCountedOnce() {
+        DistinctCounter counter = new DistinctCounter(1, 60, TimeUnit.SECONDS);
+        for (int round = 0; round < 20; round++) {
+            for (int i = 0; i < 1000; i++) {
+                counter.offer("Player" + i);
+            }
+        }
+        assertWithin(1000, counter.estimate(), 0.1);
+    }
+
+    @Test
+    public void valuesExpireWithTheirBuckets() throws InterruptedException {
+        DistinctCounter counter = new DistinctCounter(10, 50, TimeUnit.MILLISECONDS);
+        for (int i = 0; i < 1000; i++) {
+            counter.offer(DistinctCounter.hash(0L, i));
+        }
+        assertTrue(counter.estimate() > 0);
+
+        Thread.sleep(150);
+        assertEquals(0, counter.estimate());
+    }
+
+    @Test
+    public void resetForgetsEverything() {
+        DistinctCounter counter = new DistinctCounter(1, 60, TimeUnit.SECONDS);
+        for (int i = 0; i < 1000; i++) {
+            counter.offer(DistinctCounter.hash(1L, i));
+        }
+        assertTrue(counter.estimate() > 0);
+        counter.reset();
+        assertEquals(0, counter.estimate());
+    }
+
+    @Test
+    public void concurrentOffersAreNotLost() throws InterruptedException {
+        DistinctCounter counter = new DistinctCounter(1, 60, TimeUnit.SECONDS);
+        int threads = 4;
+        int perThread = 25_000;
+        List<Thread> workers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            long high = t + 1;
+            workers.add(new Thread(() -> {
+                for (int i = 0; i < perThread; i++) {
+                    counter.offer(high, i);
+                }
+            }));
+        }
+        for (Thread worker : workers) worker.start();
+        for (Thread worker : workers) worker.join();
+
+        assertWithin(threads * perThread, counter.estimate(), 0.1);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsWindowShorterThanABucket() {
+        new DistinctCounter(10, 5, TimeUnit.SECONDS);
+    }
+
+    private static void assertWithin(long expected, long actual, double error) {
+        // About three standard errors at 1024 registers
+        assertTrue("expected about " + expected + " but was " + actual,
+            Math.abs(actual - expected) <= Math.max(2, expected * error));
+    }
+}
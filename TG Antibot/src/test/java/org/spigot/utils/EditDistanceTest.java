@@ -0,0 +1,66 @@
+package org.spigot.utils;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class EditDistanceTest {
+
+    @Test
+    public void knownDistances() {
+        assertEquals(3, EditDistance.distance("kitten", "sitting", 10));
+        assertEquals(0, EditDistance.distance("Notch", "nOTCH", 2));
+        assertEquals(1, EditDistance.distance("Player_1", "Player_12", 2));
+        assertEquals(2, EditDistance.distance("", "ab", 2));
+        assertEquals(1, EditDistance.distance("Ärger", "ärgern", 1));
+    }
+
+    @Test
+    public void capsAtTheBound() {
+        assertEquals(3, EditDistance.distance("kitten", "sitting", 2));
+        assertEquals(2, EditDistance.distance("a", "abcdef", 1));
+        assertTrue(EditDistance.isWithin("Bot_0001", "Bot_0002", 1));
+        assertFalse(EditDistance.isWithin("Steve", "Alex", 2));
+    }
+
+    @Test
+    public void matchesFullDpOnRandomStrings() {
+        Random random = new Random(17);
+        String alphabet = "abAB_1é";
+        for (int i = 0; i < 50_000; i++) {
+            // Up to 80 characters so the DP fallback beyond 64 is covered too
+            int longest = random.nextInt(10) == 0 ? 80 : 17;
+            String a = randomString(random, alphabet, random.nextInt(longest));
+            String b = randomString(random, alphabet, random.nextInt(longest));
+            int max = random.nextInt(12);
+            int exact = fullDp(a, b);
+            assertEquals(a + " / " + b, Math.min(exact, max + 1), EditDistance.distance(a, b, max));
+            assertEquals(exact <= max, EditDistance.isWithin(a, b, max));
+        }
+    }
+
+    private static int fullDp(String a, String b) {
+        int[][] d = new int[a.length() + 1][b.length() + 1];
+        for (int i = 0; i <= a.length(); i++) d[i][0] = i;
+        for (int j = 0; j <= b.length(); j++) d[0][j] = j;
+        for (int i = 1; i <= a.length(); i++) {
+            for (int j = 1; j <= b.length(); j++) {
+                boolean same = Character.toLowerCase(a.charAt(i - 1)) == Character.toLowerCase(b.charAt(j - 1));
+                d[i][j] = Math.min(Math.min(d[i - 1][j] + 1, d[i][j - 1] + 1), d[i - 1][j - 1] + (same ? 0 : 1));
+            }
+        }
+        return d[a.length()][b.length()];
+    }
+
+    private static String randomString(Random random, String alphabet, int length) {
+        StringBuilder value = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            value.append(alphabet.charAt(random.nextInt(alphabet.length())));
+        }
+        return value.toString();
+    }
+}
@@ -0,0 +1,62 @@
+package org.spigot.utils;
+
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class FrequencySketchTest {
+
+    @Test
+    public void neverUnderestimatesBeforeAReset() {
+        FrequencySketch sketch = new FrequencySketch(1024);
+        Map<Integer, Integer> oracle = new HashMap<>();
+        Random random = new Random(9);
+        // Skewed keys, fewer increments than the sample size so nothing is halved
+        for (int i = 0; i < 5000; i++) {
+            int key = (int) Math.pow(random.nextInt(1 << 10), 1.5) * 0x9E3779B9;
+            sketch.increment(key);
+            oracle.merge(key, 1, Integer::sum);
+        }
+
+        long overestimate = 0;
+        for (Map.Entry<Integer, Integer> entry : oracle.entrySet()) {
+            int expected = Math.min(15, entry.getValue());
+            int estimate = sketch.frequency(entry.getKey());
+            assertTrue(estimate >= expected);
+            overestimate += estimate - expected;
+        }
+        // Four counters per key keep collisions rare at this load
+        assertTrue("mean overestimate " + (double) overestimate / oracle.size(),
+            overestimate < oracle.size() / 2);
+    }
+
+    @Test
+    public void countersSaturateAtFifteen() {
+        FrequencySketch sketch = new FrequencySketch(64);
+        for (int i = 0; i < 40; i++) {
+            sketch.increment(12345);
+        }
+        assertEquals(15, sketch.frequency(12345));
+    }
+
+    @Test
+    public void oldPopularityIsHalvedAfterTheSample() {
+        FrequencySketch sketch = new FrequencySketch(64);
+        for (int i = 0; i < 15; i++) {
+            sketch.increment(42);
+        }
+        // The sample is ten times the maximum size
+        for (int i = 0; i < 640; i++) {
+            sketch.increment(1_000_000 + i * 0x9E3779B9);
+        }
+        assertTrue(sketch.frequency(42) <= 8);
+
+        sketch.clear();
+        assertEquals(0, sketch.frequency(42));
+    }
+}
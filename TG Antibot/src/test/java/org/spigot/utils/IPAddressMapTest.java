@@ -0,0 +1,156 @@
+package org.spigot.utils;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class IPAddressMapTest {
+
+    @Test
+    public void putGetRemoveRoundTrip() {
+        IPAddressMap<String> map = new IPAddressMap<>();
+        IPAddressKey v4 = IPAddressKey.parse("192.168.1.20");
+        IPAddressKey v6 = IPAddressKey.parse("2001:db8::1");
+
+        assertNull(map.put(v4, "a"));
+        assertNull(map.put(v6, "b"));
+        assertEquals("a", map.put(v4, "c"));
+        assertEquals("c", map.get(v4));
+        assertEquals("b", map.get(v6));
+        assertEquals(2, map.size());
+
+        assertEquals("c", map.remove(v4));
+        assertNull(map.get(v4));
+        assertFalse(map.containsKey(v4));
+        assertTrue(map.containsKey(v6));
+        assertEquals(1, map.size());
+    }
+
+    @Test
+    public void putIfAbsentKeepsExistingValue() {
+        IPAddressMap<String> map = new IPAddressMap<>();
+        assertNull(map.putIfAbsent(0L, 1L, "first"));
+        assertEquals("first", map.putIfAbsent(0L, 1L, "second"));
+        assertEquals("first", map.get(0L, 1L));
+    }
+
+    @Test
+    public void conditionalRemoveOnlyMatchesCurrentValue() {
+        IPAddressMap<String> map = new IPAddressMap<>();
+        map.put(0L, 7L, "value");
+        assertFalse(map.remove(0L, 7L, "other"));
+        assertTrue(map.remove(0L, 7L, "value"));
+        assertTrue(map.isEmpty());
+    }
+
+    @Test(expected = NullPointerException.class)
+    public void rejectsNullValues() {
+        new IPAddressMap<String>().put(0L, 1L, null);
+    }
+
+    @Test
+    public void computeIfAbsentCreatesOnce() {
+        IPAddressMap<Object> map = new IPAddressMap<>();
+        AtomicInteger created = new AtomicInteger();
+        Object first = map.computeIfAbsent(1L, 2L, (high, low) -> {
+            created.incrementAndGet();
+            return new Object();
+        });
+        Object second = map.computeIfAbsent(1L, 2L, (high, low) -> {
+            created.incrementAndGet();
+            return new Object();
+        });
+        assertSame(first, second);
+        assertEquals(1, created.get());
+    }
+
+    @Test
+    public void matchesHashMapUnderRandomOperations() {
+        // Small key space so removals hit existing keys and probe chains get shifted
+        IPAddressMap<Long> map = new IPAddressMap<>(16);
+        Map<IPAddressKey, Long> oracle = new HashMap<>();
+        Random random = new Random(42);
+        for (int i = 0; i < 200_000; i++) {
+            long high = random.nextInt(4) == 0 ? random.nextInt(64) : 0L;
+            long low = 0x0000FFFF00000000L | random.nextInt(4096);
+            IPAddressKey key = IPAddressKey.of(high, low);
+            long value = random.nextLong();
+            switch (random.nextInt(3)) {
+                case 0:
+                    assertEquals(oracle.put(key, value), map.put(high, low, value));
+                    break;
+                case 1:
+                    assertEquals(oracle.remove(key), map.remove(high, low));
+                    break;
+                default:
+                    assertEquals(oracle.get(key), map.get(high, low));
+                    break;
+            }
+        }
+        assertEquals(oracle.size(), map.size());
+
+        Map<IPAddressKey, Long> visited = new HashMap<>();
+        map.forEach((high, low, value) -> visited.put(IPAddressKey.of(high, low), value));
+        assertEquals(oracle, visited);
+    }
+
+    @Test
+    public void removeIfDropsMatchingEntries() {
+        IPAddressMap<Integer> map = new IPAddressMap<>();
+        for (int i = 0; i < 1000; i++) {
+            map.put(0L, i, i);
+        }
+        assertEquals(500, map.removeIf((high, low, value) -> value % 2 == 0));
+        assertEquals(500, map.size());
+        assertNull(map.get(0L, 10L));
+        assertEquals(Integer.valueOf(11), map.get(0L, 11L));
+
+        map.clear();
+        assertTrue(map.isEmpty());
+    }
+
+    @Test
+    public void concurrentWritersKeepEveryEntry() throws InterruptedException {
+        IPAddressMap<Integer> map = new IPAddressMap<>();
+        int threads = 4;
+        int perThread = 20_000;
+        List<Thread> workers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            int offset = t * perThread;
+            workers.add(new Thread(() -> {
+                for (int i = 0; i < perThread; i++) {
+                    map.put(0L, offset + i, offset + i);
+                }
+            }));
+        }
+        for (Thread worker : workers) worker.start();
+        for (Thread worker : workers) worker.join();
+
+        assertEquals(threads * perThread, map.size());
+        for (int i = 0; i < threads * perThread; i++) {
+            assertEquals(Integer.valueOf(i), map.get(0L, i));
+        }
+    }
+
+    @Test
+    public void keysRoundTripThroughText() {
+        IPAddressMap<Boolean> map = new IPAddressMap<>();
+        map.put(IPAddressKey.parse("10.0.0.1"), true);
+        map.put(IPAddressKey.parse("2001:db8::42"), true);
+        for (String text : map.keysAsStrings()) {
+            assertTrue(map.containsKey(IPAddressKey.parse(text)));
+        }
+        assertEquals(2, map.keysAsStrings().size());
+    }
+}
@@ -0,0 +1,102 @@
+package org.spigot.utils;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+public class IPPrefixTrieTest {
+
+    @Test
+    public void matchesAddressesInsideRanges() {
+        IPPrefixTrie trie = IPPrefixTrie.build(
+            Collections.singletonList("10.1.2.3"),
+            Arrays.asList("10.0.0.0/8", "2001:db8::/32"));
+
+        assertEquals(IPPrefixTrie.BLOCK, lookup(trie, "10.200.1.1"));
+        assertEquals(IPPrefixTrie.NONE, lookup(trie, "11.0.0.1"));
+        assertEquals(IPPrefixTrie.BLOCK, lookup(trie, "2001:db8:ffff::1"));
+        assertEquals(IPPrefixTrie.NONE, lookup(trie, "2001:db9::1"));
+        // The allowed host inside the blocked range wins
+        assertEquals(IPPrefixTrie.ALLOW, lookup(trie, "10.1.2.3"));
+        assertEquals(3, trie.getEntryCount());
+    }
+
+    @Test
+    public void allowWinsOverNarrowerBlock() {
+        IPPrefixTrie trie = IPPrefixTrie.build(
+            Collections.singletonList("192.168.0.0/16"),
+            Collections.singletonList("192.168.5.0/24"));
+        assertEquals(IPPrefixTrie.ALLOW, lookup(trie, "192.168.5.9"));
+    }
+
+    @Test
+    public void ipv4AndIpv6RangesDoNotOverlap() {
+        IPPrefixTrie trie = IPPrefixTrie.build(null, Collections.singletonList("0.0.0.0/0"));
+        assertEquals(IPPrefixTrie.BLOCK, lookup(trie, "203.0.113.7"));
+        assertEquals(IPPrefixTrie.NONE, lookup(trie, "2001:db8::1"));
+    }
+
+    @Test
+    public void countsInvalidEntries() {
+        IPPrefixTrie.Builder builder = new IPPrefixTrie.Builder();
+        assertFalse(builder.add("not-an-ip", IPPrefixTrie.BLOCK));
+        assertFalse(builder.add("10.0.0.0/33", IPPrefixTrie.BLOCK));
+        assertFalse(builder.add("10.0.0.0/x", IPPrefixTrie.BLOCK));
+        assertFalse(builder.add("  ", IPPrefixTrie.BLOCK));
+        IPPrefixTrie trie = builder.build();
+        assertEquals(3, trie.getInvalidCount());
+        assertEquals(0, trie.getEntryCount());
+        assertEquals(IPPrefixTrie.NONE, trie.lookup(0L, 0x0000FFFF0A000001L));
+        assertEquals(IPPrefixTrie.NONE, lookup(IPPrefixTrie.empty(), "10.0.0.1"));
+    }
+
+    @Test
+    public void matchesBruteForceOnRandomIpv4Prefixes() {
+        Random random = new Random(5);
+        List<int[]> allowed = new ArrayList<>();
+        List<int[]> blocked = new ArrayList<>();
+        List<String> allowedText = new ArrayList<>();
+        List<String> blockedText = new ArrayList<>();
+        for (int i = 0; i < 300; i++) {
+            int address = random.nextInt();
+            int length = 8 + random.nextInt(25);
+            boolean allow = random.nextInt(5) == 0;
+            (allow ? allowed : blocked).add(new int[] {address, length});
+            (allow ? allowedText : blockedText).add(toText(address) + "/" + length);
+        }
+        IPPrefixTrie trie = IPPrefixTrie.build(allowedText, blockedText);
+
+        for (int i = 0; i < 200_000; i++) {
+            // Half the probes land near a configured prefix, half anywhere
+            int[] near = blocked.get(random.nextInt(blocked.size()));
+            int address = random.nextBoolean() ? near[0] ^ random.nextInt(1 << 12) : random.nextInt();
+            int expected = matchesAny(allowed, address) ? IPPrefixTrie.ALLOW
+                : matchesAny(blocked, address) ? IPPrefixTrie.BLOCK : IPPrefixTrie.NONE;
+            assertEquals(expected, trie.lookup(0L, 0x0000FFFF00000000L | (address & 0xFFFFFFFFL)));
+        }
+    }
+
+    private static boolean matchesAny(List<int[]> prefixes, int address) {
+        for (int[] prefix : prefixes) {
+            int length = prefix[1];
+            if (length == 0 || ((prefix[0] ^ address) >>> (32 - length)) == 0) return true;
+        }
+        return false;
+    }
+
+    private static String toText(int address) {
+        return (address >>> 24) + "." + ((address >>> 16) & 0xFF) + "." + ((address >>> 8) & 0xFF) + "." + (address & 0xFF);
+    }
+
+    private static int lookup(IPPrefixTrie trie, String ip) {
+        IPAddressKey key = IPAddressKey.parse(ip);
+        return trie.lookup(key.getHigh(), key.getLow());
+    }
+}
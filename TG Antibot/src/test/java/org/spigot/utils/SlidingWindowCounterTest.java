@@ -0,0 +1,69 @@
+package org.spigot.utils;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+
+public class SlidingWindowCounterTest {
+
+    @Test
+    public void sumsEventsInsideTheWindow() {
+        SlidingWindowCounter counter = new SlidingWindowCounter(1, 60, TimeUnit.SECONDS);
+        counter.increment();
+        counter.add(4);
+        counter.add(0);
+        counter.add(-3);
+        assertEquals(5, counter.sum(60, TimeUnit.SECONDS));
+        assertEquals(5.0 / 60, counter.ratePerSecond(60, TimeUnit.SECONDS), 1e-9);
+
+        counter.reset();
+        assertEquals(0, counter.sum(60, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void eventsExpireWithTheirBuckets() throws InterruptedException {
+        SlidingWindowCounter counter = new SlidingWindowCounter(10, 50, TimeUnit.MILLISECONDS);
+        counter.add(5);
+        assertEquals(5, counter.sum(50, TimeUnit.MILLISECONDS));
+
+        Thread.sleep(120);
+        assertEquals(0, counter.sum(50, TimeUnit.MILLISECONDS));
+        counter.increment();
+        assertEquals(1, counter.sum(50, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    public void concurrentIncrementsAreNotLost() throws InterruptedException {
+        SlidingWindowCounter counter = new SlidingWindowCounter(1, 60, TimeUnit.SECONDS);
+        int threads = 8;
+        int perThread = 50_000;
+        List<Thread> workers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            workers.add(new Thread(() -> {
+                for (int i = 0; i < perThread; i++) {
+                    counter.increment();
+                }
+            }));
+        }
+        for (Thread worker : workers) worker.start();
+        for (Thread worker : workers) worker.join();
+
+        assertEquals((long) threads * perThread, counter.sum(60, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void bucketCountSaturates() {
+        SlidingWindowCounter counter = new SlidingWindowCounter(1, 60, TimeUnit.SECONDS);
+        counter.add(1L << 30);
+        assertEquals((1L << 24) - 1, counter.sum(60, TimeUnit.SECONDS));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsWindowShorterThanABucket() {
+        new SlidingWindowCounter(10, 5, TimeUnit.SECONDS);
+    }
+}
@@ -0,0 +1,92 @@
+package org.spigot.utils;
+
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class SpaceSavingSketchTest {
+
+    @Test
+    public void countsExactlyBelowCapacity() {
+        SpaceSavingSketch sketch = new SpaceSavingSketch(8);
+        for (int i = 0; i < 5; i++) {
+            for (int n = 0; n <= i; n++) {
+                sketch.add(0L, i);
+            }
+        }
+        assertEquals(5, sketch.size());
+        assertEquals(15, sketch.getTotal());
+        assertEquals(3, sketch.estimate(0L, 2L));
+        assertEquals(0, sketch.estimate(0L, 99L));
+
+        List<SpaceSavingSketch.Entry> top = sketch.top(2);
+        assertEquals(2, top.size());
+        assertEquals(4, top.get(0).getLow());
+        assertEquals(5, top.get(0).getGuaranteedCount());
+        assertEquals(3, top.get(1).getLow());
+
+        sketch.clear();
+        assertEquals(0, sketch.size());
+        assertEquals(0, sketch.estimate(0L, 4L));
+    }
+
+    @Test
+    public void newAddressInheritsTheSmallestCount() {
+        SpaceSavingSketch sketch = new SpaceSavingSketch(2);
+        sketch.add(0L, 1L);
+        sketch.add(0L, 1L);
+        sketch.add(0L, 2L);
+        // Replaces address 2, whose single occurrence becomes the error
+        assertEquals(1, sketch.add(0L, 3L));
+        assertEquals(2, sketch.estimate(0L, 3L));
+        assertEquals(0, sketch.estimate(0L, 2L));
+        assertEquals(1, sketch.top(2).get(1).getError());
+    }
+
+    @Test
+    public void errorBoundsHoldAgainstExactCounts() {
+        int capacity = 64;
+        SpaceSavingSketch sketch = new SpaceSavingSketch(capacity);
+        Map<Long, Long> exact = new HashMap<>();
+        Random random = new Random(23);
+        int total = 200_000;
+        for (int i = 0; i < total; i++) {
+            // A few heavy hitters over a long tail of one-off addresses
+            long low = random.nextInt(4) == 0 ? random.nextInt(20) : 1000 + random.nextInt(100_000);
+            long high = low % 3 == 0 ? 0x20010db8L << 32 : 0L;
+            long guaranteed = sketch.add(high, low);
+            long seen = exact.merge(high ^ low, 1L, Long::sum);
+            assertTrue(guaranteed <= seen);
+        }
+
+        long sum = 0;
+        for (SpaceSavingSketch.Entry entry : sketch.top(capacity)) {
+            long seen = exact.get(entry.getHigh() ^ entry.getLow());
+            assertTrue(entry.getGuaranteedCount() <= seen);
+            assertTrue(entry.getCount() >= seen);
+            assertTrue(entry.getError() <= total / capacity);
+            sum += entry.getCount();
+        }
+        assertEquals(total, sum);
+
+        // Every address above total / capacity must be monitored
+        for (Map.Entry<Long, Long> entry : exact.entrySet()) {
+            if (entry.getValue() > total / capacity) {
+                long low = entry.getKey() & 0xFFFFFFFFL;
+                long high = low % 3 == 0 ? 0x20010db8L << 32 : 0L;
+                assertTrue(sketch.estimate(high, low) >= entry.getValue());
+            }
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsEmptyCapacity() {
+        new SpaceSavingSketch(0);
+    }
+}
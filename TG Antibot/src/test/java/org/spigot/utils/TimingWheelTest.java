@@ -0,0 +1,106 @@
+package org.spigot.utils;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class TimingWheelTest {
+
+    private TimingWheel wheel;
+
+    @Before
+    public void setUp() {
+        // A short tick so the coarser levels and their cascades are reached within a second
+        Logger logger = Logger.getLogger("TimingWheelTest");
+        logger.setUseParentHandlers(false);
+        wheel = new TimingWheel("TimingWheelTest", 100, TimeUnit.MICROSECONDS, logger);
+    }
+
+    @After
+    public void tearDown() {
+        wheel.shutdown();
+    }
+
+    @Test
+    public void firesAfterTheDelay() throws InterruptedException {
+        CountDownLatch fired = new CountDownLatch(1);
+        long start = System.nanoTime();
+        long[] firedAt = new long[1];
+        TimingWheel.Timeout timeout = wheel.schedule(() -> {
+            firedAt[0] = System.nanoTime();
+            fired.countDown();
+        }, 30, TimeUnit.MILLISECONDS);
+
+        assertTrue(fired.await(5, TimeUnit.SECONDS));
+        assertTrue(firedAt[0] - start >= TimeUnit.MILLISECONDS.toNanos(30));
+        assertTrue(timeout.isExpired());
+        assertFalse(timeout.cancel());
+    }
+
+    @Test
+    public void cancelledTasksNeverRun() throws InterruptedException {
+        AtomicBoolean ran = new AtomicBoolean();
+        TimingWheel.Timeout timeout = wheel.schedule(() -> ran.set(true), 50, TimeUnit.MILLISECONDS);
+        assertTrue(timeout.cancel());
+        assertFalse(timeout.cancel());
+        assertTrue(timeout.isCancelled());
+
+        Thread.sleep(150);
+        assertFalse(ran.get());
+        assertEquals(0, wheel.getPendingCount());
+    }
+
+    @Test
+    public void randomDelaysFireOnceAndNeverEarly() throws InterruptedException {
+        int count = 2000;
+        CountDownLatch fired = new CountDownLatch(count);
+        AtomicInteger early = new AtomicInteger();
+        AtomicInteger runs = new AtomicInteger();
+        Random random = new Random(3);
+        for (int i = 0; i < count; i++) {
+            // Up to 800ms spans the first three levels at this tick
+            long delay = random.nextInt(800_000);
+            long due = System.nanoTime() + TimeUnit.MICROSECONDS.toNanos(delay);
+            wheel.schedule(() -> {
+                if (System.nanoTime() < due) early.incrementAndGet();
+                runs.incrementAndGet();
+                fired.countDown();
+            }, delay, TimeUnit.MICROSECONDS);
+        }
+
+        assertTrue(fired.await(10, TimeUnit.SECONDS));
+        Thread.sleep(20);
+        assertEquals(count, runs.get());
+        assertEquals(0, early.get());
+        assertEquals(0, wheel.getPendingCount());
+    }
+
+    @Test
+    public void failingTaskDoesNotStopTheWheel() throws InterruptedException {
+        CountDownLatch fired = new CountDownLatch(1);
+        wheel.schedule(() -> {
+            throw new IllegalStateException("expected");
+        }, 1, TimeUnit.MILLISECONDS);
+        wheel.schedule(fired::countDown, 5, TimeUnit.MILLISECONDS);
+        assertTrue(fired.await(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void scheduleAfterShutdownIsCancelled() {
+        wheel.shutdown();
+        TimingWheel.Timeout timeout = wheel.schedule(() -> { }, 1, TimeUnit.MILLISECONDS);
+        assertTrue(timeout.isCancelled());
+        assertEquals(0, wheel.getPendingCount());
+    }
+}
@@ -0,0 +1,127 @@
+package org.spigot.utils;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class VPNVerdictCacheTest {
+
+    private static final long HOUR = 3_600_000L;
+
+    private File directory;
+
+    @Before
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("vpn-cache").toFile();
+    }
+
+    @After
+    public void tearDown() {
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) file.delete();
+        }
+        directory.delete();
+    }
+
+    @Test
+    public void storesAndReplacesVerdicts() {
+        VPNVerdictCache cache = new VPNVerdictCache(100, HOUR, HOUR);
+        IPAddressKey key = IPAddressKey.parse("203.0.113.5");
+        assertNull(cache.get(key));
+
+        cache.put(key, true);
+        assertEquals(Boolean.TRUE, cache.get(key));
+        cache.put(key, false);
+        assertEquals(Boolean.FALSE, cache.get(key));
+        assertEquals(1, cache.size());
+
+        cache.clear();
+        assertNull(cache.get(key));
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void verdictsExpireAfterTheirLifetime() throws InterruptedException {
+        VPNVerdictCache cache = new VPNVerdictCache(100, 20, HOUR);
+        IPAddressKey proxy = IPAddressKey.parse("203.0.113.1");
+        IPAddressKey clean = IPAddressKey.parse("203.0.113.2");
+        IPAddressKey other = IPAddressKey.parse("203.0.113.3");
+        cache.put(proxy, true);
+        cache.put(clean, false);
+        cache.put(other, true);
+
+        Thread.sleep(60);
+        assertNull(cache.get(proxy));
+        assertEquals(Boolean.FALSE, cache.get(clean));
+        assertEquals(1, cache.removeExpired());
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    public void sizeStaysBounded() {
+        VPNVerdictCache cache = new VPNVerdictCache(200, HOUR, HOUR);
+        for (int i = 0; i < 20_000; i++) {
+            cache.put(IPAddressKey.of(0L, 0x0000FFFF00000000L | i), i % 2 == 0);
+            assertTrue(cache.size() <= 200);
+        }
+    }
+
+    @Test
+    public void frequentKeysSurviveAFloodOfOneOffs() {
+        VPNVerdictCache cache = new VPNVerdictCache(1000, HOUR, HOUR);
+        int hot = 100;
+        for (int round = 0; round < 5; round++) {
+            for (int i = 0; i < hot; i++) {
+                IPAddressKey key = IPAddressKey.of(0L, 0x0000FFFF0A000000L | i);
+                if (cache.get(key) == null) cache.put(key, false);
+            }
+        }
+        for (int i = 0; i < 50_000; i++) {
+            IPAddressKey key = IPAddressKey.of(0L, 0x0000FFFFC0000000L | i);
+            if (cache.get(key) == null) cache.put(key, true);
+        }
+
+        int survivors = 0;
+        for (int i = 0; i < hot; i++) {
+            if (cache.get(IPAddressKey.of(0L, 0x0000FFFF0A000000L | i)) != null) survivors++;
+        }
+        assertTrue("only " + survivors + " regular keys kept", survivors >= hot * 9 / 10);
+    }
+
+    @Test
+    public void snapshotRoundTrip() throws IOException {
+        VPNVerdictCache cache = new VPNVerdictCache(100, HOUR, HOUR);
+        IPAddressKey v4 = IPAddressKey.parse("198.51.100.7");
+        IPAddressKey v6 = IPAddressKey.parse("2001:db8::7");
+        cache.put(v4, true);
+        cache.put(v6, false);
+
+        File file = new File(directory, "vpn-cache.bin");
+        assertEquals(2, cache.writeSnapshot(file));
+        assertFalse(new File(file.getPath() + ".tmp").exists());
+
+        VPNVerdictCache restored = new VPNVerdictCache(100, HOUR, HOUR);
+        assertEquals(2, restored.readSnapshot(file));
+        assertEquals(Boolean.TRUE, restored.get(v4));
+        assertEquals(Boolean.FALSE, restored.get(v6));
+
+        assertEquals(0, restored.readSnapshot(new File(directory, "missing.bin")));
+    }
+
+    @Test(expected = IOException.class)
+    public void rejectsForeignSnapshots() throws IOException {
+        File file = new File(directory, "garbage.bin");
+        Files.write(file.toPath(), new byte[] {1, 2, 3, 4, 5, 6, 7, 8, 9});
+        new VPNVerdictCache(100, HOUR, HOUR).readSnapshot(file);
+    }
+}